@@ -0,0 +1,24 @@
+package com.codepoetics.fluvius.api;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+/**
+ * A callback which is called when an {@link AsyncAction} has completed.
+ */
+public interface ActionCallback {
+
+  /**
+   * Called when the action has completed, supplying the updated Scratchpad.
+   *
+   * @param result The updated Scratchpad.
+   */
+  void onComplete(Scratchpad result);
+
+  /**
+   * Called if the action terminates exceptionally, without producing an updated Scratchpad.
+   *
+   * @param failure The exception that terminated the action.
+   */
+  void onFailure(Throwable failure);
+
+}
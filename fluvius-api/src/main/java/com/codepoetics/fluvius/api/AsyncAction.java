@@ -0,0 +1,19 @@
+package com.codepoetics.fluvius.api;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.UUID;
+
+/**
+ * An {@link Action} which can also be run without blocking, passing the updated Scratchpad to a callback once it is available.
+ */
+public interface AsyncAction extends Action {
+  /**
+   * Start running the action.
+   *
+   * @param flowId The ID of the running flow.
+   * @param scratchpad The Scratchpad to update.
+   * @param callback The callback to supply the updated Scratchpad to.
+   */
+  void runAsync(UUID flowId, Scratchpad scratchpad, ActionCallback callback);
+}
@@ -0,0 +1,31 @@
+package com.codepoetics.fluvius.api;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.io.Serializable;
+
+/**
+ * An AsyncOperation accepts a Scratchpad, and eventually supplies a value of some type to a callback.
+ * <p>
+ * Unlike an {@link Operation}, an AsyncOperation need not complete on the thread that started it, so that a flow
+ * waiting for (e.g.) non-blocking I/O does not occupy a thread while it waits.
+ * </p>
+ *
+ * @param <T> The type of the value supplied by the AsyncOperation.
+ */
+public interface AsyncOperation<T> extends Serializable {
+  /**
+   * Get the name of this AsyncOperation.
+   *
+   * @return The name of this AsyncOperation.
+   */
+  String getName();
+
+  /**
+   * Start running this AsyncOperation against the supplied Scratchpad.
+   *
+   * @param scratchpad The Scratchpad to run this AsyncOperation against.
+   * @param callback The callback to supply the resulting value (or failure) to, exactly once.
+   */
+  void run(Scratchpad scratchpad, OperationCallback<T> callback);
+}
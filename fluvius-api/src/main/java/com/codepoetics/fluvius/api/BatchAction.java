@@ -0,0 +1,15 @@
+package com.codepoetics.fluvius.api;
+
+/**
+ * An {@link Action} which can also be run against a whole {@link FlowBatch} at once, step by step, so that the
+ * {@link BatchOperation}s it contains are each run once for the whole batch.
+ */
+public interface BatchAction extends Action {
+  /**
+   * Run the action against every record in the batch which has not failed, replacing each record's Scratchpad with its
+   * updated Scratchpad, or marking the record as failed.
+   *
+   * @param batch The batch to run the action against.
+   */
+  void runBatch(FlowBatch batch);
+}
@@ -0,0 +1,26 @@
+package com.codepoetics.fluvius.api;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.List;
+
+/**
+ * An {@link Operation} which can also be run against many Scratchpads at once, e.g. to fetch the values it needs for a
+ * whole batch of records with a single call to a backend.
+ * <p>
+ * When a flow is run with {@link ConcurrentFlowExecution#runBatch(List)}, each BatchOperation is run once for all the records
+ * which reach it; otherwise it is run record by record, as an ordinary Operation.
+ * </p>
+ *
+ * @param <T> The type of the values returned by the BatchOperation.
+ */
+public interface BatchOperation<T> extends Operation<T> {
+  /**
+   * Run this BatchOperation against the supplied Scratchpads.
+   *
+   * @param scratchpads The Scratchpads to run this BatchOperation against.
+   * @return The resulting values, one for each Scratchpad and in the same order.
+   * @throws Exception If the operation failed, in which case it has failed for every Scratchpad in the batch.
+   */
+  List<T> runBatch(List<Scratchpad> scratchpads) throws Exception;
+}
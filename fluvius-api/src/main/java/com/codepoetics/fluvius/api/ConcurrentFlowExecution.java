@@ -0,0 +1,178 @@
+package com.codepoetics.fluvius.api;
+
+import com.codepoetics.fluvius.api.scratchpad.KeyValue;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link FlowExecution} which can also run flows asynchronously, on an {@link Executor}, in batches, and within a deadline.
+ * @param <T> The type of the value returned by executing the compiled flow.
+ */
+public interface ConcurrentFlowExecution<T> extends FlowExecution<T> {
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} against the provided initial scratchpad, assigning the flow a randomly-generated UUID,
+   * and giving it a deadline the provided time from now.
+   *
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @param timeout The time the flow is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return The result of running the flow.
+   */
+  T run(Scratchpad initialScratchpad, long timeout, TimeUnit unit) throws Exception;
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} against the provided initial scratchpad, giving it a deadline the provided time from now.
+   * <p>
+   * Every step of the flow is bound by the deadline, which each step checks on the thread that runs it, before it starts
+   * and after it completes: a step which completes after the deadline has passed records a timeout failure against the key
+   * it provides in place of its result, which branches on that key can handle like any other failure, and steps reached
+   * after it has passed record the same failure without running. Synchronous steps are not handed off to another thread,
+   * and so are not abandoned when the deadline passes, unless they were declared with a timeout of their own, in which case
+   * they are abandoned at whichever of the timeout and the deadline comes first. {@link AsyncOperation}s are raced against
+   * the deadline without blocking.
+   * </p>
+   * <p>
+   * The deadline belongs to this run alone: other runs which share its flow id, or which are nested within it, keep their
+   * own deadlines.
+   * </p>
+   *
+   * @param flowId The id to assign to the flow.
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @param timeout The time the flow is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return The result of running the flow.
+   */
+  T run(UUID flowId, Scratchpad initialScratchpad, long timeout, TimeUnit unit) throws Exception;
+
+  /**
+   * Start running the compiled {@link com.codepoetics.fluvius.api.Flow} against the provided initial scratchpad, assigning the flow a randomly-generated UUID.
+   * <p>
+   * The flow runs on the calling thread until it reaches an {@link AsyncOperation}, and continues on whichever thread completes that operation,
+   * so no thread is blocked while the flow waits for an asynchronous result.
+   * </p>
+   * <p>
+   * Cancelling the returned Future completes it with a {@link java.util.concurrent.CancellationException}. Steps which
+   * are already running are not interrupted, and the flow's eventual result is discarded.
+   * </p>
+   *
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runAsync(Scratchpad initialScratchpad);
+
+  /**
+   * Start running the compiled {@link com.codepoetics.fluvius.api.Flow} against an initial scratchpad created with the provided values, assigning the flow a randomly-generated UUID.
+   *
+   * @param initialKeyValues The initial key values to write into the scratchpad.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runAsync(KeyValue... initialKeyValues);
+
+  /**
+   * Start running the compiled {@link com.codepoetics.fluvius.api.Flow} against the provided initial scratchpad, assigning the flow a randomly-generated UUID,
+   * and giving it a deadline the provided time from now, which binds its steps as described for
+   * {@link #run(UUID, Scratchpad, long, TimeUnit)}.
+   *
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @param timeout The time the flow is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runAsync(Scratchpad initialScratchpad, long timeout, TimeUnit unit);
+
+  /**
+   * Start running the compiled {@link com.codepoetics.fluvius.api.Flow} against the provided initial scratchpad, reporting results to the provided {@link FlowResultCallback}
+   * as well as to the returned Future.
+   *
+   * @param flowId The id to assign to the flow.
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @param callback The callback to report results to.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runAsync(UUID flowId, Scratchpad initialScratchpad, FlowResultCallback<T> callback);
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} on the supplied {@link Executor} against the provided initial scratchpad, assigning the flow a randomly-generated UUID.
+   *
+   * @param executor The executor to start the flow on.
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runOn(Executor executor, Scratchpad initialScratchpad);
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} on the supplied {@link Executor} against an initial scratchpad created with the provided values, assigning the flow a randomly-generated UUID.
+   *
+   * @param executor The executor to start the flow on.
+   * @param initialKeyValues The initial key values to write into the scratchpad.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runOn(Executor executor, KeyValue... initialKeyValues);
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} on the supplied {@link Executor} against the provided initial scratchpad, assigning the flow a randomly-generated UUID,
+   * and giving it a deadline the provided time from now, which includes any time the flow spends waiting to be started.
+   *
+   * @param executor The executor to start the flow on.
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @param timeout The time the flow is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runOn(Executor executor, Scratchpad initialScratchpad, long timeout, TimeUnit unit);
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} on the supplied {@link Executor} against the provided initial scratchpad, reporting results to the provided {@link FlowResultCallback}
+   * as well as to the returned Future.
+   *
+   * @param executor The executor to start the flow on.
+   * @param flowId The id to assign to the flow.
+   * @param initialScratchpad The initial scratchpad to run the flow against.
+   * @param callback The callback to report results to.
+   * @return A Future which will be completed with the result of running the flow.
+   */
+  Future<T> runOn(Executor executor, UUID flowId, Scratchpad initialScratchpad, FlowResultCallback<T> callback);
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} against each of the provided initial scratchpads, assigning
+   * each flow a randomly-generated UUID.
+   * <p>
+   * The flows are run together, step by step, so that each {@link BatchOperation} in the flow is run once for all of the
+   * flows which reach it. Other operations are run for each flow in turn.
+   * </p>
+   *
+   * @param initialScratchpads The initial scratchpads to run the flow against.
+   * @return The results of running the flow, in the same order as the initial scratchpads.
+   * @throws Exception The failure of the first flow which failed, if any did.
+   */
+  List<T> runBatch(List<Scratchpad> initialScratchpads) throws Exception;
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} against each of the provided initial scratchpads, as
+   * {@link #runBatch(List)} does, giving every flow in the batch the same deadline the provided time from now.
+   *
+   * @param initialScratchpads The initial scratchpads to run the flow against.
+   * @param timeout The time the batch is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return The results of running the flow, in the same order as the initial scratchpads.
+   * @throws Exception The failure of the first flow which failed, if any did.
+   */
+  List<T> runBatch(List<Scratchpad> initialScratchpads, long timeout, TimeUnit unit) throws Exception;
+
+  /**
+   * Run the compiled {@link com.codepoetics.fluvius.api.Flow} against each of the provided initial scratchpads, assigning
+   * each flow a randomly-generated UUID, and reporting the result of each flow to the provided {@link FlowResultCallback}
+   * in the same order as the initial scratchpads.
+   *
+   * @param initialScratchpads The initial scratchpads to run the flow against.
+   * @param callback The callback to report results to.
+   */
+  void runBatch(List<Scratchpad> initialScratchpads, FlowResultCallback<T> callback);
+
+}
@@ -0,0 +1,164 @@
+package com.codepoetics.fluvius.api;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The state of a batch of flows being run together by a {@link BatchAction}: for each record, its flow id and either its
+ * current Scratchpad or the exception with which it failed.
+ * <p>
+ * A batch may be a view of some of the records of a larger batch, e.g. those which take the same branch; updates made
+ * through the view are made to the larger batch.
+ * </p>
+ */
+public final class FlowBatch {
+
+  /**
+   * Create a batch of flows with the supplied ids and initial Scratchpads.
+   *
+   * @param flowIds The ids of the flows.
+   * @param scratchpads The initial Scratchpads of the flows, in the same order.
+   * @return The constructed batch.
+   */
+  public static FlowBatch of(List<UUID> flowIds, List<Scratchpad> scratchpads) {
+    if (flowIds.size() != scratchpads.size()) {
+      throw new IllegalArgumentException(
+          String.format("%d flow ids supplied for %d scratchpads", flowIds.size(), scratchpads.size()));
+    }
+
+    int size = flowIds.size();
+    int[] positions = new int[size];
+    for (int i = 0; i < size; i++) {
+      positions[i] = i;
+    }
+    return new FlowBatch(
+        flowIds.toArray(new UUID[size]),
+        scratchpads.toArray(new Scratchpad[size]),
+        new Throwable[size],
+        positions);
+  }
+
+  private final UUID[] flowIds;
+  private final Scratchpad[] scratchpads;
+  private final Throwable[] failures;
+  private final int[] positions;
+
+  private FlowBatch(UUID[] flowIds, Scratchpad[] scratchpads, Throwable[] failures, int[] positions) {
+    this.flowIds = flowIds;
+    this.scratchpads = scratchpads;
+    this.failures = failures;
+    this.positions = positions;
+  }
+
+  /**
+   * Get the number of records in the batch.
+   *
+   * @return The number of records in the batch.
+   */
+  public int size() {
+    return positions.length;
+  }
+
+  /**
+   * Get the flow id of a record.
+   *
+   * @param index The index of the record in this batch.
+   * @return The record's flow id.
+   */
+  public UUID getFlowId(int index) {
+    return flowIds[positions[index]];
+  }
+
+  /**
+   * Get the current Scratchpad of a record.
+   *
+   * @param index The index of the record in this batch.
+   * @return The record's current Scratchpad.
+   */
+  public Scratchpad getScratchpad(int index) {
+    return scratchpads[positions[index]];
+  }
+
+  /**
+   * Test whether a record has failed.
+   *
+   * @param index The index of the record in this batch.
+   * @return True if the record has failed, false otherwise.
+   */
+  public boolean isFailed(int index) {
+    return failures[positions[index]] != null;
+  }
+
+  /**
+   * Get the exception with which a record failed.
+   *
+   * @param index The index of the record in this batch.
+   * @return The exception, or null if the record has not failed.
+   */
+  public Throwable getFailure(int index) {
+    return failures[positions[index]];
+  }
+
+  /**
+   * Replace the Scratchpad of a record with its updated Scratchpad.
+   *
+   * @param index The index of the record in this batch.
+   * @param scratchpad The updated Scratchpad.
+   */
+  public void update(int index, Scratchpad scratchpad) {
+    scratchpads[positions[index]] = scratchpad;
+  }
+
+  /**
+   * Mark a record as failed.
+   *
+   * @param index The index of the record in this batch.
+   * @param failure The exception with which the record failed.
+   */
+  public void fail(int index, Throwable failure) {
+    failures[positions[index]] = failure;
+  }
+
+  /**
+   * Get a view of the records in this batch which have not failed.
+   *
+   * @return The view.
+   */
+  public FlowBatch active() {
+    int activeCount = 0;
+    for (int position : positions) {
+      if (failures[position] == null) {
+        activeCount++;
+      }
+    }
+    if (activeCount == positions.length) {
+      return this;
+    }
+
+    int[] activePositions = new int[activeCount];
+    int next = 0;
+    for (int position : positions) {
+      if (failures[position] == null) {
+        activePositions[next++] = position;
+      }
+    }
+    return new FlowBatch(flowIds, scratchpads, failures, activePositions);
+  }
+
+  /**
+   * Get a view of some of the records in this batch.
+   *
+   * @param indices The indices of the records in this batch.
+   * @param count The number of indices to use.
+   * @return The view.
+   */
+  public FlowBatch select(int[] indices, int count) {
+    int[] selectedPositions = new int[count];
+    for (int i = 0; i < count; i++) {
+      selectedPositions[i] = positions[indices[i]];
+    }
+    return new FlowBatch(flowIds, scratchpads, failures, selectedPositions);
+  }
+}
@@ -0,0 +1,24 @@
+package com.codepoetics.fluvius.api;
+
+/**
+ * A callback which is called when an {@link AsyncOperation} has completed.
+ *
+ * @param <T> The type of the value supplied by the operation.
+ */
+public interface OperationCallback<T> {
+
+  /**
+   * Called if the operation completes successfully, supplying a value.
+   *
+   * @param result The value supplied by the operation.
+   */
+  void onSuccess(T result);
+
+  /**
+   * Called if the operation fails.
+   *
+   * @param failure The reason for the failure.
+   */
+  void onFailure(Exception failure);
+
+}
@@ -0,0 +1,19 @@
+package com.codepoetics.fluvius.api.history;
+
+import java.util.List;
+
+/**
+ * A store of flow events which can store several events at once more cheaply than it can store them one at a time.
+ *
+ * @param <T> The type to which the flow events' data is serialised.
+ */
+public interface BatchFlowEventStore<T> extends FlowEventStore<T> {
+
+  /**
+   * Store a batch of flow events, in order.
+   *
+   * @param events The events to store.
+   */
+  void storeEvents(List<FlowEvent<T>> events);
+
+}
@@ -21,7 +21,23 @@ public abstract class FlowEvent<T> {
    * @return The constructed event.
    */
   public static <T> FlowEvent<T> started(UUID flowId, UUID stepId, long timestamp, Map<String, T> scratchpadState) {
-    return new StepStartedEvent<>(flowId, stepId, timestamp, scratchpadState);
+    return new StepStartedEvent<>(flowId, stepId, timestamp, scratchpadState, false);
+  }
+
+  /**
+   * Create a delta-encoded event representing the start of a step's execution, which records only the scratchpad keys
+   * which have been added since the previous step-started event for the same flow.
+   * The full scratchpad state can be recovered using {@link FlowEvents#reconstruct(java.util.List)}.
+   *
+   * @param flowId The ID of the flow being executed.
+   * @param stepId The step ID of the step being executed.
+   * @param timestamp The time (in milliseconds since epoch) when the event occurred.
+   * @param addedState The scratchpad keys and values added since the previous step-started event.
+   * @param <T> The type to which event data is serialised.
+   * @return The constructed event.
+   */
+  public static <T> FlowEvent<T> startedDelta(UUID flowId, UUID stepId, long timestamp, Map<String, T> addedState) {
+    return new StepStartedEvent<>(flowId, stepId, timestamp, addedState, true);
   }
 
   /**
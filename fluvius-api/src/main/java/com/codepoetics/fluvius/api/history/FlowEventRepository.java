@@ -2,10 +2,14 @@ package com.codepoetics.fluvius.api.history;
 
 import com.codepoetics.fluvius.api.tracing.TraceEventListener;
 
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class FlowEventRepository<T> implements TraceEventListener {
 
@@ -18,15 +22,35 @@ public final class FlowEventRepository<T> implements TraceEventListener {
    * @return The constructed flow event repository.
    */
   public static <T> FlowEventRepository<T> using(FlowEventStore<T> eventStore, EventDataSerialiser<T> dataSerialiser) {
-    return new FlowEventRepository<>(eventStore, dataSerialiser);
+    return new FlowEventRepository<>(eventStore, dataSerialiser, null);
+  }
+
+  /**
+   * Create a {@link FlowEventRepository} that will write delta-encoded flow event data serialised with the provided {@link EventDataSerialiser} to the provided {@link FlowEventStore}.
+   * <p>
+   * Each step-started event records only the scratchpad keys added since the previous step-started event for the same flow,
+   * so that values are serialised and stored only once per flow. Use {@link FlowEvents#reconstruct(List)} to recover the full scratchpad state.
+   * If the event store is a {@link LossyFlowEventStore}, the full scratchpad state is stored instead whenever events may have
+   * been discarded since the previous step-started event for the same flow.
+   * </p>
+   *
+   * @param eventStore The event store to use to store flow events.
+   * @param dataSerialiser The serialiser to use to serialise flow event data.
+   * @param <T> The type to which flow event data will be serialised.
+   * @return The constructed flow event repository.
+   */
+  public static <T> FlowEventRepository<T> usingDeltas(FlowEventStore<T> eventStore, EventDataSerialiser<T> dataSerialiser) {
+    return new FlowEventRepository<>(eventStore, dataSerialiser, new ConcurrentHashMap<UUID, RecordedKeys>());
   }
 
   private final FlowEventStore<T> eventStore;
   private final EventDataSerialiser<T> dataSerialiser;
+  private final ConcurrentMap<UUID, RecordedKeys> recordedKeysByFlow;
 
-  private FlowEventRepository(FlowEventStore<T> eventStore, EventDataSerialiser<T> dataSerialiser) {
+  private FlowEventRepository(FlowEventStore<T> eventStore, EventDataSerialiser<T> dataSerialiser, ConcurrentMap<UUID, RecordedKeys> recordedKeysByFlow) {
     this.eventStore = eventStore;
     this.dataSerialiser = dataSerialiser;
+    this.recordedKeysByFlow = recordedKeysByFlow;
   }
 
   public List<FlowEvent<T>> getEvents(UUID flowId) {
@@ -35,6 +59,11 @@ public final class FlowEventRepository<T> implements TraceEventListener {
 
   @Override
   public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+    if (recordedKeysByFlow != null) {
+      storeDelta(flowId, stepId, scratchpadState);
+      return;
+    }
+
     Map<String, T> serialisedState = new LinkedHashMap<>();
     for (Map.Entry<String, Object> entry : scratchpadState.entrySet()) {
       serialisedState.put(entry.getKey(), dataSerialiser.serialise(entry.getValue()));
@@ -42,16 +71,80 @@ public final class FlowEventRepository<T> implements TraceEventListener {
     eventStore.storeEvent(FlowEvent.started(flowId, stepId, System.currentTimeMillis(), serialisedState));
   }
 
+  private void storeDelta(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+    RecordedKeys recordedKeys = recordedKeysByFlow.get(flowId);
+    if (recordedKeys == null) {
+      // The first step started in a flow is its outermost step, which is the last to complete.
+      RecordedKeys newRecordedKeys = new RecordedKeys(stepId, getDiscardCount());
+      recordedKeys = recordedKeysByFlow.putIfAbsent(flowId, newRecordedKeys);
+      if (recordedKeys == null) {
+        recordedKeys = newRecordedKeys;
+      }
+    }
+
+    Map<String, T> serialisedDelta = new LinkedHashMap<>();
+    synchronized (recordedKeys) {
+      // If the event which recorded a key may have been lost, the delta cannot be reconstructed, so start again from the full state.
+      long discardCount = getDiscardCount();
+      boolean isSnapshot = discardCount != recordedKeys.discardCount;
+      if (isSnapshot) {
+        recordedKeys.names.clear();
+      }
+
+      for (Map.Entry<String, Object> entry : scratchpadState.entrySet()) {
+        if (recordedKeys.names.add(entry.getKey())) {
+          serialisedDelta.put(entry.getKey(), dataSerialiser.serialise(entry.getValue()));
+        }
+      }
+
+      long timestamp = System.currentTimeMillis();
+      eventStore.storeEvent(isSnapshot
+          ? FlowEvent.started(flowId, stepId, timestamp, serialisedDelta)
+          : FlowEvent.startedDelta(flowId, stepId, timestamp, serialisedDelta));
+      // Any discard from here on, including of the event just stored, forces the next step-started event to be a snapshot.
+      recordedKeys.discardCount = discardCount;
+    }
+  }
+
+  private long getDiscardCount() {
+    return eventStore instanceof LossyFlowEventStore
+        ? ((LossyFlowEventStore<T>) eventStore).getDiscardCount()
+        : 0;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
     eventStore.storeEvent(FlowEvent.succeeded(flowId, stepId, System.currentTimeMillis(), dataSerialiser.serialise(result)));
+    forgetIfCompleted(flowId, stepId);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
     eventStore.storeEvent(FlowEvent.failed(flowId, stepId, System.currentTimeMillis(), dataSerialiser.serialiseException(exception)));
+    forgetIfCompleted(flowId, stepId);
+  }
+
+  private void forgetIfCompleted(UUID flowId, UUID stepId) {
+    if (recordedKeysByFlow == null) {
+      return;
+    }
+    RecordedKeys recordedKeys = recordedKeysByFlow.get(flowId);
+    if (recordedKeys != null && recordedKeys.rootStepId.equals(stepId)) {
+      recordedKeysByFlow.remove(flowId, recordedKeys);
+    }
+  }
+
+  private static final class RecordedKeys {
+    private final UUID rootStepId;
+    private final Set<String> names = new HashSet<>();
+    private long discardCount;
+
+    private RecordedKeys(UUID rootStepId, long discardCount) {
+      this.rootStepId = rootStepId;
+      this.discardCount = discardCount;
+    }
   }
 
 }
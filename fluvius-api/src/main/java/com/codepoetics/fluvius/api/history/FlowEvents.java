@@ -0,0 +1,51 @@
+package com.codepoetics.fluvius.api.history;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class for working with lists of {@link FlowEvent}s.
+ */
+public final class FlowEvents {
+
+  private FlowEvents() {
+  }
+
+  /**
+   * Expand any delta-encoded step-started events in the supplied history of a single flow, so that every step-started
+   * event records the full scratchpad state at the point where its step was started.
+   *
+   * @param events The events to expand, in the order in which they occurred.
+   * @param <T> The type of the events' serialised data.
+   * @return The expanded events.
+   */
+  public static <T> List<FlowEvent<T>> reconstruct(List<FlowEvent<T>> events) {
+    List<FlowEvent<T>> result = new ArrayList<>(events.size());
+    Map<String, T> state = new LinkedHashMap<>();
+
+    for (FlowEvent<T> event : events) {
+      if (!(event instanceof StepStartedEvent)) {
+        result.add(event);
+        continue;
+      }
+
+      StepStartedEvent<T> startedEvent = (StepStartedEvent<T>) event;
+      if (!startedEvent.isDelta()) {
+        state = new LinkedHashMap<>(startedEvent.getScratchpadState());
+        result.add(event);
+        continue;
+      }
+
+      state.putAll(startedEvent.getScratchpadState());
+      result.add(FlowEvent.started(
+          event.getFlowId(),
+          event.getStepId(),
+          event.getTimestamp(),
+          new LinkedHashMap<>(state)));
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,24 @@
+package com.codepoetics.fluvius.api.history;
+
+/**
+ * A store of flow events which may discard some of the events it is given, or has already stored, before their flow has
+ * completed: for example, because its queue has overflowed, or because older events have expired.
+ * <p>
+ * A {@link FlowEventRepository} writing delta-encoded events watches the store's discard count, and stores the full
+ * scratchpad state in place of a delta whenever events may have been discarded since the previous step-started event of
+ * the same flow, so that {@link FlowEvents#reconstruct(java.util.List)} never builds on an event which was lost.
+ * </p>
+ *
+ * @param <T> The type to which the flow events' data is serialised.
+ */
+public interface LossyFlowEventStore<T> extends FlowEventStore<T> {
+
+  /**
+   * Get a count which increases whenever the store discards events, whether it discards them when they are given to it
+   * or after it has stored them.
+   *
+   * @return The number of times the store has discarded events.
+   */
+  long getDiscardCount();
+
+}
@@ -11,21 +11,33 @@ import java.util.UUID;
 public final class StepStartedEvent<T> extends FlowEvent<T> {
 
   private final Map<String, T> scratchpadState;
+  private final boolean isDelta;
 
-  StepStartedEvent(UUID flowId, UUID stepId, long timestamp, Map<String, T> scratchpadState) {
+  StepStartedEvent(UUID flowId, UUID stepId, long timestamp, Map<String, T> scratchpadState, boolean isDelta) {
     super(flowId, stepId, timestamp);
     this.scratchpadState = scratchpadState;
+    this.isDelta = isDelta;
   }
 
   /**
-   * Get the scratchpad state at the point where the step was started.
+   * Get the scratchpad state at the point where the step was started or, if this is a delta-encoded event, the keys
+   * added to the scratchpad since the previous step-started event for the same flow.
    *
-   * @return The scratchpad state at the point where the step was started.
+   * @return The scratchpad state at the point where the step was started, or the keys added since the previous step-started event.
    */
   public Map<String, T> getScratchpadState() {
     return scratchpadState;
   }
 
+  /**
+   * Test whether this event is delta-encoded.
+   *
+   * @return True if this event records only the keys added since the previous step-started event, false if it records the full scratchpad state.
+   */
+  public boolean isDelta() {
+    return isDelta;
+  }
+
   @Override
   public <V> V translate(FlowEventTranslator<T, V> translator) {
     return translator.translateStepStartedEvent(this);
@@ -0,0 +1,20 @@
+package com.codepoetics.fluvius.api.logging;
+
+/**
+ * A {@link FlowLogger} which logs only events at or above some {@link LogLevel}.
+ * <p>
+ * The start of an operation or condition is logged at {@link LogLevel#DEBUG}, its completion at {@link LogLevel#INFO},
+ * and its failure at {@link LogLevel#ERROR}. Levels are checked when a flow is compiled, so that flows never call the
+ * logger, or do any work to gather what it would log, for events at levels it does not log.
+ * </p>
+ */
+public interface LevelledFlowLogger extends FlowLogger {
+
+  /**
+   * Test whether this logger logs events at the given level.
+   *
+   * @param level The level to test.
+   * @return True if events at the level are logged, false otherwise.
+   */
+  boolean isEnabled(LogLevel level);
+}
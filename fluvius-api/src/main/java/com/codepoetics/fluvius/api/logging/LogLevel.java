@@ -0,0 +1,33 @@
+package com.codepoetics.fluvius.api.logging;
+
+/**
+ * The levels at which flow events are logged, in increasing order of severity.
+ */
+public enum LogLevel {
+  /**
+   * Operations and conditions starting, together with the scratchpad they were given.
+   */
+  DEBUG,
+  /**
+   * Operations and conditions completing, together with their results.
+   */
+  INFO,
+  /**
+   * Operations and conditions failing with an exception.
+   */
+  ERROR,
+  /**
+   * Used as a threshold, disables logging altogether.
+   */
+  OFF;
+
+  /**
+   * Test whether messages at this level should be logged by a logger with the given threshold.
+   *
+   * @param threshold The lowest level which the logger logs.
+   * @return True if messages at this level should be logged, false otherwise.
+   */
+  public boolean isAtLeast(LogLevel threshold) {
+    return this != OFF && compareTo(threshold) >= 0;
+  }
+}
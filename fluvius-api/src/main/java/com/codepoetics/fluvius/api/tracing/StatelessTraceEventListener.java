@@ -0,0 +1,8 @@
+package com.codepoetics.fluvius.api.tracing;
+
+/**
+ * A {@link TraceEventListener} which does not use the scratchpad state passed to
+ * {@link TraceEventListener#stepStarted(java.util.UUID, java.util.UUID, java.util.Map)}, and will always be passed an empty map.
+ */
+public interface StatelessTraceEventListener extends TraceEventListener {
+}
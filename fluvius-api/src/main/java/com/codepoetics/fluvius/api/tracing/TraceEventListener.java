@@ -12,7 +12,8 @@ public interface TraceEventListener {
    * Called when a flow step starts.
    * @param flowId The id of the running flow.
    * @param stepId The id of the step being started.
-   * @param scratchpadState The complete scratchpad being passed into the step.
+   * @param scratchpadState A read-only view of the complete scratchpad being passed into the step, keyed by key name.
+   *                        The view is only materialised when it is read, and is empty for a {@link StatelessTraceEventListener}.
    */
   void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState);
 
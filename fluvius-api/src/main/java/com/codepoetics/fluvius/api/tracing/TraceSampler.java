@@ -0,0 +1,21 @@
+package com.codepoetics.fluvius.api.tracing;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.UUID;
+
+/**
+ * Decides whether a flow should be traced. The decision is made once, when the flow starts, and applies to every step of
+ * the flow; steps of flows which are not sampled are not traced at all.
+ */
+public interface TraceSampler {
+
+  /**
+   * Decide whether to trace a flow.
+   *
+   * @param flowId The id of the flow which is starting.
+   * @param initialScratchpad The scratchpad the flow is starting with.
+   * @return True if the flow should be traced, false otherwise.
+   */
+  boolean isSampled(UUID flowId, Scratchpad initialScratchpad);
+}
@@ -3,6 +3,8 @@ package com.codepoetics.fluvius.api.wrapping;
 import com.codepoetics.fluvius.api.FlowResultCallback;
 
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 public interface FlowRunner<T> {
 
@@ -13,4 +15,12 @@ public interface FlowRunner<T> {
   Runnable asAsync(FlowResultCallback<T> callback);
 
   Runnable asAsync(UUID flowId, FlowResultCallback<T> callback);
+
+  Future<T> runAsync();
+
+  Future<T> runAsync(UUID flowId, FlowResultCallback<T> callback);
+
+  Future<T> runOn(Executor executor);
+
+  Future<T> runOn(Executor executor, UUID flowId, FlowResultCallback<T> callback);
 }
@@ -0,0 +1,119 @@
+package com.codepoetics.fluvius.benchmarks;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.functional.Predicate;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.conditions.Conditions;
+import com.codepoetics.fluvius.flows.Flows;
+
+/**
+ * Utility class for constructing flows of varying shape and depth to benchmark against.
+ */
+public final class BenchmarkFlows {
+
+  /**
+   * The key holding the input to every benchmark flow.
+   */
+  public static final Key<Integer> input = Key.named("input");
+
+  private BenchmarkFlows() {
+  }
+
+  /**
+   * The shapes of flow which can be constructed.
+   */
+  public enum Shape {
+    /**
+     * A sequence of steps, each of which depends on the result of the step before.
+     */
+    SEQUENCE,
+    /**
+     * A chain of nested branches, in which every condition but the last fails.
+     */
+    BRANCH
+  }
+
+  /**
+   * Create a flow of the given shape and depth.
+   *
+   * @param shape The shape of flow to create.
+   * @param depth The number of steps or branches in the flow.
+   * @return The constructed flow.
+   */
+  public static Flow<Integer> create(Shape shape, int depth) {
+    switch (shape) {
+      case SEQUENCE:
+        return sequence(depth);
+      case BRANCH:
+        return branch(depth);
+      default:
+        throw new IllegalArgumentException("Unknown flow shape " + shape);
+    }
+  }
+
+  /**
+   * Create a sequence of steps, each of which increments the value provided by the step before.
+   *
+   * @param depth The number of steps in the sequence.
+   * @return The constructed flow.
+   */
+  public static Flow<Integer> sequence(int depth) {
+    Key<Integer> previous = input;
+    Flow<Integer> flow = null;
+
+    for (int i = 0; i < depth; i++) {
+      Key<Integer> next = Key.named("value" + i);
+      Flow<Integer> step = increment(previous, next, "Increment " + i);
+      flow = flow == null ? step : flow.then(step);
+      previous = next;
+    }
+
+    return flow;
+  }
+
+  /**
+   * Create a chain of nested branches, which will be evaluated in turn until the one matching the input is found.
+   *
+   * @param depth The number of branches in the chain.
+   * @return The constructed flow.
+   */
+  public static Flow<Integer> branch(int depth) {
+    Key<Integer> result = Key.named("result");
+    Flow<Integer> flow = increment(input, result, "Default");
+
+    for (int i = depth - 1; i >= 0; i--) {
+      final int expected = i;
+      flow = Flows.branch(
+          Conditions.keyMatches(input, "is " + i, new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer value) {
+              return value == expected;
+            }
+          }),
+          increment(input, result, "Branch " + i))
+          .otherwise(flow);
+    }
+
+    return flow;
+  }
+
+  /**
+   * Get the input value which causes every condition in a chain of branches of the given depth to be evaluated.
+   *
+   * @param depth The number of branches in the chain.
+   * @return The input value.
+   */
+  public static int deepestBranchInput(int depth) {
+    return depth - 1;
+  }
+
+  private static Flow<Integer> increment(Key<Integer> source, Key<Integer> target, String name) {
+    return Flows.obtaining(target).from(source).using(name, new SingleParameterStep<Integer, Integer>() {
+      @Override
+      public Integer apply(Integer value) {
+        return value + 1;
+      }
+    });
+  }
+}
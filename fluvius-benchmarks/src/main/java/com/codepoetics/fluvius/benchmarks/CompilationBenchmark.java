@@ -0,0 +1,37 @@
+package com.codepoetics.fluvius.benchmarks;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.compilation.FlowCompiler;
+import com.codepoetics.fluvius.compilation.Compilers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of compiling flows of varying shape and depth.
+ */
+@State(Scope.Benchmark)
+public class CompilationBenchmark {
+
+  @Param({"SEQUENCE", "BRANCH"})
+  public BenchmarkFlows.Shape shape;
+
+  @Param({"1", "10", "100"})
+  public int depth;
+
+  private final FlowCompiler compiler = Compilers.builder().build();
+  private Flow<Integer> flow;
+
+  @Setup
+  public void createFlow() {
+    flow = BenchmarkFlows.create(shape, depth);
+  }
+
+  @Benchmark
+  public FlowExecution<Integer> compile() {
+    return compiler.compile(flow);
+  }
+}
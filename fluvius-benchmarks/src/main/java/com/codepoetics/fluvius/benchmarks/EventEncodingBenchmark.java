@@ -0,0 +1,114 @@
+package com.codepoetics.fluvius.benchmarks;
+
+import com.codepoetics.fluvius.api.history.EventDataSerialiser;
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.history.BinaryEventDataSerialiser;
+import com.codepoetics.fluvius.history.CompactFlowEventCodec;
+import com.codepoetics.fluvius.history.EventDataSerialisers;
+import com.codepoetics.fluvius.json.history.JsonEventDataSerialiser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Measures the cost of serialising the data of, and encoding, a step-started event with a scratchpad of the given size,
+ * as a JSON tree and in the compact binary format.
+ * <p>
+ * Binary events are encoded into an unsynchronised buffer, as the event stores do, since a {@link ByteArrayOutputStream}
+ * takes a lock for every byte written.
+ * </p>
+ */
+@State(Scope.Benchmark)
+public class EventEncodingBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int keys;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final EventDataSerialiser<JsonNode> jsonSerialiser = JsonEventDataSerialiser.using(mapper);
+  private final BinaryEventDataSerialiser binarySerialiser = EventDataSerialisers.toBinarySerialiser();
+
+  private final UUID flowId = UUID.randomUUID();
+  private final UnsynchronisedBuffer bytes = new UnsynchronisedBuffer();
+  private final DataOutputStream output = new DataOutputStream(bytes);
+  private Map<String, Object> state;
+  private CompactFlowEventCodec codec;
+
+  @Setup
+  public void createState() {
+    state = new LinkedHashMap<>();
+    List<String> keyNames = new ArrayList<>();
+    for (int i = 0; i < keys; i++) {
+      String name = "key" + i;
+      keyNames.add(name);
+      state.put(name, i % 2 == 0 ? (Object) i : "value " + i);
+    }
+    codec = CompactFlowEventCodec.withKeyNames(keyNames);
+  }
+
+  @Benchmark
+  public String jsonTree() throws IOException {
+    Map<String, JsonNode> serialised = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : state.entrySet()) {
+      serialised.put(entry.getKey(), jsonSerialiser.serialise(entry.getValue()));
+    }
+    return mapper.writeValueAsString(serialised);
+  }
+
+  @Benchmark
+  public byte[] compactBinary() throws IOException {
+    Map<String, byte[]> serialised = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : state.entrySet()) {
+      serialised.put(entry.getKey(), binarySerialiser.serialise(entry.getValue()));
+    }
+
+    bytes.reset();
+    codec.encode(FlowEvent.started(flowId, flowId, System.currentTimeMillis(), serialised), output);
+    return bytes.toByteArray();
+  }
+
+  private static final class UnsynchronisedBuffer extends OutputStream {
+    private byte[] buffer = new byte[256];
+    private int size;
+
+    void reset() {
+      size = 0;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public void write(int b) {
+      if (size == buffer.length) {
+        buffer = Arrays.copyOf(buffer, size * 2);
+      }
+      buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length) {
+      if (size + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(size + length, size * 2));
+      }
+      System.arraycopy(source, offset, buffer, size, length);
+      size += length;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.codepoetics.fluvius.benchmarks;
+
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.compilation.FlowCompiler;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.tracing.StatelessTraceEventListener;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.metrics.FlowMetrics;
+import com.codepoetics.fluvius.scratchpad.Scratchpads;
+import com.codepoetics.fluvius.tracing.TraceSamplers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Measures the cost of executing flows of varying shape and depth, with and without tracing, metrics, mutation checking and fusing.
+ */
+@State(Scope.Benchmark)
+public class ExecutionBenchmark {
+
+  /**
+   * The decorations applied by the compiler.
+   */
+  public enum Mode {
+    /**
+     * No decorations.
+     */
+    PLAIN,
+    /**
+     * Trace events are emitted to a stateless listener which discards them.
+     */
+    TRACING,
+    /**
+     * One flow in a hundred is traced to a stateless listener which discards the trace events.
+     */
+    SAMPLED_TRACING,
+    /**
+     * The latency and outcome of every step and condition are recorded.
+     */
+    METRICS,
+    /**
+     * Values written to the scratchpad are checked for mutation.
+     */
+    MUTATION_CHECKING,
+    /**
+     * Values are fingerprinted once, and only the keys each step requires are checked for mutation.
+     */
+    INCREMENTAL_MUTATION_CHECKING,
+    /**
+     * The flow is fused into a single tree of method handles.
+     */
+    FUSED
+  }
+
+  @Param({"SEQUENCE", "BRANCH"})
+  public BenchmarkFlows.Shape shape;
+
+  @Param({"1", "10", "100"})
+  public int depth;
+
+  @Param({"PLAIN", "TRACING", "SAMPLED_TRACING", "METRICS", "MUTATION_CHECKING", "INCREMENTAL_MUTATION_CHECKING", "FUSED"})
+  public Mode mode;
+
+  private FlowExecution<Integer> execution;
+  private Scratchpad initialScratchpad;
+
+  @Setup
+  public void compileFlow() {
+    execution = compilerFor(mode).compile(BenchmarkFlows.create(shape, depth));
+    initialScratchpad = Scratchpads.create(BenchmarkFlows.input.of(BenchmarkFlows.deepestBranchInput(depth)));
+  }
+
+  @Benchmark
+  public Integer execute() throws Exception {
+    return execution.run(initialScratchpad);
+  }
+
+  private static FlowCompiler compilerFor(Mode mode) {
+    switch (mode) {
+      case PLAIN:
+        return Compilers.builder().build();
+      case TRACING:
+        return Compilers.builder().tracingWith(new DiscardingTraceEventListener()).build();
+      case SAMPLED_TRACING:
+        return Compilers.builder().tracingWith(new DiscardingTraceEventListener(), TraceSamplers.atRate(0.01)).build();
+      case METRICS:
+        return Compilers.builder().recordingMetricsTo(FlowMetrics.create()).build();
+      case MUTATION_CHECKING:
+        return Compilers.builder().mutationChecking().build();
+      case INCREMENTAL_MUTATION_CHECKING:
+        return Compilers.builder().incrementalMutationChecking().build();
+      case FUSED:
+        return Compilers.builder().fused().build();
+      default:
+        throw new IllegalArgumentException("Unknown mode " + mode);
+    }
+  }
+
+  private static final class DiscardingTraceEventListener implements StatelessTraceEventListener {
+    @Override
+    public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+    }
+
+    @Override
+    public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
+    }
+
+    @Override
+    public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
+    }
+  }
+}
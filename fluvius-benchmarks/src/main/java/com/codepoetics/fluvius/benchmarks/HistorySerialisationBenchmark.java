@@ -0,0 +1,63 @@
+package com.codepoetics.fluvius.benchmarks;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.history.FlowEventRepository;
+import com.codepoetics.fluvius.api.tracing.TraceMap;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.history.FlowEventRepositories;
+import com.codepoetics.fluvius.json.history.FlowHistoryView;
+import com.codepoetics.fluvius.json.history.FlowHistoryWriter;
+import com.codepoetics.fluvius.json.history.JsonEventDataSerialiser;
+import com.codepoetics.fluvius.tracing.TraceMaps;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Measures the cost of rendering the recorded history of a flow as JSON, via {@link FlowHistoryView} and by streaming it
+ * with a {@link FlowHistoryWriter}.
+ */
+@State(Scope.Benchmark)
+public class HistorySerialisationBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int depth;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final FlowHistoryWriter writer = FlowHistoryWriter.using(mapper);
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private FlowEventRepository<JsonNode> repository;
+  private TraceMap traceMap;
+  private UUID flowId;
+
+  @Setup
+  public void recordHistory() throws Exception {
+    repository = FlowEventRepositories.createInMemory(JsonEventDataSerialiser.using(mapper));
+    Flow<Integer> flow = BenchmarkFlows.sequence(depth);
+    traceMap = TraceMaps.getTraceMap(flow);
+    flowId = UUID.randomUUID();
+
+    Compilers.builder().tracingWith(repository).build().compile(flow).run(flowId, BenchmarkFlows.input.of(0));
+  }
+
+  @Benchmark
+  public String serialiseHistory() throws JsonProcessingException {
+    return mapper.writeValueAsString(FlowHistoryView.from(flowId, traceMap, repository.getEvents(flowId)));
+  }
+
+  @Benchmark
+  public int streamHistory() throws IOException {
+    output.reset();
+    writer.write(flowId, traceMap, repository.getEvents(flowId), output);
+    return output.size();
+  }
+}
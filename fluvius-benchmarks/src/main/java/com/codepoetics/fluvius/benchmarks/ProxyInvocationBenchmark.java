@@ -0,0 +1,61 @@
+package com.codepoetics.fluvius.benchmarks;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.annotations.KeyName;
+import com.codepoetics.fluvius.api.annotations.StepMethod;
+import com.codepoetics.fluvius.api.compilation.FlowCompiler;
+import com.codepoetics.fluvius.api.functional.Returning;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.KeyProvider;
+import com.codepoetics.fluvius.api.wrapping.FlowRunner;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.scratchpad.Keys;
+import com.codepoetics.fluvius.wrapping.Wrappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares running a wrapped flow through a reflective proxy with running the same flow directly.
+ */
+@State(Scope.Benchmark)
+public class ProxyInvocationBenchmark {
+
+  public static final class GreetingStep implements Returning<String> {
+    @StepMethod("greeting")
+    public String greet(@KeyName("name") String name) {
+      return "Hello, " + name;
+    }
+  }
+
+  public interface GreetingRunner extends Returning<String> {
+    FlowRunner<String> greet(@KeyName("name") String name);
+  }
+
+  private GreetingRunner runner;
+  private FlowExecution<String> execution;
+  private Key<String> name;
+
+  @Setup
+  public void createProxy() {
+    KeyProvider keyProvider = Keys.createProvider();
+    FlowCompiler compiler = Compilers.builder().build();
+    Flow<String> flow = Wrappers.createWrapperFactory(keyProvider).flowFor(new GreetingStep());
+
+    runner = Wrappers.createProxyFactory(compiler, keyProvider).proxyFor(GreetingRunner.class, flow);
+    execution = compiler.compile(flow);
+    name = keyProvider.getKey("name", String.class);
+  }
+
+  @Benchmark
+  public String viaProxy() {
+    return runner.greet("Arthur").run();
+  }
+
+  @Benchmark
+  public String direct() throws Exception {
+    return execution.run(name.of("Arthur"));
+  }
+}
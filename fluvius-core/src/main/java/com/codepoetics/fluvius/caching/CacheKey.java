@@ -0,0 +1,48 @@
+package com.codepoetics.fluvius.caching;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Identifies the result of running the operation of a particular step, providing a particular key, with particular values
+ * for the keys it requires.
+ */
+final class CacheKey {
+
+  private final UUID stepId;
+  private final String providedKeyName;
+  private final Object[] inputs;
+  private final int hash;
+
+  CacheKey(UUID stepId, String providedKeyName, Object[] inputs) {
+    this.stepId = stepId;
+    this.providedKeyName = providedKeyName;
+    this.inputs = inputs;
+    this.hash = 31 * (31 * stepId.hashCode() + providedKeyName.hashCode()) + Arrays.hashCode(inputs);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof CacheKey)) {
+      return false;
+    }
+    CacheKey otherKey = (CacheKey) other;
+    return hash == otherKey.hash
+        && stepId.equals(otherKey.stepId)
+        && providedKeyName.equals(otherKey.providedKeyName)
+        && Arrays.equals(inputs, otherKey.inputs);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return providedKeyName + "@" + stepId + Arrays.toString(inputs);
+  }
+}
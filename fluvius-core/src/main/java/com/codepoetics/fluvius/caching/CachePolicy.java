@@ -0,0 +1,98 @@
+package com.codepoetics.fluvius.caching;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specifies which operation results an {@link OperationResultCache} holds, and for how long.
+ * <p>
+ * Caching is opt-in: only the results of the operations named with {@link #forOperations(String...)} are cached, so that
+ * operations with side effects are never skipped by accident.
+ * </p>
+ * <p>
+ * When the cache holds more results than the policy allows, the least recently used are evicted. Results older than the
+ * expiry time are never returned, and are discarded when next looked up or when their space is needed.
+ * </p>
+ */
+public final class CachePolicy {
+
+  private static final CachePolicy UNBOUNDED = new CachePolicy(Integer.MAX_VALUE, Long.MAX_VALUE, null);
+
+  /**
+   * Obtain a policy which places no limit on the number or age of the results cached. It caches no results until the
+   * operations to cache are named with {@link #forOperations(String...)}.
+   *
+   * @return The cache policy.
+   */
+  public static CachePolicy unbounded() {
+    return UNBOUNDED;
+  }
+
+  private final int maxEntries;
+  private final long expiryNanos;
+  private final Set<String> operationNames;
+
+  private CachePolicy(int maxEntries, long expiryNanos, Set<String> operationNames) {
+    this.maxEntries = maxEntries;
+    this.expiryNanos = expiryNanos;
+    this.operationNames = operationNames;
+  }
+
+  /**
+   * Create a policy which also limits the number of results cached.
+   *
+   * @param maxEntries The maximum number of results to cache.
+   * @return The constructed cache policy.
+   */
+  public CachePolicy withMaxEntries(int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Maximum number of entries must be positive");
+    }
+    return new CachePolicy(maxEntries, expiryNanos, operationNames);
+  }
+
+  /**
+   * Create a policy which also discards results which were computed longer ago than the supplied time.
+   *
+   * @param expiry The time for which a result may be used.
+   * @param unit The unit in which the time is given.
+   * @return The constructed cache policy.
+   */
+  public CachePolicy withExpiryAfterWrite(long expiry, TimeUnit unit) {
+    if (expiry < 1) {
+      throw new IllegalArgumentException("Expiry time must be positive");
+    }
+    return new CachePolicy(maxEntries, unit.toNanos(expiry), operationNames);
+  }
+
+  /**
+   * Create a policy which caches the results of the operations with the supplied names. Each step running one of these
+   * operations caches its own results, so steps whose operations share a name do not share results. Only operations which
+   * always return equal results given equal inputs, and have no side effects which must be repeated, should be cached.
+   *
+   * @param operationNames The names of the operations whose results should be cached.
+   * @return The constructed cache policy.
+   */
+  public CachePolicy forOperations(String... operationNames) {
+    return new CachePolicy(maxEntries, expiryNanos, Collections.unmodifiableSet(new HashSet<>(Arrays.asList(operationNames))));
+  }
+
+  int getMaxEntries() {
+    return maxEntries;
+  }
+
+  long getExpiryNanos() {
+    return expiryNanos;
+  }
+
+  boolean expires() {
+    return expiryNanos != Long.MAX_VALUE;
+  }
+
+  boolean caches(String operationName) {
+    return operationNames != null && operationNames.contains(operationName);
+  }
+}
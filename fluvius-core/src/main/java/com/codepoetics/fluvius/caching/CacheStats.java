@@ -0,0 +1,83 @@
+package com.codepoetics.fluvius.caching;
+
+/**
+ * An immutable snapshot of the statistics recorded by an {@link OperationResultCache}.
+ */
+public final class CacheStats {
+
+  private final long hitCount;
+  private final long missCount;
+  private final long coalescedCount;
+  private final long loadFailureCount;
+  private final long evictionCount;
+
+  CacheStats(long hitCount, long missCount, long coalescedCount, long loadFailureCount, long evictionCount) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.coalescedCount = coalescedCount;
+    this.loadFailureCount = loadFailureCount;
+    this.evictionCount = evictionCount;
+  }
+
+  /**
+   * Get the number of lookups which found a cached result.
+   *
+   * @return The number of hits.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Get the number of lookups which found no cached result, and ran the operation.
+   *
+   * @return The number of misses.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Get the number of lookups which found no cached result, but waited for another thread already running the operation
+   * with the same inputs and shared its result.
+   *
+   * @return The number of coalesced lookups.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /**
+   * Get the number of times the operation failed, so that no result was cached.
+   *
+   * @return The number of failed loads.
+   */
+  public long getLoadFailureCount() {
+    return loadFailureCount;
+  }
+
+  /**
+   * Get the number of results evicted because the cache was full or they had expired.
+   *
+   * @return The number of evictions.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Get the proportion of lookups which did not need to run the operation.
+   *
+   * @return The hit rate, between 0 and 1, or 0 if there have been no lookups.
+   */
+  public double getHitRate() {
+    long requests = hitCount + missCount + coalescedCount;
+    return requests == 0 ? 0 : (double) (hitCount + coalescedCount) / requests;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits=%d, misses=%d, coalesced=%d, loadFailures=%d, evictions=%d, hitRate=%.3f",
+        hitCount, missCount, coalescedCount, loadFailureCount, evictionCount, getHitRate());
+  }
+}
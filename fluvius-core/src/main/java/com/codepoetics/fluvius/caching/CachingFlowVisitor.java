@@ -0,0 +1,217 @@
+package com.codepoetics.fluvius.caching;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.FlowVisitor;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.operations.OperationInterceptor;
+import com.codepoetics.fluvius.operations.Operations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link FlowVisitor} that memoises the results of operations in an {@link OperationResultCache}, keyed on the step
+ * which runs the operation, the key it provides, and the values of the keys it requires.
+ * <p>
+ * Only the operations the cache's {@link CachePolicy} names are cached. A step keeps its identity however many times its
+ * flow is compiled, and wherever the flow is composed into others, so every compilation of the same step shares its
+ * results; distinct steps never share results, even if their operations have the same name. The values of required keys must implement
+ * {@link Object#equals(Object)} and {@link Object#hashCode()} consistently, and must not be mutated once written.
+ * Operations are run as usual, without consulting the cache, if any required key holds a failure. Asynchronous operations
+ * remain asynchronous, and operations which run in batches are run with only those scratchpads whose results are not
+ * already cached.
+ * </p>
+ *
+ * @param <V> The type of the value constructed by the wrapped visitor.
+ */
+public final class CachingFlowVisitor<V> implements FlowVisitor<V> {
+
+  private static final Comparator<Key<?>> KEYS_BY_NAME = new Comparator<Key<?>>() {
+    @Override
+    public int compare(Key<?> first, Key<?> second) {
+      return first.getName().compareTo(second.getName());
+    }
+  };
+
+  /**
+   * Create a new caching FlowVisitor wrapping the supplied visitor.
+   *
+   * @param cache The cache in which to memoise operation results.
+   * @param visitor The flow visitor to wrap.
+   * @param <V> The type of the value constructed by the wrapped visitor.
+   * @return The constructed flow visitor.
+   */
+  public static <V> FlowVisitor<V> wrapping(OperationResultCache cache, FlowVisitor<V> visitor) {
+    return new CachingFlowVisitor<>(cache, visitor);
+  }
+
+  private final OperationResultCache cache;
+  private final FlowVisitor<V> innerVisitor;
+
+  private CachingFlowVisitor(OperationResultCache cache, FlowVisitor<V> innerVisitor) {
+    this.cache = cache;
+    this.innerVisitor = innerVisitor;
+  }
+
+  @Override
+  public <T> V visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+    if (!cache.caches(operation.getName())) {
+      return innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation);
+    }
+
+    Key<?>[] sortedKeys = requiredKeys.toArray(new Key<?>[requiredKeys.size()]);
+    Arrays.sort(sortedKeys, KEYS_BY_NAME);
+    return innerVisitor.visitSingle(stepId, requiredKeys, providedKey,
+        Operations.intercept(operation, new CachingInterceptor<T>(stepId, providedKey.getName(), sortedKeys, cache)));
+  }
+
+  @Override
+  public <T> V visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<V> items) {
+    return innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items);
+  }
+
+  @Override
+  public <T> V visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, V defaultBranch,
+                           List<Conditional<V>> conditionalBranches) {
+    return innerVisitor.visitBranch(stepId, requiredKeys, providedKey, defaultBranch, conditionalBranches);
+  }
+
+  @Override
+  public Condition visitCondition(Condition condition) {
+    return innerVisitor.visitCondition(condition);
+  }
+
+  private static final class CachingInterceptor<T> implements OperationInterceptor<T> {
+
+    private final UUID stepId;
+    private final String providedKeyName;
+    private final Key<?>[] requiredKeys;
+    private final OperationResultCache cache;
+
+    private CachingInterceptor(UUID stepId, String providedKeyName, Key<?>[] requiredKeys, OperationResultCache cache) {
+      this.stepId = stepId;
+      this.providedKeyName = providedKeyName;
+      this.requiredKeys = requiredKeys;
+      this.cache = cache;
+    }
+
+    @Override
+    public T run(final Operation<T> operation, final Scratchpad scratchpad) throws Exception {
+      CacheKey key = keyFor(scratchpad);
+      if (key == null) {
+        return operation.run(scratchpad);
+      }
+
+      return cache.get(key, new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          return operation.run(scratchpad);
+        }
+      });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void runAsync(AsyncOperation<T> operation, Scratchpad scratchpad, final OperationCallback<T> callback) {
+      final CacheKey key = keyFor(scratchpad);
+      if (key == null) {
+        operation.run(scratchpad, callback);
+        return;
+      }
+
+      Object cached = cache.getIfPresent(key);
+      if (cached != null) {
+        callback.onSuccess((T) OperationResultCache.unmask(cached));
+        return;
+      }
+
+      cache.recordMisses(1);
+      operation.run(scratchpad, new OperationCallback<T>() {
+        @Override
+        public void onSuccess(T result) {
+          cache.put(key, result);
+          callback.onSuccess(result);
+        }
+
+        @Override
+        public void onFailure(Exception failure) {
+          cache.recordLoadFailures(1);
+          callback.onFailure(failure);
+        }
+      });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<T> runBatch(BatchOperation<T> operation, List<Scratchpad> scratchpads) throws Exception {
+      int size = scratchpads.size();
+      List<T> results = new ArrayList<>(Collections.<T>nCopies(size, null));
+      CacheKey[] keys = new CacheKey[size];
+      List<Scratchpad> uncached = new ArrayList<>(size);
+      int[] uncachedIndices = new int[size];
+      int misses = 0;
+
+      for (int i = 0; i < size; i++) {
+        Scratchpad scratchpad = scratchpads.get(i);
+        keys[i] = keyFor(scratchpad);
+        if (keys[i] != null) {
+          Object cached = cache.getIfPresent(keys[i]);
+          if (cached != null) {
+            results.set(i, (T) OperationResultCache.unmask(cached));
+            continue;
+          }
+          misses++;
+        }
+        uncachedIndices[uncached.size()] = i;
+        uncached.add(scratchpad);
+      }
+
+      if (uncached.isEmpty()) {
+        return results;
+      }
+
+      cache.recordMisses(misses);
+      List<T> loaded;
+      try {
+        loaded = operation.runBatch(uncached);
+      } catch (Exception | Error e) {
+        cache.recordLoadFailures(misses);
+        throw e;
+      }
+
+      for (int i = 0; i < uncached.size(); i++) {
+        int index = uncachedIndices[i];
+        T result = loaded.get(i);
+        results.set(index, result);
+        if (keys[index] != null) {
+          cache.put(keys[index], result);
+        }
+      }
+      return results;
+    }
+
+    private CacheKey keyFor(Scratchpad scratchpad) {
+      Object[] inputs = new Object[requiredKeys.length];
+      for (int i = 0; i < requiredKeys.length; i++) {
+        Key<?> key = requiredKeys[i];
+        if (!scratchpad.containsKey(key) || !scratchpad.isSuccessful(key)) {
+          return null;
+        }
+        inputs[i] = scratchpad.get(key);
+      }
+      return new CacheKey(stepId, providedKeyName, inputs);
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.codepoetics.fluvius.caching;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent cache of operation results, used by a {@link CachingFlowVisitor}.
+ * <p>
+ * Results are held in a fixed number of independently-locked segments, each evicting its least recently used result when
+ * it holds more than its share of the results the {@link CachePolicy} allows. When several threads look up a result which
+ * is not cached at the same time, only the first runs the operation; the others wait for it, and share its result or
+ * exception. Asynchronous and batched lookups which miss are not coalesced: each runs the operation for itself. Failures
+ * are never cached.
+ * </p>
+ */
+public final class OperationResultCache {
+
+  private static final int MAX_SEGMENTS = 16;
+  private static final Object NULL_RESULT = new Object();
+
+  /**
+   * Create a cache which caches operation results according to the supplied {@link CachePolicy}.
+   *
+   * @param policy The policy determining which results to cache, and for how long.
+   * @return The constructed cache.
+   */
+  public static OperationResultCache create(CachePolicy policy) {
+    return new OperationResultCache(policy);
+  }
+
+  private final CachePolicy policy;
+  private final Segment[] segments;
+  private final ConcurrentMap<CacheKey, FutureTask<Object>> loading = new ConcurrentHashMap<>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong loadFailureCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private OperationResultCache(CachePolicy policy) {
+    this.policy = policy;
+
+    int maxEntries = policy.getMaxEntries();
+    int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxEntries));
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0));
+    }
+  }
+
+  boolean caches(String operationName) {
+    return policy.caches(operationName);
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> T get(CacheKey key, Callable<T> loader) throws Exception {
+    Segment segment = segmentFor(key);
+    Object cached = segment.get(key);
+    if (cached != null) {
+      hitCount.incrementAndGet();
+      return (T) unmask(cached);
+    }
+
+    FutureTask<Object> task = new FutureTask<>(new MaskingLoader(loader));
+    FutureTask<Object> existing = loading.putIfAbsent(key, task);
+    if (existing != null) {
+      coalescedCount.incrementAndGet();
+      return (T) unmask(await(existing));
+    }
+
+    missCount.incrementAndGet();
+    try {
+      task.run();
+      Object result = await(task);
+      segment.put(key, result);
+      return (T) unmask(result);
+    } catch (Exception | Error e) {
+      loadFailureCount.incrementAndGet();
+      throw e;
+    } finally {
+      loading.remove(key, task);
+    }
+  }
+
+  Object getIfPresent(CacheKey key) {
+    Object cached = segmentFor(key).get(key);
+    if (cached != null) {
+      hitCount.incrementAndGet();
+    }
+    return cached;
+  }
+
+  void put(CacheKey key, Object result) {
+    segmentFor(key).put(key, result == null ? NULL_RESULT : result);
+  }
+
+  void recordMisses(int count) {
+    missCount.addAndGet(count);
+  }
+
+  void recordLoadFailures(int count) {
+    loadFailureCount.addAndGet(count);
+  }
+
+  /**
+   * Discard all cached results.
+   */
+  public void invalidateAll() {
+    for (Segment segment : segments) {
+      segment.clearEntries();
+    }
+  }
+
+  /**
+   * Get the number of results currently cached, including any which have expired but not yet been discarded.
+   *
+   * @return The number of results cached.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.entryCount();
+    }
+    return size;
+  }
+
+  /**
+   * Get a snapshot of the statistics recorded since the cache was created.
+   *
+   * @return The cache statistics.
+   */
+  public CacheStats getStats() {
+    return new CacheStats(hitCount.get(), missCount.get(), coalescedCount.get(), loadFailureCount.get(), evictionCount.get());
+  }
+
+  private Segment segmentFor(CacheKey key) {
+    int hash = key.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+  }
+
+  private static Object await(FutureTask<Object> task) throws Exception {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  static Object unmask(Object result) {
+    return result == NULL_RESULT ? null : result;
+  }
+
+  private static final class MaskingLoader implements Callable<Object> {
+    private final Callable<?> loader;
+
+    private MaskingLoader(Callable<?> loader) {
+      this.loader = loader;
+    }
+
+    @Override
+    public Object call() throws Exception {
+      Object result = loader.call();
+      return result == null ? NULL_RESULT : result;
+    }
+  }
+
+  private static final class CachedResult {
+    private final Object result;
+    private final long writtenAt;
+
+    private CachedResult(Object result, long writtenAt) {
+      this.result = result;
+      this.writtenAt = writtenAt;
+    }
+  }
+
+  private final class Segment extends LinkedHashMap<CacheKey, CachedResult> {
+
+    private final int capacity;
+
+    private Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    synchronized Object get(CacheKey key) {
+      CachedResult entry = super.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (policy.expires() && System.nanoTime() - entry.writtenAt > policy.getExpiryNanos()) {
+        remove(key);
+        evictionCount.incrementAndGet();
+        return null;
+      }
+      return entry.result;
+    }
+
+    synchronized void put(CacheKey key, Object result) {
+      super.put(key, new CachedResult(result, System.nanoTime()));
+    }
+
+    synchronized void clearEntries() {
+      clear();
+    }
+
+    synchronized int entryCount() {
+      return size();
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedResult> eldest) {
+      if (size() > capacity) {
+        evictionCount.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,6 @@
+/**
+ * Provides a caching {@link com.codepoetics.fluvius.api.FlowVisitor} implementation, which memoises the results of
+ * operations in an {@link com.codepoetics.fluvius.caching.OperationResultCache}, keyed on the step which runs each
+ * operation, the key it provides and the values of the keys it requires.
+ */
+package com.codepoetics.fluvius.caching;
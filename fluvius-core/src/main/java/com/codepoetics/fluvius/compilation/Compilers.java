@@ -1,19 +1,36 @@
 package com.codepoetics.fluvius.compilation;
 
 import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
 import com.codepoetics.fluvius.api.Flow;
 import com.codepoetics.fluvius.api.FlowExecution;
 import com.codepoetics.fluvius.api.FlowVisitor;
 import com.codepoetics.fluvius.api.compilation.FlowCompiler;
 import com.codepoetics.fluvius.api.logging.FlowLogger;
+import com.codepoetics.fluvius.api.logging.LogLevel;
 import com.codepoetics.fluvius.api.tracing.TraceEventListener;
+import com.codepoetics.fluvius.api.tracing.TraceSampler;
+import com.codepoetics.fluvius.caching.CachingFlowVisitor;
+import com.codepoetics.fluvius.caching.OperationResultCache;
+import com.codepoetics.fluvius.execution.DispatchingFlowExecution;
+import com.codepoetics.fluvius.execution.FlowExecutions;
+import com.codepoetics.fluvius.execution.FlowExecutors;
 import com.codepoetics.fluvius.execution.KeyCheckingFlowExecution;
 import com.codepoetics.fluvius.logging.Loggers;
+import com.codepoetics.fluvius.metrics.FlowMetrics;
+import com.codepoetics.fluvius.metrics.MetricsFlowVisitor;
+import com.codepoetics.fluvius.resilience.ResilienceFlowVisitor;
 import com.codepoetics.fluvius.tracing.TracingFlowVisitor;
 import com.codepoetics.fluvius.visitors.Visitors;
 
+import java.util.concurrent.Executor;
+
 /**
  * Utility class providing a fluent "builder" API for assembling {@link FlowCompiler}s with the required properties.
+ * <p>
+ * Every flow execution compiled by the constructed compilers is a {@link ConcurrentFlowExecution}, which
+ * {@link FlowExecutions#concurrent(FlowExecution)} returns as it is.
+ * </p>
  */
 public final class Compilers {
 
@@ -26,7 +43,7 @@ public final class Compilers {
    * @return A fluent "builder" for specifying the properties of a {@link FlowCompiler}.
    */
   public static Builder builder() {
-    return new Builder(Visitors.getDefault());
+    return new Builder(Visitors.getDefault(), false, false, null, null);
   }
 
   /**
@@ -34,9 +51,17 @@ public final class Compilers {
    */
   public static final class Builder {
     private final FlowVisitor<Action> visitor;
+    private final boolean slotIndexed;
+    private final boolean fused;
+    private final Executor parallelExecutor;
+    private final Executor dispatchExecutor;
 
-    private Builder(FlowVisitor<Action> visitor) {
+    private Builder(FlowVisitor<Action> visitor, boolean slotIndexed, boolean fused, Executor parallelExecutor, Executor dispatchExecutor) {
       this.visitor = visitor;
+      this.slotIndexed = slotIndexed;
+      this.fused = fused;
+      this.parallelExecutor = parallelExecutor;
+      this.dispatchExecutor = dispatchExecutor;
     }
 
     /**
@@ -48,13 +73,23 @@ public final class Compilers {
       return loggingTo(Loggers.getConsoleLogger());
     }
 
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will log messages at or above the given level to the console.
+     *
+     * @param threshold The lowest level to log.
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder loggingToConsole(LogLevel threshold) {
+      return loggingTo(Loggers.getConsoleLogger(threshold));
+    }
+
     /**
      * Specifies that {@link FlowExecution}s compiled by the constructed compiler will log messages to the provided {@link FlowLogger}.
      *
      * @return A builder that will build the compiler as specified.
      */
     public Builder loggingTo(FlowLogger logger) {
-      return new Builder(Visitors.logging(visitor, logger));
+      return new Builder(Visitors.logging(visitor, logger), slotIndexed, fused, parallelExecutor, dispatchExecutor);
     }
 
     /**
@@ -63,7 +98,17 @@ public final class Compilers {
      * @return A builder that will build the compiler as specified.
      */
     public Builder mutationChecking() {
-      return new Builder(Visitors.mutationChecking(visitor));
+      return new Builder(Visitors.mutationChecking(visitor), slotIndexed, fused, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will enforce the same rule as {@link #mutationChecking()},
+     * but will fingerprint each value once and re-check only the values of the keys each step requires, so that the check is cheap enough to leave on in production.
+     *
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder incrementalMutationChecking() {
+      return new Builder(Visitors.incrementalMutationChecking(visitor), slotIndexed, fused, parallelExecutor, dispatchExecutor);
     }
 
     /**
@@ -73,7 +118,109 @@ public final class Compilers {
      * @return A builder that will build the compiler as specified.
      */
     public Builder tracingWith(final TraceEventListener eventListener) {
-      return new Builder(TracingFlowVisitor.wrapping(eventListener, visitor));
+      return new Builder(TracingFlowVisitor.wrapping(eventListener, visitor), slotIndexed, fused, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed {@link FlowCompiler} will emit trace messages to the provided {@link TraceEventListener},
+     * for those flows which the provided {@link TraceSampler} chooses to trace when they start.
+     *
+     * @param eventListener The event listener that will receiver trace messages from {@link FlowExecution}s compiled by the constructed compiler.
+     * @param sampler The sampler which decides which flows to trace.
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder tracingWith(final TraceEventListener eventListener, final TraceSampler sampler) {
+      return new Builder(TracingFlowVisitor.wrapping(eventListener, sampler, visitor), slotIndexed, fused, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will record the latency and outcome of every
+     * step and branch condition in the provided {@link FlowMetrics}.
+     *
+     * @param metrics The metrics to record to.
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder recordingMetricsTo(FlowMetrics metrics) {
+      return new Builder(MetricsFlowVisitor.wrapping(metrics, visitor), slotIndexed, fused, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will memoise the results of the operations
+     * named by the cache's policy in the provided {@link OperationResultCache}, keyed on the step which runs each operation,
+     * the key it provides and the values of the keys it requires.
+     *
+     * @param cache The cache in which to memoise operation results.
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder cachingResultsIn(OperationResultCache cache) {
+      return new Builder(CachingFlowVisitor.wrapping(cache, visitor), slotIndexed, fused, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will assign every key used by the flow a slot
+     * at compile time, and run the flow against a {@link com.codepoetics.fluvius.api.scratchpad.Scratchpad} which stores
+     * values in an array indexed by those slots.
+     *
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder slotIndexedScratchpads() {
+      return new Builder(visitor, true, fused, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will fuse the whole flow into a single tree
+     * of {@link java.lang.invoke.MethodHandle}s, so that the JIT can inline across steps. Fused flows always run synchronously,
+     * and record by record when run against a batch, so batch operations within them are never run with more than one
+     * scratchpad. If they are also run in parallel, each step, branch and strictly-ordered sequence is fused, and the steps of
+     * other sequences are run concurrently. Steps decorated by other visitors are fused as calls to their decorated actions.
+     * The attempts of retried or hedged steps are made within the step, and so are not traced or measured individually.
+     *
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder fused() {
+      return new Builder(visitor, slotIndexed, true, parallelExecutor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will run independent steps of each sequence
+     * concurrently on the supplied {@link Executor}. Steps are independent if neither requires the key provided by the other.
+     *
+     * @param executor The Executor to run independent steps on.
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder parallel(Executor executor) {
+      return new Builder(visitor, slotIndexed, fused, executor, dispatchExecutor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will run independent steps of each sequence
+     * concurrently on virtual threads, or on a shared pool of daemon threads if the running JDK does not support them.
+     *
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder parallelOnVirtualThreads() {
+      return parallel(FlowExecutors.virtualThreads());
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will start asynchronously-executed flows on
+     * the supplied {@link Executor}, rather than on the calling thread.
+     *
+     * @param executor The Executor to start flows on.
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder dispatchingTo(Executor executor) {
+      return new Builder(visitor, slotIndexed, fused, parallelExecutor, executor);
+    }
+
+    /**
+     * Specifies that {@link FlowExecution}s compiled by the constructed compiler will start asynchronously-executed flows on
+     * virtual threads, or on a shared pool of daemon threads if the running JDK does not support them.
+     *
+     * @return A builder that will build the compiler as specified.
+     */
+    public Builder onVirtualThreads() {
+      return dispatchingTo(FlowExecutors.virtualThreads());
     }
 
     /**
@@ -82,20 +229,38 @@ public final class Compilers {
      * @return The constructed compiler.
      */
     public FlowCompiler build() {
-      return new VisitingCompiler(visitor);
+      // Fused steps make their own retry and hedge attempts, so that the fused visitor can still inline the default visitor.
+      FlowVisitor<Action> outermostVisitor = fused
+          ? Visitors.fused(visitor)
+          : ResilienceFlowVisitor.wrapping(visitor);
+      if (parallelExecutor != null) {
+        outermostVisitor = Visitors.parallel(outermostVisitor, parallelExecutor);
+      }
+
+      return new VisitingCompiler(outermostVisitor, slotIndexed, dispatchExecutor);
     }
   }
 
   private static final class VisitingCompiler implements FlowCompiler {
     private final FlowVisitor<Action> visitor;
+    private final boolean slotIndexed;
+    private final Executor dispatchExecutor;
 
-    private VisitingCompiler(FlowVisitor<Action> visitor) {
+    private VisitingCompiler(FlowVisitor<Action> visitor, boolean slotIndexed, Executor dispatchExecutor) {
       this.visitor = visitor;
+      this.slotIndexed = slotIndexed;
+      this.dispatchExecutor = dispatchExecutor;
     }
 
     @Override
-    public <T> FlowExecution<T> compile(Flow<T> flow) {
-      return KeyCheckingFlowExecution.forFlow(flow, visitor);
+    public <T> ConcurrentFlowExecution<T> compile(Flow<T> flow) {
+      FlowExecution<T> execution = slotIndexed
+          ? KeyCheckingFlowExecution.forSlotIndexedFlow(flow, visitor)
+          : KeyCheckingFlowExecution.forFlow(flow, visitor);
+
+      return dispatchExecutor == null
+          ? FlowExecutions.concurrent(execution)
+          : DispatchingFlowExecution.dispatchingTo(dispatchExecutor, execution);
     }
   }
 }
@@ -0,0 +1,12 @@
+package com.codepoetics.fluvius.exceptions;
+
+import com.codepoetics.fluvius.api.history.FlowEventStore;
+
+/**
+ * An exception thrown when a {@link FlowEventStore} is unable to read or write flow events.
+ */
+public class FlowEventStoreException extends RuntimeException {
+  public FlowEventStoreException(String message, Exception cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,13 @@
+package com.codepoetics.fluvius.exceptions;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An exception recorded against a step's provided key when the step's operation does not complete within its timeout,
+ * or before the deadline of the flow running it.
+ */
+public class StepTimeoutException extends TimeoutException {
+  public StepTimeoutException(String message) {
+    super(message);
+  }
+}
@@ -1,20 +1,36 @@
 package com.codepoetics.fluvius.execution;
 
-import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
 import com.codepoetics.fluvius.api.FlowResultCallback;
 import com.codepoetics.fluvius.api.scratchpad.KeyValue;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 import com.codepoetics.fluvius.scratchpad.Scratchpads;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public abstract class AbstractFlowExecution<T> implements FlowExecution<T> {
+public abstract class AbstractFlowExecution<T> implements ConcurrentFlowExecution<T> {
 
   @Override
   public T run(Scratchpad initialScratchpad) throws Exception {
     return run(UUID.randomUUID(), initialScratchpad);
   }
 
+  @Override
+  public T run(Scratchpad initialScratchpad, long timeout, TimeUnit unit) throws Exception {
+    return run(UUID.randomUUID(), initialScratchpad, timeout, unit);
+  }
+
+  @Override
+  public T run(UUID flowId, Scratchpad initialScratchpad, long timeout, TimeUnit unit) throws Exception {
+    return run(flowId, FlowDeadlines.withDeadline(initialScratchpad, Deadline.after(timeout, unit)));
+  }
+
   @Override
   public T run(KeyValue... initialKeyValues) throws Exception {
     return run(UUID.randomUUID(), initialKeyValues);
@@ -39,4 +55,82 @@ public abstract class AbstractFlowExecution<T> implements FlowExecution<T> {
   public Runnable asAsync(UUID flowId, FlowResultCallback<T> callback, KeyValue...initialKeyValues) {
     return asAsync(flowId, callback, Scratchpads.create(initialKeyValues));
   }
+
+  @Override
+  public Future<T> runAsync(Scratchpad initialScratchpad) {
+    return runAsync(UUID.randomUUID(), initialScratchpad, null);
+  }
+
+  @Override
+  public Future<T> runAsync(KeyValue... initialKeyValues) {
+    return runAsync(UUID.randomUUID(), Scratchpads.create(initialKeyValues), null);
+  }
+
+  @Override
+  public Future<T> runAsync(Scratchpad initialScratchpad, long timeout, TimeUnit unit) {
+    return runAsync(UUID.randomUUID(), FlowDeadlines.withDeadline(initialScratchpad, Deadline.after(timeout, unit)), null);
+  }
+
+  @Override
+  public Future<T> runOn(Executor executor, Scratchpad initialScratchpad, long timeout, TimeUnit unit) {
+    return runOn(executor, UUID.randomUUID(), FlowDeadlines.withDeadline(initialScratchpad, Deadline.after(timeout, unit)), null);
+  }
+
+  @Override
+  public Future<T> runOn(Executor executor, Scratchpad initialScratchpad) {
+    return runOn(executor, UUID.randomUUID(), initialScratchpad, null);
+  }
+
+  @Override
+  public Future<T> runOn(Executor executor, KeyValue... initialKeyValues) {
+    return runOn(executor, UUID.randomUUID(), Scratchpads.create(initialKeyValues), null);
+  }
+
+  @Override
+  public Future<T> runOn(Executor executor, final UUID flowId, final Scratchpad initialScratchpad, FlowResultCallback<T> callback) {
+    final FlowResultFuture<T> future = new FlowResultFuture<>(flowId, callback);
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          runAsync(flowId, initialScratchpad, future);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.onFailure(flowId, e);
+    }
+    return future;
+  }
+
+  @Override
+  public List<T> runBatch(List<Scratchpad> initialScratchpads) throws Exception {
+    BatchResults<T> results = new BatchResults<>(initialScratchpads.size());
+    runBatch(initialScratchpads, results);
+    return results.get();
+  }
+
+  @Override
+  public List<T> runBatch(List<Scratchpad> initialScratchpads, long timeout, TimeUnit unit) throws Exception {
+    Deadline deadline = Deadline.after(timeout, unit);
+    List<Scratchpad> scratchpads = new ArrayList<>(initialScratchpads.size());
+    for (Scratchpad initialScratchpad : initialScratchpads) {
+      scratchpads.add(FlowDeadlines.withDeadline(initialScratchpad, deadline));
+    }
+    return runBatch(scratchpads);
+  }
+
+  @Override
+  public void runBatch(List<Scratchpad> initialScratchpads, FlowResultCallback<T> callback) {
+    for (Scratchpad initialScratchpad : initialScratchpads) {
+      UUID flowId = UUID.randomUUID();
+      T result;
+      try {
+        result = run(flowId, initialScratchpad);
+      } catch (Exception e) {
+        callback.onFailure(flowId, e);
+        continue;
+      }
+      callback.onSuccess(flowId, result);
+    }
+  }
 }
@@ -0,0 +1,48 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.FlowResultCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Collects the results of a batch of flows reported in order to a {@link FlowResultCallback}, remembering the first failure.
+ *
+ * @param <T> The type of the result returned by each flow.
+ */
+final class BatchResults<T> implements FlowResultCallback<T> {
+
+  private final List<T> results;
+  private Throwable firstFailure;
+
+  BatchResults(int size) {
+    this.results = new ArrayList<>(size);
+  }
+
+  @Override
+  public void onSuccess(UUID flowId, T result) {
+    results.add(result);
+  }
+
+  @Override
+  public void onFailure(UUID flowId, Throwable failure) {
+    results.add(null);
+    if (firstFailure == null) {
+      firstFailure = failure;
+    }
+  }
+
+  List<T> get() throws Exception {
+    if (firstFailure instanceof Exception) {
+      throw (Exception) firstFailure;
+    }
+    if (firstFailure instanceof Error) {
+      throw (Error) firstFailure;
+    }
+    if (firstFailure != null) {
+      throw new IllegalStateException(firstFailure);
+    }
+    return results;
+  }
+}
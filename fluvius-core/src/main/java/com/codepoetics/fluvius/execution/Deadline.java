@@ -0,0 +1,49 @@
+package com.codepoetics.fluvius.execution;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time, measured by {@link System#nanoTime()}, by which a flow must complete.
+ */
+public final class Deadline {
+
+  /**
+   * Create a Deadline the given time from now.
+   *
+   * @param timeout The time from now at which the deadline falls.
+   * @param unit The unit in which the timeout is given.
+   * @return The constructed Deadline.
+   */
+  public static Deadline after(long timeout, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+  }
+
+  private final long nanoTime;
+
+  private Deadline(long nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Get the time remaining before the deadline, which is zero or negative if it has passed.
+   *
+   * @return The time remaining, in nanoseconds.
+   */
+  public long getRemainingNanos() {
+    return nanoTime - System.nanoTime();
+  }
+
+  /**
+   * Tests whether the deadline has passed.
+   *
+   * @return True if the deadline has passed, false otherwise.
+   */
+  public boolean isExpired() {
+    return getRemainingNanos() <= 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline in " + TimeUnit.NANOSECONDS.toMillis(getRemainingNanos()) + "ms";
+  }
+}
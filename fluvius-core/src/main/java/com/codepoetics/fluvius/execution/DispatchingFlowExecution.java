@@ -0,0 +1,62 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.FlowResultCallback;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Flow execution which starts asynchronously-executed flows on an {@link Executor}, rather than on the calling thread.
+ * @param <T> The type of value returned by executing the flow.
+ */
+public final class DispatchingFlowExecution<T> extends AbstractFlowExecution<T> {
+
+  /**
+   * Create a flow execution which starts asynchronously-executed flows on the supplied executor.
+   * @param executor The executor to start flows on.
+   * @param execution The flow execution to wrap.
+   * @param <T> The type of value returned by executing the flow.
+   * @return The constructed flow execution.
+   */
+  public static <T> ConcurrentFlowExecution<T> dispatchingTo(Executor executor, FlowExecution<T> execution) {
+    return new DispatchingFlowExecution<>(executor, FlowExecutions.concurrent(execution));
+  }
+
+  private final Executor executor;
+  private final ConcurrentFlowExecution<T> execution;
+
+  private DispatchingFlowExecution(Executor executor, ConcurrentFlowExecution<T> execution) {
+    this.executor = executor;
+    this.execution = execution;
+  }
+
+  @Override
+  public T run(UUID flowId, Scratchpad initialScratchpad) throws Exception {
+    return execution.run(flowId, initialScratchpad);
+  }
+
+  @Override
+  public Runnable asAsync(UUID flowId, FlowResultCallback<T> callback, Scratchpad initialScratchpad) {
+    return execution.asAsync(flowId, callback, initialScratchpad);
+  }
+
+  @Override
+  public Future<T> runAsync(UUID flowId, Scratchpad initialScratchpad, FlowResultCallback<T> callback) {
+    return execution.runOn(executor, flowId, initialScratchpad, callback);
+  }
+
+  @Override
+  public Future<T> runOn(Executor executor, UUID flowId, Scratchpad initialScratchpad, FlowResultCallback<T> callback) {
+    return execution.runOn(executor, flowId, initialScratchpad, callback);
+  }
+
+  @Override
+  public void runBatch(List<Scratchpad> initialScratchpads, FlowResultCallback<T> callback) {
+    execution.runBatch(initialScratchpads, callback);
+  }
+}
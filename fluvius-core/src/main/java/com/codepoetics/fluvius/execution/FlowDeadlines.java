@@ -0,0 +1,44 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+/**
+ * Utility class attaching {@link Deadline}s to the Scratchpads of running flows, so that every step of a flow can see the
+ * deadline it was started with.
+ * <p>
+ * The deadline travels with the flow's Scratchpad from step to step, including into every Scratchpad a step writes, so it
+ * belongs to a single run of a flow, whether that run is synchronous, asynchronous or one record of a batch. Runs which
+ * share a flow id, or which are nested within one another, each keep their own deadline, and a deadline is forgotten
+ * along with the run's Scratchpad. Steps of flows run without a deadline pay only for a type check.
+ * </p>
+ */
+public final class FlowDeadlines {
+
+  private FlowDeadlines() {
+  }
+
+  /**
+   * Attach a deadline to the initial Scratchpad of a flow which is starting, replacing any deadline it already has.
+   *
+   * @param scratchpad The flow's initial Scratchpad.
+   * @param deadline The flow's deadline.
+   * @return A Scratchpad with the same contents, which carries the deadline.
+   */
+  public static Scratchpad withDeadline(Scratchpad scratchpad, Deadline deadline) {
+    RunScratchpad run = RunScratchpad.from(scratchpad);
+    return run == null
+        ? RunScratchpad.of(scratchpad, deadline, null, 0)
+        : RunScratchpad.of(scratchpad, deadline, run.getRace(), run.getAttemptNumber());
+  }
+
+  /**
+   * Get the deadline of the flow whose Scratchpad this is.
+   *
+   * @param scratchpad The Scratchpad of a running flow.
+   * @return The flow's deadline, or null if it has none.
+   */
+  public static Deadline forScratchpad(Scratchpad scratchpad) {
+    RunScratchpad run = RunScratchpad.from(scratchpad);
+    return run == null ? null : run.getDeadline();
+  }
+}
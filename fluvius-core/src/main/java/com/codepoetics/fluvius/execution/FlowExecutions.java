@@ -0,0 +1,62 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.FlowResultCallback;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * Utility class for running any {@link FlowExecution} as a {@link ConcurrentFlowExecution}.
+ */
+public final class FlowExecutions {
+
+  private FlowExecutions() {
+  }
+
+  /**
+   * Obtain a {@link ConcurrentFlowExecution} which runs flows with the supplied execution.
+   * <p>
+   * Flow executions compiled by {@link com.codepoetics.fluvius.compilation.Compilers} are already concurrent, and are
+   * returned as they are. Any other execution is adapted, so that flows started asynchronously run to completion on the
+   * calling thread, and flows run within a deadline see it only if the execution passes the initial Scratchpad on to its
+   * steps.
+   * </p>
+   *
+   * @param execution The flow execution to run flows with.
+   * @param <T> The type of value returned by executing the flow.
+   * @return The concurrent flow execution.
+   */
+  public static <T> ConcurrentFlowExecution<T> concurrent(FlowExecution<T> execution) {
+    return execution instanceof ConcurrentFlowExecution
+        ? (ConcurrentFlowExecution<T>) execution
+        : new AdaptedFlowExecution<>(execution);
+  }
+
+  private static final class AdaptedFlowExecution<T> extends AbstractFlowExecution<T> {
+    private final FlowExecution<T> execution;
+
+    private AdaptedFlowExecution(FlowExecution<T> execution) {
+      this.execution = execution;
+    }
+
+    @Override
+    public T run(UUID flowId, Scratchpad initialScratchpad) throws Exception {
+      return execution.run(flowId, initialScratchpad);
+    }
+
+    @Override
+    public Runnable asAsync(UUID flowId, FlowResultCallback<T> callback, Scratchpad initialScratchpad) {
+      return execution.asAsync(flowId, callback, initialScratchpad);
+    }
+
+    @Override
+    public Future<T> runAsync(UUID flowId, Scratchpad initialScratchpad, FlowResultCallback<T> callback) {
+      FlowResultFuture<T> future = new FlowResultFuture<>(flowId, callback);
+      execution.asAsync(flowId, future, initialScratchpad).run();
+      return future;
+    }
+  }
+}
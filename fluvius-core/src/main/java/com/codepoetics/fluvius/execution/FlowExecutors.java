@@ -0,0 +1,90 @@
+package com.codepoetics.fluvius.execution;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class providing {@link Executor}s suitable for running flows.
+ */
+public final class FlowExecutors {
+
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+  private FlowExecutors() {
+  }
+
+  private static Method findVirtualThreadExecutorFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Tests whether the running JDK supports virtual threads.
+   *
+   * @return True if flows can be run on virtual threads, false otherwise.
+   */
+  public static boolean supportsVirtualThreads() {
+    return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  /**
+   * Create a new ExecutorService which runs each task on a new virtual thread, if the running JDK supports them.
+   * <p>
+   * On older JDKs, a cached pool of daemon platform threads is returned instead.
+   * </p>
+   *
+   * @return The created ExecutorService.
+   */
+  public static ExecutorService newVirtualThreadExecutor() {
+    if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        // Fall through to platform threads.
+      }
+    }
+    return Executors.newCachedThreadPool(new DaemonThreadFactory());
+  }
+
+  /**
+   * Get a shared Executor which runs each task on a new virtual thread, if the running JDK supports them, or on a cached pool of
+   * daemon platform threads otherwise.
+   *
+   * @return The shared Executor.
+   */
+  public static Executor virtualThreads() {
+    return SharedExecutorHolder.EXECUTOR;
+  }
+
+  private static final class SharedExecutorHolder {
+    private static final Executor EXECUTOR = unstoppable(newVirtualThreadExecutor());
+  }
+
+  private static Executor unstoppable(final Executor executor) {
+    return new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        executor.execute(command);
+      }
+    };
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "fluvius-flow-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
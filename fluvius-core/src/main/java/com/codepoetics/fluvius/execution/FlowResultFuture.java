@@ -0,0 +1,108 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.FlowResultCallback;
+
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A Future which is completed with the result of an asynchronously-executed flow, and which passes that result on to a {@link FlowResultCallback}.
+ * <p>
+ * Cancelling the Future completes it, and the callback, with a {@link CancellationException}. Steps which are already running
+ * are not interrupted, and the flow's eventual result is discarded.
+ * </p>
+ * @param <T> The type of the flow's result.
+ */
+final class FlowResultFuture<T> implements Future<T>, FlowResultCallback<T> {
+
+  private final CountDownLatch completed = new CountDownLatch(1);
+  private final AtomicBoolean isCompleting = new AtomicBoolean();
+  private final UUID flowId;
+  private final FlowResultCallback<T> callback;
+  private volatile T result;
+  private volatile Throwable failure;
+  private volatile boolean cancelled;
+
+  FlowResultFuture(UUID flowId, FlowResultCallback<T> callback) {
+    this.flowId = flowId;
+    this.callback = callback;
+  }
+
+  @Override
+  public void onSuccess(UUID flowId, T result) {
+    if (!isCompleting.compareAndSet(false, true)) {
+      return;
+    }
+    this.result = result;
+    completed.countDown();
+    if (callback != null) {
+      callback.onSuccess(flowId, result);
+    }
+  }
+
+  @Override
+  public void onFailure(UUID flowId, Throwable failure) {
+    if (!isCompleting.compareAndSet(false, true)) {
+      return;
+    }
+    this.failure = failure;
+    completed.countDown();
+    if (callback != null) {
+      callback.onFailure(flowId, failure);
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    if (!isCompleting.compareAndSet(false, true)) {
+      return false;
+    }
+    cancelled = true;
+    failure = new CancellationException("Flow " + flowId + " was cancelled");
+    completed.countDown();
+    if (callback != null) {
+      callback.onFailure(flowId, failure);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  public boolean isDone() {
+    return completed.getCount() == 0;
+  }
+
+  @Override
+  public T get() throws InterruptedException, ExecutionException {
+    completed.await();
+    return getResult();
+  }
+
+  @Override
+  public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    if (!completed.await(timeout, unit)) {
+      throw new TimeoutException("Flow did not complete within " + timeout + " " + unit);
+    }
+    return getResult();
+  }
+
+  private T getResult() throws ExecutionException {
+    if (cancelled) {
+      throw (CancellationException) failure;
+    }
+    if (failure != null) {
+      throw new ExecutionException(failure);
+    }
+    return result;
+  }
+}
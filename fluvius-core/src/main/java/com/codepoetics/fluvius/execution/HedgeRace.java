@@ -0,0 +1,119 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+/**
+ * The attempts of a single run of a hedged step, racing to produce the step's result.
+ * <p>
+ * Each attempt runs against a Scratchpad marked with the race and the attempt's number, so that the step's decorations,
+ * such as tracing, can tell the attempts apart. Once the race has been settled on the result of one attempt, the outcomes
+ * of the others are no longer reported, and settling waits for any outcome which is already being reported, so that no
+ * attempt reports its outcome after the step has completed.
+ * </p>
+ */
+public final class HedgeRace {
+
+  /**
+   * Create a race between the attempts of a single run of a step.
+   *
+   * @return The constructed race.
+   */
+  public static HedgeRace create() {
+    return new HedgeRace();
+  }
+
+  /**
+   * Remove the mark of any race from a Scratchpad, so that it can be passed on to the steps which follow.
+   *
+   * @param scratchpad The Scratchpad to unmark.
+   * @return A Scratchpad with the same contents, which carries no race.
+   */
+  public static Scratchpad unmark(Scratchpad scratchpad) {
+    RunScratchpad run = RunScratchpad.from(scratchpad);
+    return run == null || run.getRace() == null
+        ? scratchpad
+        : RunScratchpad.of(scratchpad, run.getDeadline(), null, 0);
+  }
+
+  /**
+   * Begin reporting the outcome of the attempt whose Scratchpad this is. Every call which returns true must be followed
+   * by a call to {@link #endReport(Scratchpad)} once the outcome has been reported.
+   *
+   * @param scratchpad The Scratchpad the attempt ran against.
+   * @return False if the race has been settled on the result of another attempt, and the outcome should not be reported.
+   */
+  public static boolean beginReport(Scratchpad scratchpad) {
+    RunScratchpad run = RunScratchpad.from(scratchpad);
+    return run == null || run.getRace() == null || run.getRace().beginReport(run.getAttemptNumber());
+  }
+
+  /**
+   * Finish reporting the outcome of the attempt whose Scratchpad this is.
+   *
+   * @param scratchpad The Scratchpad the attempt ran against.
+   */
+  public static void endReport(Scratchpad scratchpad) {
+    RunScratchpad run = RunScratchpad.from(scratchpad);
+    if (run != null && run.getRace() != null) {
+      run.getRace().endReport();
+    }
+  }
+
+  private int winningAttempt;
+  private int reportsInProgress;
+
+  private HedgeRace() {
+  }
+
+  /**
+   * Mark a Scratchpad as belonging to an attempt in this race.
+   *
+   * @param scratchpad The Scratchpad the attempt runs against.
+   * @param attemptNumber The number of the attempt, starting from 1.
+   * @return A Scratchpad with the same contents, which carries the race and the attempt number.
+   */
+  public Scratchpad mark(Scratchpad scratchpad, int attemptNumber) {
+    return RunScratchpad.of(scratchpad, FlowDeadlines.forScratchpad(scratchpad), this, attemptNumber);
+  }
+
+  /**
+   * Settle the race on the result of the supplied attempt, unless it has already been settled, and wait for any outcome
+   * which is being reported.
+   *
+   * @param attemptNumber The number of the attempt whose result the step uses.
+   * @return True if the race is settled on the supplied attempt, false if it was already settled on another.
+   */
+  public synchronized boolean settle(int attemptNumber) {
+    if (winningAttempt != 0) {
+      return winningAttempt == attemptNumber;
+    }
+
+    winningAttempt = attemptNumber;
+    boolean interrupted = false;
+    while (reportsInProgress > 0) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return true;
+  }
+
+  private synchronized boolean beginReport(int attemptNumber) {
+    if (winningAttempt != 0 && winningAttempt != attemptNumber) {
+      return false;
+    }
+    reportsInProgress++;
+    return true;
+  }
+
+  private synchronized void endReport() {
+    if (--reportsInProgress == 0) {
+      notifyAll();
+    }
+  }
+}
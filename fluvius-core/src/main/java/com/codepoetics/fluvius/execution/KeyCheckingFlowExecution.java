@@ -5,11 +5,16 @@ import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.KeyValue;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 import com.codepoetics.fluvius.exceptions.MissingKeysException;
+import com.codepoetics.fluvius.scratchpad.KeySlots;
 import com.codepoetics.fluvius.scratchpad.Scratchpads;
+import com.codepoetics.fluvius.visitors.Actions;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 /**
  * Flow execution that checks that all required keys are provided before executing the flow.
@@ -28,18 +33,43 @@ public final class KeyCheckingFlowExecution<T> extends AbstractFlowExecution<T>
     return forAction(flow.visit(visitor), flow.getRequiredKeys(), flow.getProvidedKey());
   }
 
+  /**
+   * Create a key-checking flow execution using the supplied flow and visitor, which runs the flow against a
+   * slot-indexed Scratchpad in which every key required or provided by the flow has been assigned a slot at compile time.
+   * @param flow The flow to build flow execution for.
+   * @param visitor The visitor to use to compile the flow.
+   * @param <T> The type of value returned by executing the flow.
+   * @return The constructed flow execution.
+   */
+  public static <T> FlowExecution<T> forSlotIndexedFlow(Flow<T> flow, FlowVisitor<Action> visitor) {
+    return new KeyCheckingFlowExecution<>(flow.visit(visitor), flow.getRequiredKeys(), flow.getProvidedKey(), KeySlots.forFlow(flow));
+  }
+
   static <T> FlowExecution<T> forAction(Action action, Set<Key<?>> requiredKeys, Key<T> providedKey) {
-    return new KeyCheckingFlowExecution<>(action, requiredKeys, providedKey);
+    return new KeyCheckingFlowExecution<>(action, requiredKeys, providedKey, null);
   }
 
   private final Action action;
   private final Set<Key<?>> requiredKeys;
   private final Key<T> providedKey;
+  private final KeySlots keySlots;
 
-  KeyCheckingFlowExecution(Action action, Set<Key<?>> requiredKeys, Key<T> providedKey) {
+  KeyCheckingFlowExecution(Action action, Set<Key<?>> requiredKeys, Key<T> providedKey, KeySlots keySlots) {
     this.action = action;
     this.requiredKeys = requiredKeys;
     this.providedKey = providedKey;
+    this.keySlots = keySlots;
+  }
+
+  private Scratchpad prepare(Scratchpad initialScratchpad) {
+    if (keySlots == null) {
+      return initialScratchpad.locked();
+    }
+
+    // Copying the values into slots would leave the flow's deadline behind, so it is carried over to the copy.
+    Scratchpad prepared = Scratchpads.slotIndexed(keySlots, initialScratchpad).locked();
+    Deadline deadline = FlowDeadlines.forScratchpad(initialScratchpad);
+    return deadline == null ? prepared : FlowDeadlines.withDeadline(prepared, deadline);
   }
 
   private Set<Key<?>> getMissingKeys(Scratchpad initialScratchpad) {
@@ -60,7 +90,7 @@ public final class KeyCheckingFlowExecution<T> extends AbstractFlowExecution<T>
       throw MissingKeysException.create(missingKeys);
     }
 
-    Scratchpad finalScratchpad = action.run(flowId, initialScratchpad.locked());
+    Scratchpad finalScratchpad = action.run(flowId, prepare(initialScratchpad));
 
     if (finalScratchpad.isSuccessful(providedKey)) {
       return finalScratchpad.get(providedKey);
@@ -74,6 +104,79 @@ public final class KeyCheckingFlowExecution<T> extends AbstractFlowExecution<T>
     return run(flowId, Scratchpads.create(initialKeyValues));
   }
 
+  @Override
+  public Future<T> runAsync(final UUID flowId, Scratchpad initialScratchpad, FlowResultCallback<T> callback) {
+    final FlowResultFuture<T> future = new FlowResultFuture<>(flowId, callback);
+
+    Set<Key<?>> missingKeys = getMissingKeys(initialScratchpad);
+    if (!missingKeys.isEmpty()) {
+      future.onFailure(flowId, MissingKeysException.create(missingKeys));
+      return future;
+    }
+
+    Actions.runAsync(action, flowId, prepare(initialScratchpad), new ActionCallback() {
+      @Override
+      public void onComplete(Scratchpad finalScratchpad) {
+        if (finalScratchpad.isSuccessful(providedKey)) {
+          future.onSuccess(flowId, finalScratchpad.get(providedKey));
+        } else {
+          future.onFailure(flowId, finalScratchpad.getFailureReason(providedKey));
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable failure) {
+        future.onFailure(flowId, failure);
+      }
+    });
+
+    return future;
+  }
+
+  @Override
+  public void runBatch(List<Scratchpad> initialScratchpads, FlowResultCallback<T> callback) {
+    int size = initialScratchpads.size();
+    List<UUID> flowIds = new ArrayList<>(size);
+    List<Scratchpad> preparedScratchpads = new ArrayList<>(size);
+    MissingKeysException[] missingKeyFailures = new MissingKeysException[size];
+
+    for (int i = 0; i < size; i++) {
+      Scratchpad initialScratchpad = initialScratchpads.get(i);
+      Set<Key<?>> missingKeys = getMissingKeys(initialScratchpad);
+      flowIds.add(UUID.randomUUID());
+      if (missingKeys.isEmpty()) {
+        preparedScratchpads.add(prepare(initialScratchpad));
+      } else {
+        preparedScratchpads.add(initialScratchpad);
+        missingKeyFailures[i] = MissingKeysException.create(missingKeys);
+      }
+    }
+
+    FlowBatch batch = FlowBatch.of(flowIds, preparedScratchpads);
+    for (int i = 0; i < size; i++) {
+      if (missingKeyFailures[i] != null) {
+        batch.fail(i, missingKeyFailures[i]);
+      }
+    }
+
+    Actions.runBatch(action, batch);
+
+    for (int i = 0; i < size; i++) {
+      UUID flowId = batch.getFlowId(i);
+      if (batch.isFailed(i)) {
+        callback.onFailure(flowId, batch.getFailure(i));
+        continue;
+      }
+
+      Scratchpad finalScratchpad = batch.getScratchpad(i);
+      if (finalScratchpad.isSuccessful(providedKey)) {
+        callback.onSuccess(flowId, finalScratchpad.get(providedKey));
+      } else {
+        callback.onFailure(flowId, finalScratchpad.getFailureReason(providedKey));
+      }
+    }
+  }
+
   @Override
   public Runnable asAsync(UUID flowId, FlowResultCallback<T> callback, Scratchpad initialScratchpad) {
     return new RunWithCallback<>(flowId, initialScratchpad, callback, this);
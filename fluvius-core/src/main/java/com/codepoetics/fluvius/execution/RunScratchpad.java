@@ -0,0 +1,102 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.KeyValue;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.Map;
+
+/**
+ * A Scratchpad which carries the {@link Deadline} of the run of a flow it belongs to, and the {@link HedgeRace} attempt it
+ * is running as, if any, and passes them on to every Scratchpad derived from it.
+ */
+final class RunScratchpad implements Scratchpad {
+
+  static Scratchpad of(Scratchpad scratchpad, Deadline deadline, HedgeRace race, int attemptNumber) {
+    Scratchpad unwrapped = scratchpad instanceof RunScratchpad ? ((RunScratchpad) scratchpad).scratchpad : scratchpad;
+    return deadline == null && race == null
+        ? unwrapped
+        : new RunScratchpad(unwrapped, deadline, race, attemptNumber);
+  }
+
+  static RunScratchpad from(Scratchpad scratchpad) {
+    return scratchpad instanceof RunScratchpad ? (RunScratchpad) scratchpad : null;
+  }
+
+  private final Scratchpad scratchpad;
+  private final transient Deadline deadline;
+  private final transient HedgeRace race;
+  private final int attemptNumber;
+
+  private RunScratchpad(Scratchpad scratchpad, Deadline deadline, HedgeRace race, int attemptNumber) {
+    this.scratchpad = scratchpad;
+    this.deadline = deadline;
+    this.race = race;
+    this.attemptNumber = attemptNumber;
+  }
+
+  Deadline getDeadline() {
+    return deadline;
+  }
+
+  HedgeRace getRace() {
+    return race;
+  }
+
+  int getAttemptNumber() {
+    return attemptNumber;
+  }
+
+  @Override
+  public Scratchpad locked() {
+    return new RunScratchpad(scratchpad.locked(), deadline, race, attemptNumber);
+  }
+
+  @Override
+  public boolean containsKey(Key<?> key) {
+    return scratchpad.containsKey(key);
+  }
+
+  @Override
+  public boolean isSuccessful(Key<?> key) {
+    return scratchpad.isSuccessful(key);
+  }
+
+  @Override
+  public Scratchpad with(KeyValue... keyValues) {
+    return new RunScratchpad(scratchpad.with(keyValues), deadline, race, attemptNumber);
+  }
+
+  @Override
+  public <T> T get(Key<T> key) {
+    return scratchpad.get(key);
+  }
+
+  @Override
+  public Exception getFailureReason(Key<?> key) {
+    return scratchpad.getFailureReason(key);
+  }
+
+  @Override
+  public Map<Key<?>, Object> toMap() {
+    return scratchpad.toMap();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || (other instanceof RunScratchpad
+            ? scratchpad.equals(((RunScratchpad) other).scratchpad)
+            : scratchpad.equals(other));
+  }
+
+  @Override
+  public int hashCode() {
+    return scratchpad.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return scratchpad.toString();
+  }
+}
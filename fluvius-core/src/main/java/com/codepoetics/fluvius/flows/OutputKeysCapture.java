@@ -1,12 +1,16 @@
 package com.codepoetics.fluvius.flows;
 
+import com.codepoetics.fluvius.api.AsyncOperation;
 import com.codepoetics.fluvius.api.Flow;
 import com.codepoetics.fluvius.api.Operation;
 import com.codepoetics.fluvius.api.functional.ScratchpadFunction;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.operations.Operations;
+import com.codepoetics.fluvius.resilience.HedgePolicy;
+import com.codepoetics.fluvius.resilience.RetryPolicy;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The stage in the fluent API where we have captured the input and output keys of a Flow.
@@ -16,10 +20,59 @@ import java.util.Set;
 public final class OutputKeysCapture<T> {
   private final Set<Key<?>> inputKeys;
   private final Key<T> outputKey;
+  private final StepModifiers modifiers;
 
   OutputKeysCapture(Set<Key<?>> inputKeys, Key<T> outputKey) {
+    this(inputKeys, outputKey, StepModifiers.NONE);
+  }
+
+  private OutputKeysCapture(Set<Key<?>> inputKeys, Key<T> outputKey, StepModifiers modifiers) {
     this.inputKeys = inputKeys;
     this.outputKey = outputKey;
+    this.modifiers = modifiers;
+  }
+
+  /**
+   * Limit the time the Flow's operation may take. If it does not complete in time, a
+   * {@link com.codepoetics.fluvius.exceptions.StepTimeoutException} is recorded against the output key, so that the failure
+   * can be handled with {@link Flow#branchOnResult()}.
+   *
+   * @param timeout The time the operation is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return The stage in the fluent API at which the operation is supplied.
+   */
+  public OutputKeysCapture<T> withTimeout(long timeout, TimeUnit unit) {
+    return new OutputKeysCapture<>(inputKeys, outputKey, modifiers.withTimeout(timeout, unit));
+  }
+
+  /**
+   * Retry the Flow's operation according to the supplied policy. Each attempt which fails with a retryable failure is followed
+   * by another, until one succeeds or the policy's attempts are exhausted, and the last attempt's outcome is recorded against
+   * the output key. The step runs synchronously, backing off on the thread running it, even when the flow is run asynchronously
+   * or in a batch.
+   *
+   * @param retryPolicy The policy for retrying failed attempts.
+   * @return The stage in the fluent API at which the operation is supplied.
+   */
+  public OutputKeysCapture<T> withRetry(RetryPolicy retryPolicy) {
+    return new OutputKeysCapture<>(inputKeys, outputKey, modifiers.withRetry(retryPolicy));
+  }
+
+  /**
+   * Hedge the Flow's operation according to the supplied policy. If an attempt has not completed when the policy's delay has
+   * passed, a duplicate attempt is started, and the result of whichever attempt succeeds first is used. The first attempt
+   * runs on the thread running the step, and is interrupted if the duplicate succeeds first. The step runs synchronously,
+   * even when the flow is run asynchronously or in a batch.
+   *
+   * @param hedgePolicy The policy for hedging slow attempts.
+   * @return The stage in the fluent API at which the operation is supplied.
+   */
+  public OutputKeysCapture<T> withHedging(HedgePolicy hedgePolicy) {
+    return new OutputKeysCapture<>(inputKeys, outputKey, modifiers.withHedging(hedgePolicy));
+  }
+
+  OutputKeysCapture<T> modifiedBy(StepModifiers modifiers) {
+    return new OutputKeysCapture<>(inputKeys, outputKey, modifiers);
   }
 
   /**
@@ -29,7 +82,17 @@ public final class OutputKeysCapture<T> {
    * @return The constructed Flow.
    */
   public Flow<T> using(Operation<T> operation) {
-    return SingleOperationFlow.create(inputKeys, outputKey, operation);
+    return SingleOperationFlow.create(inputKeys, outputKey, modifiers.apply(operation));
+  }
+
+  /**
+   * Create a Flow which processes the captured input keys using the given AsyncOperation, and writes the result into the capture output key.
+   *
+   * @param operation The AsyncOperation to use to obtain the output value.
+   * @return The constructed Flow.
+   */
+  public Flow<T> using(AsyncOperation<T> operation) {
+    return using(Operations.fromAsync(operation));
   }
 
   /**
@@ -3,6 +3,10 @@ package com.codepoetics.fluvius.flows;
 import com.codepoetics.fluvius.api.Flow;
 import com.codepoetics.fluvius.api.functional.DoubleParameterStep;
 import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.resilience.HedgePolicy;
+import com.codepoetics.fluvius.resilience.RetryPolicy;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * The stage in the fluent API where we have captured the target key and two source keys of a Flow.
@@ -15,11 +19,56 @@ public final class SourceTargetCapture2<A, B, OUTPUT> {
   private final Key<A> sourceA;
   private final Key<B> sourceB;
   private final Key<OUTPUT> target;
+  private final StepModifiers modifiers;
 
   SourceTargetCapture2(Key<A> sourceA, Key<B> sourceB, Key<OUTPUT> target) {
+    this(sourceA, sourceB, target, StepModifiers.NONE);
+  }
+
+  private SourceTargetCapture2(Key<A> sourceA, Key<B> sourceB, Key<OUTPUT> target, StepModifiers modifiers) {
     this.sourceA = sourceA;
     this.sourceB = sourceB;
     this.target = target;
+    this.modifiers = modifiers;
+  }
+
+  /**
+   * Limit the time the Flow's function may take. If it does not complete in time, a
+   * {@link com.codepoetics.fluvius.exceptions.StepTimeoutException} is recorded against the target key, so that the failure
+   * can be handled with {@link Flow#branchOnResult()}.
+   *
+   * @param timeout The time the function is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return The stage in the fluent API at which the function is supplied.
+   */
+  public SourceTargetCapture2<A, B, OUTPUT> withTimeout(long timeout, TimeUnit unit) {
+    return new SourceTargetCapture2<>(sourceA, sourceB, target, modifiers.withTimeout(timeout, unit));
+  }
+
+  /**
+   * Retry the Flow's function according to the supplied policy. Each attempt which fails with a retryable failure is followed
+   * by another, until one succeeds or the policy's attempts are exhausted, and the last attempt's outcome is recorded against
+   * the target key. The step runs synchronously, backing off on the thread running it, even when the flow is run asynchronously
+   * or in a batch.
+   *
+   * @param retryPolicy The policy for retrying failed attempts.
+   * @return The stage in the fluent API at which the function is supplied.
+   */
+  public SourceTargetCapture2<A, B, OUTPUT> withRetry(RetryPolicy retryPolicy) {
+    return new SourceTargetCapture2<>(sourceA, sourceB, target, modifiers.withRetry(retryPolicy));
+  }
+
+  /**
+   * Hedge the Flow's function according to the supplied policy. If an attempt has not completed when the policy's delay has
+   * passed, a duplicate attempt is started, and the result of whichever attempt succeeds first is used. The first attempt
+   * runs on the thread running the step, and is interrupted if the duplicate succeeds first. The step runs synchronously,
+   * even when the flow is run asynchronously or in a batch.
+   *
+   * @param hedgePolicy The policy for hedging slow attempts.
+   * @return The stage in the fluent API at which the function is supplied.
+   */
+  public SourceTargetCapture2<A, B, OUTPUT> withHedging(HedgePolicy hedgePolicy) {
+    return new SourceTargetCapture2<>(sourceA, sourceB, target, modifiers.withHedging(hedgePolicy));
   }
 
   /**
@@ -30,7 +79,7 @@ public final class SourceTargetCapture2<A, B, OUTPUT> {
    * @return The constructed Flow.
    */
   public Flow<OUTPUT> using(String name, DoubleParameterStep<A, B, OUTPUT> doubleParameterStep) {
-    return Fluent.inputKeysCapture(sourceA, sourceB).to(target).using(
+    return Fluent.inputKeysCapture(sourceA, sourceB).to(target).modifiedBy(modifiers).using(
         name,
         Extractors.make(sourceA, sourceB, doubleParameterStep));
   }
@@ -3,6 +3,10 @@ package com.codepoetics.fluvius.flows;
 import com.codepoetics.fluvius.api.Flow;
 import com.codepoetics.fluvius.api.functional.TripleParameterStep;
 import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.resilience.HedgePolicy;
+import com.codepoetics.fluvius.resilience.RetryPolicy;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * The stage in the fluent API where we have captured the target key and three source keys of a Flow.
@@ -17,12 +21,57 @@ public final class SourceTargetCapture3<A, B, C, OUTPUT> {
   private final Key<B> sourceB;
   private final Key<C> sourceC;
   private final Key<OUTPUT> target;
+  private final StepModifiers modifiers;
 
   SourceTargetCapture3(Key<A> sourceA, Key<B> sourceB, Key<C> sourceC, Key<OUTPUT> target) {
+    this(sourceA, sourceB, sourceC, target, StepModifiers.NONE);
+  }
+
+  private SourceTargetCapture3(Key<A> sourceA, Key<B> sourceB, Key<C> sourceC, Key<OUTPUT> target, StepModifiers modifiers) {
     this.sourceA = sourceA;
     this.sourceB = sourceB;
     this.sourceC = sourceC;
     this.target = target;
+    this.modifiers = modifiers;
+  }
+
+  /**
+   * Limit the time the Flow's function may take. If it does not complete in time, a
+   * {@link com.codepoetics.fluvius.exceptions.StepTimeoutException} is recorded against the target key, so that the failure
+   * can be handled with {@link Flow#branchOnResult()}.
+   *
+   * @param timeout The time the function is allowed to take.
+   * @param unit The unit in which the timeout is given.
+   * @return The stage in the fluent API at which the function is supplied.
+   */
+  public SourceTargetCapture3<A, B, C, OUTPUT> withTimeout(long timeout, TimeUnit unit) {
+    return new SourceTargetCapture3<>(sourceA, sourceB, sourceC, target, modifiers.withTimeout(timeout, unit));
+  }
+
+  /**
+   * Retry the Flow's function according to the supplied policy. Each attempt which fails with a retryable failure is followed
+   * by another, until one succeeds or the policy's attempts are exhausted, and the last attempt's outcome is recorded against
+   * the target key. The step runs synchronously, backing off on the thread running it, even when the flow is run asynchronously
+   * or in a batch.
+   *
+   * @param retryPolicy The policy for retrying failed attempts.
+   * @return The stage in the fluent API at which the function is supplied.
+   */
+  public SourceTargetCapture3<A, B, C, OUTPUT> withRetry(RetryPolicy retryPolicy) {
+    return new SourceTargetCapture3<>(sourceA, sourceB, sourceC, target, modifiers.withRetry(retryPolicy));
+  }
+
+  /**
+   * Hedge the Flow's function according to the supplied policy. If an attempt has not completed when the policy's delay has
+   * passed, a duplicate attempt is started, and the result of whichever attempt succeeds first is used. The first attempt
+   * runs on the thread running the step, and is interrupted if the duplicate succeeds first. The step runs synchronously,
+   * even when the flow is run asynchronously or in a batch.
+   *
+   * @param hedgePolicy The policy for hedging slow attempts.
+   * @return The stage in the fluent API at which the function is supplied.
+   */
+  public SourceTargetCapture3<A, B, C, OUTPUT> withHedging(HedgePolicy hedgePolicy) {
+    return new SourceTargetCapture3<>(sourceA, sourceB, sourceC, target, modifiers.withHedging(hedgePolicy));
   }
 
   /**
@@ -33,7 +82,7 @@ public final class SourceTargetCapture3<A, B, C, OUTPUT> {
    * @return The constructed Flow.
    */
   public Flow<OUTPUT> using(String name, TripleParameterStep<A, B, C, OUTPUT> tripleParameterStep) {
-    return Fluent.inputKeysCapture(sourceA, sourceB, sourceC).to(target).using(
+    return Fluent.inputKeysCapture(sourceA, sourceB, sourceC).to(target).modifiedBy(modifiers).using(
         name,
         Extractors.make(sourceA, sourceB, sourceC, tripleParameterStep));
   }
@@ -0,0 +1,50 @@
+package com.codepoetics.fluvius.flows;
+
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.operations.Operations;
+import com.codepoetics.fluvius.resilience.HedgePolicy;
+import com.codepoetics.fluvius.resilience.ResilientOperation;
+import com.codepoetics.fluvius.resilience.RetryPolicy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timeout, retry policy and hedge policy captured by the fluent API for a single step, applied to the step's operation
+ * once it is supplied. The timeout applies to each attempt.
+ */
+final class StepModifiers {
+
+  static final StepModifiers NONE = new StepModifiers(0, null, null, null);
+
+  private final long timeout;
+  private final TimeUnit timeoutUnit;
+  private final RetryPolicy retryPolicy;
+  private final HedgePolicy hedgePolicy;
+
+  private StepModifiers(long timeout, TimeUnit timeoutUnit, RetryPolicy retryPolicy, HedgePolicy hedgePolicy) {
+    this.timeout = timeout;
+    this.timeoutUnit = timeoutUnit;
+    this.retryPolicy = retryPolicy;
+    this.hedgePolicy = hedgePolicy;
+  }
+
+  StepModifiers withTimeout(long timeout, TimeUnit unit) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    return new StepModifiers(timeout, unit, retryPolicy, hedgePolicy);
+  }
+
+  StepModifiers withRetry(RetryPolicy retryPolicy) {
+    return new StepModifiers(timeout, timeoutUnit, retryPolicy, hedgePolicy);
+  }
+
+  StepModifiers withHedging(HedgePolicy hedgePolicy) {
+    return new StepModifiers(timeout, timeoutUnit, retryPolicy, hedgePolicy);
+  }
+
+  <T> Operation<T> apply(Operation<T> operation) {
+    Operation<T> timed = timeoutUnit == null ? operation : Operations.withTimeout(operation, timeout, timeoutUnit);
+    return retryPolicy == null && hedgePolicy == null ? timed : ResilientOperation.of(timed, retryPolicy, hedgePolicy);
+  }
+}
@@ -0,0 +1,278 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.BatchFlowEventStore;
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.FlowEventStore;
+import com.codepoetics.fluvius.api.history.LossyFlowEventStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link FlowEventStore} which places events on a bounded, lock-free queue, from which a background thread writes them in
+ * batches to another store, so that flows are not slowed down by a slow store.
+ * <p>
+ * If the wrapped store is a {@link BatchFlowEventStore}, each batch is written with a single call to
+ * {@link BatchFlowEventStore#storeEvents(List)}. What happens to events which arrive when the queue is full is
+ * determined by the store's {@link OverflowPolicy}.
+ * </p>
+ *
+ * @param <T> The type to which the flow events' data is serialised.
+ */
+public final class AsyncFlowEventStore<T> implements BatchFlowEventStore<T>, LossyFlowEventStore<T>, AutoCloseable {
+
+  /**
+   * The interval at which overflowing events are kept under {@link OverflowPolicy#SAMPLE}.
+   */
+  public static final int SAMPLE_INTERVAL = 16;
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /**
+   * Create a store which writes events asynchronously to the supplied store, starting its background writer thread.
+   *
+   * @param store The store to write events to.
+   * @param capacity The maximum number of events which may be waiting to be written.
+   * @param maxBatchSize The maximum number of events to write in a single batch.
+   * @param overflowPolicy What to do with events which arrive when the queue is full.
+   * @param <T> The type to which the flow events' data is serialised.
+   * @return The constructed store.
+   */
+  public static <T> AsyncFlowEventStore<T> create(FlowEventStore<T> store, int capacity, int maxBatchSize, OverflowPolicy overflowPolicy) {
+    if (capacity < 1 || maxBatchSize < 1) {
+      throw new IllegalArgumentException("Capacity and maximum batch size must both be positive");
+    }
+
+    AsyncFlowEventStore<T> asyncStore = new AsyncFlowEventStore<>(store, new RingBuffer<FlowEvent<T>>(capacity), maxBatchSize, overflowPolicy);
+    asyncStore.writerThread.start();
+    return asyncStore;
+  }
+
+  private final FlowEventStore<T> store;
+  private final RingBuffer<FlowEvent<T>> queue;
+  private final int maxBatchSize;
+  private final OverflowPolicy overflowPolicy;
+  private final Thread writerThread;
+
+  private final AtomicLong enqueuedCount = new AtomicLong();
+  private final AtomicLong overflowCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong failedWriteCount = new AtomicLong();
+  private final AtomicInteger producersInFlight = new AtomicInteger();
+  private volatile long writtenCount;
+  private volatile boolean writerIdle;
+  private volatile boolean closed;
+
+  private AsyncFlowEventStore(FlowEventStore<T> store, RingBuffer<FlowEvent<T>> queue, int maxBatchSize, OverflowPolicy overflowPolicy) {
+    this.store = store;
+    this.queue = queue;
+    this.maxBatchSize = maxBatchSize;
+    this.overflowPolicy = overflowPolicy;
+    this.writerThread = new Thread(new Writer(), "fluvius-event-writer");
+    this.writerThread.setDaemon(true);
+  }
+
+  @Override
+  public void storeEvent(FlowEvent<T> event) {
+    // Registering before checking whether the store is closed means that either this call sees the store closed, or the
+    // writer sees this call in flight and does not stop until it has drained whatever it enqueued.
+    producersInFlight.incrementAndGet();
+    try {
+      if (closed) {
+        throw new IllegalStateException("Event store has been closed");
+      }
+
+      if (!queue.offer(event) && !handleOverflow(event)) {
+        droppedCount.incrementAndGet();
+        return;
+      }
+
+      enqueuedCount.incrementAndGet();
+    } finally {
+      producersInFlight.decrementAndGet();
+    }
+
+    if (writerIdle) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  @Override
+  public void storeEvents(List<FlowEvent<T>> events) {
+    for (FlowEvent<T> event : events) {
+      storeEvent(event);
+    }
+  }
+
+  private boolean handleOverflow(FlowEvent<T> event) {
+    long overflows = overflowCount.incrementAndGet();
+    switch (overflowPolicy) {
+      case DROP:
+        return false;
+      case SAMPLE:
+        return overflows % SAMPLE_INTERVAL == 0 && waitToOffer(event);
+      default:
+        return waitToOffer(event);
+    }
+  }
+
+  private boolean waitToOffer(FlowEvent<T> event) {
+    // The writer keeps draining the queue until no call is in flight, even once the store has been closed.
+    while (!queue.offer(event)) {
+      if (!writerThread.isAlive()) {
+        return false;
+      }
+      LockSupport.unpark(writerThread);
+      LockSupport.parkNanos(FULL_PARK_NANOS);
+    }
+    return true;
+  }
+
+  /**
+   * Retrieve the events stored for a flow, after waiting for all events queued so far to be written.
+   *
+   * @param flowId The id of the flow to retrieve events for.
+   * @return The events stored for the requested flow.
+   */
+  @Override
+  public List<FlowEvent<T>> retrieveEvents(UUID flowId) {
+    flush();
+    return store.retrieveEvents(flowId);
+  }
+
+  /**
+   * Wait until all events queued so far have been written to the wrapped store.
+   */
+  public void flush() {
+    long target = enqueuedCount.get();
+    while (writtenCount < target && writerThread.isAlive()) {
+      LockSupport.unpark(writerThread);
+      LockSupport.parkNanos(FULL_PARK_NANOS);
+    }
+  }
+
+  /**
+   * Stop accepting events, write all queued events to the wrapped store, and stop the background writer thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Get the number of events currently waiting to be written.
+   *
+   * @return The number of events currently waiting to be written.
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Get the maximum number of events which may be waiting to be written.
+   *
+   * @return The capacity of the queue.
+   */
+  public int getQueueCapacity() {
+    return queue.capacity();
+  }
+
+  /**
+   * Get the number of events which have been dropped because the queue was full.
+   *
+   * @return The number of events dropped.
+   */
+  public long getDroppedEventCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Get a count which increases whenever events are dropped, the wrapped store fails to write a batch, or the wrapped store
+   * (if it is itself a {@link LossyFlowEventStore}) discards events.
+   *
+   * @return The number of times events have been discarded.
+   */
+  @Override
+  public long getDiscardCount() {
+    long discards = droppedCount.get() + failedWriteCount.get();
+    return store instanceof LossyFlowEventStore
+        ? discards + ((LossyFlowEventStore<T>) store).getDiscardCount()
+        : discards;
+  }
+
+  /**
+   * Get the number of events which have been written to the wrapped store (including those in batches which the store failed to write).
+   *
+   * @return The number of events written.
+   */
+  public long getWrittenEventCount() {
+    return writtenCount;
+  }
+
+  /**
+   * Get the number of batches which the wrapped store failed to write.
+   *
+   * @return The number of failed writes.
+   */
+  public long getFailedWriteCount() {
+    return failedWriteCount.get();
+  }
+
+  private final class Writer implements Runnable {
+    private final List<FlowEvent<T>> batch = new ArrayList<>();
+
+    @Override
+    public void run() {
+      while (true) {
+        // Once the store is closed and no call is part-way through enqueueing an event, nothing more can be enqueued, so a
+        // drain which finds the queue empty is the last.
+        boolean wasClosed = closed && producersInFlight.get() == 0;
+        int drained = queue.drainTo(batch, maxBatchSize);
+
+        if (drained > 0) {
+          write();
+          continue;
+        }
+
+        if (wasClosed) {
+          return;
+        }
+
+        writerIdle = true;
+        if (queue.size() == 0 && !closed) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        writerIdle = false;
+      }
+    }
+
+    private void write() {
+      try {
+        if (store instanceof BatchFlowEventStore) {
+          // The batch list is reused for the next batch, so the wrapped store is given its own copy.
+          ((BatchFlowEventStore<T>) store).storeEvents(new ArrayList<>(batch));
+        } else {
+          for (FlowEvent<T> event : batch) {
+            store.storeEvent(event);
+          }
+        }
+      } catch (RuntimeException e) {
+        failedWriteCount.incrementAndGet();
+      }
+      writtenCount += batch.size();
+      batch.clear();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.EventDataSerialiser;
+import com.codepoetics.fluvius.exceptions.FlowEventStoreException;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link EventDataSerialiser} which serialises values to a compact binary representation: a type tag, followed by the
+ * value as written by the {@link ValueCodec} registered for its type.
+ * <p>
+ * Codecs are provided for strings, boxed integers, longs, doubles and booleans, and byte arrays. Values of other types are
+ * written using Java serialisation if they are {@link Serializable}, and as their string representations otherwise, unless
+ * a codec has been registered for their class with {@link #withValueCodec(int, Class, ValueCodec)}. Exceptions are written
+ * as their class name and message.
+ * </p>
+ * <p>
+ * The format is both smaller and faster to write than JSON: values take a fraction of the space of their JSON
+ * representation, and in {@code EventEncodingBenchmark} a scratchpad of 10 or 100 keys is serialised and encoded in less
+ * than half the time, and with about a quarter of the allocation, that it takes as a JSON tree. Strings, integers and
+ * longs are written straight into an array of exactly the right size; other values are written to a reusable per-thread
+ * buffer and copied out, which costs an extra copy.
+ * </p>
+ */
+public final class BinaryEventDataSerialiser implements EventDataSerialiser<byte[]> {
+
+  /**
+   * The lowest tag which may be used for a registered {@link ValueCodec}; lower tags are reserved for the built-in codecs.
+   */
+  public static final int FIRST_CUSTOM_TAG = 16;
+
+  private static final int NULL_TAG = 0;
+  private static final int EXCEPTION_TAG = 7;
+  private static final int SERIALIZABLE_TAG = 8;
+
+  private static final TaggedCodec<String> STRING = new TaggedCodec<String>(1, ValueCodecs.strings()) {
+    @Override
+    byte[] toByteArray(String value) {
+      byte[] utf8 = BinaryFormat.toUtf8(value);
+      byte[] result = new byte[1 + BinaryFormat.varLongSize(utf8.length) + utf8.length];
+      int offset = BinaryFormat.putVarLong(1, result, 0);
+      offset = BinaryFormat.putVarLong(utf8.length, result, offset);
+      System.arraycopy(utf8, 0, result, offset, utf8.length);
+      return result;
+    }
+  };
+
+  private static final TaggedCodec<Integer> INTEGER = new TaggedCodec<Integer>(2, ValueCodecs.integers()) {
+    @Override
+    byte[] toByteArray(Integer value) {
+      return taggedSignedVarLong(2, value);
+    }
+  };
+
+  private static final TaggedCodec<Long> LONG = new TaggedCodec<Long>(3, ValueCodecs.longs()) {
+    @Override
+    byte[] toByteArray(Long value) {
+      return taggedSignedVarLong(3, value);
+    }
+  };
+
+  private static byte[] taggedSignedVarLong(int tag, long value) {
+    long encoded = BinaryFormat.zigZag(value);
+    byte[] result = new byte[1 + BinaryFormat.varLongSize(encoded)];
+    BinaryFormat.putVarLong(encoded, result, BinaryFormat.putVarLong(tag, result, 0));
+    return result;
+  }
+
+  private static final BinaryEventDataSerialiser DEFAULT = new BinaryEventDataSerialiser(new HashMap<Class<?>, TaggedCodec<?>>(), new HashMap<Integer, TaggedCodec<?>>())
+      .register(String.class, STRING)
+      .register(Integer.class, INTEGER)
+      .register(Long.class, LONG)
+      .register(Double.class, new TaggedCodec<>(4, ValueCodecs.doubles()))
+      .register(Boolean.class, new TaggedCodec<>(5, ValueCodecs.booleans()))
+      .register(byte[].class, new TaggedCodec<>(6, ValueCodecs.bytes()));
+
+  /**
+   * Obtain a serialiser using the built-in value codecs.
+   *
+   * @return The serialiser.
+   */
+  public static BinaryEventDataSerialiser create() {
+    return DEFAULT;
+  }
+
+  private final Map<Class<?>, TaggedCodec<?>> codecsByType;
+  private final Map<Integer, TaggedCodec<?>> codecsByTag;
+
+  private BinaryEventDataSerialiser(Map<Class<?>, TaggedCodec<?>> codecsByType, Map<Integer, TaggedCodec<?>> codecsByTag) {
+    this.codecsByType = codecsByType;
+    this.codecsByTag = codecsByTag;
+  }
+
+  /**
+   * Create a serialiser which also uses the supplied codec to serialise values of the supplied class.
+   *
+   * @param tag The tag which identifies values written by the codec. It must be at least {@link #FIRST_CUSTOM_TAG}, and must
+   *            not change once values have been stored.
+   * @param type The class of values to write using the codec.
+   * @param codec The codec to use.
+   * @param <V> The type of values written by the codec.
+   * @return The constructed serialiser.
+   */
+  public <V> BinaryEventDataSerialiser withValueCodec(int tag, Class<V> type, ValueCodec<V> codec) {
+    if (tag < FIRST_CUSTOM_TAG) {
+      throw new IllegalArgumentException("Tags below " + FIRST_CUSTOM_TAG + " are reserved");
+    }
+    if (codecsByTag.containsKey(tag)) {
+      throw new IllegalArgumentException("Tag " + tag + " is already in use");
+    }
+    return new BinaryEventDataSerialiser(new HashMap<>(codecsByType), new HashMap<>(codecsByTag))
+        .register(type, new TaggedCodec<>(tag, codec));
+  }
+
+  private BinaryEventDataSerialiser register(Class<?> type, TaggedCodec<?> codec) {
+    codecsByType.put(type, codec);
+    codecsByTag.put(codec.tag, codec);
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public byte[] serialise(Object value) {
+    if (value == null) {
+      return new byte[] { NULL_TAG };
+    }
+
+    try {
+      TaggedCodec<Object> codec = (TaggedCodec<Object>) codecsByType.get(value.getClass());
+      if (codec != null) {
+        return codec.toByteArray(value);
+      }
+      if (!(value instanceof Serializable)) {
+        return STRING.toByteArray(value.toString());
+      }
+    } catch (IOException e) {
+      throw new FlowEventStoreException("Unable to serialise value", e);
+    }
+
+    ByteSink bytes = ByteSink.acquire();
+    try {
+      writeSerializable(value, bytes.asDataOutput());
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new FlowEventStoreException("Unable to serialise value", e);
+    } finally {
+      bytes.release();
+    }
+  }
+
+  @Override
+  public byte[] serialiseException(Exception exception) {
+    ByteSink bytes = ByteSink.acquire();
+    DataOutputStream output = bytes.asDataOutput();
+
+    try {
+      BinaryFormat.writeVarInt(EXCEPTION_TAG, output);
+      BinaryFormat.writeString(exception.getClass().getName(), output);
+      BinaryFormat.writeString(String.valueOf(exception.getMessage()), output);
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new FlowEventStoreException("Unable to serialise exception", e);
+    } finally {
+      bytes.release();
+    }
+  }
+
+  /**
+   * Read a value back from its serialised form. Exceptions are read back as a string giving their class name and message.
+   *
+   * @param data The serialised value.
+   * @return The value.
+   */
+  public Object deserialise(byte[] data) {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+
+    try {
+      int tag = BinaryFormat.readVarInt(input);
+      switch (tag) {
+        case NULL_TAG:
+          return null;
+        case EXCEPTION_TAG:
+          return BinaryFormat.readString(input) + ": " + BinaryFormat.readString(input);
+        case SERIALIZABLE_TAG:
+          return readSerializable(input);
+        default:
+          TaggedCodec<?> codec = codecsByTag.get(tag);
+          if (codec == null) {
+            throw new IOException("No value codec registered for tag " + tag);
+          }
+          return codec.codec.read(input);
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new FlowEventStoreException("Unable to deserialise value", e);
+    }
+  }
+
+  private static void writeSerializable(Object value, DataOutput output) throws IOException {
+    BinaryFormat.writeVarInt(SERIALIZABLE_TAG, output);
+    ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+    try (ObjectOutputStream objectOutput = new ObjectOutputStream(serialised)) {
+      objectOutput.writeObject(value);
+    }
+    BinaryFormat.writeBytes(serialised.toByteArray(), output);
+  }
+
+  private static Object readSerializable(DataInput input) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(BinaryFormat.readBytes(input)))) {
+      return objectInput.readObject();
+    }
+  }
+
+  private static class TaggedCodec<V> {
+    private final int tag;
+    private final ValueCodec<V> codec;
+
+    private TaggedCodec(int tag, ValueCodec<V> codec) {
+      this.tag = tag;
+      this.codec = codec;
+    }
+
+    byte[] toByteArray(V value) throws IOException {
+      ByteSink bytes = ByteSink.acquire();
+      try {
+        DataOutputStream output = bytes.asDataOutput();
+        BinaryFormat.writeVarInt(tag, output);
+        codec.write(value, output);
+        return bytes.toByteArray();
+      } finally {
+        bytes.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.codepoetics.fluvius.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Reads and writes the variable-length integers and strings used by the compact binary encodings.
+ */
+final class BinaryFormat {
+
+  private BinaryFormat() {
+  }
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  static void writeVarLong(long value, DataOutput output) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      output.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+
+  static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      size++;
+      value >>>= 7;
+    }
+    return size;
+  }
+
+  /**
+   * Write a variable-length integer directly into an array which is known to be large enough to hold it.
+   *
+   * @return The offset just past the integer.
+   */
+  static int putVarLong(long value, byte[] target, int offset) {
+    while ((value & ~0x7FL) != 0) {
+      target[offset++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    target[offset++] = (byte) value;
+    return offset;
+  }
+
+  static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long readVarLong(DataInput input) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = input.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer");
+  }
+
+  static void writeVarInt(int value, DataOutput output) throws IOException {
+    writeVarLong(value & 0xFFFFFFFFL, output);
+  }
+
+  static int readVarInt(DataInput input) throws IOException {
+    return (int) readVarLong(input);
+  }
+
+  static void writeSignedVarLong(long value, DataOutput output) throws IOException {
+    writeVarLong(zigZag(value), output);
+  }
+
+  static long readSignedVarLong(DataInput input) throws IOException {
+    long encoded = readVarLong(input);
+    return (encoded >>> 1) ^ -(encoded & 1);
+  }
+
+  static void writeBytes(byte[] bytes, DataOutput output) throws IOException {
+    writeVarInt(bytes.length, output);
+    output.write(bytes);
+  }
+
+  static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[readVarInt(input)];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  static void writeString(String value, DataOutput output) throws IOException {
+    writeBytes(value.getBytes(UTF_8), output);
+  }
+
+  static byte[] toUtf8(String value) {
+    return value.getBytes(UTF_8);
+  }
+
+  static String readString(DataInput input) throws IOException {
+    return new String(readBytes(input), UTF_8);
+  }
+}
@@ -0,0 +1,86 @@
+package com.codepoetics.fluvius.history;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An unsynchronised, reusable in-memory byte buffer for the binary encoders, which (unlike {@link java.io.ByteArrayOutputStream})
+ * does not take a lock on every byte written.
+ */
+final class ByteSink extends OutputStream {
+
+  private static final ThreadLocal<ByteSink> perThread = new ThreadLocal<ByteSink>() {
+    @Override
+    protected ByteSink initialValue() {
+      return new ByteSink();
+    }
+  };
+
+  /**
+   * Obtain the current thread's sink, emptied, or a new sink if the current thread's sink is already in use (for example,
+   * by a value codec which serialises nested values). The sink must be released when the caller has finished with it.
+   *
+   * @return The sink.
+   */
+  static ByteSink acquire() {
+    ByteSink sink = perThread.get();
+    if (sink.inUse) {
+      return new ByteSink();
+    }
+    sink.inUse = true;
+    sink.reset();
+    return sink;
+  }
+
+  /**
+   * Return the sink to its thread, so that it can be reused.
+   */
+  void release() {
+    inUse = false;
+  }
+
+  private final DataOutputStream dataOutput = new DataOutputStream(this);
+  private byte[] bytes = new byte[256];
+  private int size;
+  private boolean inUse;
+
+  DataOutputStream asDataOutput() {
+    return dataOutput;
+  }
+
+  void reset() {
+    size = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  byte[] bytes() {
+    return bytes;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(bytes, size);
+  }
+
+  private void ensureCapacity(int required) {
+    if (required > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+    }
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(size + 1);
+    bytes[size++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] source, int offset, int length) {
+    ensureCapacity(size + length);
+    System.arraycopy(source, offset, bytes, size, length);
+    size += length;
+  }
+}
@@ -0,0 +1,146 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.StepFailedEvent;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
+import com.codepoetics.fluvius.api.history.StepSucceededEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A {@link FlowEventCodec} for events whose data has been serialised to bytes, for example by a
+ * {@link BinaryEventDataSerialiser}, which writes them as compactly as possible.
+ * <p>
+ * Ids are written as 16 raw bytes and timestamps as variable-length integers. Scratchpad key names which appear in the
+ * codec's dictionary are written as their (variable-length) index in it, and other names are written in full. Events must
+ * be decoded by a codec with the same dictionary as the one which encoded them, so names should only ever be added to the
+ * end of a dictionary whose events have been stored.
+ * </p>
+ */
+public final class CompactFlowEventCodec implements FlowEventCodec<byte[]> {
+
+  private static final CompactFlowEventCodec WITHOUT_DICTIONARY = new CompactFlowEventCodec(new String[0], Collections.<String, Integer>emptyMap());
+
+  /**
+   * Obtain a codec with no dictionary, which writes all key names in full.
+   *
+   * @return The codec.
+   */
+  public static CompactFlowEventCodec create() {
+    return WITHOUT_DICTIONARY;
+  }
+
+  /**
+   * Create a codec which writes the supplied key names as their index in the supplied list.
+   *
+   * @param keyNames The dictionary of key names.
+   * @return The constructed codec.
+   */
+  public static CompactFlowEventCodec withKeyNames(List<String> keyNames) {
+    String[] names = keyNames.toArray(new String[keyNames.size()]);
+    Map<String, Integer> indices = new HashMap<>(names.length * 2);
+    for (int i = 0; i < names.length; i++) {
+      if (indices.put(names[i], i) != null) {
+        throw new IllegalArgumentException("Key name " + names[i] + " appears more than once in dictionary");
+      }
+    }
+    return new CompactFlowEventCodec(names, indices);
+  }
+
+  private static final byte STARTED = 0;
+  private static final byte STARTED_DELTA = 1;
+  private static final byte SUCCEEDED = 2;
+  private static final byte FAILED = 3;
+
+  private final String[] names;
+  private final Map<String, Integer> indices;
+
+  private CompactFlowEventCodec(String[] names, Map<String, Integer> indices) {
+    this.names = names;
+    this.indices = indices;
+  }
+
+  @Override
+  public void encode(FlowEvent<byte[]> event, DataOutput output) throws IOException {
+    if (event instanceof StepStartedEvent) {
+      StepStartedEvent<byte[]> started = (StepStartedEvent<byte[]>) event;
+      writeHeader(started.isDelta() ? STARTED_DELTA : STARTED, event, output);
+
+      Map<String, byte[]> state = started.getScratchpadState();
+      BinaryFormat.writeVarInt(state.size(), output);
+      for (Map.Entry<String, byte[]> entry : state.entrySet()) {
+        writeName(entry.getKey(), output);
+        BinaryFormat.writeBytes(entry.getValue(), output);
+      }
+    } else if (event instanceof StepSucceededEvent) {
+      writeHeader(SUCCEEDED, event, output);
+      BinaryFormat.writeBytes(((StepSucceededEvent<byte[]>) event).getResult(), output);
+    } else {
+      writeHeader(FAILED, event, output);
+      BinaryFormat.writeBytes(((StepFailedEvent<byte[]>) event).getReason(), output);
+    }
+  }
+
+  private static void writeHeader(byte type, FlowEvent<byte[]> event, DataOutput output) throws IOException {
+    output.writeByte(type);
+    writeUuid(event.getFlowId(), output);
+    writeUuid(event.getStepId(), output);
+    BinaryFormat.writeVarLong(event.getTimestamp(), output);
+  }
+
+  private static void writeUuid(UUID uuid, DataOutput output) throws IOException {
+    output.writeLong(uuid.getMostSignificantBits());
+    output.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  private void writeName(String name, DataOutput output) throws IOException {
+    Integer index = indices.get(name);
+    if (index == null) {
+      BinaryFormat.writeVarInt(0, output);
+      BinaryFormat.writeString(name, output);
+    } else {
+      BinaryFormat.writeVarInt(index + 1, output);
+    }
+  }
+
+  @Override
+  public FlowEvent<byte[]> decode(DataInput input) throws IOException {
+    byte type = input.readByte();
+    UUID flowId = new UUID(input.readLong(), input.readLong());
+    UUID stepId = new UUID(input.readLong(), input.readLong());
+    long timestamp = BinaryFormat.readVarLong(input);
+
+    switch (type) {
+      case STARTED:
+      case STARTED_DELTA:
+        int size = BinaryFormat.readVarInt(input);
+        Map<String, byte[]> state = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+          state.put(readName(input), BinaryFormat.readBytes(input));
+        }
+        return type == STARTED
+            ? FlowEvent.started(flowId, stepId, timestamp, state)
+            : FlowEvent.startedDelta(flowId, stepId, timestamp, state);
+      case SUCCEEDED:
+        return FlowEvent.succeeded(flowId, stepId, timestamp, BinaryFormat.readBytes(input));
+      case FAILED:
+        return FlowEvent.failed(flowId, stepId, timestamp, BinaryFormat.readBytes(input));
+      default:
+        throw new IOException("Unrecognised event type " + type);
+    }
+  }
+
+  private String readName(DataInput input) throws IOException {
+    int reference = BinaryFormat.readVarInt(input);
+    if (reference == 0) {
+      return BinaryFormat.readString(input);
+    }
+    if (reference > names.length) {
+      throw new IOException("Key name index " + (reference - 1) + " is not in the dictionary");
+    }
+    return names[reference - 1];
+  }
+}
@@ -18,6 +18,17 @@ public final class EventDataSerialisers {
     return toString;
   }
 
+  /**
+   * Obtain a serialiser which writes values in a compact, tagged binary format, suitable for storage with a
+   * {@link CompactFlowEventCodec}. The format is both smaller and faster to write than JSON: see
+   * {@link BinaryEventDataSerialiser}.
+   *
+   * @return The serialiser.
+   */
+  public static BinaryEventDataSerialiser toBinarySerialiser() {
+    return BinaryEventDataSerialiser.create();
+  }
+
   private static final class ToObjectSerialiser implements EventDataSerialiser<Object> {
     @Override
     public Object serialise(Object value) {
@@ -0,0 +1,17 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+
+/**
+ * Estimates the number of bytes of memory retained by a stored {@link FlowEvent}.
+ */
+public interface EventWeigher {
+
+  /**
+   * Estimate the number of bytes of memory retained by the supplied event.
+   *
+   * @param event The event to weigh.
+   * @return The estimated size of the event, in bytes.
+   */
+  long weigh(FlowEvent<?> event);
+}
@@ -0,0 +1,72 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.FlowEventTranslator;
+import com.codepoetics.fluvius.api.history.StepFailedEvent;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
+import com.codepoetics.fluvius.api.history.StepSucceededEvent;
+
+import java.util.Map;
+
+/**
+ * Utility class providing {@link EventWeigher}s.
+ */
+public final class EventWeighers {
+
+  private EventWeighers() {
+  }
+
+  private static final long EVENT_OVERHEAD = 64;
+  private static final long STRING_OVERHEAD = 40;
+  private static final long ARRAY_OVERHEAD = 16;
+  private static final long REFERENCE_SIZE = 16;
+
+  private static final EventWeigher estimating = new EstimatingWeigher();
+
+  /**
+   * Obtain a weigher which estimates the size of each event from the sizes of its strings and byte arrays, counting any
+   * other data as a single reference.
+   *
+   * @return The weigher.
+   */
+  public static EventWeigher estimating() {
+    return estimating;
+  }
+
+  private static long weighData(Object data) {
+    if (data instanceof CharSequence) {
+      return STRING_OVERHEAD + 2L * ((CharSequence) data).length();
+    }
+    if (data instanceof byte[]) {
+      return ARRAY_OVERHEAD + ((byte[]) data).length;
+    }
+    return REFERENCE_SIZE;
+  }
+
+  private static final class EstimatingWeigher implements EventWeigher, FlowEventTranslator<Object, Long> {
+    @SuppressWarnings("unchecked")
+    @Override
+    public long weigh(FlowEvent<?> event) {
+      return EVENT_OVERHEAD + ((FlowEvent<Object>) event).translate(this);
+    }
+
+    @Override
+    public Long translateStepStartedEvent(StepStartedEvent<Object> event) {
+      long weight = 0;
+      for (Map.Entry<String, Object> entry : event.getScratchpadState().entrySet()) {
+        weight += weighData(entry.getKey()) + weighData(entry.getValue());
+      }
+      return weight;
+    }
+
+    @Override
+    public Long translateStepSucceededEvent(StepSucceededEvent<Object> event) {
+      return weighData(event.getResult());
+    }
+
+    @Override
+    public Long translateStepFailedEvent(StepFailedEvent<Object> event) {
+      return weighData(event.getReason());
+    }
+  }
+}
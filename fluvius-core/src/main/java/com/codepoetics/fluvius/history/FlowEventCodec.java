@@ -0,0 +1,33 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes {@link FlowEvent}s to, and decodes them from, a binary representation.
+ *
+ * @param <T> The type to which the flow events' data is serialised.
+ */
+public interface FlowEventCodec<T> {
+
+  /**
+   * Write the binary representation of an event.
+   *
+   * @param event The event to encode.
+   * @param output The output to write the encoded event to.
+   * @throws IOException If the output cannot be written.
+   */
+  void encode(FlowEvent<T> event, DataOutput output) throws IOException;
+
+  /**
+   * Read an event from its binary representation.
+   *
+   * @param input The input to read the encoded event from.
+   * @return The decoded event.
+   * @throws IOException If the input cannot be read, or does not contain a valid event.
+   */
+  FlowEvent<T> decode(DataInput input) throws IOException;
+}
@@ -0,0 +1,178 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.StepFailedEvent;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
+import com.codepoetics.fluvius.api.history.StepSucceededEvent;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Utility class providing {@link FlowEventCodec}s.
+ */
+public final class FlowEventCodecs {
+
+  private FlowEventCodecs() {
+  }
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final byte STARTED = 0;
+  private static final byte STARTED_DELTA = 1;
+  private static final byte SUCCEEDED = 2;
+  private static final byte FAILED = 3;
+
+  private static final FlowEventCodec<String> strings = new StringCodec();
+  private static final FlowEventCodec<Object> javaSerialising = new JavaSerialisingCodec();
+
+  /**
+   * Obtain a codec for events whose data has been serialised to strings.
+   *
+   * @return The codec.
+   */
+  public static FlowEventCodec<String> strings() {
+    return strings;
+  }
+
+  /**
+   * Obtain a codec for events whose data are objects, which are written using Java serialisation.
+   *
+   * @return The codec.
+   */
+  public static FlowEventCodec<Object> javaSerialising() {
+    return javaSerialising;
+  }
+
+  static void writeString(String value, DataOutput output) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  static String readString(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeUuid(UUID uuid, DataOutput output) throws IOException {
+    output.writeLong(uuid.getMostSignificantBits());
+    output.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  private static UUID readUuid(DataInput input) throws IOException {
+    return new UUID(input.readLong(), input.readLong());
+  }
+
+  /**
+   * Writes the fields common to all events, and delegates the writing of event data to subclasses.
+   */
+  private static abstract class DataCodec<T> implements FlowEventCodec<T> {
+
+    protected abstract void writeData(T data, DataOutput output) throws IOException;
+
+    protected abstract T readData(DataInput input) throws IOException;
+
+    @Override
+    public void encode(FlowEvent<T> event, DataOutput output) throws IOException {
+      if (event instanceof StepStartedEvent) {
+        StepStartedEvent<T> started = (StepStartedEvent<T>) event;
+        writeHeader(started.isDelta() ? STARTED_DELTA : STARTED, event, output);
+
+        Map<String, T> state = started.getScratchpadState();
+        output.writeInt(state.size());
+        for (Map.Entry<String, T> entry : state.entrySet()) {
+          writeString(entry.getKey(), output);
+          writeData(entry.getValue(), output);
+        }
+      } else if (event instanceof StepSucceededEvent) {
+        writeHeader(SUCCEEDED, event, output);
+        writeData(((StepSucceededEvent<T>) event).getResult(), output);
+      } else {
+        writeHeader(FAILED, event, output);
+        writeData(((StepFailedEvent<T>) event).getReason(), output);
+      }
+    }
+
+    private void writeHeader(byte type, FlowEvent<T> event, DataOutput output) throws IOException {
+      output.writeByte(type);
+      writeUuid(event.getFlowId(), output);
+      writeUuid(event.getStepId(), output);
+      output.writeLong(event.getTimestamp());
+    }
+
+    @Override
+    public FlowEvent<T> decode(DataInput input) throws IOException {
+      byte type = input.readByte();
+      UUID flowId = readUuid(input);
+      UUID stepId = readUuid(input);
+      long timestamp = input.readLong();
+
+      switch (type) {
+        case STARTED:
+        case STARTED_DELTA:
+          int size = input.readInt();
+          Map<String, T> state = new LinkedHashMap<>(size * 2);
+          for (int i = 0; i < size; i++) {
+            state.put(readString(input), readData(input));
+          }
+          return type == STARTED
+              ? FlowEvent.started(flowId, stepId, timestamp, state)
+              : FlowEvent.startedDelta(flowId, stepId, timestamp, state);
+        case SUCCEEDED:
+          return FlowEvent.succeeded(flowId, stepId, timestamp, readData(input));
+        case FAILED:
+          return FlowEvent.failed(flowId, stepId, timestamp, readData(input));
+        default:
+          throw new IOException("Unrecognised event type " + type);
+      }
+    }
+  }
+
+  private static final class StringCodec extends DataCodec<String> {
+    @Override
+    protected void writeData(String data, DataOutput output) throws IOException {
+      writeString(data, output);
+    }
+
+    @Override
+    protected String readData(DataInput input) throws IOException {
+      return readString(input);
+    }
+  }
+
+  private static final class JavaSerialisingCodec extends DataCodec<Object> {
+    @Override
+    protected void writeData(Object data, DataOutput output) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+        objectOutput.writeObject(data);
+      }
+      output.writeInt(bytes.size());
+      output.write(bytes.toByteArray());
+    }
+
+    @Override
+    protected Object readData(DataInput input) throws IOException {
+      byte[] bytes = new byte[input.readInt()];
+      input.readFully(bytes);
+      try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+        return objectInput.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Unable to deserialise event data", e);
+      }
+    }
+  }
+}
@@ -21,6 +21,30 @@ public final class FlowEventRepositories {
     return create(InMemoryFlowEventStore.<T>create(), serialiser);
   }
 
+  /**
+   * Create an in-memory {@link FlowEventRepository} using the provided {@link EventDataSerialiser} to serialise flow event data,
+   * which retains flow history according to the provided {@link RetentionPolicy}.
+   *
+   * @param serialiser The serialiser to use to serialise flow event data.
+   * @param retentionPolicy The policy determining how much flow history to retain.
+   * @param <T> The type to which flow event data will be serialised.
+   * @return The constructed flow event repository.
+   */
+  public static <T> FlowEventRepository<T> createInMemory(EventDataSerialiser<T> serialiser, RetentionPolicy retentionPolicy) {
+    return create(InMemoryFlowEventStore.<T>create(retentionPolicy), serialiser);
+  }
+
+  /**
+   * Create an in-memory {@link FlowEventRepository} using the provided {@link EventDataSerialiser} to serialise flow event data,
+   * which records only the scratchpad keys added since the previous step-started event for each flow.
+   *
+   * @param serialiser The serialiser to use to serialise flow event data.
+   * @param <T> The type to which flow event data will be serialised.
+   * @return The constructed flow event repository.
+   */
+  public static <T> FlowEventRepository<T> createInMemoryDelta(EventDataSerialiser<T> serialiser) {
+    return createDelta(InMemoryFlowEventStore.<T>create(), serialiser);
+  }
 
   public static <T> FlowEventRepository<T> create(
       FlowEventStore<T> eventStore,
@@ -28,4 +52,19 @@ public final class FlowEventRepositories {
     return FlowEventRepository.using(eventStore, serialiser);
   }
 
+  /**
+   * Create a {@link FlowEventRepository} writing to the provided {@link FlowEventStore}, which records only the scratchpad keys
+   * added since the previous step-started event for each flow.
+   *
+   * @param eventStore The event store to use to store flow events.
+   * @param serialiser The serialiser to use to serialise flow event data.
+   * @param <T> The type to which flow event data will be serialised.
+   * @return The constructed flow event repository.
+   */
+  public static <T> FlowEventRepository<T> createDelta(
+      FlowEventStore<T> eventStore,
+      EventDataSerialiser<T> serialiser) {
+    return FlowEventRepository.usingDeltas(eventStore, serialiser);
+  }
+
 }
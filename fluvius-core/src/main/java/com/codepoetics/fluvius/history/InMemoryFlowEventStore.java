@@ -1,35 +1,270 @@
 package com.codepoetics.fluvius.history;
 
+import com.codepoetics.fluvius.api.history.BatchFlowEventStore;
 import com.codepoetics.fluvius.api.history.FlowEvent;
 import com.codepoetics.fluvius.api.history.FlowEventStore;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public final class InMemoryFlowEventStore<T> implements FlowEventStore<T> {
+/**
+ * A {@link FlowEventStore} which holds flow events in memory.
+ * <p>
+ * Each flow's events are appended to their own lock-free queue, so that concurrently-running flows never contend with each
+ * other, and reads return a snapshot of the events stored so far. How much history is kept is determined by a
+ * {@link RetentionPolicy}; a flow is considered complete once its first (root) step has succeeded or failed.
+ * </p>
+ *
+ * @param <T> The type to which the flow events' data is serialised.
+ */
+public final class InMemoryFlowEventStore<T> implements BatchFlowEventStore<T> {
 
+  /**
+   * Create a store which retains all flow history.
+   *
+   * @param <T> The type to which the flow events' data is serialised.
+   * @return The constructed store.
+   */
   public static <T> FlowEventStore<T> create() {
-    return new InMemoryFlowEventStore<>();
+    return create(RetentionPolicy.unbounded());
   }
 
-  private final Map<UUID, List<FlowEvent<T>>> store = new HashMap<>();
+  /**
+   * Create a store which retains flow history according to the supplied {@link RetentionPolicy}.
+   *
+   * @param retentionPolicy The policy determining how much history to retain.
+   * @param <T> The type to which the flow events' data is serialised.
+   * @return The constructed store.
+   */
+  public static <T> FlowEventStore<T> create(RetentionPolicy retentionPolicy) {
+    return new InMemoryFlowEventStore<>(retentionPolicy);
+  }
+
+  private final ConcurrentMap<UUID, FlowHistory> histories = new ConcurrentHashMap<>();
+
+  private final RetentionPolicy retentionPolicy;
+  private final boolean weighsEvents;
+  private final boolean tracksAccess;
+  private final boolean evicts;
+
+  private final AtomicLong totalBytes = new AtomicLong();
+  private final AtomicLong accessCounter = new AtomicLong();
+  private final Queue<Access> accessOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger accessOrderSize = new AtomicInteger();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private volatile long nextAgeSweep;
 
-  private InMemoryFlowEventStore() {
+  private InMemoryFlowEventStore(RetentionPolicy retentionPolicy) {
+    this.retentionPolicy = retentionPolicy;
+    this.weighsEvents = retentionPolicy.getMaxTotalBytes() != Long.MAX_VALUE;
+    this.tracksAccess = retentionPolicy.limitsSize();
+    this.evicts = retentionPolicy.limitsSize() || retentionPolicy.limitsAge();
+  }
+
+  @Override
+  public void storeEvents(List<FlowEvent<T>> events) {
+    for (FlowEvent<T> event : events) {
+      storeEvent(event);
+    }
   }
 
   @Override
-  public synchronized void storeEvent(FlowEvent<T> event) {
+  public void storeEvent(FlowEvent<T> event) {
     UUID flowId = event.getFlowId();
-    if (!store.containsKey(flowId)) {
-      store.put(flowId, new ArrayList<FlowEvent<T>>());
+    FlowHistory history = histories.get(flowId);
+    boolean isNewFlow = false;
+
+    if (history == null) {
+      FlowHistory created = new FlowHistory(event.getStepId(), event.getTimestamp());
+      history = histories.putIfAbsent(flowId, created);
+      if (history == null) {
+        history = created;
+        isNewFlow = true;
+      }
+    }
+
+    long weight = weighsEvents ? retentionPolicy.getWeigher().weigh(event) : 0;
+    history.append(event, weight);
+
+    boolean completesFlow = !(event instanceof StepStartedEvent) && event.getStepId().equals(history.rootStepId);
+    if (completesFlow) {
+      history.completed = true;
+      if (isExpired(history, System.currentTimeMillis())) {
+        // The flow outlived the maximum age while it was running, and would be expired by the next sweep.
+        remove(flowId, history);
+        return;
+      }
+      recordAccess(flowId, history);
+    }
+
+    if (evicts && (isNewFlow || completesFlow || weight > 0)) {
+      evictIfNecessary();
     }
-    List<FlowEvent<T>> history = store.get(flowId);
-    history.add(event);
   }
 
+  /**
+   * Retrieve a snapshot of the events stored so far for a flow.
+   *
+   * @param flowId The id of the flow to retrieve events for.
+   * @return An unmodifiable list of the events stored for the requested flow.
+   */
   @Override
-  public synchronized List<FlowEvent<T>> retrieveEvents(UUID flowId) {
-    return store.containsKey(flowId)
-        ? store.get(flowId)
-        : Collections.<FlowEvent<T>>emptyList();
+  public List<FlowEvent<T>> retrieveEvents(UUID flowId) {
+    FlowHistory history = histories.get(flowId);
+    if (history == null) {
+      return Collections.emptyList();
+    }
+
+    if (history.completed) {
+      recordAccess(flowId, history);
+    }
+    return Collections.unmodifiableList(new ArrayList<>(history.events));
+  }
+
+  private void recordAccess(UUID flowId, FlowHistory history) {
+    if (!tracksAccess) {
+      return;
+    }
+
+    long access = accessCounter.incrementAndGet();
+    history.lastAccess = access;
+    accessOrder.add(new Access(flowId, access));
+
+    // Every read of a completed flow leaves a stale entry behind it, so compact the queue if they start to pile up.
+    if (accessOrderSize.incrementAndGet() > 2 * histories.size() + 64) {
+      compactAccessOrder();
+    }
+  }
+
+  private boolean isCurrent(Access access) {
+    FlowHistory history = histories.get(access.flowId);
+    return history != null && history.lastAccess == access.sequence;
+  }
+
+  private void compactAccessOrder() {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      List<Access> current = new ArrayList<>();
+      Access access;
+      while ((access = accessOrder.poll()) != null) {
+        accessOrderSize.decrementAndGet();
+        if (isCurrent(access)) {
+          current.add(access);
+        }
+      }
+      accessOrder.addAll(current);
+      accessOrderSize.addAndGet(current.size());
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  private boolean isOverLimits() {
+    return histories.size() > retentionPolicy.getMaxFlows()
+        || totalBytes.get() > retentionPolicy.getMaxTotalBytes();
+  }
+
+  private void evictIfNecessary() {
+    long now = retentionPolicy.limitsAge() ? System.currentTimeMillis() : 0;
+    boolean ageSweepDue = retentionPolicy.limitsAge() && now >= nextAgeSweep;
+
+    if (!(ageSweepDue || isOverLimits()) || !evicting.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      if (ageSweepDue) {
+        sweepExpiredFlows(now);
+      }
+
+      while (isOverLimits()) {
+        Access access = accessOrder.poll();
+        if (access == null) {
+          return;
+        }
+        accessOrderSize.decrementAndGet();
+
+        if (isCurrent(access)) {
+          remove(access.flowId, histories.get(access.flowId));
+        }
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  private void sweepExpiredFlows(long now) {
+    long maxAge = retentionPolicy.getMaxAgeMillis();
+
+    // Running flows are never expired: a flow which is slow to write its next event has not necessarily been abandoned.
+    for (Map.Entry<UUID, FlowHistory> entry : histories.entrySet()) {
+      FlowHistory history = entry.getValue();
+      if (isExpired(history, now)) {
+        remove(entry.getKey(), history);
+      }
+    }
+
+    nextAgeSweep = now + Math.max(1, maxAge / 8);
+  }
+
+  private boolean isExpired(FlowHistory history, long now) {
+    return history.completed
+        && retentionPolicy.limitsAge()
+        && history.startedAt < now - retentionPolicy.getMaxAgeMillis();
+  }
+
+  private void remove(UUID flowId, FlowHistory history) {
+    if (history != null && histories.remove(flowId, history)) {
+      history.removed = true;
+      totalBytes.addAndGet(-history.bytes.getAndSet(0));
+    }
+  }
+
+  private final class FlowHistory {
+    private final Queue<FlowEvent<T>> events = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final UUID rootStepId;
+    private final long startedAt;
+    private volatile boolean completed;
+    private volatile boolean removed;
+    private volatile long lastAccess;
+
+    private FlowHistory(UUID rootStepId, long startedAt) {
+      this.rootStepId = rootStepId;
+      this.startedAt = startedAt;
+    }
+
+    private void append(FlowEvent<T> event, long weight) {
+      events.add(event);
+
+      if (weight > 0) {
+        totalBytes.addAndGet(weight);
+        bytes.addAndGet(weight);
+
+        // If the flow was evicted while we were appending to it, give back whatever the eviction did not reclaim.
+        if (removed) {
+          totalBytes.addAndGet(-bytes.getAndSet(0));
+        }
+      }
+    }
+  }
+
+  private static final class Access {
+    private final UUID flowId;
+    private final long sequence;
+
+    private Access(UUID flowId, long sequence) {
+      this.flowId = flowId;
+      this.sequence = sequence;
+    }
   }
 }
@@ -0,0 +1,484 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.BatchFlowEventStore;
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.LossyFlowEventStore;
+import com.codepoetics.fluvius.exceptions.FlowEventStoreException;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link com.codepoetics.fluvius.api.history.FlowEventStore} which appends events to memory-mapped segment files in a
+ * directory, so that flow history survives restarts.
+ * <p>
+ * Events are encoded with a {@link FlowEventCodec} and appended sequentially to the current segment; when it is full, a new
+ * segment is started. An in-memory index from flow id to the location of each of the flow's events is rebuilt from the segments
+ * when the store is opened. Whole segments are deleted, oldest first, once there are more of them than the store retains, or
+ * once every event in them is older than the maximum age; expiry is checked when the store is opened or flushed, and
+ * whenever a new segment is started.
+ * </p>
+ * <p>
+ * Writes are serialised, and may be placed behind an {@link AsyncFlowEventStore} to take them off the flow's thread; reads
+ * run concurrently with writes and with each other.
+ * </p>
+ *
+ * @param <T> The type to which the flow events' data is serialised.
+ */
+public final class MappedFileFlowEventStore<T> implements BatchFlowEventStore<T>, LossyFlowEventStore<T>, Closeable {
+
+  /**
+   * Obtain a builder for a store which keeps its segment files in the supplied directory.
+   *
+   * @param directory The directory in which to keep segment files. It will be created if it does not exist.
+   * @return The builder.
+   */
+  public static Builder inDirectory(Path directory) {
+    return new Builder(directory, DEFAULT_SEGMENT_SIZE, Integer.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  // Each record is its length, followed by the flow id and timestamp (so that the index can be rebuilt without decoding the
+  // event), followed by the encoded event. The length is written last, so a record torn by a crash reads as the end of the segment.
+  private static final int RECORD_HEADER_SIZE = 4 + 16 + 8;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".events";
+
+  /**
+   * A fluent builder for specifying the properties of a {@link MappedFileFlowEventStore}.
+   */
+  public static final class Builder {
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long maxAgeMillis;
+
+    private Builder(Path directory, int segmentSize, int maxSegments, long maxAgeMillis) {
+      this.directory = directory;
+      this.segmentSize = segmentSize;
+      this.maxSegments = maxSegments;
+      this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Specifies the size of each segment file.
+     *
+     * @param segmentSize The size of each segment file, in bytes.
+     * @return A builder that will build the store as specified.
+     */
+    public Builder withSegmentSize(int segmentSize) {
+      if (segmentSize <= RECORD_HEADER_SIZE) {
+        throw new IllegalArgumentException("Segment size must be greater than " + RECORD_HEADER_SIZE + " bytes");
+      }
+      return new Builder(directory, segmentSize, maxSegments, maxAgeMillis);
+    }
+
+    /**
+     * Specifies the maximum number of segment files to retain.
+     *
+     * @param maxSegments The maximum number of segment files to retain.
+     * @return A builder that will build the store as specified.
+     */
+    public Builder retainingSegments(int maxSegments) {
+      if (maxSegments < 1) {
+        throw new IllegalArgumentException("Maximum number of segments must be positive");
+      }
+      return new Builder(directory, segmentSize, maxSegments, maxAgeMillis);
+    }
+
+    /**
+     * Specifies that segment files whose events are all older than the supplied age are deleted.
+     *
+     * @param maxAge The maximum age of a retained event.
+     * @param unit The unit in which the maximum age is given.
+     * @return A builder that will build the store as specified.
+     */
+    public Builder retainingFor(long maxAge, TimeUnit unit) {
+      if (maxAge < 1) {
+        throw new IllegalArgumentException("Maximum age must be positive");
+      }
+      return new Builder(directory, segmentSize, maxSegments, unit.toMillis(maxAge));
+    }
+
+    /**
+     * Open the store as specified, rebuilding its index from any existing segment files.
+     *
+     * @param codec The codec to use to encode and decode events.
+     * @param <T> The type to which the flow events' data is serialised.
+     * @return The opened store.
+     */
+    public <T> MappedFileFlowEventStore<T> open(FlowEventCodec<T> codec) {
+      MappedFileFlowEventStore<T> store = new MappedFileFlowEventStore<>(directory, codec, segmentSize, maxSegments, maxAgeMillis);
+      try {
+        store.open();
+      } catch (IOException e) {
+        throw new FlowEventStoreException("Unable to open event store in " + directory, e);
+      }
+      return store;
+    }
+  }
+
+  private final Path directory;
+  private final FlowEventCodec<T> codec;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final long maxAgeMillis;
+
+  private final ConcurrentNavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<UUID, FlowIndex> index = new ConcurrentHashMap<>();
+
+  private final ByteSink encodingBuffer = new ByteSink();
+  private final List<Segment> unforcedSegments = new ArrayList<>();
+  private Segment activeSegment;
+  private boolean closed;
+  private volatile long expiredSegmentCount;
+
+  private MappedFileFlowEventStore(Path directory, FlowEventCodec<T> codec, int segmentSize, int maxSegments, long maxAgeMillis) {
+    this.directory = directory;
+    this.codec = codec;
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  private synchronized void open() throws IOException {
+    Files.createDirectories(directory);
+
+    try (DirectoryStream<Path> segmentFiles = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path segmentFile : segmentFiles) {
+        String fileName = segmentFile.getFileName().toString();
+        int id = Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        segments.put(id, Segment.map(id, segmentFile, Files.size(segmentFile)));
+      }
+    }
+
+    for (Segment segment : segments.values()) {
+      recover(segment);
+    }
+
+    activeSegment = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+    expireSegments();
+  }
+
+  private void recover(Segment segment) {
+    MappedByteBuffer buffer = segment.buffer;
+    int position = 0;
+
+    while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+        break;
+      }
+
+      UUID flowId = new UUID(buffer.getLong(position + 4), buffer.getLong(position + 12));
+      segment.newestTimestamp = Math.max(segment.newestTimestamp, buffer.getLong(position + 20));
+      indexFor(flowId).add(location(segment.id, position));
+      position += RECORD_HEADER_SIZE + length;
+    }
+
+    segment.writePosition = position;
+  }
+
+  @Override
+  public synchronized void storeEvent(FlowEvent<T> event) {
+    checkNotClosed();
+    try {
+      append(event);
+    } catch (IOException e) {
+      throw new FlowEventStoreException("Unable to store event for flow " + event.getFlowId(), e);
+    }
+  }
+
+  @Override
+  public synchronized void storeEvents(List<FlowEvent<T>> events) {
+    checkNotClosed();
+    for (FlowEvent<T> event : events) {
+      try {
+        append(event);
+      } catch (IOException e) {
+        throw new FlowEventStoreException("Unable to store event for flow " + event.getFlowId(), e);
+      }
+    }
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Event store has been closed");
+    }
+  }
+
+  private void append(FlowEvent<T> event) throws IOException {
+    encodingBuffer.reset();
+    codec.encode(event, encodingBuffer.asDataOutput());
+    int length = encodingBuffer.size();
+    int recordSize = RECORD_HEADER_SIZE + length;
+
+    if (recordSize > segmentSize) {
+      throw new IllegalArgumentException("Encoded event of " + length + " bytes is too large for segments of " + segmentSize + " bytes");
+    }
+    if (activeSegment.writePosition + recordSize > activeSegment.buffer.capacity()) {
+      // The outgoing segment is forced at the next flush, rather than holding up this write.
+      unforcedSegments.add(activeSegment);
+      activeSegment = createSegment(activeSegment.id + 1);
+      expireSegments();
+    }
+
+    Segment segment = activeSegment;
+    int position = segment.writePosition;
+    MappedByteBuffer buffer = segment.buffer;
+
+    buffer.putLong(position + 4, event.getFlowId().getMostSignificantBits());
+    buffer.putLong(position + 12, event.getFlowId().getLeastSignificantBits());
+    buffer.putLong(position + 20, event.getTimestamp());
+    // Buffer methods are called through their Java 7 declaring types, which newer JDKs override covariantly.
+    ByteBuffer payload = ((ByteBuffer) buffer).duplicate();
+    ((Buffer) payload).position(position + RECORD_HEADER_SIZE);
+    payload.put(encodingBuffer.bytes(), 0, length);
+    buffer.putInt(position, length);
+
+    segment.writePosition = position + recordSize;
+    segment.newestTimestamp = Math.max(segment.newestTimestamp, event.getTimestamp());
+    indexFor(event.getFlowId()).add(location(segment.id, position));
+  }
+
+  private Segment createSegment(int id) throws IOException {
+    Segment segment = Segment.map(id, directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)), segmentSize);
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private void expireSegments() throws IOException {
+    long oldestRetained = maxAgeMillis == Long.MAX_VALUE ? Long.MIN_VALUE : System.currentTimeMillis() - maxAgeMillis;
+    boolean expired = false;
+
+    while (true) {
+      Segment oldest = segments.firstEntry().getValue();
+      if (oldest == activeSegment || (segments.size() <= maxSegments && oldest.newestTimestamp >= oldestRetained)) {
+        break;
+      }
+
+      segments.remove(oldest.id);
+      unforcedSegments.remove(oldest);
+      Files.deleteIfExists(oldest.path);
+      expiredSegmentCount++;
+      expired = true;
+    }
+
+    if (expired) {
+      pruneIndex(segments.firstKey());
+    }
+  }
+
+  private void pruneIndex(int oldestSegmentId) {
+    long oldestLocation = location(oldestSegmentId, 0);
+    for (Map.Entry<UUID, FlowIndex> entry : index.entrySet()) {
+      FlowIndex pruned = entry.getValue().from(oldestLocation);
+      if (pruned == null) {
+        index.remove(entry.getKey(), entry.getValue());
+      } else if (pruned != entry.getValue()) {
+        index.replace(entry.getKey(), entry.getValue(), pruned);
+      }
+    }
+  }
+
+  private FlowIndex indexFor(UUID flowId) {
+    FlowIndex flowIndex = index.get(flowId);
+    if (flowIndex == null) {
+      flowIndex = new FlowIndex(new long[4], 0);
+      index.put(flowId, flowIndex);
+    }
+    return flowIndex;
+  }
+
+  private static long location(int segmentId, int position) {
+    return ((long) segmentId << 32) | position;
+  }
+
+  @Override
+  public List<FlowEvent<T>> retrieveEvents(UUID flowId) {
+    FlowIndex flowIndex = index.get(flowId);
+    if (flowIndex == null) {
+      return Collections.emptyList();
+    }
+
+    long[] locations = flowIndex.snapshot();
+    List<FlowEvent<T>> events = new ArrayList<>(locations.length);
+    for (long location : locations) {
+      Segment segment = segments.get((int) (location >>> 32));
+      // The segment may have expired since the index was read.
+      if (segment != null) {
+        events.add(read(segment, (int) location));
+      }
+    }
+    return Collections.unmodifiableList(events);
+  }
+
+  private FlowEvent<T> read(Segment segment, int position) {
+    ByteBufferReader reader = new ByteBufferReader(segment.buffer, position + RECORD_HEADER_SIZE, segment.buffer.getInt(position));
+    try {
+      return codec.decode(new DataInputStream(reader));
+    } catch (IOException e) {
+      throw new FlowEventStoreException("Unable to read event from " + segment.path, e);
+    }
+  }
+
+  /**
+   * Write any changes to the current segment, and to any segments which have been filled since the last flush, through to
+   * the storage device, and delete any segments which have expired in the meantime. A store which is not being written to
+   * only expires segments when it is flushed.
+   */
+  public synchronized void flush() {
+    for (Segment segment : unforcedSegments) {
+      segment.buffer.force();
+    }
+    unforcedSegments.clear();
+    activeSegment.buffer.force();
+
+    if (!closed) {
+      try {
+        expireSegments();
+      } catch (IOException e) {
+        throw new FlowEventStoreException("Unable to delete expired segments in " + directory, e);
+      }
+    }
+  }
+
+  /**
+   * Flush any changes to the segments, and stop accepting events.
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      flush();
+      closed = true;
+    }
+  }
+
+  /**
+   * Get the number of segments which have expired, discarding the events in them.
+   *
+   * @return The number of expired segments.
+   */
+  @Override
+  public long getDiscardCount() {
+    return expiredSegmentCount;
+  }
+
+  /**
+   * Get the number of segment files currently retained.
+   *
+   * @return The number of segment files currently retained.
+   */
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  private static final class Segment {
+
+    static Segment map(int id, Path path, long size) throws IOException {
+      try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+        file.setLength(size);
+        // The mapping remains valid after the file is closed.
+        return new Segment(id, path, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+      }
+    }
+
+    private final int id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private volatile int writePosition;
+    private volatile long newestTimestamp = Long.MIN_VALUE;
+
+    private Segment(int id, Path path, MappedByteBuffer buffer) {
+      this.id = id;
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+
+  /**
+   * The locations of a flow's events, appended to by the writer and read concurrently. Publishing the count after the
+   * location (and after the record itself) means that readers never see a location whose record has not been written.
+   */
+  private static final class FlowIndex {
+    private volatile long[] locations;
+    private volatile int count;
+
+    private FlowIndex(long[] locations, int count) {
+      this.locations = locations;
+      this.count = count;
+    }
+
+    void add(long location) {
+      long[] current = locations;
+      if (count == current.length) {
+        current = Arrays.copyOf(current, current.length * 2);
+        locations = current;
+      }
+      current[count] = location;
+      count = count + 1;
+    }
+
+    long[] snapshot() {
+      int snapshotCount = count;
+      return Arrays.copyOf(locations, snapshotCount);
+    }
+
+    FlowIndex from(long oldestLocation) {
+      long[] current = snapshot();
+      int firstRetained = 0;
+      while (firstRetained < current.length && current[firstRetained] < oldestLocation) {
+        firstRetained++;
+      }
+
+      if (firstRetained == 0) {
+        return this;
+      }
+      if (firstRetained == current.length) {
+        return null;
+      }
+      long[] retained = Arrays.copyOfRange(current, firstRetained, Math.max(current.length, 4));
+      return new FlowIndex(retained, current.length - firstRetained);
+    }
+  }
+
+  private static final class ByteBufferReader extends InputStream {
+    private final ByteBuffer source;
+
+    private ByteBufferReader(MappedByteBuffer buffer, int position, int length) {
+      ByteBuffer view = ((ByteBuffer) buffer).duplicate();
+      ((Buffer) view).position(position);
+      ((Buffer) view).limit(position + length);
+      this.source = view;
+    }
+
+    @Override
+    public int read() {
+      return source.hasRemaining() ? source.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!source.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, source.remaining());
+      source.get(bytes, offset, count);
+      return count;
+    }
+  }
+}
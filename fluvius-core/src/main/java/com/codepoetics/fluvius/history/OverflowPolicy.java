@@ -0,0 +1,20 @@
+package com.codepoetics.fluvius.history;
+
+/**
+ * What an {@link AsyncFlowEventStore} does with an event when its queue is full.
+ */
+public enum OverflowPolicy {
+  /**
+   * The thread storing the event waits until there is space in the queue.
+   */
+  BLOCK,
+  /**
+   * The event is dropped.
+   */
+  DROP,
+  /**
+   * One in every {@link AsyncFlowEventStore#SAMPLE_INTERVAL} overflowing events waits until there is space in the queue,
+   * and the rest are dropped, so that a representative sample of events is still stored while limiting backpressure.
+   */
+  SAMPLE
+}
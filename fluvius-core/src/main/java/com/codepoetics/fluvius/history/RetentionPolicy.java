@@ -0,0 +1,113 @@
+package com.codepoetics.fluvius.history;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specifies how much flow history an {@link InMemoryFlowEventStore} retains.
+ * <p>
+ * Completed flows which started longer ago than the maximum age are discarded. When the store holds more flows, or more
+ * bytes of events, than the policy allows, completed flows are discarded in least-recently-used order until it is back
+ * within its limits. Flows which are still running are never discarded, however long they run, so that the history of a
+ * flow is never lost before it completes.
+ * </p>
+ */
+public final class RetentionPolicy {
+
+  private static final RetentionPolicy UNBOUNDED = new RetentionPolicy(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, EventWeighers.estimating());
+
+  /**
+   * Obtain a policy which retains all flow history.
+   *
+   * @return The retention policy.
+   */
+  public static RetentionPolicy unbounded() {
+    return UNBOUNDED;
+  }
+
+  private final int maxFlows;
+  private final long maxAgeMillis;
+  private final long maxTotalBytes;
+  private final EventWeigher weigher;
+
+  private RetentionPolicy(int maxFlows, long maxAgeMillis, long maxTotalBytes, EventWeigher weigher) {
+    this.maxFlows = maxFlows;
+    this.maxAgeMillis = maxAgeMillis;
+    this.maxTotalBytes = maxTotalBytes;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Create a policy which also limits the number of flows retained.
+   *
+   * @param maxFlows The maximum number of flows to retain.
+   * @return The constructed retention policy.
+   */
+  public RetentionPolicy withMaxFlows(int maxFlows) {
+    if (maxFlows < 1) {
+      throw new IllegalArgumentException("Maximum number of flows must be positive");
+    }
+    return new RetentionPolicy(maxFlows, maxAgeMillis, maxTotalBytes, weigher);
+  }
+
+  /**
+   * Create a policy which also discards completed flows which started longer ago than the supplied age.
+   *
+   * @param maxAge The maximum age of a retained flow.
+   * @param unit The unit in which the maximum age is given.
+   * @return The constructed retention policy.
+   */
+  public RetentionPolicy withMaxAge(long maxAge, TimeUnit unit) {
+    if (maxAge < 1) {
+      throw new IllegalArgumentException("Maximum age must be positive");
+    }
+    return new RetentionPolicy(maxFlows, unit.toMillis(maxAge), maxTotalBytes, weigher);
+  }
+
+  /**
+   * Create a policy which also limits the total size of the events retained, estimated by {@link EventWeighers#estimating()}.
+   *
+   * @param maxTotalBytes The maximum total size, in bytes, of the events retained.
+   * @return The constructed retention policy.
+   */
+  public RetentionPolicy withMaxTotalBytes(long maxTotalBytes) {
+    return withMaxTotalBytes(maxTotalBytes, EventWeighers.estimating());
+  }
+
+  /**
+   * Create a policy which also limits the total size of the events retained, estimated by the supplied {@link EventWeigher}.
+   *
+   * @param maxTotalBytes The maximum total size, in bytes, of the events retained.
+   * @param weigher The weigher to use to estimate the size of each event.
+   * @return The constructed retention policy.
+   */
+  public RetentionPolicy withMaxTotalBytes(long maxTotalBytes, EventWeigher weigher) {
+    if (maxTotalBytes < 1) {
+      throw new IllegalArgumentException("Maximum total size must be positive");
+    }
+    return new RetentionPolicy(maxFlows, maxAgeMillis, maxTotalBytes, weigher);
+  }
+
+  int getMaxFlows() {
+    return maxFlows;
+  }
+
+  long getMaxAgeMillis() {
+    return maxAgeMillis;
+  }
+
+  long getMaxTotalBytes() {
+    return maxTotalBytes;
+  }
+
+  EventWeigher getWeigher() {
+    return weigher;
+  }
+
+  boolean limitsAge() {
+    return maxAgeMillis != Long.MAX_VALUE;
+  }
+
+  boolean limitsSize() {
+    return maxFlows != Integer.MAX_VALUE || maxTotalBytes != Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,82 @@
+package com.codepoetics.fluvius.history;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer queue, after Dmitry Vyukov's bounded MPMC queue.
+ * <p>
+ * Each slot carries a sequence number which tells producers and the consumer whose turn it is to use the slot, so
+ * producers contend only on a single compare-and-set of the tail position and never on the consumer.
+ * </p>
+ */
+final class RingBuffer<E> {
+
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+
+  RingBuffer(int minimumCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(2, minimumCapacity) - 1) << 1;
+    this.mask = capacity - 1;
+    this.elements = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Move up to maxElements elements into the supplied list. Must only be called by the single consumer.
+   */
+  int drainTo(List<? super E> target, int maxElements) {
+    long position = head;
+    int drained = 0;
+
+    while (drained < maxElements) {
+      int index = (int) position & mask;
+      if (sequences.get(index) != position + 1) {
+        break;
+      }
+      target.add(elements.get(index));
+      elements.lazySet(index, null);
+      sequences.lazySet(index, position + mask + 1);
+      position++;
+      drained++;
+    }
+
+    head = position;
+    return drained;
+  }
+
+  int size() {
+    long size = tail.get() - head;
+    return (int) Math.max(0, Math.min(size, capacity()));
+  }
+}
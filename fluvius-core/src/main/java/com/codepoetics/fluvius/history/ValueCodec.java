@@ -0,0 +1,31 @@
+package com.codepoetics.fluvius.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes values of a particular type to, and reads them from, a binary representation.
+ *
+ * @param <V> The type of value encoded.
+ */
+public interface ValueCodec<V> {
+
+  /**
+   * Write the binary representation of a value.
+   *
+   * @param value The value to write.
+   * @param output The output to write the value to.
+   * @throws IOException If the output cannot be written.
+   */
+  void write(V value, DataOutput output) throws IOException;
+
+  /**
+   * Read a value from its binary representation.
+   *
+   * @param input The input to read the value from.
+   * @return The value read.
+   * @throws IOException If the input cannot be read, or does not contain a valid value.
+   */
+  V read(DataInput input) throws IOException;
+}
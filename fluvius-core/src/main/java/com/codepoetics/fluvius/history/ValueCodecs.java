@@ -0,0 +1,143 @@
+package com.codepoetics.fluvius.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Utility class providing {@link ValueCodec}s for common types, which write numbers as variable-length integers and
+ * strings as UTF-8.
+ */
+public final class ValueCodecs {
+
+  private ValueCodecs() {
+  }
+
+  private static final ValueCodec<String> strings = new ValueCodec<String>() {
+    @Override
+    public void write(String value, DataOutput output) throws IOException {
+      BinaryFormat.writeString(value, output);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return BinaryFormat.readString(input);
+    }
+  };
+
+  private static final ValueCodec<Integer> integers = new ValueCodec<Integer>() {
+    @Override
+    public void write(Integer value, DataOutput output) throws IOException {
+      BinaryFormat.writeSignedVarLong(value, output);
+    }
+
+    @Override
+    public Integer read(DataInput input) throws IOException {
+      return (int) BinaryFormat.readSignedVarLong(input);
+    }
+  };
+
+  private static final ValueCodec<Long> longs = new ValueCodec<Long>() {
+    @Override
+    public void write(Long value, DataOutput output) throws IOException {
+      BinaryFormat.writeSignedVarLong(value, output);
+    }
+
+    @Override
+    public Long read(DataInput input) throws IOException {
+      return BinaryFormat.readSignedVarLong(input);
+    }
+  };
+
+  private static final ValueCodec<Double> doubles = new ValueCodec<Double>() {
+    @Override
+    public void write(Double value, DataOutput output) throws IOException {
+      output.writeDouble(value);
+    }
+
+    @Override
+    public Double read(DataInput input) throws IOException {
+      return input.readDouble();
+    }
+  };
+
+  private static final ValueCodec<Boolean> booleans = new ValueCodec<Boolean>() {
+    @Override
+    public void write(Boolean value, DataOutput output) throws IOException {
+      output.writeBoolean(value);
+    }
+
+    @Override
+    public Boolean read(DataInput input) throws IOException {
+      return input.readBoolean();
+    }
+  };
+
+  private static final ValueCodec<byte[]> bytes = new ValueCodec<byte[]>() {
+    @Override
+    public void write(byte[] value, DataOutput output) throws IOException {
+      BinaryFormat.writeBytes(value, output);
+    }
+
+    @Override
+    public byte[] read(DataInput input) throws IOException {
+      return BinaryFormat.readBytes(input);
+    }
+  };
+
+  /**
+   * Obtain a codec which writes strings as their length followed by their UTF-8 bytes.
+   *
+   * @return The codec.
+   */
+  public static ValueCodec<String> strings() {
+    return strings;
+  }
+
+  /**
+   * Obtain a codec which writes integers as zig-zag encoded variable-length integers, so that small magnitudes of either
+   * sign take a single byte.
+   *
+   * @return The codec.
+   */
+  public static ValueCodec<Integer> integers() {
+    return integers;
+  }
+
+  /**
+   * Obtain a codec which writes longs as zig-zag encoded variable-length integers, so that small magnitudes of either sign
+   * take a single byte.
+   *
+   * @return The codec.
+   */
+  public static ValueCodec<Long> longs() {
+    return longs;
+  }
+
+  /**
+   * Obtain a codec which writes doubles as their eight-byte IEEE 754 representation.
+   *
+   * @return The codec.
+   */
+  public static ValueCodec<Double> doubles() {
+    return doubles;
+  }
+
+  /**
+   * Obtain a codec which writes booleans as a single byte.
+   *
+   * @return The codec.
+   */
+  public static ValueCodec<Boolean> booleans() {
+    return booleans;
+  }
+
+  /**
+   * Obtain a codec which writes byte arrays as their length followed by their contents.
+   *
+   * @return The codec.
+   */
+  public static ValueCodec<byte[]> bytes() {
+    return bytes;
+  }
+}
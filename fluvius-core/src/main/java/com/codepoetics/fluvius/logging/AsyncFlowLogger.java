@@ -0,0 +1,259 @@
+package com.codepoetics.fluvius.logging;
+
+import com.codepoetics.fluvius.api.logging.LevelledFlowLogger;
+import com.codepoetics.fluvius.api.logging.LogLevel;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link LevelledFlowLogger} which records the parameters of each event in a preallocated ring of slots, from which a
+ * background thread formats and writes them in batches to a {@link PrintStream}.
+ * <p>
+ * Logging an event allocates nothing and never blocks: if the ring is full, the event is dropped and counted. Because
+ * messages are formatted later, on the writer thread, values written to the log must not be mutated after they are logged,
+ * which the scratchpad already requires of them.
+ * </p>
+ */
+public final class AsyncFlowLogger implements LevelledFlowLogger, AutoCloseable {
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long FLUSH_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /**
+   * Create a logger which writes events at or above the given level to the console, starting its background writer thread.
+   *
+   * @param threshold The lowest level to log.
+   * @param capacity The number of events which may be waiting to be written, rounded up to a power of two.
+   * @return The constructed logger.
+   */
+  public static AsyncFlowLogger toConsole(LogLevel threshold, int capacity) {
+    return create(System.out, threshold, capacity);
+  }
+
+  /**
+   * Create a logger which writes events at or above the given level to the supplied stream, starting its background writer thread.
+   *
+   * @param out The stream to write to.
+   * @param threshold The lowest level to log.
+   * @param capacity The number of events which may be waiting to be written, rounded up to a power of two.
+   * @return The constructed logger.
+   */
+  public static AsyncFlowLogger create(PrintStream out, LogLevel threshold, int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Capacity must be between 1 and 2^30, but was " + capacity);
+    }
+
+    int ringSize = 1;
+    while (ringSize < capacity) {
+      ringSize <<= 1;
+    }
+
+    AsyncFlowLogger logger = new AsyncFlowLogger(out, threshold, ringSize);
+    logger.writerThread.start();
+    return logger;
+  }
+
+  private final PrintStream out;
+  private final LogLevel threshold;
+  private final Slot[] slots;
+  private final int mask;
+  private final Thread writerThread;
+  private final AtomicLong claimed = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private volatile long written;
+  private volatile boolean writerIdle;
+  private volatile boolean closed;
+
+  private AsyncFlowLogger(PrintStream out, LogLevel threshold, int capacity) {
+    this.out = out;
+    this.threshold = threshold;
+    this.slots = new Slot[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot();
+    }
+    this.mask = capacity - 1;
+    this.writerThread = new Thread(new Writer(), "fluvius-log-writer");
+    this.writerThread.setDaemon(true);
+  }
+
+  @Override
+  public boolean isEnabled(LogLevel level) {
+    return level.isAtLeast(threshold);
+  }
+
+  @Override
+  public void logOperationStarted(UUID flowId, String name, Scratchpad scratchpad) {
+    publish(flowId, FlowLogEventType.OPERATION_STARTED, name, null, scratchpad);
+  }
+
+  @Override
+  public void logOperationCompleted(UUID flowId, String name, Key<?> outputKey, Object output) {
+    publish(flowId, FlowLogEventType.OPERATION_COMPLETED, name, outputKey, output);
+  }
+
+  @Override
+  public void logOperationException(UUID flowId, String name, Throwable exception) {
+    publish(flowId, FlowLogEventType.OPERATION_FAILED, name, null, exception);
+  }
+
+  @Override
+  public void logConditionStarted(UUID flowId, String description, Scratchpad scratchpad) {
+    publish(flowId, FlowLogEventType.CONDITION_STARTED, description, null, scratchpad);
+  }
+
+  @Override
+  public void logConditionCompleted(UUID flowId, String description, boolean result) {
+    publish(flowId, FlowLogEventType.CONDITION_COMPLETED, description, null, result);
+  }
+
+  @Override
+  public void logConditionException(UUID flowId, String description, Throwable exception) {
+    publish(flowId, FlowLogEventType.CONDITION_FAILED, description, null, exception);
+  }
+
+  private void publish(UUID flowId, FlowLogEventType type, String name, Key<?> key, Object value) {
+    if (closed || !isEnabled(type.getLevel())) {
+      return;
+    }
+
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - written >= slots.length) {
+        droppedCount.incrementAndGet();
+        return;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+    Slot slot = slots[(int) sequence & mask];
+    slot.timestamp = System.currentTimeMillis();
+    slot.flowId = flowId;
+    slot.type = type;
+    slot.name = name;
+    slot.key = key;
+    slot.value = value;
+    slot.published = sequence;
+
+    if (writerIdle) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Wait until all events logged so far have been written.
+   */
+  public void flush() {
+    long target = claimed.get();
+    while (written < target && writerThread.isAlive()) {
+      LockSupport.unpark(writerThread);
+      LockSupport.parkNanos(FLUSH_PARK_NANOS);
+    }
+  }
+
+  /**
+   * Stop accepting events, write all events logged so far, and stop the background writer thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Get the number of events which have been dropped because the ring was full.
+   *
+   * @return The number of events dropped.
+   */
+  public long getDroppedEventCount() {
+    return droppedCount.get();
+  }
+
+  private static final class Slot {
+    private volatile long published = -1;
+    private long timestamp;
+    private UUID flowId;
+    private FlowLogEventType type;
+    private String name;
+    private Key<?> key;
+    private Object value;
+
+    private void clear() {
+      flowId = null;
+      type = null;
+      name = null;
+      key = null;
+      value = null;
+    }
+  }
+
+  private final class Writer implements Runnable {
+    private final DateFormat timestampFormat = new SimpleDateFormat(Loggers.TIMESTAMP_PATTERN);
+    private final Date timestamp = new Date();
+    private final StringBuilder batch = new StringBuilder();
+
+    @Override
+    public void run() {
+      long next = 0;
+      while (true) {
+        boolean wasClosed = closed;
+        long drained = next;
+        Slot slot;
+        while ((slot = slots[(int) next & mask]).published == next) {
+          append(slot);
+          slot.clear();
+          next++;
+        }
+
+        if (next > drained) {
+          write();
+          written = next;
+          continue;
+        }
+
+        if (wasClosed && next == claimed.get()) {
+          return;
+        }
+
+        writerIdle = true;
+        if (slots[(int) next & mask].published != next && !closed) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        writerIdle = false;
+      }
+    }
+
+    private void append(Slot slot) {
+      timestamp.setTime(slot.timestamp);
+      Loggers.appendLine(batch, timestampFormat, timestamp, slot.flowId, slot.type, slot.name, slot.key, slot.value);
+      batch.append(System.lineSeparator());
+
+      if (slot.value instanceof Throwable) {
+        StringWriter stackTrace = new StringWriter();
+        ((Throwable) slot.value).printStackTrace(new PrintWriter(stackTrace));
+        batch.append(stackTrace);
+      }
+    }
+
+    private void write() {
+      out.print(batch);
+      out.flush();
+      batch.setLength(0);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.codepoetics.fluvius.logging;
+
+import com.codepoetics.fluvius.api.logging.LogLevel;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+
+/**
+ * The types of event logged by a {@link com.codepoetics.fluvius.api.logging.FlowLogger}, each of which knows its level and
+ * how to format its message from the event's parameters.
+ */
+enum FlowLogEventType {
+  OPERATION_STARTED(LogLevel.DEBUG) {
+    @Override
+    void appendMessage(StringBuilder builder, String name, Key<?> key, Object value) {
+      builder.append("Operation '").append(name).append("' started with scratchpad ").append(value);
+    }
+  },
+  OPERATION_COMPLETED(LogLevel.INFO) {
+    @Override
+    void appendMessage(StringBuilder builder, String name, Key<?> key, Object value) {
+      builder.append("Operation '").append(name).append("' completed, writing value ").append(value)
+          .append(" to key ").append(key.getName());
+    }
+  },
+  OPERATION_FAILED(LogLevel.ERROR) {
+    @Override
+    void appendMessage(StringBuilder builder, String name, Key<?> key, Object value) {
+      builder.append("Operation '").append(name).append("' failed with exception ").append(value);
+    }
+  },
+  CONDITION_STARTED(LogLevel.DEBUG) {
+    @Override
+    void appendMessage(StringBuilder builder, String name, Key<?> key, Object value) {
+      builder.append("Condition '").append(name).append("' started with scratchpad ").append(value);
+    }
+  },
+  CONDITION_COMPLETED(LogLevel.INFO) {
+    @Override
+    void appendMessage(StringBuilder builder, String name, Key<?> key, Object value) {
+      builder.append("Condition '").append(name).append("' completed with result ").append(value);
+    }
+  },
+  CONDITION_FAILED(LogLevel.ERROR) {
+    @Override
+    void appendMessage(StringBuilder builder, String name, Key<?> key, Object value) {
+      builder.append("Condition '").append(name).append("' failed with exception ").append(value);
+    }
+  };
+
+  private final LogLevel level;
+
+  FlowLogEventType(LogLevel level) {
+    this.level = level;
+  }
+
+  LogLevel getLevel() {
+    return level;
+  }
+
+  abstract void appendMessage(StringBuilder builder, String name, Key<?> key, Object value);
+}
@@ -1,69 +1,198 @@
 package com.codepoetics.fluvius.logging;
 
 import com.codepoetics.fluvius.api.logging.FlowLogger;
+import com.codepoetics.fluvius.api.logging.LevelledFlowLogger;
+import com.codepoetics.fluvius.api.logging.LogLevel;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 
+import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.util.Date;
 import java.util.UUID;
 
 /**
- * Utility class providing a FlowLogger which writes messages to the console.
+ * Utility class providing FlowLoggers which write messages to the console, and for restricting the levels at which
+ * other FlowLoggers log.
  */
 public final class Loggers {
 
   private Loggers() {
   }
 
-  private static final FlowLogger CONSOLE = new ConsoleLogger();
+  static final String TIMESTAMP_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS";
 
+  private static final ThreadLocal<DateFormat> TIMESTAMP_FORMAT = new ThreadLocal<DateFormat>() {
+    @Override
+    protected DateFormat initialValue() {
+      return new SimpleDateFormat(TIMESTAMP_PATTERN);
+    }
+  };
+
+  private static final FlowLogger CONSOLE = new ConsoleLogger(LogLevel.DEBUG);
+
+  /**
+   * Get a FlowLogger which writes messages at every level to the console.
+   *
+   * @return The console logger.
+   */
   public static FlowLogger getConsoleLogger() {
     return CONSOLE;
   }
 
-  private static final class ConsoleLogger implements FlowLogger {
+  /**
+   * Get a FlowLogger which writes messages at or above the given level to the console.
+   *
+   * @param threshold The lowest level to log.
+   * @return The console logger.
+   */
+  public static LevelledFlowLogger getConsoleLogger(LogLevel threshold) {
+    return new ConsoleLogger(threshold);
+  }
+
+  /**
+   * Restrict a FlowLogger to logging events at or above the given level.
+   *
+   * @param logger The logger to restrict.
+   * @param threshold The lowest level to log.
+   * @return The restricted logger.
+   */
+  public static LevelledFlowLogger levelled(FlowLogger logger, LogLevel threshold) {
+    return new ThresholdLogger(logger, threshold);
+  }
+
+  /**
+   * Test whether a FlowLogger logs events at the given level. Loggers which are not {@link LevelledFlowLogger}s log every level.
+   *
+   * @param logger The logger to test.
+   * @param level The level to test.
+   * @return True if events at the level are logged, false otherwise.
+   */
+  public static boolean isEnabled(FlowLogger logger, LogLevel level) {
+    return !(logger instanceof LevelledFlowLogger) || ((LevelledFlowLogger) logger).isEnabled(level);
+  }
+
+  static void appendLine(StringBuilder builder, DateFormat timestampFormat, Date timestamp, UUID flowId,
+                         FlowLogEventType type, String name, Key<?> key, Object value) {
+    builder.append(timestampFormat.format(timestamp)).append('/').append(flowId).append(' ');
+    type.appendMessage(builder, name, key, value);
+  }
+
+  private static final class ConsoleLogger implements LevelledFlowLogger {
+
+    private final LogLevel threshold;
 
-    private void write(UUID flowId, String message, Object... params) {
-      System.out.println(getTime() + "/" + flowId + " " + String.format(message, params));
+    private ConsoleLogger(LogLevel threshold) {
+      this.threshold = threshold;
     }
 
-    private String getTime() {
-      Calendar cal = Calendar.getInstance();
-      SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
-      return sdf.format(cal.getTime());
+    @Override
+    public boolean isEnabled(LogLevel level) {
+      return level.isAtLeast(threshold);
+    }
+
+    private void write(UUID flowId, FlowLogEventType type, String name, Key<?> key, Object value) {
+      if (!isEnabled(type.getLevel())) {
+        return;
+      }
+
+      StringBuilder builder = new StringBuilder();
+      appendLine(builder, TIMESTAMP_FORMAT.get(), new Date(), flowId, type, name, key, value);
+      System.out.println(builder);
+    }
+
+    @Override
+    public void logOperationStarted(UUID flowId, String name, Scratchpad scratchpad) {
+      write(flowId, FlowLogEventType.OPERATION_STARTED, name, null, scratchpad);
+    }
+
+    @Override
+    public void logOperationCompleted(UUID flowId, String name, Key<?> outputKey, Object output) {
+      write(flowId, FlowLogEventType.OPERATION_COMPLETED, name, outputKey, output);
+    }
+
+    @Override
+    public void logOperationException(UUID flowId, String name, Throwable exception) {
+      write(flowId, FlowLogEventType.OPERATION_FAILED, name, null, exception);
+      if (isEnabled(LogLevel.ERROR)) {
+        exception.printStackTrace();
+      }
+    }
+
+    @Override
+    public void logConditionStarted(UUID flowId, String description, Scratchpad scratchpad) {
+      write(flowId, FlowLogEventType.CONDITION_STARTED, description, null, scratchpad);
+    }
+
+    @Override
+    public void logConditionCompleted(UUID flowId, String description, boolean result) {
+      write(flowId, FlowLogEventType.CONDITION_COMPLETED, description, null, result);
+    }
+
+    @Override
+    public void logConditionException(UUID flowId, String description, Throwable exception) {
+      write(flowId, FlowLogEventType.CONDITION_FAILED, description, null, exception);
+      if (isEnabled(LogLevel.ERROR)) {
+        exception.printStackTrace();
+      }
+    }
+  }
+
+  private static final class ThresholdLogger implements LevelledFlowLogger {
+
+    private final FlowLogger logger;
+    private final LogLevel threshold;
+
+    private ThresholdLogger(FlowLogger logger, LogLevel threshold) {
+      this.logger = logger;
+      this.threshold = threshold;
+    }
+
+    @Override
+    public boolean isEnabled(LogLevel level) {
+      return level.isAtLeast(threshold) && Loggers.isEnabled(logger, level);
     }
 
     @Override
     public void logOperationStarted(UUID flowId, String name, Scratchpad scratchpad) {
-      write(flowId, "Operation '%s' started with scratchpad %s", name, scratchpad);
+      if (isEnabled(LogLevel.DEBUG)) {
+        logger.logOperationStarted(flowId, name, scratchpad);
+      }
     }
 
     @Override
     public void logOperationCompleted(UUID flowId, String name, Key<?> outputKey, Object output) {
-      write(flowId, "Operation '%s' completed, writing value %s to key %s", name, output, outputKey.getName());
+      if (isEnabled(LogLevel.INFO)) {
+        logger.logOperationCompleted(flowId, name, outputKey, output);
+      }
     }
 
     @Override
     public void logOperationException(UUID flowId, String name, Throwable exception) {
-      write(flowId, "Operation '%s' failed with exception %s", name, exception);
-      exception.printStackTrace();
+      if (isEnabled(LogLevel.ERROR)) {
+        logger.logOperationException(flowId, name, exception);
+      }
     }
 
     @Override
     public void logConditionStarted(UUID flowId, String description, Scratchpad scratchpad) {
-      write(flowId, "Condition '%s' started with scratchpad %s", description, scratchpad);
+      if (isEnabled(LogLevel.DEBUG)) {
+        logger.logConditionStarted(flowId, description, scratchpad);
+      }
     }
 
     @Override
     public void logConditionCompleted(UUID flowId, String description, boolean result) {
-      write(flowId, "Condition '%s' completed with result %s", description, result);
+      if (isEnabled(LogLevel.INFO)) {
+        logger.logConditionCompleted(flowId, description, result);
+      }
     }
 
     @Override
     public void logConditionException(UUID flowId, String description, Throwable exception) {
-      write(flowId, "Condition '%s' failed with exception %s", description, exception);
-      exception.printStackTrace();
+      if (isEnabled(LogLevel.ERROR)) {
+        logger.logConditionException(flowId, description, exception);
+      }
     }
   }
 }
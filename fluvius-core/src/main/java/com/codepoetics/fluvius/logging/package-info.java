@@ -1,4 +1,5 @@
 /**
- * Provides a default {@link com.codepoetics.fluvius.api.logging.FlowLogger} which prints messages to the console.
+ * Provides {@link com.codepoetics.fluvius.api.logging.FlowLogger}s which print messages to the console, either directly or
+ * asynchronously via {@link com.codepoetics.fluvius.logging.AsyncFlowLogger}.
  */
-package com.codepoetics.fluvius.logging;
\ No newline at end of file
+package com.codepoetics.fluvius.logging;
@@ -0,0 +1,64 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The metrics recorded for a single branch over an interval.
+ */
+public final class BranchMetrics {
+
+  private final UUID stepId;
+  private final List<ConditionMetrics> conditionMetrics;
+
+  BranchMetrics(UUID stepId, List<ConditionMetrics> conditionMetrics) {
+    this.stepId = stepId;
+    this.conditionMetrics = Collections.unmodifiableList(conditionMetrics);
+  }
+
+  /**
+   * Get the id of the branch step.
+   *
+   * @return The id of the branch step.
+   */
+  public UUID getStepId() {
+    return stepId;
+  }
+
+  /**
+   * Get the metrics of each of the branch's conditions, in the order in which they are tested.
+   *
+   * @return The condition metrics.
+   */
+  public List<ConditionMetrics> getConditionMetrics() {
+    return conditionMetrics;
+  }
+
+  /**
+   * Get the number of times the branch was evaluated. Every evaluation tests the first condition.
+   *
+   * @return The number of times the branch was evaluated.
+   */
+  public long getEvaluationCount() {
+    return conditionMetrics.isEmpty() ? 0 : conditionMetrics.get(0).getLatency().getCount();
+  }
+
+  /**
+   * Get the number of times the default branch was taken, because no condition was true.
+   *
+   * @return The number of times the default branch was taken.
+   */
+  public long getDefaultTakenCount() {
+    long taken = getEvaluationCount();
+    for (ConditionMetrics condition : conditionMetrics) {
+      taken -= condition.getTrueCount();
+    }
+    return Math.max(0, taken);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: evaluations=%d, default=%d, %s", stepId, getEvaluationCount(), getDefaultTakenCount(), conditionMetrics);
+  }
+}
@@ -0,0 +1,61 @@
+package com.codepoetics.fluvius.metrics;
+
+/**
+ * The metrics recorded for a single condition of a branch over an interval.
+ */
+public final class ConditionMetrics {
+
+  private final String description;
+  private final long trueCount;
+  private final long falseCount;
+  private final HistogramSnapshot latency;
+
+  ConditionMetrics(String description, long trueCount, long falseCount, HistogramSnapshot latency) {
+    this.description = description;
+    this.trueCount = trueCount;
+    this.falseCount = falseCount;
+    this.latency = latency;
+  }
+
+  /**
+   * Get the description of the condition.
+   *
+   * @return The description of the condition.
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * Get the number of times the condition was true. As conditions are tested in order, this is also the number of times
+   * the branch guarded by the condition was taken.
+   *
+   * @return The number of times the condition was true.
+   */
+  public long getTrueCount() {
+    return trueCount;
+  }
+
+  /**
+   * Get the number of times the condition was false.
+   *
+   * @return The number of times the condition was false.
+   */
+  public long getFalseCount() {
+    return falseCount;
+  }
+
+  /**
+   * Get the latencies of the condition's tests.
+   *
+   * @return The latency histogram.
+   */
+  public HistogramSnapshot getLatency() {
+    return latency;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: true=%d, false=%d, %s", description, trueCount, falseCount, latency);
+  }
+}
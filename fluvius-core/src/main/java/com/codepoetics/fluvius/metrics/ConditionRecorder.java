@@ -0,0 +1,31 @@
+package com.codepoetics.fluvius.metrics;
+
+/**
+ * Records the latency and outcome of a single condition of a branch. Failed tests are derived from the number of
+ * latencies recorded; passed tests are counted alongside the latencies, so that every snapshot's counts agree with its
+ * histogram.
+ */
+final class ConditionRecorder {
+
+  private final String description;
+  private final OutcomeHistogram latency = OutcomeHistogram.create();
+
+  ConditionRecorder(String description) {
+    this.description = description;
+  }
+
+  void record(boolean result, long nanos) {
+    latency.record(nanos, result);
+  }
+
+  ConditionMetrics snapshot(boolean reset) {
+    OutcomeHistogram.Snapshot snapshot = latency.snapshot(reset);
+    long passedCount = snapshot.getOutcomeCount();
+    HistogramSnapshot latencySnapshot = snapshot.getLatency();
+    return new ConditionMetrics(
+        description,
+        passedCount,
+        latencySnapshot.getCount() - passedCount,
+        latencySnapshot);
+  }
+}
@@ -0,0 +1,106 @@
+package com.codepoetics.fluvius.metrics;
+
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the metrics recorded by a {@link MetricsFlowVisitor}: the latency, success and failure counts of every step,
+ * and the latency and outcome of every condition of every branch.
+ * <p>
+ * Recorders are registered when flows are compiled, so recording a metric never allocates or takes a lock. Metrics are
+ * pulled by taking a {@link MetricsSnapshot}, optionally resetting them so that each snapshot covers only the interval
+ * since the last.
+ * </p>
+ */
+public final class FlowMetrics {
+
+  /**
+   * Create an empty set of flow metrics.
+   *
+   * @return The constructed flow metrics.
+   */
+  public static FlowMetrics create() {
+    return new FlowMetrics();
+  }
+
+  private final ConcurrentMap<UUID, StepRecorder> steps = new ConcurrentHashMap<>();
+  private final ConcurrentMap<UUID, ConditionRecorder[]> branches = new ConcurrentHashMap<>();
+  private final Object resetLock = new Object();
+  private volatile long intervalStart = System.currentTimeMillis();
+  private volatile long intervalStartNanos = System.nanoTime();
+
+  private FlowMetrics() {
+  }
+
+  StepRecorder stepRecorder(UUID stepId, String operationName) {
+    StepRecorder recorder = new StepRecorder(stepId, operationName);
+    StepRecorder existing = steps.putIfAbsent(stepId, recorder);
+    return existing == null ? recorder : existing;
+  }
+
+  <V> ConditionRecorder[] branchRecorders(UUID stepId, List<Conditional<V>> conditionalBranches) {
+    ConditionRecorder[] recorders = new ConditionRecorder[conditionalBranches.size()];
+    for (int i = 0; i < recorders.length; i++) {
+      Condition condition = conditionalBranches.get(i).getCondition();
+      recorders[i] = new ConditionRecorder(condition.getDescription());
+    }
+    ConditionRecorder[] existing = branches.putIfAbsent(stepId, recorders);
+    return existing == null ? recorders : existing;
+  }
+
+  /**
+   * Take a snapshot of the metrics recorded since they were created or last reset.
+   *
+   * @return The snapshot.
+   */
+  public MetricsSnapshot snapshot() {
+    return takeSnapshot(false);
+  }
+
+  /**
+   * Take a snapshot of the metrics recorded since they were created or last reset, and reset them. Executions which
+   * complete while the snapshot is being taken are counted either in the snapshot or after the reset, but never lost.
+   *
+   * @return The snapshot.
+   */
+  public MetricsSnapshot snapshotAndReset() {
+    return takeSnapshot(true);
+  }
+
+  private MetricsSnapshot takeSnapshot(boolean reset) {
+    synchronized (resetLock) {
+      long start = intervalStart;
+      long now = System.nanoTime();
+      long intervalNanos = now - intervalStartNanos;
+
+      if (reset) {
+        intervalStart = System.currentTimeMillis();
+        intervalStartNanos = now;
+      }
+
+      Map<UUID, StepMetrics> stepMetrics = new LinkedHashMap<>();
+      for (Map.Entry<UUID, StepRecorder> entry : steps.entrySet()) {
+        stepMetrics.put(entry.getKey(), entry.getValue().snapshot(intervalNanos, reset));
+      }
+
+      Map<UUID, BranchMetrics> branchMetrics = new LinkedHashMap<>();
+      for (Map.Entry<UUID, ConditionRecorder[]> entry : branches.entrySet()) {
+        List<ConditionMetrics> conditionMetrics = new ArrayList<>(entry.getValue().length);
+        for (ConditionRecorder recorder : entry.getValue()) {
+          conditionMetrics.add(recorder.snapshot(reset));
+        }
+        branchMetrics.put(entry.getKey(), new BranchMetrics(entry.getKey(), conditionMetrics));
+      }
+
+      return new MetricsSnapshot(start, intervalNanos, stepMetrics, branchMetrics);
+    }
+  }
+}
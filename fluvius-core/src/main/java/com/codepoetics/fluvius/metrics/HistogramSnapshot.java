@@ -0,0 +1,97 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the latencies recorded by a {@link LatencyHistogram}.
+ */
+public final class HistogramSnapshot {
+
+  static HistogramSnapshot of(long[] counts, long total) {
+    long count = 0;
+    for (long bucketCount : counts) {
+      count += bucketCount;
+    }
+    return new HistogramSnapshot(counts, count, total);
+  }
+
+  private final long[] counts;
+  private final long count;
+  private final long total;
+
+  private HistogramSnapshot(long[] counts, long count, long total) {
+    this.counts = counts;
+    this.count = count;
+    this.total = total;
+  }
+
+  /**
+   * Get the number of latencies recorded.
+   *
+   * @return The number of latencies recorded.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Get the mean of the recorded latencies.
+   *
+   * @param unit The unit in which to express the mean.
+   * @return The mean latency, or 0 if no latencies were recorded.
+   */
+  public double getMean(TimeUnit unit) {
+    return count == 0 ? 0 : (double) total / count / unit.toNanos(1);
+  }
+
+  /**
+   * Get the highest recorded latency, to the precision of the histogram.
+   *
+   * @param unit The unit in which to express the latency.
+   * @return The highest recorded latency, or 0 if no latencies were recorded.
+   */
+  public double getMax(TimeUnit unit) {
+    for (int i = counts.length - 1; i >= 0; i--) {
+      if (counts[i] > 0) {
+        return (double) LatencyHistogram.highestValueAt(i) / unit.toNanos(1);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Get the latency at or below which the given percentage of the recorded latencies fall, to the precision of the histogram.
+   *
+   * @param percentile The percentile to get, between 0 and 100.
+   * @param unit The unit in which to express the latency.
+   * @return The latency at the requested percentile, or 0 if no latencies were recorded.
+   */
+  public double getPercentile(double percentile, TimeUnit unit) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100, but was " + percentile);
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return (double) LatencyHistogram.highestValueAt(i) / unit.toNanos(1);
+      }
+    }
+    return getMax(unit);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, max=%.1fus",
+        count,
+        getMean(TimeUnit.NANOSECONDS) / 1000,
+        getPercentile(50, TimeUnit.NANOSECONDS) / 1000,
+        getPercentile(99, TimeUnit.NANOSECONDS) / 1000,
+        getMax(TimeUnit.NANOSECONDS) / 1000);
+  }
+}
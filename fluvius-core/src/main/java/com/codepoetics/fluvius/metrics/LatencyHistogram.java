@@ -0,0 +1,111 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with log-linear buckets in the style of HdrHistogram.
+ * <p>
+ * Values below 64ns are counted exactly. Above that, each power of two is divided into 32 equal buckets, so that every
+ * recorded value is accurate to within about 3%. Values above 2<sup>43</sup>ns (around two and a half hours) are counted
+ * in the highest bucket. Recording a value is a single atomic increment of its bucket, plus an atomic addition to the
+ * running total.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_MAGNITUDE = 42;
+  private static final long MAX_TRACKABLE_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+  static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_VALUE) + 1;
+
+  /**
+   * Create an empty histogram.
+   *
+   * @return The constructed histogram.
+   */
+  public static LatencyHistogram create() {
+    return new LatencyHistogram();
+  }
+
+  static int indexOf(long value) {
+    if (value < 2 * SUB_BUCKET_COUNT) {
+      return (int) Math.max(value, 0);
+    }
+
+    long clamped = Math.min(value, MAX_TRACKABLE_VALUE);
+    int shift = 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKET_COUNT + (int) (clamped >>> shift);
+  }
+
+  static long lowestValueAt(int index) {
+    if (index < 2 * SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+  }
+
+  static long highestValueAt(int index) {
+    return index == BUCKET_COUNT - 1 ? MAX_TRACKABLE_VALUE : lowestValueAt(index + 1) - 1;
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong total = new AtomicLong();
+
+  private LatencyHistogram() {
+  }
+
+  /**
+   * Record a latency.
+   *
+   * @param nanos The latency to record, in nanoseconds.
+   */
+  public void record(long nanos) {
+    counts.incrementAndGet(indexOf(nanos));
+    total.addAndGet(nanos);
+  }
+
+  /**
+   * Take a snapshot of the latencies recorded so far.
+   *
+   * @return The snapshot.
+   */
+  public HistogramSnapshot snapshot() {
+    long[] snapshotCounts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshotCounts[i] = counts.get(i);
+    }
+    return HistogramSnapshot.of(snapshotCounts, total.get());
+  }
+
+  /**
+   * Take a snapshot of the latencies recorded so far, and reset the histogram. Latencies recorded while the snapshot is
+   * being taken will appear either in the snapshot or in the reset histogram, but never in both, and are never lost.
+   *
+   * @return The snapshot.
+   */
+  public HistogramSnapshot snapshotAndReset() {
+    long[] snapshotCounts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshotCounts[i] = counts.getAndSet(i, 0);
+    }
+    return HistogramSnapshot.of(snapshotCounts, total.getAndSet(0));
+  }
+
+  /**
+   * Add the latencies recorded so far to the supplied bucket counts, and reset the histogram.
+   *
+   * @param bucketCounts The bucket counts to add to.
+   * @return The total of the latencies added.
+   */
+  long drainInto(long[] bucketCounts) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      bucketCounts[i] += counts.getAndSet(i, 0);
+    }
+    return total.getAndSet(0);
+  }
+}
@@ -0,0 +1,169 @@
+package com.codepoetics.fluvius.metrics;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.FlowVisitor;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.operations.OperationInterceptor;
+import com.codepoetics.fluvius.operations.Operations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A {@link FlowVisitor} that records the latency and outcome of every operation and condition in {@link FlowMetrics}.
+ * <p>
+ * Each recording costs two calls to {@link System#nanoTime()} and two atomic updates, one to a histogram bucket and one to
+ * the histogram's running total, so the visitor is cheap enough to leave on in production. Asynchronous operations are
+ * measured until they call back, and operations which run in batches are still run in batches, with every step in a
+ * batch recorded at the latency of the whole batch.
+ * </p>
+ *
+ * @param <V> The type of the value constructed by the wrapped visitor.
+ */
+public final class MetricsFlowVisitor<V> implements FlowVisitor<V> {
+
+  /**
+   * Create a new metrics-recording FlowVisitor wrapping the supplied visitor.
+   *
+   * @param metrics The metrics to record to.
+   * @param visitor The flow visitor to wrap.
+   * @param <V> The type of the value constructed by the wrapped visitor.
+   * @return The constructed flow visitor.
+   */
+  public static <V> FlowVisitor<V> wrapping(FlowMetrics metrics, FlowVisitor<V> visitor) {
+    return new MetricsFlowVisitor<>(metrics, visitor);
+  }
+
+  private final FlowMetrics metrics;
+  private final FlowVisitor<V> innerVisitor;
+
+  private MetricsFlowVisitor(FlowMetrics metrics, FlowVisitor<V> innerVisitor) {
+    this.metrics = metrics;
+    this.innerVisitor = innerVisitor;
+  }
+
+  @Override
+  public <T> V visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+    return innerVisitor.visitSingle(stepId, requiredKeys, providedKey,
+        Operations.intercept(operation, new MeasuringInterceptor<T>(metrics.stepRecorder(stepId, operation.getName()))));
+  }
+
+  @Override
+  public <T> V visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<V> items) {
+    return innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items);
+  }
+
+  @Override
+  public <T> V visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, V defaultBranch,
+                           List<Conditional<V>> conditionalBranches) {
+    ConditionRecorder[] recorders = metrics.branchRecorders(stepId, conditionalBranches);
+
+    List<Conditional<V>> measuredBranches = new ArrayList<>(conditionalBranches.size());
+    for (int i = 0; i < conditionalBranches.size(); i++) {
+      Conditional<V> conditional = conditionalBranches.get(i);
+      measuredBranches.add(Conditional.of(
+          new MeasuredCondition(conditional.getCondition(), recorders[i]),
+          conditional.getValue()));
+    }
+    return innerVisitor.visitBranch(stepId, requiredKeys, providedKey, defaultBranch, measuredBranches);
+  }
+
+  @Override
+  public Condition visitCondition(Condition condition) {
+    return innerVisitor.visitCondition(condition);
+  }
+
+  private static final class MeasuringInterceptor<T> implements OperationInterceptor<T> {
+
+    private final StepRecorder recorder;
+
+    private MeasuringInterceptor(StepRecorder recorder) {
+      this.recorder = recorder;
+    }
+
+    @Override
+    public T run(Operation<T> operation, Scratchpad scratchpad) throws Exception {
+      long startTime = System.nanoTime();
+      T result;
+      try {
+        result = operation.run(scratchpad);
+      } catch (Exception | Error e) {
+        recorder.recordFailure(System.nanoTime() - startTime);
+        throw e;
+      }
+      recorder.recordSuccess(System.nanoTime() - startTime);
+      return result;
+    }
+
+    @Override
+    public void runAsync(AsyncOperation<T> operation, Scratchpad scratchpad, final OperationCallback<T> callback) {
+      final long startTime = System.nanoTime();
+      operation.run(scratchpad, new OperationCallback<T>() {
+        @Override
+        public void onSuccess(T result) {
+          recorder.recordSuccess(System.nanoTime() - startTime);
+          callback.onSuccess(result);
+        }
+
+        @Override
+        public void onFailure(Exception failure) {
+          recorder.recordFailure(System.nanoTime() - startTime);
+          callback.onFailure(failure);
+        }
+      });
+    }
+
+    @Override
+    public List<T> runBatch(BatchOperation<T> operation, List<Scratchpad> scratchpads) throws Exception {
+      // Every step in the batch waits for the whole batch, so each is recorded with the batch's latency.
+      long startTime = System.nanoTime();
+      List<T> results;
+      try {
+        results = operation.runBatch(scratchpads);
+      } catch (Exception | Error e) {
+        long elapsed = System.nanoTime() - startTime;
+        for (int i = 0; i < scratchpads.size(); i++) {
+          recorder.recordFailure(elapsed);
+        }
+        throw e;
+      }
+      long elapsed = System.nanoTime() - startTime;
+      for (int i = 0; i < scratchpads.size(); i++) {
+        recorder.recordSuccess(elapsed);
+      }
+      return results;
+    }
+  }
+
+  private static final class MeasuredCondition implements Condition {
+
+    private final Condition innerCondition;
+    private final transient ConditionRecorder recorder;
+
+    private MeasuredCondition(Condition innerCondition, ConditionRecorder recorder) {
+      this.innerCondition = innerCondition;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public String getDescription() {
+      return innerCondition.getDescription();
+    }
+
+    @Override
+    public boolean test(UUID flowId, Scratchpad scratchpad) {
+      long startTime = System.nanoTime();
+      boolean result = innerCondition.test(flowId, scratchpad);
+      recorder.record(result, System.nanoTime() - startTime);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the {@link FlowMetrics} recorded over an interval.
+ */
+public final class MetricsSnapshot {
+
+  private final long intervalStart;
+  private final long intervalNanos;
+  private final Map<UUID, StepMetrics> stepMetrics;
+  private final Map<UUID, BranchMetrics> branchMetrics;
+
+  MetricsSnapshot(long intervalStart, long intervalNanos, Map<UUID, StepMetrics> stepMetrics, Map<UUID, BranchMetrics> branchMetrics) {
+    this.intervalStart = intervalStart;
+    this.intervalNanos = intervalNanos;
+    this.stepMetrics = Collections.unmodifiableMap(stepMetrics);
+    this.branchMetrics = Collections.unmodifiableMap(branchMetrics);
+  }
+
+  /**
+   * Get the time at which the interval covered by this snapshot started, in milliseconds since the epoch.
+   *
+   * @return The start of the interval.
+   */
+  public long getIntervalStart() {
+    return intervalStart;
+  }
+
+  /**
+   * Get the length of the interval covered by this snapshot.
+   *
+   * @param unit The unit in which to express the length.
+   * @return The length of the interval.
+   */
+  public long getIntervalLength(TimeUnit unit) {
+    return unit.convert(intervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the metrics recorded for each single-operation step, by step id.
+   *
+   * @return The step metrics.
+   */
+  public Map<UUID, StepMetrics> getStepMetrics() {
+    return stepMetrics;
+  }
+
+  /**
+   * Get the metrics recorded for each branch, by step id.
+   *
+   * @return The branch metrics.
+   */
+  public Map<UUID, BranchMetrics> getBranchMetrics() {
+    return branchMetrics;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("steps=%s, branches=%s", stepMetrics.values(), branchMetrics.values());
+  }
+}
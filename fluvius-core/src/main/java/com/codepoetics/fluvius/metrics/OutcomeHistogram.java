@@ -0,0 +1,94 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A histogram of latencies, together with a count of the outcomes of interest among them (such as failures), which are
+ * snapshotted together, so that every outcome counted in a snapshot has its latency in the snapshot's histogram.
+ * <p>
+ * Recording remains lock-free. Values are recorded into the current interval; a snapshot swaps in the spare interval, waits
+ * for any recording already under way in the old one to finish, and folds it into the totals retained since the last
+ * reset. Snapshots must not be taken concurrently with each other.
+ * </p>
+ */
+final class OutcomeHistogram {
+
+  static OutcomeHistogram create() {
+    return new OutcomeHistogram();
+  }
+
+  private volatile Interval current = new Interval();
+  private Interval spare = new Interval();
+
+  private final long[] retainedCounts = new long[LatencyHistogram.BUCKET_COUNT];
+  private long retainedTotal;
+  private long retainedOutcomes;
+
+  private OutcomeHistogram() {
+  }
+
+  void record(long nanos, boolean outcome) {
+    while (true) {
+      Interval interval = current;
+      interval.recording.incrementAndGet();
+      try {
+        // A snapshot which swapped this interval out before we registered may already have drained it, so try again.
+        if (interval == current) {
+          if (outcome) {
+            interval.outcomes.incrementAndGet();
+          }
+          interval.latency.record(nanos);
+          return;
+        }
+      } finally {
+        interval.recording.decrementAndGet();
+      }
+    }
+  }
+
+  Snapshot snapshot(boolean reset) {
+    Interval drained = current;
+    current = spare;
+    while (drained.recording.get() > 0) {
+      Thread.yield();
+    }
+
+    retainedTotal += drained.latency.drainInto(retainedCounts);
+    retainedOutcomes += drained.outcomes.getAndSet(0);
+    spare = drained;
+
+    Snapshot snapshot = new Snapshot(HistogramSnapshot.of(retainedCounts.clone(), retainedTotal), retainedOutcomes);
+    if (reset) {
+      Arrays.fill(retainedCounts, 0);
+      retainedTotal = 0;
+      retainedOutcomes = 0;
+    }
+    return snapshot;
+  }
+
+  static final class Snapshot {
+    private final HistogramSnapshot latency;
+    private final long outcomeCount;
+
+    private Snapshot(HistogramSnapshot latency, long outcomeCount) {
+      this.latency = latency;
+      this.outcomeCount = outcomeCount;
+    }
+
+    HistogramSnapshot getLatency() {
+      return latency;
+    }
+
+    long getOutcomeCount() {
+      return outcomeCount;
+    }
+  }
+
+  private static final class Interval {
+    private final LatencyHistogram latency = LatencyHistogram.create();
+    private final AtomicLong outcomes = new AtomicLong();
+    private final AtomicInteger recording = new AtomicInteger();
+  }
+}
@@ -0,0 +1,86 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics recorded for a single step over an interval.
+ */
+public final class StepMetrics {
+
+  private final UUID stepId;
+  private final String operationName;
+  private final long successCount;
+  private final long failureCount;
+  private final HistogramSnapshot latency;
+  private final long intervalNanos;
+
+  StepMetrics(UUID stepId, String operationName, long successCount, long failureCount, HistogramSnapshot latency, long intervalNanos) {
+    this.stepId = stepId;
+    this.operationName = operationName;
+    this.successCount = successCount;
+    this.failureCount = failureCount;
+    this.latency = latency;
+    this.intervalNanos = intervalNanos;
+  }
+
+  /**
+   * Get the id of the step.
+   *
+   * @return The id of the step.
+   */
+  public UUID getStepId() {
+    return stepId;
+  }
+
+  /**
+   * Get the name of the operation executed by the step.
+   *
+   * @return The name of the operation executed by the step.
+   */
+  public String getOperationName() {
+    return operationName;
+  }
+
+  /**
+   * Get the number of times the step completed successfully.
+   *
+   * @return The number of successful executions.
+   */
+  public long getSuccessCount() {
+    return successCount;
+  }
+
+  /**
+   * Get the number of times the step failed.
+   *
+   * @return The number of failed executions.
+   */
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  /**
+   * Get the latencies of the step's executions, whether successful or not.
+   *
+   * @return The latency histogram.
+   */
+  public HistogramSnapshot getLatency() {
+    return latency;
+  }
+
+  /**
+   * Get the mean rate at which the step was executed over the interval.
+   *
+   * @param unit The unit of time over which to express the rate.
+   * @return The number of executions per unit of time.
+   */
+  public double getThroughput(TimeUnit unit) {
+    return intervalNanos <= 0 ? 0 : (double) (successCount + failureCount) * unit.toNanos(1) / intervalNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: successes=%d, failures=%d, %s", operationName, successCount, failureCount, latency);
+  }
+}
@@ -0,0 +1,41 @@
+package com.codepoetics.fluvius.metrics;
+
+import java.util.UUID;
+
+/**
+ * Records the latency and outcome of a single step. Successes are not counted separately, but derived from the number of
+ * latencies recorded, so that a successful step costs only one histogram update. Failures are counted alongside the
+ * latencies, so that every snapshot's counts agree with its histogram.
+ */
+final class StepRecorder {
+
+  private final UUID stepId;
+  private final String operationName;
+  private final OutcomeHistogram latency = OutcomeHistogram.create();
+
+  StepRecorder(UUID stepId, String operationName) {
+    this.stepId = stepId;
+    this.operationName = operationName;
+  }
+
+  void recordSuccess(long nanos) {
+    latency.record(nanos, false);
+  }
+
+  void recordFailure(long nanos) {
+    latency.record(nanos, true);
+  }
+
+  StepMetrics snapshot(long intervalNanos, boolean reset) {
+    OutcomeHistogram.Snapshot snapshot = latency.snapshot(reset);
+    long failureCount = snapshot.getOutcomeCount();
+    HistogramSnapshot latencySnapshot = snapshot.getLatency();
+    return new StepMetrics(
+        stepId,
+        operationName,
+        latencySnapshot.getCount() - failureCount,
+        failureCount,
+        latencySnapshot,
+        intervalNanos);
+  }
+}
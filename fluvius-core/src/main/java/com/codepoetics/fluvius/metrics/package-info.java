@@ -0,0 +1,5 @@
+/**
+ * Provides a metrics-recording {@link com.codepoetics.fluvius.api.FlowVisitor} implementation, which records the latency
+ * and outcome of flow steps and conditions in {@link com.codepoetics.fluvius.metrics.FlowMetrics}.
+ */
+package com.codepoetics.fluvius.metrics;
@@ -0,0 +1,101 @@
+package com.codepoetics.fluvius.mutation;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the fingerprint of each object when it is first seen, so that it can later be checked for mutation.
+ * <p>
+ * Objects are held by weak reference and compared by identity, so the cache neither prevents values from being
+ * collected nor depends on their (possibly mutable) equals and hashCode.
+ * </p>
+ */
+public final class FingerprintCache {
+
+  /**
+   * Create an empty fingerprint cache.
+   * @return The constructed cache.
+   */
+  public static FingerprintCache create() {
+    return new FingerprintCache();
+  }
+
+  private final ConcurrentMap<IdentityReference, Long> fingerprints = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+  private FingerprintCache() {
+  }
+
+  /**
+   * Record the fingerprint of the supplied object, if it has not already been recorded.
+   * @param object The object to record.
+   */
+  public void record(Object object) {
+    if (Fingerprints.isImmutable(object)) {
+      return;
+    }
+    if (!fingerprints.containsKey(new IdentityReference(object, null))) {
+      store(object, Fingerprints.of(object));
+    }
+  }
+
+  /**
+   * Test whether the supplied object has been mutated since its fingerprint was recorded. If no fingerprint has been
+   * recorded, the object's current fingerprint is recorded and it is treated as unchanged.
+   * @param object The object to test.
+   * @return True if the object's current fingerprint matches the recorded fingerprint, false otherwise.
+   */
+  public boolean isUnchanged(Object object) {
+    if (Fingerprints.isImmutable(object)) {
+      return true;
+    }
+    long current = Fingerprints.of(object);
+    Long recorded = fingerprints.get(new IdentityReference(object, null));
+    if (recorded == null) {
+      store(object, current);
+      return true;
+    }
+    return recorded == current;
+  }
+
+  private void store(Object object, long fingerprint) {
+    expungeCollected();
+    fingerprints.putIfAbsent(new IdentityReference(object, collected), fingerprint);
+  }
+
+  private void expungeCollected() {
+    Reference<?> reference;
+    while ((reference = collected.poll()) != null) {
+      fingerprints.remove(reference);
+    }
+  }
+
+  private static final class IdentityReference extends WeakReference<Object> {
+    private final int hashCode;
+
+    private IdentityReference(Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.hashCode = System.identityHashCode(referent);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof IdentityReference)) {
+        return false;
+      }
+      Object referent = get();
+      return referent != null && referent == ((IdentityReference) other).get();
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.codepoetics.fluvius.mutation;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Computes 64-bit fingerprints of the mutable state of objects, which can be compared before and after an operation
+ * without retaining a copy of that state.
+ * <p>
+ * Objects are traversed in the same way as by {@link MutableState}: two objects whose mutable states are equal have
+ * equal fingerprints, and a change to an object's mutable state will almost certainly change its fingerprint.
+ * </p>
+ */
+public final class Fingerprints {
+
+  private static final long SEED = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  private Fingerprints() {
+  }
+
+  /**
+   * Test whether the supplied object is immutable, so that it need never be fingerprinted.
+   * @param object The object to test.
+   * @return True if the object is null or a scalar value, false otherwise.
+   */
+  public static boolean isImmutable(Object object) {
+    return object == null || ValueShape.of(object.getClass()).getKind() == ValueShape.Kind.SCALAR;
+  }
+
+  /**
+   * Compute the fingerprint of the mutable state of the supplied object.
+   * @param object The object to fingerprint.
+   * @return The fingerprint of the object's mutable state.
+   */
+  public static long of(Object object) {
+    if (object == null) {
+      return SEED;
+    }
+
+    ValueShape shape = ValueShape.of(object.getClass());
+    switch (shape.getKind()) {
+      case COLLECTION:
+        return ofIterable((Collection<?>) object);
+      case MAP:
+        return ofMap((Map<?, ?>) object);
+      case ARRAY:
+        return ofArray((Object[]) object);
+      case PRIMITIVE_ARRAY:
+        return ofPrimitiveArray(object);
+      case BEAN:
+        return ofBeanLike(object, shape);
+      default:
+        return mix(SEED, object.hashCode());
+    }
+  }
+
+  private static long ofIterable(Iterable<?> iterable) {
+    long result = SEED;
+    for (Object item : iterable) {
+      result = mix(result, of(item));
+    }
+    return result;
+  }
+
+  private static long ofMap(Map<?, ?> map) {
+    // Entries are combined commutatively, as iteration order is not part of a map's state.
+    long result = SEED;
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      result += mix(of(entry.getKey()), of(entry.getValue()));
+    }
+    return mix(result, map.size());
+  }
+
+  private static long ofArray(Object[] array) {
+    long result = SEED;
+    for (Object item : array) {
+      result = mix(result, of(item));
+    }
+    return result;
+  }
+
+  private static long ofPrimitiveArray(Object array) {
+    long result = SEED;
+    int length = Array.getLength(array);
+    for (int i = 0; i < length; i++) {
+      result = mix(result, Array.get(array, i).hashCode());
+    }
+    return result;
+  }
+
+  private static long ofBeanLike(Object object, ValueShape shape) {
+    long result = SEED;
+    for (int i = 0; i < shape.getPropertyCount(); i++) {
+      result = mix(result, of(shape.readProperty(object, i)));
+    }
+    return result;
+  }
+
+  private static long mix(long hash, long value) {
+    long mixed = (hash ^ value) * PRIME;
+    return mixed ^ (mixed >>> 29);
+  }
+}
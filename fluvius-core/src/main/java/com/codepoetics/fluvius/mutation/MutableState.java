@@ -1,9 +1,6 @@
 package com.codepoetics.fluvius.mutation;
 
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Array;
 import java.util.*;
 
 /**
@@ -20,37 +17,25 @@ public final class MutableState {
    * @return An equality-testable representation of the mutable state of the supplied object.
    */
   public static Object of(Object object) {
-    if (isScalar(object)) {
-      return object;
+    if (object == null) {
+      return null;
     }
-    if (object instanceof Collection) {
-      return ofCollection((Collection<?>) object);
-    }
-    if (object instanceof Map) {
-      return ofMap((Map<?, ?>) object);
-    }
-    if (object.getClass().isArray()) {
-      return ofArray((Object[]) object);
-    }
-    if (definesEquals(object)) {
-      return object;
-    }
-    if (hasGettableProperties(object)) {
-      return ofBeanLike(object);
-    }
-    return object;
-  }
 
-  private static boolean isScalar(Object object) {
-    return object == null
-        || object instanceof String
-        || object instanceof Character
-        || object instanceof Byte
-        || object instanceof Integer
-        || object instanceof Short
-        || object instanceof Long
-        || object instanceof Float
-        || object instanceof Double;
+    ValueShape shape = ValueShape.of(object.getClass());
+    switch (shape.getKind()) {
+      case COLLECTION:
+        return ofCollection((Collection<?>) object);
+      case MAP:
+        return ofMap((Map<?, ?>) object);
+      case ARRAY:
+        return ofArray((Object[]) object);
+      case PRIMITIVE_ARRAY:
+        return ofPrimitiveArray(object);
+      case BEAN:
+        return ofBeanLike(object, shape);
+      default:
+        return object;
+    }
   }
 
   private static Object ofCollection(Collection<?> collection) {
@@ -77,54 +62,21 @@ public final class MutableState {
     return contents;
   }
 
-  private static boolean definesEquals(Object object) {
-    try {
-      return !object.getClass().getMethod("equals", Object.class).getDeclaringClass().equals(Object.class);
-    } catch (NoSuchMethodException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  private static boolean hasGettableProperties(Object object) {
-    for (PropertyDescriptor descriptor : safeGetPropertyDescriptors(object)) {
-      if (descriptor.getReadMethod() != null && !belongsToObject(descriptor)) {
-        return true;
-      }
-    }
-    return false;
-  }
-
-  private static PropertyDescriptor[] safeGetPropertyDescriptors(Object object)  {
-    try {
-      return Introspector.getBeanInfo(object.getClass()).getPropertyDescriptors();
-    } catch (IntrospectionException e) {
-      throw new RuntimeException(e);
+  private static Object ofPrimitiveArray(Object array) {
+    int length = Array.getLength(array);
+    List<Object> contents = new ArrayList<>(length);
+    for (int i = 0; i < length; i++) {
+      contents.add(Array.get(array, i));
     }
+    return contents;
   }
 
-  private static Object ofBeanLike(Object object) {
+  private static Object ofBeanLike(Object object, ValueShape shape) {
     Map<String, Object> propertyValues = new HashMap<>();
-    for (PropertyDescriptor propertyDescriptor : safeGetPropertyDescriptors(object)) {
-      if (propertyDescriptor.getReadMethod() == null
-          || belongsToObject(propertyDescriptor)) {
-        continue;
-      }
-      propertyValues.put(propertyDescriptor.getName(), MutableState.of(safeReadProperty(object, propertyDescriptor)));
+    for (int i = 0; i < shape.getPropertyCount(); i++) {
+      propertyValues.put(shape.getPropertyName(i), MutableState.of(shape.readProperty(object, i)));
     }
     return propertyValues;
   }
 
-  private static boolean belongsToObject(PropertyDescriptor propertyDescriptor) {
-    return propertyDescriptor.getReadMethod().getDeclaringClass().equals(Object.class);
-  }
-
-  private static Object safeReadProperty(Object object, PropertyDescriptor propertyDescriptor)  {
-    try {
-      return propertyDescriptor.getReadMethod().invoke(object);
-    } catch (IllegalAccessException | InvocationTargetException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-
 }
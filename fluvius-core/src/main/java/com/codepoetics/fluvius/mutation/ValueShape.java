@@ -0,0 +1,147 @@
+package com.codepoetics.fluvius.mutation;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Describes how the mutable state of instances of a class is to be extracted. Shapes are computed once per class, so that
+ * bean introspection is not repeated for every value inspected.
+ */
+final class ValueShape {
+
+  enum Kind {
+    SCALAR,
+    COLLECTION,
+    MAP,
+    ARRAY,
+    PRIMITIVE_ARRAY,
+    EQUATABLE,
+    BEAN,
+    OPAQUE
+  }
+
+  private static final ConcurrentMap<Class<?>, ValueShape> SHAPES = new ConcurrentHashMap<>();
+
+  static ValueShape of(Class<?> type) {
+    ValueShape shape = SHAPES.get(type);
+    if (shape == null) {
+      shape = create(type);
+      ValueShape existing = SHAPES.putIfAbsent(type, shape);
+      if (existing != null) {
+        shape = existing;
+      }
+    }
+    return shape;
+  }
+
+  private static ValueShape create(Class<?> type) {
+    if (isScalar(type)) {
+      return new ValueShape(Kind.SCALAR);
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      return new ValueShape(Kind.COLLECTION);
+    }
+    if (Map.class.isAssignableFrom(type)) {
+      return new ValueShape(Kind.MAP);
+    }
+    if (type.isArray()) {
+      return new ValueShape(type.getComponentType().isPrimitive() ? Kind.PRIMITIVE_ARRAY : Kind.ARRAY);
+    }
+    if (definesEquals(type)) {
+      return new ValueShape(Kind.EQUATABLE);
+    }
+
+    List<PropertyDescriptor> gettableProperties = getGettableProperties(type);
+    if (gettableProperties.isEmpty()) {
+      return new ValueShape(Kind.OPAQUE);
+    }
+
+    String[] propertyNames = new String[gettableProperties.size()];
+    Method[] readMethods = new Method[gettableProperties.size()];
+    for (int i = 0; i < propertyNames.length; i++) {
+      propertyNames[i] = gettableProperties.get(i).getName();
+      readMethods[i] = gettableProperties.get(i).getReadMethod();
+    }
+    return new ValueShape(Kind.BEAN, propertyNames, readMethods);
+  }
+
+  private static boolean isScalar(Class<?> type) {
+    return type == String.class
+        || type == Character.class
+        || type == Byte.class
+        || type == Integer.class
+        || type == Short.class
+        || type == Long.class
+        || type == Float.class
+        || type == Double.class;
+  }
+
+  private static boolean definesEquals(Class<?> type) {
+    try {
+      return !type.getMethod("equals", Object.class).getDeclaringClass().equals(Object.class);
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static List<PropertyDescriptor> getGettableProperties(Class<?> type) {
+    PropertyDescriptor[] descriptors;
+    try {
+      descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+    } catch (IntrospectionException e) {
+      throw new RuntimeException(e);
+    }
+
+    List<PropertyDescriptor> result = new ArrayList<>(descriptors.length);
+    for (PropertyDescriptor descriptor : descriptors) {
+      if (descriptor.getReadMethod() != null
+          && !descriptor.getReadMethod().getDeclaringClass().equals(Object.class)) {
+        result.add(descriptor);
+      }
+    }
+    return result;
+  }
+
+  private final Kind kind;
+  private final String[] propertyNames;
+  private final Method[] readMethods;
+
+  private ValueShape(Kind kind) {
+    this(kind, new String[0], new Method[0]);
+  }
+
+  private ValueShape(Kind kind, String[] propertyNames, Method[] readMethods) {
+    this.kind = kind;
+    this.propertyNames = propertyNames;
+    this.readMethods = readMethods;
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  int getPropertyCount() {
+    return propertyNames.length;
+  }
+
+  String getPropertyName(int index) {
+    return propertyNames[index];
+  }
+
+  Object readProperty(Object object, int index) {
+    try {
+      return readMethods[index].invoke(object);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
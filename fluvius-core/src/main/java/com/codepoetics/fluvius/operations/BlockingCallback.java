@@ -0,0 +1,41 @@
+package com.codepoetics.fluvius.operations;
+
+import com.codepoetics.fluvius.api.OperationCallback;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link OperationCallback} which a synchronously-running flow can wait on for the result of an asynchronous operation.
+ *
+ * @param <T> The type of the result.
+ */
+final class BlockingCallback<T> implements OperationCallback<T> {
+  private final CountDownLatch latch = new CountDownLatch(1);
+  private volatile T result;
+  private volatile Exception failure;
+
+  @Override
+  public void onSuccess(T result) {
+    this.result = result;
+    latch.countDown();
+  }
+
+  @Override
+  public void onFailure(Exception failure) {
+    this.failure = failure;
+    latch.countDown();
+  }
+
+  T await() throws Exception {
+    latch.await();
+    if (failure != null) {
+      throw failure;
+    }
+    return result;
+  }
+
+  boolean await(long timeoutNanos) throws InterruptedException {
+    return latch.await(timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,84 @@
+package com.codepoetics.fluvius.operations;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.List;
+
+/**
+ * An {@link Operation} run through an {@link OperationInterceptor}, which is also an {@link AsyncOperation} or a
+ * {@link BatchOperation} exactly when the Operation it wraps is.
+ *
+ * @param <T> The type of the value returned by the Operation.
+ */
+class InterceptedOperation<T> implements Operation<T> {
+
+  @SuppressWarnings("unchecked")
+  static <T> Operation<T> of(Operation<T> operation, OperationInterceptor<T> interceptor) {
+    boolean isAsync = operation instanceof AsyncOperation;
+    if (operation instanceof BatchOperation) {
+      return isAsync
+          ? new AsyncBatch<>((BatchOperation<T>) operation, interceptor)
+          : new Batch<>((BatchOperation<T>) operation, interceptor);
+    }
+    return isAsync
+        ? new Async<>(operation, interceptor)
+        : new InterceptedOperation<>(operation, interceptor);
+  }
+
+  final Operation<T> operation;
+  final OperationInterceptor<T> interceptor;
+
+  private InterceptedOperation(Operation<T> operation, OperationInterceptor<T> interceptor) {
+    this.operation = operation;
+    this.interceptor = interceptor;
+  }
+
+  @Override
+  public String getName() {
+    return operation.getName();
+  }
+
+  @Override
+  public T run(Scratchpad scratchpad) throws Exception {
+    return interceptor.run(operation, scratchpad);
+  }
+
+  private static final class Async<T> extends InterceptedOperation<T> implements AsyncOperation<T> {
+    private Async(Operation<T> operation, OperationInterceptor<T> interceptor) {
+      super(operation, interceptor);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void run(Scratchpad scratchpad, OperationCallback<T> callback) {
+      interceptor.runAsync((AsyncOperation<T>) operation, scratchpad, callback);
+    }
+  }
+
+  private static class Batch<T> extends InterceptedOperation<T> implements BatchOperation<T> {
+    private Batch(BatchOperation<T> operation, OperationInterceptor<T> interceptor) {
+      super(operation, interceptor);
+    }
+
+    @Override
+    public List<T> runBatch(List<Scratchpad> scratchpads) throws Exception {
+      return interceptor.runBatch((BatchOperation<T>) operation, scratchpads);
+    }
+  }
+
+  private static final class AsyncBatch<T> extends Batch<T> implements AsyncOperation<T> {
+    private AsyncBatch(BatchOperation<T> operation, OperationInterceptor<T> interceptor) {
+      super(operation, interceptor);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void run(Scratchpad scratchpad, OperationCallback<T> callback) {
+      interceptor.runAsync((AsyncOperation<T>) operation, scratchpad, callback);
+    }
+  }
+}
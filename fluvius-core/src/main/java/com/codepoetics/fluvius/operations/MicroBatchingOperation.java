@@ -0,0 +1,211 @@
+package com.codepoetics.fluvius.operations;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.exceptions.StepTimeoutException;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups calls from concurrently-running flows into micro-batches, each of which is run with a single call to a
+ * {@link BatchOperation}.
+ * <p>
+ * Once a micro-batch has run, each caller's continuation is dispatched to the callback executor as a separate task, so
+ * that callers do not run one after another on the scheduler's thread or on the thread which filled the batch, and a
+ * continuation which throws cannot stop the others from running. Callers which are blocked waiting for their result are
+ * released directly, as that costs no more than a task hand-off, and wait no longer than their flow's deadline. If the
+ * batch operation fails, even with an {@link Error}, every caller in the micro-batch is failed.
+ * </p>
+ *
+ * @param <T> The type of the value returned by the operation.
+ */
+final class MicroBatchingOperation<T> implements BatchOperation<T>, AsyncOperation<T> {
+
+  private final BatchOperation<T> batchOperation;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final transient ScheduledExecutorService scheduler;
+  private final transient Executor callbackExecutor;
+  private final transient Object lock = new Object();
+  private transient MicroBatch pending;
+
+  MicroBatchingOperation(BatchOperation<T> batchOperation, int maxBatchSize, long maxDelayNanos, ScheduledExecutorService scheduler,
+                         Executor callbackExecutor) {
+    this.batchOperation = batchOperation;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = maxDelayNanos;
+    this.scheduler = scheduler;
+    this.callbackExecutor = callbackExecutor;
+  }
+
+  @Override
+  public String getName() {
+    return batchOperation.getName();
+  }
+
+  // A caller waiting for its result waits no longer than its flow's deadline, if it has one.
+  @Override
+  public T run(Scratchpad scratchpad) throws Exception {
+    BlockingCallback<T> callback = new BlockingCallback<>();
+    run(scratchpad, callback);
+
+    Deadline deadline = FlowDeadlines.forScratchpad(scratchpad);
+    if (deadline != null && !callback.await(deadline.getRemainingNanos())) {
+      throw new StepTimeoutException(
+          String.format("Operation %s did not complete before its flow's deadline", getName()));
+    }
+    return callback.await();
+  }
+
+  @Override
+  public List<T> runBatch(List<Scratchpad> scratchpads) throws Exception {
+    return batchOperation.runBatch(scratchpads);
+  }
+
+  @Override
+  public void run(Scratchpad scratchpad, OperationCallback<T> callback) {
+    MicroBatch full = null;
+    MicroBatch started = null;
+
+    synchronized (lock) {
+      if (pending == null) {
+        pending = new MicroBatch();
+        started = pending;
+      }
+      pending.add(scratchpad, callback);
+      if (pending.size() >= maxBatchSize) {
+        full = pending;
+        pending = null;
+      }
+    }
+
+    if (full != null) {
+      full.run();
+    } else if (started != null) {
+      schedule(started);
+    }
+  }
+
+  private void schedule(MicroBatch batch) {
+    try {
+      scheduler.schedule(new Expiry(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      expire(batch);
+    }
+  }
+
+  private void expire(MicroBatch batch) {
+    synchronized (lock) {
+      if (pending != batch) {
+        // The batch filled up and has already been run.
+        return;
+      }
+      pending = null;
+    }
+    batch.run();
+  }
+
+  private final class Expiry implements Runnable {
+    private final MicroBatch batch;
+
+    private Expiry(MicroBatch batch) {
+      this.batch = batch;
+    }
+
+    @Override
+    public void run() {
+      expire(batch);
+    }
+  }
+
+  private final class MicroBatch {
+    private final List<Scratchpad> scratchpads = new ArrayList<>();
+    private final List<OperationCallback<T>> callbacks = new ArrayList<>();
+
+    void add(Scratchpad scratchpad, OperationCallback<T> callback) {
+      scratchpads.add(scratchpad);
+      callbacks.add(callback);
+    }
+
+    int size() {
+      return scratchpads.size();
+    }
+
+    void run() {
+      List<T> results;
+      try {
+        results = batchOperation.runBatch(scratchpads);
+        if (results.size() != scratchpads.size()) {
+          throw new IllegalStateException(String.format(
+              "Batch operation %s returned %d results for %d inputs", getName(), results.size(), scratchpads.size()));
+        }
+      } catch (Exception e) {
+        failAll(e);
+        return;
+      } catch (Error e) {
+        // Every caller is still waiting, so each must be failed before the error is allowed to propagate.
+        failAll(new IllegalStateException(String.format("Batch operation %s failed", getName()), e));
+        throw e;
+      }
+
+      for (int i = 0; i < callbacks.size(); i++) {
+        dispatch(new Completion(callbacks.get(i), results.get(i), null));
+      }
+    }
+
+    private void failAll(Exception failure) {
+      for (OperationCallback<T> callback : callbacks) {
+        dispatch(new Completion(callback, null, failure));
+      }
+    }
+
+    private void dispatch(Completion completion) {
+      if (completion.callback instanceof BlockingCallback) {
+        completion.run();
+        return;
+      }
+
+      try {
+        callbackExecutor.execute(completion);
+      } catch (RejectedExecutionException e) {
+        completion.run();
+      }
+    }
+  }
+
+  private final class Completion implements Runnable {
+    private final OperationCallback<T> callback;
+    private final T result;
+    private final Exception failure;
+
+    private Completion(OperationCallback<T> callback, T result, Exception failure) {
+      this.callback = callback;
+      this.result = result;
+      this.failure = failure;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (failure == null) {
+          callback.onSuccess(result);
+        } else {
+          callback.onFailure(failure);
+        }
+      } catch (RuntimeException | Error e) {
+        // The continuation belongs to its own flow, and has nowhere else to report its failure.
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.codepoetics.fluvius.operations;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.List;
+
+/**
+ * Decorates each of the ways in which an {@link Operation} can be run, so that an Operation wrapped with
+ * {@link Operations#intercept(Operation, OperationInterceptor)} keeps running asynchronously or in batches if the Operation
+ * it wraps can.
+ *
+ * @param <T> The type of the value returned by the intercepted Operation.
+ */
+public interface OperationInterceptor<T> {
+
+  /**
+   * Run the intercepted Operation synchronously.
+   *
+   * @param operation The intercepted Operation.
+   * @param scratchpad The scratchpad to run it against.
+   * @return The result of the Operation.
+   * @throws Exception The failure of the Operation.
+   */
+  T run(Operation<T> operation, Scratchpad scratchpad) throws Exception;
+
+  /**
+   * Run the intercepted Operation asynchronously, if it is an {@link AsyncOperation}.
+   *
+   * @param operation The intercepted Operation.
+   * @param scratchpad The scratchpad to run it against.
+   * @param callback The callback to supply the result to.
+   */
+  void runAsync(AsyncOperation<T> operation, Scratchpad scratchpad, OperationCallback<T> callback);
+
+  /**
+   * Run the intercepted Operation against a batch of scratchpads, if it is a {@link BatchOperation}.
+   *
+   * @param operation The intercepted Operation.
+   * @param scratchpads The scratchpads to run it against.
+   * @return The results of the Operation, in the same order as the scratchpads.
+   * @throws Exception The failure of the Operation.
+   */
+  List<T> runBatch(BatchOperation<T> operation, List<Scratchpad> scratchpads) throws Exception;
+}
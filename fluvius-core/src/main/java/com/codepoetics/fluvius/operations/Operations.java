@@ -1,8 +1,17 @@
 package com.codepoetics.fluvius.operations;
 
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
 import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
 import com.codepoetics.fluvius.api.functional.ScratchpadFunction;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowExecutors;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class for working with Operations.
@@ -24,6 +33,145 @@ public final class Operations {
     return new FunctionOperation<>(name, function);
   }
 
+  /**
+   * Construct an Operation from the supplied AsyncOperation.
+   * <p>
+   * Flows run with {@link com.codepoetics.fluvius.api.ConcurrentFlowExecution#runAsync} will run the AsyncOperation without blocking;
+   * flows run synchronously will block until the AsyncOperation has supplied its result.
+   * </p>
+   *
+   * @param asyncOperation The AsyncOperation to execute.
+   * @param <T>      The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> Operation<T> fromAsync(AsyncOperation<T> asyncOperation) {
+    return new AsyncOperationAdapter<>(asyncOperation);
+  }
+
+  /**
+   * Construct an Operation which groups calls arriving from concurrently-running flows into micro-batches, and runs each
+   * micro-batch with a single call to the supplied {@link BatchOperation}, passing each flow its own result.
+   * <p>
+   * A micro-batch is run as soon as it holds the maximum number of calls, on the thread which made the last of them, or
+   * when the maximum delay has passed since its first call, on the supplied scheduler. The Operation is also an
+   * {@link AsyncOperation}, so that flows run with {@link com.codepoetics.fluvius.api.ConcurrentFlowExecution#runAsync} do not
+   * occupy a thread while they wait for their micro-batch to run; flows run synchronously block until it has run.
+   * Explicit batches, run with {@link com.codepoetics.fluvius.api.ConcurrentFlowExecution#runBatch}, are passed straight through.
+   * The remainder of each asynchronously-running flow is continued on
+   * {@link com.codepoetics.fluvius.execution.FlowExecutors#virtualThreads()}.
+   * </p>
+   *
+   * @param batchOperation The BatchOperation to run micro-batches with.
+   * @param maxBatchSize   The maximum number of calls in a micro-batch.
+   * @param maxDelay       The maximum time to wait for a micro-batch to fill.
+   * @param unit           The unit in which the maximum delay is given.
+   * @param scheduler      The scheduler on which to run micro-batches which do not fill in time.
+   * @param <T>            The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> Operation<T> microBatching(BatchOperation<T> batchOperation, int maxBatchSize, long maxDelay, TimeUnit unit,
+                                               ScheduledExecutorService scheduler) {
+    return microBatching(batchOperation, maxBatchSize, maxDelay, unit, scheduler, FlowExecutors.virtualThreads());
+  }
+
+  /**
+   * Construct an Operation which groups calls arriving from concurrently-running flows into micro-batches, as
+   * {@link #microBatching(BatchOperation, int, long, TimeUnit, ScheduledExecutorService)} does, continuing the remainder of
+   * each asynchronously-running flow on the supplied executor. Each flow is continued as a separate task, so that flows
+   * sharing a micro-batch do not wait for one another, and a flow which fails cannot stop the others from continuing.
+   *
+   * @param batchOperation   The BatchOperation to run micro-batches with.
+   * @param maxBatchSize     The maximum number of calls in a micro-batch.
+   * @param maxDelay         The maximum time to wait for a micro-batch to fill.
+   * @param unit             The unit in which the maximum delay is given.
+   * @param scheduler        The scheduler on which to run micro-batches which do not fill in time.
+   * @param callbackExecutor The executor on which to continue flows once their micro-batch has run.
+   * @param <T>              The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> Operation<T> microBatching(BatchOperation<T> batchOperation, int maxBatchSize, long maxDelay, TimeUnit unit,
+                                               ScheduledExecutorService scheduler, Executor callbackExecutor) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Maximum batch size must be positive");
+    }
+    return new MicroBatchingOperation<>(batchOperation, maxBatchSize, unit.toNanos(maxDelay), scheduler, callbackExecutor);
+  }
+
+  /**
+   * Construct an Operation which runs the supplied Operation through the supplied {@link OperationInterceptor}. The
+   * constructed Operation is an {@link AsyncOperation} or a {@link BatchOperation} exactly when the supplied Operation is,
+   * so that decorating an Operation never stops it from running asynchronously or in batches.
+   *
+   * @param operation   The Operation to intercept.
+   * @param interceptor The interceptor to run it through.
+   * @param <T>         The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> Operation<T> intercept(Operation<T> operation, OperationInterceptor<T> interceptor) {
+    return InterceptedOperation.of(operation, interceptor);
+  }
+
+  /**
+   * Construct an Operation which fails with a {@link com.codepoetics.fluvius.exceptions.StepTimeoutException} if the
+   * supplied Operation does not complete within the given timeout.
+   * <p>
+   * A synchronous Operation is run on {@link com.codepoetics.fluvius.execution.FlowExecutors#virtualThreads()} so that the
+   * flow can stop waiting for it, and is interrupted if it overruns; an {@link AsyncOperation} is timed without occupying
+   * a thread.
+   * </p>
+   *
+   * @param operation The Operation to time.
+   * @param timeout   The time the Operation is allowed to take.
+   * @param unit      The unit in which the timeout is given.
+   * @param <T>       The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> Operation<T> withTimeout(Operation<T> operation, long timeout, TimeUnit unit) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    return TimeLimitedOperation.withTimeout(operation, unit.toNanos(timeout));
+  }
+
+  /**
+   * Construct an Operation which fails with a {@link com.codepoetics.fluvius.exceptions.StepTimeoutException} if the
+   * supplied Operation does not complete before the given {@link Deadline}, or if the deadline has already passed when it
+   * is run.
+   *
+   * @param operation The Operation to time.
+   * @param deadline  The deadline by which the Operation must complete.
+   * @param <T>       The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> Operation<T> withDeadline(Operation<T> operation, Deadline deadline) {
+    return TimeLimitedOperation.withDeadline(operation, deadline);
+  }
+
+  private static final class AsyncOperationAdapter<T> implements Operation<T>, AsyncOperation<T> {
+    private final AsyncOperation<T> asyncOperation;
+
+    private AsyncOperationAdapter(AsyncOperation<T> asyncOperation) {
+      this.asyncOperation = asyncOperation;
+    }
+
+    @Override
+    public String getName() {
+      return asyncOperation.getName();
+    }
+
+    @Override
+    public void run(Scratchpad scratchpad, OperationCallback<T> callback) {
+      asyncOperation.run(scratchpad, callback);
+    }
+
+    @Override
+    public T run(Scratchpad scratchpad) throws Exception {
+      BlockingCallback<T> callback = new BlockingCallback<>();
+      asyncOperation.run(scratchpad, callback);
+      return callback.await();
+    }
+  }
+
   private static final class FunctionOperation<T> implements Operation<T> {
     private final String name;
     private final ScratchpadFunction<T> function;
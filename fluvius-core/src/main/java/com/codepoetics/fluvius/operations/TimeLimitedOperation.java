@@ -0,0 +1,215 @@
+package com.codepoetics.fluvius.operations;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.exceptions.StepTimeoutException;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+import com.codepoetics.fluvius.execution.FlowExecutors;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link Operation} which fails with a {@link StepTimeoutException} if the operation it wraps does not complete within a
+ * fixed timeout, or before a {@link Deadline}.
+ * <p>
+ * A synchronous operation is handed off to {@link FlowExecutors#virtualThreads()}, so that the calling thread can stop waiting
+ * for it, and is interrupted if it overruns. A fixed timeout is cut short by the deadline of the flow running the operation,
+ * if that falls sooner. An {@link AsyncOperation} is waited on directly, or, when run asynchronously,
+ * raced against a shared timer, so that no thread is occupied while it runs.
+ * </p>
+ *
+ * @param <T> The type of the value returned by the Operation.
+ */
+final class TimeLimitedOperation<T> implements Operation<T>, AsyncOperation<T> {
+
+  private static final class TimerHolder {
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+      ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "fluvius-timeout");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      timer.setRemoveOnCancelPolicy(true);
+      return timer;
+    }
+  }
+
+  static <T> Operation<T> withTimeout(Operation<T> operation, long timeoutNanos) {
+    return new TimeLimitedOperation<>(operation, timeoutNanos, null);
+  }
+
+  static <T> Operation<T> withDeadline(Operation<T> operation, Deadline deadline) {
+    return new TimeLimitedOperation<>(operation, 0, deadline);
+  }
+
+  private final Operation<T> operation;
+  private final long timeoutNanos;
+  private final Deadline deadline;
+
+  private TimeLimitedOperation(Operation<T> operation, long timeoutNanos, Deadline deadline) {
+    this.operation = operation;
+    this.timeoutNanos = timeoutNanos;
+    this.deadline = deadline;
+  }
+
+  @Override
+  public String getName() {
+    return operation.getName();
+  }
+
+  @Override
+  public T run(Scratchpad scratchpad) throws Exception {
+    Deadline flowDeadline = FlowDeadlines.forScratchpad(scratchpad);
+    long remainingNanos = getRemainingNanos(flowDeadline);
+    if (remainingNanos <= 0) {
+      throw timedOut(flowDeadline);
+    }
+
+    return operation instanceof AsyncOperation
+        ? awaitAsync((AsyncOperation<T>) operation, scratchpad, remainingNanos, flowDeadline)
+        : awaitHandedOff(scratchpad, remainingNanos, flowDeadline);
+  }
+
+  private T awaitAsync(AsyncOperation<T> asyncOperation, Scratchpad scratchpad, long remainingNanos, Deadline flowDeadline) throws Exception {
+    BlockingCallback<T> callback = new BlockingCallback<>();
+    asyncOperation.run(scratchpad, callback);
+    if (!callback.await(remainingNanos)) {
+      throw timedOut(flowDeadline);
+    }
+    return callback.await();
+  }
+
+  private T awaitHandedOff(final Scratchpad scratchpad, long remainingNanos, Deadline flowDeadline) throws Exception {
+    FutureTask<T> task = new FutureTask<>(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        return operation.run(scratchpad);
+      }
+    });
+    FlowExecutors.virtualThreads().execute(task);
+
+    try {
+      return task.get(remainingNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      task.cancel(true);
+      throw timedOut(flowDeadline);
+    } catch (InterruptedException e) {
+      task.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw cause instanceof Exception ? (Exception) cause : e;
+    }
+  }
+
+  @Override
+  public void run(Scratchpad scratchpad, OperationCallback<T> callback) {
+    if (!(operation instanceof AsyncOperation)) {
+      T result;
+      try {
+        result = run(scratchpad);
+      } catch (Exception e) {
+        callback.onFailure(e);
+        return;
+      }
+      callback.onSuccess(result);
+      return;
+    }
+
+    final Deadline flowDeadline = FlowDeadlines.forScratchpad(scratchpad);
+    long remainingNanos = getRemainingNanos(flowDeadline);
+    if (remainingNanos <= 0) {
+      callback.onFailure(timedOut(flowDeadline));
+      return;
+    }
+
+    final TimedCallback<T> timedCallback = new TimedCallback<>(callback);
+    timedCallback.setTimer(TimerHolder.TIMER.schedule(new Runnable() {
+      @Override
+      public void run() {
+        timedCallback.onFailure(timedOut(flowDeadline));
+      }
+    }, remainingNanos, TimeUnit.NANOSECONDS));
+
+    try {
+      ((AsyncOperation<T>) operation).run(scratchpad, timedCallback);
+    } catch (RuntimeException e) {
+      timedCallback.onFailure(e);
+    }
+  }
+
+  // A step's own timeout is cut short by the deadline of the flow running it, if that falls sooner.
+  private long getRemainingNanos(Deadline flowDeadline) {
+    if (deadline != null) {
+      return deadline.getRemainingNanos();
+    }
+    return flowDeadline == null ? timeoutNanos : Math.min(timeoutNanos, flowDeadline.getRemainingNanos());
+  }
+
+  private StepTimeoutException timedOut(Deadline flowDeadline) {
+    return new StepTimeoutException(deadline == null && (flowDeadline == null || !flowDeadline.isExpired())
+        ? String.format("Operation %s did not complete within %dms", operation.getName(), TimeUnit.NANOSECONDS.toMillis(timeoutNanos))
+        : String.format("Operation %s did not complete before its flow's deadline", operation.getName()));
+  }
+
+  private static final class TimedCallback<T> implements OperationCallback<T> {
+    private final OperationCallback<T> callback;
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile ScheduledFuture<?> timer;
+
+    private TimedCallback(OperationCallback<T> callback) {
+      this.callback = callback;
+    }
+
+    private void setTimer(ScheduledFuture<?> timer) {
+      this.timer = timer;
+      if (completed.get()) {
+        timer.cancel(false);
+      }
+    }
+
+    @Override
+    public void onSuccess(T result) {
+      if (complete()) {
+        callback.onSuccess(result);
+      }
+    }
+
+    @Override
+    public void onFailure(Exception failure) {
+      if (complete()) {
+        callback.onFailure(failure);
+      }
+    }
+
+    private boolean complete() {
+      if (!completed.compareAndSet(false, true)) {
+        return false;
+      }
+      ScheduledFuture<?> scheduled = timer;
+      if (scheduled != null) {
+        scheduled.cancel(false);
+      }
+      return true;
+    }
+  }
+}
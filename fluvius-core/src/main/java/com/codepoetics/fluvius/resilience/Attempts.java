@@ -0,0 +1,222 @@
+package com.codepoetics.fluvius.resilience;
+
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowExecutors;
+import com.codepoetics.fluvius.execution.HedgeRace;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the attempts of a step according to its retry and hedge policies.
+ */
+final class Attempts {
+
+  private static final class TimerHolder {
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+      ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "fluvius-hedging");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      timer.setRemoveOnCancelPolicy(true);
+      return timer;
+    }
+  }
+
+  private Attempts() {
+  }
+
+  /**
+   * A single attempt at running a step, whose result records either a value or a failure.
+   *
+   * @param <R> The type of the result of the attempt.
+   */
+  interface Attempt<R> {
+    /**
+     * Run the attempt.
+     *
+     * @param race The race between the attempts of a hedged run of the step, or null if the run is not hedged.
+     * @param attemptNumber The number of the attempt within the race.
+     * @return The result of the attempt.
+     */
+    R run(HedgeRace race, int attemptNumber);
+
+    Exception failureOf(R result);
+
+    R failed(Exception failure);
+  }
+
+  static <R> R run(RetryPolicy retryPolicy, HedgeTracker hedgeTracker, Deadline deadline, Attempt<R> attempt) {
+    if (retryPolicy == null) {
+      return runOnce(hedgeTracker, attempt);
+    }
+
+    for (int attemptNumber = 1; ; attemptNumber++) {
+      R result = runOnce(hedgeTracker, attempt);
+      Exception failure = attempt.failureOf(result);
+      if (failure == null || attemptNumber >= retryPolicy.getMaxAttempts() || !retryPolicy.isRetryable(failure)) {
+        return result;
+      }
+
+      long backoffNanos = retryPolicy.getBackoffNanos(attemptNumber);
+      if (deadline != null && deadline.getRemainingNanos() <= backoffNanos) {
+        return result;
+      }
+
+      if (backoffNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(backoffNanos);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return result;
+        }
+      }
+    }
+  }
+
+  private static <R> R runOnce(HedgeTracker hedgeTracker, Attempt<R> attempt) {
+    if (hedgeTracker == null) {
+      return attempt.run(null, 1);
+    }
+
+    // The step's latency is the time until its result was available, whichever attempt it came from.
+    long startedAt = System.nanoTime();
+    try {
+      return new HedgedRun<>(attempt, hedgeTracker).runAttempts();
+    } finally {
+      hedgeTracker.record(System.nanoTime() - startedAt);
+    }
+  }
+
+  /**
+   * A run of a hedged step, whose first attempt runs on the calling thread. If it has not completed when the hedge delay
+   * has passed, and the hedge budget allows, a second attempt is handed off; if that succeeds first, the first attempt is
+   * interrupted and its result discarded.
+   */
+  private static final class HedgedRun<R> implements Runnable {
+
+    private static final int PRIMARY = 1;
+    private static final int HEDGE = 2;
+
+    private final Attempt<R> attempt;
+    private final HedgeTracker hedgeTracker;
+    private final HedgeRace race = HedgeRace.create();
+    private final Thread caller = Thread.currentThread();
+
+    // Guarded by this.
+    private boolean primaryRunning = true;
+    private boolean primaryInterrupted;
+    private FutureTask<R> hedge;
+
+    private HedgedRun(Attempt<R> attempt, HedgeTracker hedgeTracker) {
+      this.attempt = attempt;
+      this.hedgeTracker = hedgeTracker;
+    }
+
+    R runAttempts() {
+      ScheduledFuture<?> timer = TimerHolder.TIMER.schedule(this, hedgeTracker.getDelayNanos(), TimeUnit.NANOSECONDS);
+      R primaryResult;
+      try {
+        primaryResult = attempt.run(race, PRIMARY);
+      } finally {
+        timer.cancel(false);
+        primaryFinished();
+      }
+
+      FutureTask<R> hedgeTask = getHedge();
+      if (attempt.failureOf(primaryResult) == null || hedgeTask == null) {
+        if (race.settle(PRIMARY)) {
+          cancel(hedgeTask);
+          return primaryResult;
+        }
+        return resultOf(hedgeTask);
+      }
+
+      // The primary attempt failed, so the step waits for the hedge, whatever its outcome.
+      R hedgeResult = resultOf(hedgeTask);
+      race.settle(HEDGE);
+      return hedgeResult;
+    }
+
+    // Runs on the timer thread when the hedge delay has passed.
+    @Override
+    public synchronized void run() {
+      if (!primaryRunning || !hedgeTracker.tryHedge()) {
+        return;
+      }
+
+      FutureTask<R> task = new FutureTask<>(new Callable<R>() {
+        @Override
+        public R call() {
+          R result = attempt.run(race, HEDGE);
+          if (attempt.failureOf(result) == null && race.settle(HEDGE)) {
+            interruptPrimary();
+          }
+          return result;
+        }
+      });
+      try {
+        FlowExecutors.virtualThreads().execute(task);
+      } catch (RejectedExecutionException e) {
+        return;
+      }
+      hedge = task;
+    }
+
+    private synchronized FutureTask<R> getHedge() {
+      return hedge;
+    }
+
+    private synchronized void interruptPrimary() {
+      if (primaryRunning) {
+        primaryInterrupted = true;
+        caller.interrupt();
+      }
+    }
+
+    private synchronized void primaryFinished() {
+      primaryRunning = false;
+      if (primaryInterrupted) {
+        Thread.interrupted();
+      }
+    }
+
+    private R resultOf(FutureTask<R> task) {
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        cancel(task);
+        race.settle(PRIMARY);
+        Thread.currentThread().interrupt();
+        return attempt.failed(e);
+      } catch (CancellationException e) {
+        return attempt.failed(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+      }
+    }
+
+    private static void cancel(FutureTask<?> task) {
+      if (task != null) {
+        task.cancel(true);
+      }
+    }
+  }
+}
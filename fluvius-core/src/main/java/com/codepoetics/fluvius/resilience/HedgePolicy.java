@@ -0,0 +1,123 @@
+package com.codepoetics.fluvius.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specifies when a step which has not yet completed is hedged by starting a second, duplicate attempt, whose result is
+ * used if it completes successfully first.
+ * <p>
+ * A step may be hedged after a fixed delay, or after a percentile of its own recent latency, so that only the slowest
+ * attempts are duplicated. Latencies are gathered in windows of a fixed number of completed attempts, and the delay is
+ * recalculated from each window as it fills; until the first window has filled, the initial delay is used. The recorded
+ * latency of a step is the time until its result was available, from whichever attempt, so that attempts abandoned in
+ * favour of a hedge still count towards the delay.
+ * </p>
+ * <p>
+ * So that a slowdown affecting every attempt does not double the load on whatever the step calls, hedging is capped at a
+ * proportion of the step's runs, by default a tenth, within each window; once the cap is reached, slow attempts are
+ * waited on without being hedged until the next window begins.
+ * </p>
+ */
+public final class HedgePolicy {
+
+  private static final int DEFAULT_SAMPLE_SIZE = 256;
+  private static final double DEFAULT_MAX_HEDGE_RATE = 0.1;
+
+  /**
+   * Create a policy which hedges a step if it has not completed after the supplied delay.
+   *
+   * @param delay The time to wait before hedging.
+   * @param unit The unit in which the time is given.
+   * @return The constructed hedge policy.
+   */
+  public static HedgePolicy after(long delay, TimeUnit unit) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("Delay must not be negative");
+    }
+    return new HedgePolicy(Double.NaN, unit.toNanos(delay), DEFAULT_SAMPLE_SIZE, DEFAULT_MAX_HEDGE_RATE);
+  }
+
+  /**
+   * Create a policy which hedges a step if it has not completed within the supplied percentile of its recent latency.
+   *
+   * @param percentile The percentile of latency after which to hedge, between 0 and 100.
+   * @param initialDelay The time to wait before hedging until enough latencies have been recorded.
+   * @param unit The unit in which the initial delay is given.
+   * @return The constructed hedge policy.
+   */
+  public static HedgePolicy atPercentile(double percentile, long initialDelay, TimeUnit unit) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be greater than 0 and no greater than 100");
+    }
+    if (initialDelay < 0) {
+      throw new IllegalArgumentException("Initial delay must not be negative");
+    }
+    return new HedgePolicy(percentile, unit.toNanos(initialDelay), DEFAULT_SAMPLE_SIZE, DEFAULT_MAX_HEDGE_RATE);
+  }
+
+  private final double percentile;
+  private final long delayNanos;
+  private final int sampleSize;
+  private final double maxHedgeRate;
+
+  private HedgePolicy(double percentile, long delayNanos, int sampleSize, double maxHedgeRate) {
+    this.percentile = percentile;
+    this.delayNanos = delayNanos;
+    this.sampleSize = sampleSize;
+    this.maxHedgeRate = maxHedgeRate;
+  }
+
+  /**
+   * Create a policy which recalculates the hedging delay from windows of the supplied number of latencies.
+   *
+   * @param sampleSize The number of completed attempts from which each delay is calculated.
+   * @return The constructed hedge policy.
+   */
+  public HedgePolicy withSampleSize(int sampleSize) {
+    if (sampleSize < 1) {
+      throw new IllegalArgumentException("Sample size must be positive");
+    }
+    return new HedgePolicy(percentile, delayNanos, sampleSize, maxHedgeRate);
+  }
+
+  /**
+   * Create a policy which hedges at most the supplied proportion of the step's runs within each window. At least one run
+   * in each window may always be hedged.
+   *
+   * @param maxHedgeRate The largest proportion of runs to hedge, between 0 and 1.
+   * @return The constructed hedge policy.
+   */
+  public HedgePolicy withMaxHedgeRate(double maxHedgeRate) {
+    if (maxHedgeRate < 0.0 || maxHedgeRate > 1.0) {
+      throw new IllegalArgumentException("Maximum hedge rate must be between 0 and 1");
+    }
+    return new HedgePolicy(percentile, delayNanos, sampleSize, maxHedgeRate);
+  }
+
+  boolean isAdaptive() {
+    return !Double.isNaN(percentile);
+  }
+
+  double getPercentile() {
+    return percentile;
+  }
+
+  long getDelayNanos() {
+    return delayNanos;
+  }
+
+  int getSampleSize() {
+    return sampleSize;
+  }
+
+  int getMaxHedgesPerWindow() {
+    return Math.max(1, (int) (sampleSize * maxHedgeRate));
+  }
+
+  @Override
+  public String toString() {
+    return isAdaptive()
+        ? String.format("hedged at p%s", percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile))
+        : String.format("hedged after %dms", TimeUnit.NANOSECONDS.toMillis(delayNanos));
+  }
+}
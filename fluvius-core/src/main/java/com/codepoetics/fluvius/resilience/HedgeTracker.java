@@ -0,0 +1,55 @@
+package com.codepoetics.fluvius.resilience;
+
+import com.codepoetics.fluvius.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the latency of a hedged step's runs, the delay after which the step is hedged, and how many of the runs in the
+ * current window have been hedged.
+ */
+final class HedgeTracker {
+
+  private final HedgePolicy policy;
+  private final LatencyHistogram latencies;
+  private final AtomicInteger samples = new AtomicInteger();
+  private final AtomicInteger hedges = new AtomicInteger();
+  private volatile long delayNanos;
+
+  HedgeTracker(HedgePolicy policy) {
+    this.policy = policy;
+    this.latencies = policy.isAdaptive() ? LatencyHistogram.create() : null;
+    this.delayNanos = policy.getDelayNanos();
+  }
+
+  long getDelayNanos() {
+    return delayNanos;
+  }
+
+  boolean tryHedge() {
+    int maxHedges = policy.getMaxHedgesPerWindow();
+    while (true) {
+      int hedged = hedges.get();
+      if (hedged >= maxHedges) {
+        return false;
+      }
+      if (hedges.compareAndSet(hedged, hedged + 1)) {
+        return true;
+      }
+    }
+  }
+
+  void record(long latencyNanos) {
+    if (latencies != null) {
+      latencies.record(latencyNanos);
+    }
+
+    if (samples.incrementAndGet() % policy.getSampleSize() == 0) {
+      if (latencies != null) {
+        delayNanos = (long) latencies.snapshotAndReset().getPercentile(policy.getPercentile(), TimeUnit.NANOSECONDS);
+      }
+      hedges.set(0);
+    }
+  }
+}
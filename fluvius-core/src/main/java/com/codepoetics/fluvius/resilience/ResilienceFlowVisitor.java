@@ -0,0 +1,115 @@
+package com.codepoetics.fluvius.resilience;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.FlowVisitor;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+import com.codepoetics.fluvius.execution.HedgeRace;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A {@link FlowVisitor} which runs the attempts of each step whose operation is a {@link ResilientOperation} as separate
+ * executions of the action built by the wrapped visitor, so that every attempt is seen by the decorations the wrapped
+ * visitor applies, such as tracing and metrics.
+ * <p>
+ * Retries stop early if the next backoff would outlast the flow's deadline. The first attempt of a hedged step runs on the
+ * calling thread, and only the hedge is handed off; if the hedge succeeds first, the first attempt is interrupted. Each
+ * attempt runs against a Scratchpad marked with its {@link HedgeRace}, so that a tracing visitor reports the start of every
+ * attempt, but the outcome of only the attempt whose result the step uses, and none after the step has completed.
+ * </p>
+ * <p>
+ * Resilient steps run synchronously, even in flows run asynchronously or in batches: a flow run asynchronously occupies its
+ * thread while a resilient step backs off or waits for its hedge, and the records of a batch make their attempts one
+ * record at a time.
+ * </p>
+ * <p>
+ * Like the parallel visitor, this visitor must wrap every decorating visitor whose decorations should apply to each attempt.
+ * </p>
+ */
+public final class ResilienceFlowVisitor implements FlowVisitor<Action> {
+
+  /**
+   * Create a new resilience FlowVisitor wrapping the supplied visitor.
+   *
+   * @param visitor The flow visitor to wrap.
+   * @return The constructed flow visitor.
+   */
+  public static FlowVisitor<Action> wrapping(FlowVisitor<Action> visitor) {
+    return new ResilienceFlowVisitor(visitor);
+  }
+
+  private final FlowVisitor<Action> innerVisitor;
+
+  private ResilienceFlowVisitor(FlowVisitor<Action> innerVisitor) {
+    this.innerVisitor = innerVisitor;
+  }
+
+  @Override
+  public <T> Action visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+    if (!(operation instanceof ResilientOperation)) {
+      return innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation);
+    }
+
+    ResilientOperation<T> resilientOperation = (ResilientOperation<T>) operation;
+    return new ResilientAction(
+        resilientOperation,
+        providedKey,
+        innerVisitor.visitSingle(stepId, requiredKeys, providedKey, resilientOperation.getOperation()));
+  }
+
+  @Override
+  public <T> Action visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<Action> items) {
+    return innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items);
+  }
+
+  @Override
+  public <T> Action visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Action defaultBranch, List<Conditional<Action>> conditionalBranches) {
+    return innerVisitor.visitBranch(stepId, requiredKeys, providedKey, defaultBranch, conditionalBranches);
+  }
+
+  @Override
+  public Condition visitCondition(Condition condition) {
+    return innerVisitor.visitCondition(condition);
+  }
+
+  private static final class ResilientAction implements Action {
+    private final ResilientOperation<?> operation;
+    private final Key<?> providedKey;
+    private final Action action;
+
+    private ResilientAction(ResilientOperation<?> operation, Key<?> providedKey, Action action) {
+      this.operation = operation;
+      this.providedKey = providedKey;
+      this.action = action;
+    }
+
+    @Override
+    public Scratchpad run(final UUID flowId, final Scratchpad scratchpad) {
+      return operation.runAttempts(FlowDeadlines.forScratchpad(scratchpad), new Attempts.Attempt<Scratchpad>() {
+        @Override
+        public Scratchpad run(HedgeRace race, int attemptNumber) {
+          return race == null
+              ? action.run(flowId, scratchpad)
+              : HedgeRace.unmark(action.run(flowId, race.mark(scratchpad, attemptNumber)));
+        }
+
+        @Override
+        public Exception failureOf(Scratchpad result) {
+          return result.isSuccessful(providedKey) ? null : result.getFailureReason(providedKey);
+        }
+
+        @Override
+        public Scratchpad failed(Exception failure) {
+          return scratchpad.with(providedKey.ofFailure(failure));
+        }
+      });
+    }
+  }
+}
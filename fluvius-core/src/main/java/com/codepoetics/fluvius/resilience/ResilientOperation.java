@@ -0,0 +1,119 @@
+package com.codepoetics.fluvius.resilience;
+
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+import com.codepoetics.fluvius.execution.HedgeRace;
+
+/**
+ * An {@link Operation} which is retried and/or hedged according to a {@link RetryPolicy} and a {@link HedgePolicy}.
+ * <p>
+ * When a flow is compiled with a {@link ResilienceFlowVisitor}, the visitor builds the step around the wrapped operation
+ * and runs each attempt as a separate execution of the step, so that every attempt is traced, logged and measured. Run
+ * directly, or in a fused flow, the Operation makes its attempts itself. Its name includes its policies, so that they
+ * appear in the flow's {@link com.codepoetics.fluvius.api.tracing.TraceMap}.
+ * </p>
+ *
+ * @param <T> The type of the value returned by the Operation.
+ */
+public final class ResilientOperation<T> implements Operation<T> {
+
+  /**
+   * Create an Operation which is retried and/or hedged according to the supplied policies.
+   *
+   * @param operation The Operation to retry or hedge.
+   * @param retryPolicy The policy for retrying failed attempts, or null if they should not be retried.
+   * @param hedgePolicy The policy for hedging slow attempts, or null if they should not be hedged.
+   * @param <T> The type of the value returned by the Operation.
+   * @return The constructed Operation.
+   */
+  public static <T> ResilientOperation<T> of(Operation<T> operation, RetryPolicy retryPolicy, HedgePolicy hedgePolicy) {
+    if (retryPolicy == null && hedgePolicy == null) {
+      throw new IllegalArgumentException("At least one of a retry policy and a hedge policy must be given");
+    }
+    return new ResilientOperation<>(operation, retryPolicy, hedgePolicy, hedgePolicy == null ? null : new HedgeTracker(hedgePolicy));
+  }
+
+  private final Operation<T> operation;
+  private final RetryPolicy retryPolicy;
+  private final HedgePolicy hedgePolicy;
+  private final HedgeTracker hedgeTracker;
+
+  private ResilientOperation(Operation<T> operation, RetryPolicy retryPolicy, HedgePolicy hedgePolicy, HedgeTracker hedgeTracker) {
+    this.operation = operation;
+    this.retryPolicy = retryPolicy;
+    this.hedgePolicy = hedgePolicy;
+    this.hedgeTracker = hedgeTracker;
+  }
+
+  /**
+   * Get the Operation which is retried or hedged.
+   *
+   * @return The wrapped Operation.
+   */
+  public Operation<T> getOperation() {
+    return operation;
+  }
+
+  @Override
+  public String getName() {
+    if (retryPolicy == null) {
+      return operation.getName() + " (" + hedgePolicy + ")";
+    }
+    return hedgePolicy == null
+        ? operation.getName() + " (" + retryPolicy + ")"
+        : operation.getName() + " (" + retryPolicy + ", " + hedgePolicy + ")";
+  }
+
+  @Override
+  public T run(final Scratchpad scratchpad) throws Exception {
+    Outcome<T> outcome = runAttempts(FlowDeadlines.forScratchpad(scratchpad), new Attempts.Attempt<Outcome<T>>() {
+      @Override
+      public Outcome<T> run(HedgeRace race, int attemptNumber) {
+        try {
+          return Outcome.success(operation.run(scratchpad));
+        } catch (Exception e) {
+          return Outcome.failure(e);
+        }
+      }
+
+      @Override
+      public Exception failureOf(Outcome<T> result) {
+        return result.failure;
+      }
+
+      @Override
+      public Outcome<T> failed(Exception failure) {
+        return Outcome.failure(failure);
+      }
+    });
+
+    if (outcome.failure != null) {
+      throw outcome.failure;
+    }
+    return outcome.value;
+  }
+
+  <R> R runAttempts(Deadline deadline, Attempts.Attempt<R> attempt) {
+    return Attempts.run(retryPolicy, hedgeTracker, deadline, attempt);
+  }
+
+  private static final class Outcome<T> {
+    static <T> Outcome<T> success(T value) {
+      return new Outcome<>(value, null);
+    }
+
+    static <T> Outcome<T> failure(Exception failure) {
+      return new Outcome<>(null, failure);
+    }
+
+    private final T value;
+    private final Exception failure;
+
+    private Outcome(T value, Exception failure) {
+      this.value = value;
+      this.failure = failure;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package com.codepoetics.fluvius.resilience;
+
+import com.codepoetics.fluvius.api.functional.Predicate;
+import com.codepoetics.fluvius.exceptions.FailedKeyRetrievedException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specifies how many times a failing step is attempted, how long to wait between attempts, and which failures are worth
+ * retrying.
+ * <p>
+ * The wait after the first failed attempt is the initial backoff, and each subsequent wait is longer by the multiplier, up
+ * to the maximum backoff. Jitter shortens each wait by a random fraction of itself, up to the given proportion, so that
+ * flows which failed together do not retry together. By default every failure is retried, except the failure to read a
+ * required key which itself holds a failure, since retrying cannot change the outcome.
+ * </p>
+ */
+public final class RetryPolicy {
+
+  private static final Predicate<Exception> RETRY_ALL_BUT_FAILED_INPUTS = new Predicate<Exception>() {
+    @Override
+    public boolean test(Exception value) {
+      return !(value instanceof FailedKeyRetrievedException);
+    }
+  };
+
+  /**
+   * Create a policy which attempts a step up to the supplied number of times, retrying immediately.
+   *
+   * @param maxAttempts The maximum number of attempts, including the first.
+   * @return The constructed retry policy.
+   */
+  public static RetryPolicy attempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Maximum number of attempts must be positive");
+    }
+    return new RetryPolicy(maxAttempts, 0, Long.MAX_VALUE, 2.0, 0.0, RETRY_ALL_BUT_FAILED_INPUTS);
+  }
+
+  private final int maxAttempts;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+  private final double multiplier;
+  private final double jitter;
+  private final Predicate<Exception> retryable;
+
+  private RetryPolicy(int maxAttempts, long initialBackoffNanos, long maxBackoffNanos, double multiplier, double jitter, Predicate<Exception> retryable) {
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffNanos = initialBackoffNanos;
+    this.maxBackoffNanos = maxBackoffNanos;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+    this.retryable = retryable;
+  }
+
+  /**
+   * Create a policy which also waits between attempts, starting with the supplied backoff and doubling it after each
+   * failed attempt unless another multiplier is given.
+   *
+   * @param initialBackoff The time to wait after the first failed attempt.
+   * @param unit The unit in which the time is given.
+   * @return The constructed retry policy.
+   */
+  public RetryPolicy withBackoff(long initialBackoff, TimeUnit unit) {
+    if (initialBackoff < 0) {
+      throw new IllegalArgumentException("Backoff must not be negative");
+    }
+    return new RetryPolicy(maxAttempts, unit.toNanos(initialBackoff), maxBackoffNanos, multiplier, jitter, retryable);
+  }
+
+  /**
+   * Create a policy which also caps the time waited between attempts.
+   *
+   * @param maxBackoff The longest time to wait between attempts.
+   * @param unit The unit in which the time is given.
+   * @return The constructed retry policy.
+   */
+  public RetryPolicy withMaxBackoff(long maxBackoff, TimeUnit unit) {
+    if (maxBackoff < 0) {
+      throw new IllegalArgumentException("Maximum backoff must not be negative");
+    }
+    return new RetryPolicy(maxAttempts, initialBackoffNanos, unit.toNanos(maxBackoff), multiplier, jitter, retryable);
+  }
+
+  /**
+   * Create a policy which multiplies the time waited by the supplied factor after each failed attempt.
+   *
+   * @param multiplier The factor by which each wait exceeds the last.
+   * @return The constructed retry policy.
+   */
+  public RetryPolicy withMultiplier(double multiplier) {
+    if (multiplier < 1.0) {
+      throw new IllegalArgumentException("Multiplier must be at least 1");
+    }
+    return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, retryable);
+  }
+
+  /**
+   * Create a policy which shortens each wait by a random fraction of itself, up to the supplied proportion.
+   *
+   * @param jitter The largest proportion of each wait to remove, between 0 and 1.
+   * @return The constructed retry policy.
+   */
+  public RetryPolicy withJitter(double jitter) {
+    if (jitter < 0.0 || jitter > 1.0) {
+      throw new IllegalArgumentException("Jitter must be between 0 and 1");
+    }
+    return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, retryable);
+  }
+
+  /**
+   * Create a policy which retries only failures of the supplied types, or their subtypes.
+   *
+   * @param exceptionTypes The types of failure to retry.
+   * @return The constructed retry policy.
+   */
+  @SafeVarargs
+  public final RetryPolicy retryingOn(Class<? extends Exception>... exceptionTypes) {
+    final List<Class<? extends Exception>> types = Arrays.asList(exceptionTypes);
+    return retryingIf(new Predicate<Exception>() {
+      @Override
+      public boolean test(Exception value) {
+        for (Class<? extends Exception> type : types) {
+          if (type.isInstance(value)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Create a policy which retries only the failures which satisfy the supplied predicate.
+   *
+   * @param retryable The predicate which tests whether a failure is worth retrying.
+   * @return The constructed retry policy.
+   */
+  public RetryPolicy retryingIf(Predicate<Exception> retryable) {
+    return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, retryable);
+  }
+
+  int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  boolean isRetryable(Exception failure) {
+    return retryable.test(failure);
+  }
+
+  long getBackoffNanos(int failedAttempts) {
+    if (initialBackoffNanos == 0) {
+      return 0;
+    }
+
+    double backoff = Math.min(initialBackoffNanos * Math.pow(multiplier, failedAttempts - 1), maxBackoffNanos);
+    if (jitter > 0.0) {
+      backoff -= backoff * jitter * ThreadLocalRandom.current().nextDouble();
+    }
+    return (long) backoff;
+  }
+
+  @Override
+  public String toString() {
+    return initialBackoffNanos == 0
+        ? String.format("up to %d attempts", maxAttempts)
+        : String.format("up to %d attempts, backing off from %dms", maxAttempts, TimeUnit.NANOSECONDS.toMillis(initialBackoffNanos));
+  }
+}
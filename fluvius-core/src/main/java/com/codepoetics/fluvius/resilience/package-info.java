@@ -0,0 +1,5 @@
+/**
+ * Provides retry and hedge policies for flow steps, and a {@link com.codepoetics.fluvius.api.FlowVisitor} implementation
+ * which runs each attempt of a retried or hedged step as a separate execution of the step.
+ */
+package com.codepoetics.fluvius.resilience;
@@ -0,0 +1,149 @@
+package com.codepoetics.fluvius.scratchpad;
+
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowVisitor;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Assigns each {@link Key} in a fixed universe of keys a dense slot index, so that values can be stored in an array
+ * rather than a map.
+ */
+public final class KeySlots implements Serializable {
+
+  /**
+   * Create KeySlots for every Key required or provided by the supplied {@link Flow} and any of its sub-flows.
+   *
+   * @param flow The flow to assign key slots for.
+   * @return The constructed KeySlots.
+   */
+  public static KeySlots forFlow(Flow<?> flow) {
+    Set<Key<?>> keys = new LinkedHashSet<>(flow.getRequiredKeys());
+    keys.addAll(flow.visit(new KeyCollectingVisitor()));
+    return of(keys);
+  }
+
+  /**
+   * Create KeySlots for the supplied Keys, which are assigned slots in iteration order.
+   *
+   * @param keys The keys to assign slots to.
+   * @return The constructed KeySlots.
+   */
+  public static KeySlots of(Collection<? extends Key<?>> keys) {
+    Key<?>[] keysBySlot = new LinkedHashSet<Key<?>>(keys).toArray(new Key<?>[0]);
+
+    int tableSize = Integer.highestOneBit(Math.max(keysBySlot.length, 1) * 4 - 1) << 1;
+    Key<?>[] table = new Key<?>[tableSize];
+    int[] tableSlots = new int[tableSize];
+    int mask = tableSize - 1;
+
+    for (int slot = 0; slot < keysBySlot.length; slot++) {
+      int index = spread(keysBySlot[slot].hashCode()) & mask;
+      while (table[index] != null) {
+        index = (index + 1) & mask;
+      }
+      table[index] = keysBySlot[slot];
+      tableSlots[index] = slot;
+    }
+
+    return new KeySlots(keysBySlot, table, tableSlots, mask);
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private final Key<?>[] keysBySlot;
+  private final Key<?>[] table;
+  private final int[] tableSlots;
+  private final int mask;
+
+  private KeySlots(Key<?>[] keysBySlot, Key<?>[] table, int[] tableSlots, int mask) {
+    this.keysBySlot = keysBySlot;
+    this.table = table;
+    this.tableSlots = tableSlots;
+    this.mask = mask;
+  }
+
+  /**
+   * Get the number of slots assigned.
+   *
+   * @return The number of slots assigned.
+   */
+  public int size() {
+    return keysBySlot.length;
+  }
+
+  /**
+   * Get the Key assigned to the supplied slot.
+   *
+   * @param slot The slot to get the Key for.
+   * @return The Key assigned to the slot.
+   */
+  public Key<?> keyAt(int slot) {
+    return keysBySlot[slot];
+  }
+
+  /**
+   * Get the slot assigned to the supplied Key.
+   *
+   * @param key The Key to get the slot for.
+   * @return The slot assigned to the Key, or -1 if the Key has not been assigned a slot.
+   */
+  public int indexOf(Key<?> key) {
+    int index = spread(key.hashCode()) & mask;
+    Key<?> candidate;
+    while ((candidate = table[index]) != null) {
+      if (candidate == key || candidate.equals(key)) {
+        return tableSlots[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  private static final class KeyCollectingVisitor implements FlowVisitor<Set<Key<?>>> {
+
+    @Override
+    public <T> Set<Key<?>> visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+      Set<Key<?>> keys = new LinkedHashSet<>(requiredKeys);
+      keys.add(providedKey);
+      return keys;
+    }
+
+    @Override
+    public <T> Set<Key<?>> visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<Set<Key<?>>> items) {
+      Set<Key<?>> keys = new LinkedHashSet<>(requiredKeys);
+      for (Set<Key<?>> item : items) {
+        keys.addAll(item);
+      }
+      keys.add(providedKey);
+      return keys;
+    }
+
+    @Override
+    public <T> Set<Key<?>> visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Set<Key<?>> defaultBranch, List<Conditional<Set<Key<?>>>> conditionalBranches) {
+      Set<Key<?>> keys = new LinkedHashSet<>(requiredKeys);
+      for (Conditional<Set<Key<?>>> conditional : conditionalBranches) {
+        keys.addAll(conditional.getValue());
+      }
+      keys.addAll(defaultBranch);
+      keys.add(providedKey);
+      return keys;
+    }
+
+    @Override
+    public Condition visitCondition(Condition condition) {
+      return condition;
+    }
+  }
+}
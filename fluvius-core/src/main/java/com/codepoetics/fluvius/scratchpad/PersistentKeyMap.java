@@ -0,0 +1,216 @@
+package com.codepoetics.fluvius.scratchpad;
+
+import com.codepoetics.fluvius.api.scratchpad.Key;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable hash array mapped trie of {@link Key}s to (non-null) values.
+ * <p>
+ * Updating the map copies only the path from the root to the updated entry, sharing every other node with the map
+ * it was derived from. Insertion order is recorded in a persistent list of keys, so that {@link #toMap()} returns
+ * entries in the same order as a {@link LinkedHashMap} populated with the same writes.
+ * </p>
+ */
+final class PersistentKeyMap implements Serializable {
+
+  private static final int BITS_PER_LEVEL = 5;
+  private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+  private static final PersistentKeyMap EMPTY = new PersistentKeyMap(BitmapNode.EMPTY, null, 0);
+
+  static PersistentKeyMap empty() {
+    return EMPTY;
+  }
+
+  private final Node root;
+  private final KeyList insertionOrder;
+  private final int size;
+
+  private PersistentKeyMap(Node root, KeyList insertionOrder, int size) {
+    this.root = root;
+    this.insertionOrder = insertionOrder;
+    this.size = size;
+  }
+
+  Object get(Key<?> key) {
+    return root.get(0, key.hashCode(), key);
+  }
+
+  PersistentKeyMap with(Key<?> key, Object value) {
+    int hash = key.hashCode();
+    Node updatedRoot = root.with(0, hash, key, value);
+    if (root.get(0, hash, key) != null) {
+      return new PersistentKeyMap(updatedRoot, insertionOrder, size);
+    }
+    return new PersistentKeyMap(updatedRoot, new KeyList(key, insertionOrder), size + 1);
+  }
+
+  Map<Key<?>, Object> toMap() {
+    Key<?>[] keys = new Key<?>[size];
+    int index = size;
+    for (KeyList entry = insertionOrder; entry != null; entry = entry.tail) {
+      keys[--index] = entry.head;
+    }
+
+    Map<Key<?>, Object> result = new LinkedHashMap<>(size);
+    for (Key<?> key : keys) {
+      result.put(key, get(key));
+    }
+    return result;
+  }
+
+  private static int indexBit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & LEVEL_MASK);
+  }
+
+  private static Object[] copyAndSet(Object[] source, int index, Object value) {
+    Object[] copy = source.clone();
+    copy[index] = value;
+    return copy;
+  }
+
+  private static final class KeyList implements Serializable {
+    private final Key<?> head;
+    private final KeyList tail;
+
+    private KeyList(Key<?> head, KeyList tail) {
+      this.head = head;
+      this.tail = tail;
+    }
+  }
+
+  private interface Node extends Serializable {
+    Object get(int shift, int hash, Key<?> key);
+
+    Node with(int shift, int hash, Key<?> key, Object value);
+  }
+
+  /**
+   * Stores up to 32 entries, indexed by a bitmap of the hash bits at this node's level.
+   * Each entry is a key/value pair, or a null key followed by a child node.
+   */
+  private static final class BitmapNode implements Node {
+
+    private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+    private final Object[] entries;
+
+    private BitmapNode(int bitmap, Object[] entries) {
+      this.bitmap = bitmap;
+      this.entries = entries;
+    }
+
+    private int indexOf(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    public Object get(int shift, int hash, Key<?> key) {
+      int bit = indexBit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+
+      int index = indexOf(bit);
+      Object keyAtIndex = entries[2 * index];
+      Object valueAtIndex = entries[2 * index + 1];
+      if (keyAtIndex == null) {
+        return ((Node) valueAtIndex).get(shift + BITS_PER_LEVEL, hash, key);
+      }
+      return key.equals(keyAtIndex) ? valueAtIndex : null;
+    }
+
+    @Override
+    public Node with(int shift, int hash, Key<?> key, Object value) {
+      int bit = indexBit(hash, shift);
+      int index = indexOf(bit);
+
+      if ((bitmap & bit) == 0) {
+        int count = Integer.bitCount(bitmap);
+        Object[] updated = new Object[2 * (count + 1)];
+        System.arraycopy(entries, 0, updated, 0, 2 * index);
+        updated[2 * index] = key;
+        updated[2 * index + 1] = value;
+        System.arraycopy(entries, 2 * index, updated, 2 * (index + 1), 2 * (count - index));
+        return new BitmapNode(bitmap | bit, updated);
+      }
+
+      Object keyAtIndex = entries[2 * index];
+      Object valueAtIndex = entries[2 * index + 1];
+
+      if (keyAtIndex == null) {
+        Node child = ((Node) valueAtIndex).with(shift + BITS_PER_LEVEL, hash, key, value);
+        return new BitmapNode(bitmap, copyAndSet(entries, 2 * index + 1, child));
+      }
+
+      if (key.equals(keyAtIndex)) {
+        return new BitmapNode(bitmap, copyAndSet(entries, 2 * index + 1, value));
+      }
+
+      Object[] updated = copyAndSet(entries, 2 * index, null);
+      updated[2 * index + 1] = split(shift + BITS_PER_LEVEL, (Key<?>) keyAtIndex, valueAtIndex, hash, key, value);
+      return new BitmapNode(bitmap, updated);
+    }
+
+    private static Node split(int shift, Key<?> existingKey, Object existingValue, int hash, Key<?> key, Object value) {
+      int existingHash = existingKey.hashCode();
+      if (existingHash == hash) {
+        return new CollisionNode(hash, new Object[] { existingKey, existingValue, key, value });
+      }
+      return EMPTY
+          .with(shift, existingHash, existingKey, existingValue)
+          .with(shift, hash, key, value);
+    }
+  }
+
+  /**
+   * Stores entries whose keys have identical hashes.
+   */
+  private static final class CollisionNode implements Node {
+
+    private final int hash;
+    private final Object[] entries;
+
+    private CollisionNode(int hash, Object[] entries) {
+      this.hash = hash;
+      this.entries = entries;
+    }
+
+    @Override
+    public Object get(int shift, int hash, Key<?> key) {
+      if (hash != this.hash) {
+        return null;
+      }
+      for (int i = 0; i < entries.length; i += 2) {
+        if (key.equals(entries[i])) {
+          return entries[i + 1];
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Node with(int shift, int hash, Key<?> key, Object value) {
+      if (hash != this.hash) {
+        return new BitmapNode(indexBit(this.hash, shift), new Object[] { null, this })
+            .with(shift, hash, key, value);
+      }
+
+      for (int i = 0; i < entries.length; i += 2) {
+        if (key.equals(entries[i])) {
+          return new CollisionNode(hash, copyAndSet(entries, i + 1, value));
+        }
+      }
+
+      Object[] updated = new Object[entries.length + 2];
+      System.arraycopy(entries, 0, updated, 0, entries.length);
+      updated[entries.length] = key;
+      updated[entries.length + 1] = value;
+      return new CollisionNode(hash, updated);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.codepoetics.fluvius.scratchpad;
+
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.KeyValue;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.scratchpad.ScratchpadStorage;
+import com.codepoetics.fluvius.exceptions.FailedKeyRetrievedException;
+import com.codepoetics.fluvius.preconditions.Preconditions;
+
+import java.util.Map;
+
+final class PersistentScratchpad implements Scratchpad {
+
+  private static final PersistentScratchpad EMPTY = new PersistentScratchpad(false, PersistentKeyMap.empty());
+
+  static Scratchpad create(KeyValue... keyValues) {
+    return EMPTY.with(keyValues);
+  }
+
+  private final boolean isLocked;
+  private final PersistentKeyMap storage;
+
+  private PersistentScratchpad(boolean isLocked, PersistentKeyMap storage) {
+    this.isLocked = isLocked;
+    this.storage = storage;
+  }
+
+  @Override
+  public Scratchpad locked() {
+    return new PersistentScratchpad(true, storage);
+  }
+
+  @Override
+  public boolean containsKey(Key<?> key) {
+    return storage.get(key) != null;
+  }
+
+  @Override
+  public boolean isSuccessful(Key<?> key) {
+    return !(Preconditions.checkNotNull("value of key " + key.getName(), storage.get(key)) instanceof Throwable);
+  }
+
+  @Override
+  public Scratchpad with(KeyValue... keyValues) {
+    Writer writer = new Writer(isLocked, storage);
+    for (KeyValue keyValue : keyValues) {
+      keyValue.store(writer);
+    }
+    return new PersistentScratchpad(isLocked, writer.storage);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T get(Key<T> key) {
+    Object valueAtKey = Preconditions.checkNotNull("value of key " + key.getName(), storage.get(key));
+    if (valueAtKey instanceof Throwable) {
+      throw new FailedKeyRetrievedException(key.getName(), (Throwable) valueAtKey);
+    }
+    return (T) valueAtKey;
+  }
+
+  @Override
+  public Exception getFailureReason(Key<?> key) {
+    Object valueAtKey = Preconditions.checkNotNull("value of key " + key.getName(), storage.get(key));
+    if (!(valueAtKey instanceof Throwable)) {
+      throw new IllegalStateException("Attempted to retrieve failure reason for key '" + key.getName() + "', but recorded value is " + valueAtKey);
+    }
+    return (Exception) valueAtKey;
+  }
+
+  @Override
+  public Map<Key<?>, Object> toMap() {
+    return storage.toMap();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || (other instanceof PersistentScratchpad
+            && ((PersistentScratchpad) other).toMap().equals(toMap()));
+  }
+
+  @Override
+  public int hashCode() {
+    return toMap().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+  private static final class Writer implements ScratchpadStorage {
+    private final boolean isLocked;
+    private PersistentKeyMap storage;
+
+    private Writer(boolean isLocked, PersistentKeyMap storage) {
+      this.isLocked = isLocked;
+      this.storage = storage;
+    }
+
+    @Override
+    public <T> void storeSuccess(Key<T> key, T value) {
+      store(key, value);
+    }
+
+    @Override
+    public void storeFailure(Key<?> key, Throwable reason) {
+      store(key, reason);
+    }
+
+    private void store(Key<?> key, Object value) {
+      if (isLocked && storage.get(key) != null) {
+        throw new IllegalArgumentException("Scratchpad is locked, cannot overwrite value for key " + key.getName());
+      }
+      storage = storage.with(key, value);
+    }
+  }
+}
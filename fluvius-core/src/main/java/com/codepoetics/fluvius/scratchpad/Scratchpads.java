@@ -20,4 +20,33 @@ public final class Scratchpads {
   public static Scratchpad create(KeyValue... keyValues) {
     return HashMapBackedScratchpad.create(keyValues);
   }
+
+  /**
+   * Create a new persistent Scratchpad, populated with the supplied KeyValues.
+   * <p>
+   * Updating a persistent Scratchpad does not copy its storage: the updated Scratchpad shares structure with the
+   * Scratchpad it was derived from, so each write costs O(log n) rather than O(n) time and allocation.
+   * </p>
+   *
+   * @param keyValues The KeyValues to write into the Scratchpad.
+   * @return The created Scratchpad.
+   */
+  public static Scratchpad createPersistent(KeyValue... keyValues) {
+    return PersistentScratchpad.create(keyValues);
+  }
+
+  /**
+   * Create a new slot-indexed Scratchpad, populated with the contents of the supplied Scratchpad.
+   * <p>
+   * Values for Keys assigned a slot by the supplied {@link KeySlots} are stored in an array, so that reading them
+   * does not require a map lookup, and updating them copies only that array.
+   * </p>
+   *
+   * @param slots The slots assigned to the Keys the Scratchpad is expected to hold.
+   * @param initialScratchpad The Scratchpad whose contents should be copied into the created Scratchpad.
+   * @return The created Scratchpad.
+   */
+  public static Scratchpad slotIndexed(KeySlots slots, Scratchpad initialScratchpad) {
+    return SlotIndexedScratchpad.create(slots, initialScratchpad);
+  }
 }
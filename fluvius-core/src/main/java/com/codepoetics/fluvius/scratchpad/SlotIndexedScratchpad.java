@@ -0,0 +1,173 @@
+package com.codepoetics.fluvius.scratchpad;
+
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.KeyValue;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.scratchpad.ScratchpadStorage;
+import com.codepoetics.fluvius.exceptions.FailedKeyRetrievedException;
+import com.codepoetics.fluvius.preconditions.Preconditions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A Scratchpad which stores the values of a fixed universe of keys in an array, indexed by {@link KeySlots}.
+ * Values for keys outside of that universe are held in a separate map.
+ */
+final class SlotIndexedScratchpad implements Scratchpad {
+
+  static Scratchpad create(KeySlots slots, Scratchpad initialScratchpad) {
+    Object[] values = new Object[slots.size()];
+    Map<Key<?>, Object> overflow = new LinkedHashMap<>();
+
+    for (Map.Entry<Key<?>, Object> entry : initialScratchpad.toMap().entrySet()) {
+      int slot = slots.indexOf(entry.getKey());
+      if (slot < 0) {
+        overflow.put(entry.getKey(), entry.getValue());
+      } else {
+        values[slot] = entry.getValue();
+      }
+    }
+
+    return new SlotIndexedScratchpad(false, slots, values, overflow.isEmpty() ? null : overflow);
+  }
+
+  private final boolean isLocked;
+  private final KeySlots slots;
+  private final Object[] values;
+  private final Map<Key<?>, Object> overflow;
+
+  private SlotIndexedScratchpad(boolean isLocked, KeySlots slots, Object[] values, Map<Key<?>, Object> overflow) {
+    this.isLocked = isLocked;
+    this.slots = slots;
+    this.values = values;
+    this.overflow = overflow;
+  }
+
+  private Object lookup(Key<?> key) {
+    int slot = slots.indexOf(key);
+    if (slot >= 0) {
+      return values[slot];
+    }
+    return overflow == null ? null : overflow.get(key);
+  }
+
+  @Override
+  public Scratchpad locked() {
+    return new SlotIndexedScratchpad(true, slots, values, overflow);
+  }
+
+  @Override
+  public boolean containsKey(Key<?> key) {
+    return lookup(key) != null;
+  }
+
+  @Override
+  public boolean isSuccessful(Key<?> key) {
+    return !(Preconditions.checkNotNull("value of key " + key.getName(), lookup(key)) instanceof Throwable);
+  }
+
+  @Override
+  public Scratchpad with(KeyValue... keyValues) {
+    Writer writer = new Writer();
+    for (KeyValue keyValue : keyValues) {
+      keyValue.store(writer);
+    }
+    return writer.toScratchpad();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T get(Key<T> key) {
+    Object valueAtKey = Preconditions.checkNotNull("value of key " + key.getName(), lookup(key));
+    if (valueAtKey instanceof Throwable) {
+      throw new FailedKeyRetrievedException(key.getName(), (Throwable) valueAtKey);
+    }
+    return (T) valueAtKey;
+  }
+
+  @Override
+  public Exception getFailureReason(Key<?> key) {
+    Object valueAtKey = Preconditions.checkNotNull("value of key " + key.getName(), lookup(key));
+    if (!(valueAtKey instanceof Throwable)) {
+      throw new IllegalStateException("Attempted to retrieve failure reason for key '" + key.getName() + "', but recorded value is " + valueAtKey);
+    }
+    return (Exception) valueAtKey;
+  }
+
+  @Override
+  public Map<Key<?>, Object> toMap() {
+    Map<Key<?>, Object> result = new LinkedHashMap<>(values.length);
+    for (int slot = 0; slot < values.length; slot++) {
+      if (values[slot] != null) {
+        result.put(slots.keyAt(slot), values[slot]);
+      }
+    }
+    if (overflow != null) {
+      result.putAll(overflow);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || (other instanceof SlotIndexedScratchpad
+            && ((SlotIndexedScratchpad) other).toMap().equals(toMap()));
+  }
+
+  @Override
+  public int hashCode() {
+    return toMap().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+  private final class Writer implements ScratchpadStorage {
+    private Object[] updatedValues = values;
+    private Map<Key<?>, Object> updatedOverflow = overflow;
+
+    @Override
+    public <T> void storeSuccess(Key<T> key, T value) {
+      store(key, value);
+    }
+
+    @Override
+    public void storeFailure(Key<?> key, Throwable reason) {
+      store(key, reason);
+    }
+
+    private void store(Key<?> key, Object value) {
+      int slot = slots.indexOf(key);
+      if (slot >= 0) {
+        checkNotLocked(key, updatedValues[slot]);
+        if (updatedValues == values) {
+          updatedValues = values.clone();
+        }
+        updatedValues[slot] = value;
+        return;
+      }
+
+      if (updatedOverflow == overflow) {
+        updatedOverflow = overflow == null
+            ? new LinkedHashMap<Key<?>, Object>()
+            : new LinkedHashMap<>(overflow);
+      }
+      checkNotLocked(key, updatedOverflow.get(key));
+      updatedOverflow.put(key, value);
+    }
+
+    private void checkNotLocked(Key<?> key, Object existingValue) {
+      if (isLocked && existingValue != null) {
+        throw new IllegalArgumentException("Scratchpad is locked, cannot overwrite value for key " + key.getName());
+      }
+    }
+
+    private Scratchpad toScratchpad() {
+      return new SlotIndexedScratchpad(isLocked, slots, updatedValues, updatedOverflow);
+    }
+  }
+}
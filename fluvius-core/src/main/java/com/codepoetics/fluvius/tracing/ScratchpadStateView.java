@@ -0,0 +1,66 @@
+package com.codepoetics.fluvius.tracing;
+
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only view of the state of a Scratchpad, keyed by key name, which is only materialised when it is first read.
+ * Scratchpads are immutable, so the view is the same whenever it is materialised.
+ */
+final class ScratchpadStateView extends AbstractMap<String, Object> {
+
+  static Map<String, Object> of(Scratchpad scratchpad) {
+    return new ScratchpadStateView(scratchpad);
+  }
+
+  private final Scratchpad scratchpad;
+  private volatile Map<String, Object> state;
+
+  private ScratchpadStateView(Scratchpad scratchpad) {
+    this.scratchpad = scratchpad;
+  }
+
+  private Map<String, Object> getState() {
+    Map<String, Object> result = state;
+    if (result == null) {
+      result = materialise();
+      state = result;
+    }
+    return result;
+  }
+
+  private Map<String, Object> materialise() {
+    Map<Key<?>, Object> scratchpadState = scratchpad.toMap();
+    Map<String, Object> result = new LinkedHashMap<>(scratchpadState.size());
+    for (Map.Entry<Key<?>, Object> entry : scratchpadState.entrySet()) {
+      result.put(entry.getKey().getName(), entry.getValue());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return getState().entrySet();
+  }
+
+  @Override
+  public Object get(Object key) {
+    return getState().get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return getState().containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return getState().size();
+  }
+}
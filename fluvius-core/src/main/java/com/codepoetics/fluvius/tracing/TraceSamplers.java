@@ -0,0 +1,121 @@
+package com.codepoetics.fluvius.tracing;
+
+import com.codepoetics.fluvius.api.functional.ScratchpadPredicate;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.tracing.TraceSampler;
+
+import java.util.UUID;
+
+/**
+ * Utility class providing {@link TraceSampler}s.
+ */
+public final class TraceSamplers {
+
+  private TraceSamplers() {
+  }
+
+  private static final TraceSampler ALWAYS = new TraceSampler() {
+    @Override
+    public boolean isSampled(UUID flowId, Scratchpad initialScratchpad) {
+      return true;
+    }
+  };
+
+  private static final TraceSampler NEVER = new TraceSampler() {
+    @Override
+    public boolean isSampled(UUID flowId, Scratchpad initialScratchpad) {
+      return false;
+    }
+  };
+
+  /**
+   * Obtain a sampler which traces every flow.
+   *
+   * @return The sampler.
+   */
+  public static TraceSampler always() {
+    return ALWAYS;
+  }
+
+  /**
+   * Obtain a sampler which traces no flows.
+   *
+   * @return The sampler.
+   */
+  public static TraceSampler never() {
+    return NEVER;
+  }
+
+  /**
+   * Create a sampler which traces the supplied proportion of flows. The decision is derived from the flow id, so the same
+   * flow is always either sampled or not, wherever it is run.
+   *
+   * @param rate The proportion of flows to trace, between 0 and 1.
+   * @return The constructed sampler.
+   */
+  public static TraceSampler atRate(double rate) {
+    if (rate < 0 || rate > 1) {
+      throw new IllegalArgumentException("Sampling rate must be between 0 and 1, but was " + rate);
+    }
+    if (rate == 0) {
+      return NEVER;
+    }
+    if (rate == 1) {
+      return ALWAYS;
+    }
+    return new RateSampler((long) (rate * (1L << 53)));
+  }
+
+  /**
+   * Create a sampler which traces the flows whose initial scratchpad matches the supplied predicate.
+   *
+   * @param predicate The predicate to test each flow's initial scratchpad with.
+   * @return The constructed sampler.
+   */
+  public static TraceSampler when(final ScratchpadPredicate predicate) {
+    return new TraceSampler() {
+      @Override
+      public boolean isSampled(UUID flowId, Scratchpad initialScratchpad) {
+        return predicate.test(initialScratchpad);
+      }
+    };
+  }
+
+  /**
+   * Create a sampler which traces the flows which any of the supplied samplers would trace.
+   *
+   * @param samplers The samplers to consult, in order.
+   * @return The constructed sampler.
+   */
+  public static TraceSampler anyOf(final TraceSampler...samplers) {
+    return new TraceSampler() {
+      @Override
+      public boolean isSampled(UUID flowId, Scratchpad initialScratchpad) {
+        for (TraceSampler sampler : samplers) {
+          if (sampler.isSampled(flowId, initialScratchpad)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  private static final class RateSampler implements TraceSampler {
+    private final long threshold;
+
+    private RateSampler(long threshold) {
+      this.threshold = threshold;
+    }
+
+    @Override
+    public boolean isSampled(UUID flowId, Scratchpad initialScratchpad) {
+      // Mix the bits of the id, since not all of the bits of every UUID are random, and take the top 53 as a uniform fraction.
+      long hash = flowId.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ flowId.getLeastSignificantBits();
+      hash ^= hash >>> 33;
+      hash *= 0xFF51AFD7ED558CCDL;
+      hash ^= hash >>> 33;
+      return (hash >>> 11) < threshold;
+    }
+  }
+}
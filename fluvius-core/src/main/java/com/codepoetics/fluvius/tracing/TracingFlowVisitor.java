@@ -3,13 +3,28 @@ package com.codepoetics.fluvius.tracing;
 import com.codepoetics.fluvius.api.*;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.tracing.StatelessTraceEventListener;
 import com.codepoetics.fluvius.api.tracing.TraceEventListener;
 import com.codepoetics.fluvius.api.tracing.TraceMap;
+import com.codepoetics.fluvius.api.tracing.TraceSampler;
+import com.codepoetics.fluvius.execution.HedgeRace;
+import com.codepoetics.fluvius.visitors.Actions;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A {@link FlowVisitor} that creates a {@link TraceMap} and notifies a {@link TraceEventListener} of step execution.
+ * <p>
+ * If a {@link TraceSampler} is supplied, the first step of each flow to run asks it whether the flow should be traced, and
+ * every other step of the flow abides by its decision until that step completes. Steps of unsampled flows run without
+ * notifying the listener or taking any view of the scratchpad.
+ * </p>
+ * <p>
+ * Every attempt of a hedged step reports its start, but once the step has settled on the result of one attempt, the
+ * outcomes of the others are not reported.
+ * </p>
  */
 public final class TracingFlowVisitor implements FlowVisitor<Action> {
 
@@ -21,15 +36,35 @@ public final class TracingFlowVisitor implements FlowVisitor<Action> {
    * @return The constructed flow visitor.
    */
   public static FlowVisitor<Action> wrapping(TraceEventListener listener, FlowVisitor<Action> actionVisitor) {
-    return new TracingFlowVisitor(listener, actionVisitor);
+    return new TracingFlowVisitor(listener, null, actionVisitor);
+  }
+
+  /**
+   * Create a new tracing FlowVisitor wrapping the supplied listener and visitor, which traces only the flows chosen by the
+   * supplied sampler.
+   *
+   * @param listener      The trace event listener to wrap.
+   * @param sampler       The sampler which decides which flows to trace.
+   * @param actionVisitor The flow visitor to wrap.
+   * @return The constructed flow visitor.
+   */
+  public static FlowVisitor<Action> wrapping(TraceEventListener listener, TraceSampler sampler, FlowVisitor<Action> actionVisitor) {
+    return new TracingFlowVisitor(
+        listener,
+        sampler == TraceSamplers.always() ? null : new FlowSampling(sampler),
+        actionVisitor);
   }
 
   private final TraceEventListener listener;
+  private final FlowSampling sampling;
   private final FlowVisitor<Action> innerVisitor;
+  private final boolean listenerIsStateless;
 
-  private TracingFlowVisitor(TraceEventListener listener, FlowVisitor<Action> innerVisitor) {
+  private TracingFlowVisitor(TraceEventListener listener, FlowSampling sampling, FlowVisitor<Action> innerVisitor) {
     this.listener = listener;
+    this.sampling = sampling;
     this.innerVisitor = innerVisitor;
+    this.listenerIsStateless = listener instanceof StatelessTraceEventListener;
   }
 
   @Override
@@ -37,6 +72,8 @@ public final class TracingFlowVisitor implements FlowVisitor<Action> {
     return new NotifyingAction(
         stepId,
         listener,
+        listenerIsStateless,
+        sampling,
         providedKey,
         innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation));
   }
@@ -47,6 +84,8 @@ public final class TracingFlowVisitor implements FlowVisitor<Action> {
     return new NotifyingAction(
         stepId,
         listener,
+        listenerIsStateless,
+        sampling,
         providedKey,
         innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items));
   }
@@ -57,6 +96,8 @@ public final class TracingFlowVisitor implements FlowVisitor<Action> {
     return new NotifyingAction(
         stepId,
         listener,
+        listenerIsStateless,
+        sampling,
         providedKey,
         innerVisitor.visitBranch(
             stepId,
@@ -71,38 +112,252 @@ public final class TracingFlowVisitor implements FlowVisitor<Action> {
     return innerVisitor.visitCondition(condition);
   }
 
-  private static final class NotifyingAction implements Action {
+  private static final class NotifyingAction implements AsyncAction, BatchAction {
 
     private final UUID stepId;
     private final TraceEventListener listener;
+    private final boolean listenerIsStateless;
+    private final FlowSampling sampling;
     private final Key<?> providedKey;
     private final Action action;
 
-    private NotifyingAction(UUID stepId, TraceEventListener listener, Key<?> providedKey, Action action) {
+    private NotifyingAction(UUID stepId, TraceEventListener listener, boolean listenerIsStateless, FlowSampling sampling, Key<?> providedKey, Action action) {
       this.stepId = stepId;
       this.listener = listener;
+      this.listenerIsStateless = listenerIsStateless;
+      this.sampling = sampling;
       this.providedKey = providedKey;
       this.action = action;
     }
 
     @Override
     public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
-      listener.stepStarted(flowId, stepId, keysToNames(scratchpad.toMap()));
-      Scratchpad result = action.run(flowId, scratchpad);
+      if (sampling == null) {
+        return runTraced(flowId, scratchpad);
+      }
+
+      Decision decision = sampling.decisionFor(flowId);
+      if (decision != null) {
+        return runSampled(decision.isSampled, flowId, scratchpad);
+      }
+
+      // No other step of this flow is running, so this is the flow's first step, and decides for all of the others.
+      Decision made = sampling.decide(flowId, scratchpad);
+      Decision inForce = sampling.register(flowId, made);
+      if (inForce != made) {
+        return runSampled(inForce.isSampled, flowId, scratchpad);
+      }
+
+      try {
+        return runSampled(made.isSampled, flowId, scratchpad);
+      } finally {
+        sampling.release(flowId, made);
+      }
+    }
+
+    private Scratchpad runSampled(boolean isSampled, UUID flowId, Scratchpad scratchpad) {
+      return isSampled ? runTraced(flowId, scratchpad) : action.run(flowId, scratchpad);
+    }
+
+    // An attempt of a hedged step reports its outcome only if the step has not already settled on another attempt's result.
+    private Scratchpad runTraced(UUID flowId, Scratchpad scratchpad) {
+      listener.stepStarted(flowId, stepId, stateOf(scratchpad));
+      Scratchpad result;
+      try {
+        result = action.run(flowId, scratchpad);
+      } catch (RuntimeException e) {
+        if (HedgeRace.beginReport(scratchpad)) {
+          try {
+            listener.stepFailed(flowId, stepId, e);
+          } finally {
+            HedgeRace.endReport(scratchpad);
+          }
+        }
+        throw e;
+      }
+
+      if (HedgeRace.beginReport(scratchpad)) {
+        try {
+          notifyCompleted(flowId, result);
+        } finally {
+          HedgeRace.endReport(scratchpad);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void runAsync(final UUID flowId, Scratchpad scratchpad, final ActionCallback callback) {
+      if (sampling == null) {
+        runTracedAsync(flowId, scratchpad, callback);
+        return;
+      }
+
+      Decision existing = sampling.decisionFor(flowId);
+      final Decision made = existing == null ? sampling.decide(flowId, scratchpad) : null;
+      Decision inForce = made == null ? existing : sampling.register(flowId, made);
+
+      ActionCallback releasingCallback = inForce != made ? callback : new ActionCallback() {
+        @Override
+        public void onComplete(Scratchpad result) {
+          sampling.release(flowId, made);
+          callback.onComplete(result);
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+          sampling.release(flowId, made);
+          callback.onFailure(failure);
+        }
+      };
+
+      if (inForce.isSampled) {
+        runTracedAsync(flowId, scratchpad, releasingCallback);
+      } else {
+        Actions.runAsync(action, flowId, scratchpad, releasingCallback);
+      }
+    }
+
+    private void runTracedAsync(final UUID flowId, Scratchpad scratchpad, final ActionCallback callback) {
+      listener.stepStarted(flowId, stepId, stateOf(scratchpad));
+      Actions.runAsync(action, flowId, scratchpad, new ActionCallback() {
+        @Override
+        public void onComplete(Scratchpad result) {
+          try {
+            notifyCompleted(flowId, result);
+          } catch (RuntimeException e) {
+            callback.onFailure(e);
+            return;
+          }
+          callback.onComplete(result);
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+          listener.stepFailed(flowId, stepId, failure instanceof Exception
+              ? (Exception) failure
+              : new IllegalStateException(failure));
+          callback.onFailure(failure);
+        }
+      });
+    }
+
+    @Override
+    public void runBatch(FlowBatch batch) {
+      int size = batch.size();
+      boolean[] traced = new boolean[size];
+      Decision[] made = sampling == null ? null : new Decision[size];
+
+      try {
+        for (int i = 0; i < size; i++) {
+          UUID flowId = batch.getFlowId(i);
+          if (sampling == null) {
+            traced[i] = true;
+          } else {
+            Decision inForce = sampling.decisionFor(flowId);
+            if (inForce == null) {
+              Decision decision = sampling.decide(flowId, batch.getScratchpad(i));
+              inForce = sampling.register(flowId, decision);
+              if (inForce == decision) {
+                made[i] = decision;
+              }
+            }
+            traced[i] = inForce.isSampled;
+          }
+
+          if (traced[i]) {
+            listener.stepStarted(flowId, stepId, stateOf(batch.getScratchpad(i)));
+          }
+        }
+
+        Actions.runBatch(action, batch);
+
+        for (int i = 0; i < size; i++) {
+          if (traced[i]) {
+            notifyBatchOutcome(batch, i);
+          }
+        }
+      } finally {
+        if (made != null) {
+          for (int i = 0; i < size; i++) {
+            if (made[i] != null) {
+              sampling.release(batch.getFlowId(i), made[i]);
+            }
+          }
+        }
+      }
+    }
+
+    private void notifyBatchOutcome(FlowBatch batch, int index) {
+      UUID flowId = batch.getFlowId(index);
+      if (batch.isFailed(index)) {
+        Throwable failure = batch.getFailure(index);
+        listener.stepFailed(flowId, stepId, failure instanceof Exception
+            ? (Exception) failure
+            : new IllegalStateException(failure));
+        return;
+      }
+
+      try {
+        notifyCompleted(flowId, batch.getScratchpad(index));
+      } catch (RuntimeException e) {
+        batch.fail(index, e);
+      }
+    }
+
+    private void notifyCompleted(UUID flowId, Scratchpad result) {
       if (result.isSuccessful(providedKey)) {
         listener.stepSucceeded(flowId, stepId, result.get(providedKey));
       } else {
         listener.stepFailed(flowId, stepId, result.getFailureReason(providedKey));
       }
-      return result;
     }
 
-    private Map<String, Object> keysToNames(Map<Key<?>, Object> scratchpadState) {
-      Map<String, Object> result = new LinkedHashMap<>();
-      for (Map.Entry<Key<?>, Object> entry : scratchpadState.entrySet()) {
-        result.put(entry.getKey().getName(), entry.getValue());
-      }
-      return result;
+    private Map<String, Object> stateOf(Scratchpad scratchpad) {
+      return listenerIsStateless
+          ? Collections.<String, Object>emptyMap()
+          : ScratchpadStateView.of(scratchpad);
+    }
+  }
+
+  /**
+   * The sampling decisions for the flows currently running, each made by, and held until the completion of, the first step of the flow.
+   */
+  private static final class FlowSampling {
+    private final TraceSampler sampler;
+    private final ConcurrentMap<UUID, Decision> decisions = new ConcurrentHashMap<>();
+
+    private FlowSampling(TraceSampler sampler) {
+      this.sampler = sampler;
+    }
+
+    Decision decisionFor(UUID flowId) {
+      return decisions.get(flowId);
+    }
+
+    Decision decide(UUID flowId, Scratchpad initialScratchpad) {
+      return new Decision(sampler.isSampled(flowId, initialScratchpad));
+    }
+
+    /**
+     * Put the supplied decision in force for the flow, unless another step has done so in the meantime, and return the
+     * decision in force.
+     */
+    Decision register(UUID flowId, Decision decision) {
+      Decision existing = decisions.putIfAbsent(flowId, decision);
+      return existing == null ? decision : existing;
+    }
+
+    void release(UUID flowId, Decision decision) {
+      decisions.remove(flowId, decision);
+    }
+  }
+
+  private static final class Decision {
+    private final boolean isSampled;
+
+    private Decision(boolean isSampled) {
+      this.isSampled = isSampled;
     }
   }
 }
@@ -0,0 +1,90 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ActionCallback;
+import com.codepoetics.fluvius.api.AsyncAction;
+import com.codepoetics.fluvius.api.BatchAction;
+import com.codepoetics.fluvius.api.FlowBatch;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.UUID;
+
+/**
+ * Utility class for working with Actions.
+ */
+public final class Actions {
+
+  private Actions() {
+  }
+
+  /**
+   * Run the supplied Action without blocking if it is an {@link AsyncAction}, or synchronously on the calling thread otherwise,
+   * passing its result to the supplied callback.
+   *
+   * @param action The Action to run.
+   * @param flowId The ID of the running flow.
+   * @param scratchpad The Scratchpad to run the Action against.
+   * @param callback The callback to supply the updated Scratchpad to.
+   */
+  public static void runAsync(Action action, UUID flowId, Scratchpad scratchpad, ActionCallback callback) {
+    if (action instanceof AsyncAction) {
+      try {
+        ((AsyncAction) action).runAsync(flowId, scratchpad, callback);
+      } catch (RuntimeException e) {
+        callback.onFailure(e);
+      }
+      return;
+    }
+
+    Scratchpad result;
+    try {
+      result = action.run(flowId, scratchpad);
+    } catch (RuntimeException e) {
+      callback.onFailure(e);
+      return;
+    }
+    callback.onComplete(result);
+  }
+
+  /**
+   * Run the supplied Action against every record in the batch which has not failed: all at once if it is a {@link BatchAction},
+   * or record by record otherwise.
+   * <p>
+   * An Action which is not a BatchAction runs the Actions it wraps record by record too, so a decorating Action which does
+   * not implement BatchAction silently stops every batch operation beneath it from seeing more than one scratchpad at a
+   * time. The decorators built by this library's visitors (tracing, logging, mutation checking, metrics, caching and
+   * parallel sequences) all keep batches whole; retried and hedged steps, and fused flows, whose steps are compiled into
+   * a single method handle, run record by record. Decorators should implement BatchAction and delegate to this method.
+   * </p>
+   *
+   * @param action The Action to run.
+   * @param batch The batch to run the Action against.
+   */
+  public static void runBatch(Action action, FlowBatch batch) {
+    FlowBatch active = batch.active();
+    if (active.size() == 0) {
+      return;
+    }
+
+    if (action instanceof BatchAction) {
+      try {
+        ((BatchAction) action).runBatch(active);
+      } catch (RuntimeException e) {
+        for (int i = 0; i < active.size(); i++) {
+          if (!active.isFailed(i)) {
+            active.fail(i, e);
+          }
+        }
+      }
+      return;
+    }
+
+    for (int i = 0; i < active.size(); i++) {
+      try {
+        active.update(i, action.run(active.getFlowId(i), active.getScratchpad(i)));
+      } catch (RuntimeException e) {
+        active.fail(i, e);
+      }
+    }
+  }
+}
@@ -1,13 +1,17 @@
 package com.codepoetics.fluvius.visitors;
 
 import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ActionCallback;
+import com.codepoetics.fluvius.api.AsyncAction;
+import com.codepoetics.fluvius.api.BatchAction;
 import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.FlowBatch;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 
 import java.util.List;
 import java.util.UUID;
 
-final class BranchAction implements Action {
+final class BranchAction implements AsyncAction, BatchAction {
 
   static Action of(Action defaultAction, List<Conditional<Action>> branchActions) {
     return new BranchAction(defaultAction, branchActions);
@@ -23,11 +27,64 @@ final class BranchAction implements Action {
 
   @Override
   public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+    return selectAction(flowId, scratchpad).run(flowId, scratchpad);
+  }
+
+  @Override
+  public void runAsync(UUID flowId, Scratchpad scratchpad, ActionCallback callback) {
+    Actions.runAsync(selectAction(flowId, scratchpad), flowId, scratchpad, callback);
+  }
+
+  @Override
+  public void runBatch(FlowBatch batch) {
+    // Each record is assigned the index of the branch it takes, with the default branch last, and each branch is then run
+    // as a batch of the records which take it.
+    int branchCount = branchActions.size() + 1;
+    int[] selectedBranches = new int[batch.size()];
+    int[] branchSizes = new int[branchCount];
+    for (int i = 0; i < batch.size(); i++) {
+      try {
+        selectedBranches[i] = selectBranch(batch.getFlowId(i), batch.getScratchpad(i));
+        branchSizes[selectedBranches[i]]++;
+      } catch (RuntimeException e) {
+        batch.fail(i, e);
+        selectedBranches[i] = -1;
+      }
+    }
+
+    for (int branch = 0; branch < branchCount; branch++) {
+      if (branchSizes[branch] == 0) {
+        continue;
+      }
+
+      int[] indices = new int[branchSizes[branch]];
+      int count = 0;
+      for (int i = 0; i < selectedBranches.length; i++) {
+        if (selectedBranches[i] == branch) {
+          indices[count++] = i;
+        }
+      }
+
+      Action action = branch < branchActions.size() ? branchActions.get(branch).getValue() : defaultAction;
+      Actions.runBatch(action, batch.select(indices, count));
+    }
+  }
+
+  private int selectBranch(UUID flowId, Scratchpad scratchpad) {
+    for (int i = 0; i < branchActions.size(); i++) {
+      if (branchActions.get(i).getCondition().test(flowId, scratchpad)) {
+        return i;
+      }
+    }
+    return branchActions.size();
+  }
+
+  private Action selectAction(UUID flowId, Scratchpad scratchpad) {
     for (Conditional<Action> conditional : branchActions) {
       if (conditional.getCondition().test(flowId, scratchpad)) {
-        return conditional.getValue().run(flowId, scratchpad);
+        return conditional.getValue();
       }
     }
-    return defaultAction.run(flowId, scratchpad);
+    return defaultAction;
   }
 }
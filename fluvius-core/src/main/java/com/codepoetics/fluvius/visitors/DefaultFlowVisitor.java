@@ -11,7 +11,7 @@ final class DefaultFlowVisitor implements FlowVisitor<Action> {
 
   @Override
   public <T> Action visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
-    return SingleOperationAction.of(providedKey, operation);
+    return SingleOperationAction.of(requiredKeys, providedKey, operation);
   }
 
   @Override
@@ -0,0 +1,199 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * An Action whose behaviour is given by a single {@link MethodHandle} of type {@code (UUID, Scratchpad)Scratchpad}.
+ * <p>
+ * Fused actions are composed with method handle combinators rather than by holding references to other Actions, so
+ * that a whole flow becomes a single tree of method handles which the JIT can compile and inline as straight-line code,
+ * instead of a chain of megamorphic calls to {@link Action#run(UUID, Scratchpad)}.
+ * </p>
+ * <p>
+ * The JIT only inlines through a method handle which it can treat as a constant. The first time a fused action is run,
+ * it therefore defines its own copy of {@link FusedActionHolder}, whose static final field holds the action's handle, and
+ * runs through that from then on. Actions nested within a fused action are never run directly, and so never define a
+ * holder. If the holder cannot be defined, the handle is invoked from this action's field instead.
+ * </p>
+ */
+final class FusedAction implements Action {
+
+  private static final MethodType ACTION_TYPE = MethodType.methodType(Scratchpad.class, UUID.class, Scratchpad.class);
+
+  private static final MethodHandle RUN_ACTION;
+  private static final MethodHandle RUN_OPERATION;
+  private static final MethodHandle TEST_CONDITION;
+
+  static {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      RUN_ACTION = lookup.findVirtual(Action.class, "run", ACTION_TYPE);
+      RUN_OPERATION = lookup.findStatic(FusedAction.class, "runOperation",
+          MethodType.methodType(Scratchpad.class, Key.class, Operation.class, UUID.class, Scratchpad.class));
+      TEST_CONDITION = lookup.findVirtual(Condition.class, "test",
+          MethodType.methodType(boolean.class, UUID.class, Scratchpad.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  static FusedAction single(Key<?> outputKey, Operation<?> operation) {
+    return new FusedAction(MethodHandles.insertArguments(RUN_OPERATION, 0, outputKey, operation));
+  }
+
+  static FusedAction sequence(List<Action> actions) {
+    MethodHandle fused = handleFor(actions.get(actions.size() - 1));
+    for (int i = actions.size() - 2; i >= 0; i--) {
+      fused = andThen(handleFor(actions.get(i)), fused);
+    }
+    return new FusedAction(fused);
+  }
+
+  static FusedAction branch(Action defaultAction, List<Condition> conditions, List<Action> branchActions) {
+    MethodHandle fused = handleFor(defaultAction);
+    for (int i = conditions.size() - 1; i >= 0; i--) {
+      fused = MethodHandles.guardWithTest(
+          TEST_CONDITION.bindTo(conditions.get(i)),
+          handleFor(branchActions.get(i)),
+          fused);
+    }
+    return new FusedAction(fused);
+  }
+
+  static FusedAction of(Action action) {
+    return action instanceof FusedAction ? (FusedAction) action : new FusedAction(RUN_ACTION.bindTo(action));
+  }
+
+  private static MethodHandle handleFor(Action action) {
+    return of(action).handle;
+  }
+
+  /**
+   * Combine two handles of type {@code (UUID, Scratchpad)Scratchpad} into a handle which passes the scratchpad
+   * returned by the first, together with the flow id, to the second.
+   */
+  private static MethodHandle andThen(MethodHandle first, MethodHandle second) {
+    // (UUID, Scratchpad, Scratchpad)Scratchpad, ignoring the final (original) scratchpad.
+    MethodHandle ignoringOriginal = MethodHandles.dropArguments(second, 2, Scratchpad.class);
+    // (Scratchpad result, UUID, Scratchpad original)Scratchpad, as required by foldArguments.
+    MethodHandle receivingResult = MethodHandles.permuteArguments(
+        ignoringOriginal,
+        MethodType.methodType(Scratchpad.class, Scratchpad.class, UUID.class, Scratchpad.class),
+        1, 0, 2);
+    return MethodHandles.foldArguments(receivingResult, first);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Scratchpad runOperation(Key<?> outputKey, Operation<?> operation, UUID flowId, Scratchpad scratchpad) {
+    Deadline deadline = FlowDeadlines.forScratchpad(scratchpad);
+    if (deadline != null) {
+      return SingleOperationAction.runBeforeDeadline(outputKey, operation, deadline, scratchpad);
+    }
+
+    try {
+      return scratchpad.with(((Key<Object>) outputKey).of(operation.run(scratchpad)));
+    } catch (Exception e) {
+      return scratchpad.with(outputKey.ofFailure(e));
+    }
+  }
+
+  private static Scratchpad invoke(MethodHandle handle, UUID flowId, Scratchpad scratchpad) {
+    try {
+      return (Scratchpad) handle.invokeExact(flowId, scratchpad);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private final MethodHandle handle;
+  private volatile Action holder;
+
+  private FusedAction(MethodHandle handle) {
+    this.handle = handle;
+  }
+
+  @Override
+  public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+    Action holder = this.holder;
+    if (holder == null) {
+      // Racing threads may each define a holder; any of them will do.
+      holder = HolderLoader.define(handle);
+      if (holder == null) {
+        holder = this;
+      }
+      this.holder = holder;
+    }
+    return holder == this ? invoke(handle, flowId, scratchpad) : holder.run(flowId, scratchpad);
+  }
+
+  /**
+   * Defines a copy of {@link FusedActionHolder} which reads its handle from this loader.
+   */
+  private static final class HolderLoader extends ClassLoader implements Callable<MethodHandle> {
+
+    private static final String HOLDER_NAME = "com.codepoetics.fluvius.visitors.FusedActionHolder";
+    private static final byte[] HOLDER_BYTES = readHolderBytes();
+
+    private static byte[] readHolderBytes() {
+      try (InputStream input = FusedAction.class.getResourceAsStream("FusedActionHolder.class")) {
+        if (input == null) {
+          return null;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+          output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    static Action define(MethodHandle handle) {
+      if (HOLDER_BYTES == null) {
+        return null;
+      }
+      try {
+        Class<?> holderClass = new HolderLoader(handle).defineClass(HOLDER_NAME, HOLDER_BYTES, 0, HOLDER_BYTES.length);
+        Constructor<?> constructor = holderClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return (Action) constructor.newInstance();
+      } catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+        return null;
+      }
+    }
+
+    private final MethodHandle handle;
+
+    private HolderLoader(MethodHandle handle) {
+      super(FusedAction.class.getClassLoader());
+      this.handle = handle;
+    }
+
+    @Override
+    public MethodHandle call() {
+      return handle;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.lang.invoke.MethodHandle;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a fused flow's method handle from a static final field, which the JIT treats as a constant, so that it can inline
+ * the whole tree of method handles into {@link #run(UUID, Scratchpad)}.
+ * <p>
+ * This class is never loaded by its own class loader: {@link FusedAction} defines a fresh copy of it for each fused flow, in
+ * a class loader which supplies that flow's method handle. It may therefore refer only to public types.
+ * </p>
+ */
+final class FusedActionHolder implements Action {
+
+  private static final MethodHandle HANDLE = handle();
+
+  @SuppressWarnings("unchecked")
+  private static MethodHandle handle() {
+    try {
+      return ((Callable<MethodHandle>) FusedActionHolder.class.getClassLoader()).call();
+    } catch (Exception e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  @Override
+  public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+    try {
+      return (Scratchpad) HANDLE.invokeExact(flowId, scratchpad);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+}
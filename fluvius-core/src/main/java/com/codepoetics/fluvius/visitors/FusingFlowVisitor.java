@@ -0,0 +1,73 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.FlowVisitor;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compiles a flow into a single {@link FusedAction}, composing the actions for its steps with method handle combinators.
+ * <p>
+ * If the inner visitor is the default visitor, sequences, branches and single operations are fused directly. Otherwise
+ * each node is built by the inner visitor as usual, so that decoration (e.g. logging or tracing) still applies, but its
+ * children are first fused into a single action: the inner visitor is asked to build a sequence containing one fused
+ * action, or a branch whose default is the fused selection between all branches. A decorated step is fused as a call to
+ * the action the inner visitor built for it, bound into the tree as a constant, so that the JIT can still inline it.
+ * </p>
+ * <p>
+ * This visitor must wrap every other decorating visitor, except for the parallel visitor, which may wrap it.
+ * </p>
+ */
+final class FusingFlowVisitor implements FlowVisitor<Action> {
+
+  private final FlowVisitor<Action> innerVisitor;
+  private final boolean innerIsDefault;
+
+  FusingFlowVisitor(FlowVisitor<Action> innerVisitor) {
+    this.innerVisitor = innerVisitor;
+    this.innerIsDefault = innerVisitor instanceof DefaultFlowVisitor;
+  }
+
+  @Override
+  public <T> Action visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+    return innerIsDefault
+        ? FusedAction.single(providedKey, operation)
+        : FusedAction.of(innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation));
+  }
+
+  @Override
+  public <T> Action visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<Action> items) {
+    FusedAction fused = FusedAction.sequence(items);
+    return innerIsDefault
+        ? fused
+        : FusedAction.of(innerVisitor.visitSequence(stepId, requiredKeys, providedKey, Collections.<Action>singletonList(fused)));
+  }
+
+  @Override
+  public <T> Action visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Action defaultBranch, List<Conditional<Action>> conditionalBranches) {
+    List<Condition> conditions = new ArrayList<>(conditionalBranches.size());
+    List<Action> branchActions = new ArrayList<>(conditionalBranches.size());
+    for (Conditional<Action> conditional : conditionalBranches) {
+      conditions.add(conditional.getCondition());
+      branchActions.add(conditional.getValue());
+    }
+
+    FusedAction fused = FusedAction.branch(defaultBranch, conditions, branchActions);
+    return innerIsDefault
+        ? fused
+        : FusedAction.of(innerVisitor.visitBranch(stepId, requiredKeys, providedKey, fused, Collections.<Conditional<Action>>emptyList()));
+  }
+
+  @Override
+  public Condition visitCondition(Condition condition) {
+    return innerVisitor.visitCondition(condition);
+  }
+}
@@ -0,0 +1,265 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.*;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.mutation.FingerprintCache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Checks for mutation by fingerprinting each value when it is first written or read, and re-checking after each step
+ * only the values of the keys that step requires.
+ * <p>
+ * Fingerprints are kept for each run of a flow, keyed by its flow id, and discarded when the run's outermost action
+ * completes, so that a value may be changed between one run of a compiled flow and the next. Concurrent runs which share
+ * a flow id also share their fingerprints.
+ * </p>
+ */
+final class IncrementalMutationCheckingVisitor implements FlowVisitor<Action> {
+
+  private final FlowVisitor<Action> innerVisitor;
+  private final ConcurrentMap<UUID, RunFingerprints> runs = new ConcurrentHashMap<>();
+
+  IncrementalMutationCheckingVisitor(FlowVisitor<Action> innerVisitor) {
+    this.innerVisitor = innerVisitor;
+  }
+
+  @Override
+  public <T> Action visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+    return new MutationCheckingAction(
+        innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation),
+        requiredKeys,
+        providedKey);
+  }
+
+  @Override
+  public <T> Action visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<Action> items) {
+    return new MutationCheckingAction(
+        innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items),
+        Collections.<Key<?>>emptySet(),
+        null);
+  }
+
+  @Override
+  public <T> Action visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Action defaultBranch,
+                                List<Conditional<Action>> conditionalBranches) {
+    // Conditions do not declare the keys they read, so they are checked against the keys required by the whole branch.
+    List<Conditional<Action>> checkedBranches = new ArrayList<>(conditionalBranches.size());
+    for (Conditional<Action> conditional : conditionalBranches) {
+      checkedBranches.add(Conditional.of(
+          new MutationCheckingCondition(conditional.getCondition(), requiredKeys),
+          conditional.getValue()));
+    }
+    return new MutationCheckingAction(
+        innerVisitor.visitBranch(stepId, requiredKeys, providedKey, defaultBranch, checkedBranches),
+        Collections.<Key<?>>emptySet(),
+        null);
+  }
+
+  @Override
+  public Condition visitCondition(Condition condition) {
+    return innerVisitor.visitCondition(condition);
+  }
+
+  private RunFingerprints enter(UUID flowId) {
+    while (true) {
+      RunFingerprints run = runs.get(flowId);
+      if (run == null) {
+        RunFingerprints created = new RunFingerprints();
+        run = runs.putIfAbsent(flowId, created);
+        if (run == null) {
+          run = created;
+        }
+      }
+      if (run.enter()) {
+        return run;
+      }
+      // The run was discarded as we found it, so try again with a fresh one.
+    }
+  }
+
+  private void exit(UUID flowId, RunFingerprints run) {
+    if (run.exit()) {
+      runs.remove(flowId, run);
+    }
+  }
+
+  private FingerprintCache fingerprintsFor(UUID flowId) {
+    RunFingerprints run = runs.get(flowId);
+    return run == null ? FingerprintCache.create() : run.fingerprints;
+  }
+
+  private static void recordRequiredValues(Scratchpad scratchpad, Set<Key<?>> requiredKeys, FingerprintCache fingerprints) {
+    for (Key<?> key : requiredKeys) {
+      if (scratchpad.containsKey(key) && scratchpad.isSuccessful(key)) {
+        fingerprints.record(scratchpad.get(key));
+      }
+    }
+  }
+
+  private static void checkRequiredValues(Scratchpad scratchpad, Set<Key<?>> requiredKeys, FingerprintCache fingerprints) {
+    for (Key<?> key : requiredKeys) {
+      if (scratchpad.containsKey(key) && scratchpad.isSuccessful(key)) {
+        Object value = scratchpad.get(key);
+        if (!fingerprints.isUnchanged(value)) {
+          throw new IllegalStateException(
+              String.format("Operation mutated value %s in scratchpad to %s", key.getName(), value));
+        }
+      }
+    }
+  }
+
+  /**
+   * The fingerprints recorded by a single run of a flow, and the number of its actions which are still running.
+   */
+  private static final class RunFingerprints {
+    private final FingerprintCache fingerprints = FingerprintCache.create();
+    private int runningActions;
+    private boolean discarded;
+
+    synchronized boolean enter() {
+      if (discarded) {
+        return false;
+      }
+      runningActions++;
+      return true;
+    }
+
+    synchronized boolean exit() {
+      if (--runningActions == 0) {
+        discarded = true;
+      }
+      return discarded;
+    }
+  }
+
+  /**
+   * Scopes the fingerprints of a run to the actions which are running, and for single steps checks the values of the
+   * required keys after the step has run, and records the value of the provided key.
+   */
+  private final class MutationCheckingAction implements AsyncAction, BatchAction {
+
+    private final Action innerAction;
+    private final Set<Key<?>> requiredKeys;
+    private final Key<?> providedKey;
+
+    private MutationCheckingAction(Action innerAction, Set<Key<?>> requiredKeys, Key<?> providedKey) {
+      this.innerAction = innerAction;
+      this.requiredKeys = requiredKeys;
+      this.providedKey = providedKey;
+    }
+
+    @Override
+    public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+      RunFingerprints run = enter(flowId);
+      try {
+        recordRequiredValues(scratchpad, requiredKeys, run.fingerprints);
+        Scratchpad result = innerAction.run(flowId, scratchpad);
+        checkStep(scratchpad, result, run.fingerprints);
+        return result;
+      } finally {
+        exit(flowId, run);
+      }
+    }
+
+    @Override
+    public void runAsync(final UUID flowId, final Scratchpad scratchpad, final ActionCallback callback) {
+      final RunFingerprints run = enter(flowId);
+      try {
+        recordRequiredValues(scratchpad, requiredKeys, run.fingerprints);
+      } catch (RuntimeException e) {
+        exit(flowId, run);
+        callback.onFailure(e);
+        return;
+      }
+
+      Actions.runAsync(innerAction, flowId, scratchpad, new ActionCallback() {
+        @Override
+        public void onComplete(Scratchpad result) {
+          try {
+            checkStep(scratchpad, result, run.fingerprints);
+          } catch (RuntimeException e) {
+            exit(flowId, run);
+            callback.onFailure(e);
+            return;
+          }
+          exit(flowId, run);
+          callback.onComplete(result);
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+          exit(flowId, run);
+          callback.onFailure(failure);
+        }
+      });
+    }
+
+    @Override
+    public void runBatch(FlowBatch batch) {
+      int size = batch.size();
+      Scratchpad[] inputs = new Scratchpad[size];
+      RunFingerprints[] batchRuns = new RunFingerprints[size];
+      try {
+        for (int i = 0; i < size; i++) {
+          inputs[i] = batch.getScratchpad(i);
+          batchRuns[i] = enter(batch.getFlowId(i));
+          recordRequiredValues(inputs[i], requiredKeys, batchRuns[i].fingerprints);
+        }
+
+        Actions.runBatch(innerAction, batch);
+
+        for (int i = 0; i < size; i++) {
+          if (!batch.isFailed(i)) {
+            try {
+              checkStep(inputs[i], batch.getScratchpad(i), batchRuns[i].fingerprints);
+            } catch (RuntimeException e) {
+              batch.fail(i, e);
+            }
+          }
+        }
+      } finally {
+        for (int i = 0; i < size; i++) {
+          if (batchRuns[i] != null) {
+            exit(batch.getFlowId(i), batchRuns[i]);
+          }
+        }
+      }
+    }
+
+    private void checkStep(Scratchpad input, Scratchpad result, FingerprintCache fingerprints) {
+      checkRequiredValues(input, requiredKeys, fingerprints);
+      if (providedKey != null && result.containsKey(providedKey) && result.isSuccessful(providedKey)) {
+        fingerprints.record(result.get(providedKey));
+      }
+    }
+  }
+
+  private final class MutationCheckingCondition implements Condition {
+
+    private final Condition innerCondition;
+    private final Set<Key<?>> requiredKeys;
+
+    private MutationCheckingCondition(Condition innerCondition, Set<Key<?>> requiredKeys) {
+      this.innerCondition = innerCondition;
+      this.requiredKeys = requiredKeys;
+    }
+
+    @Override
+    public String getDescription() {
+      return innerCondition.getDescription();
+    }
+
+    @Override
+    public boolean test(UUID flowId, Scratchpad scratchpad) {
+      FingerprintCache fingerprints = fingerprintsFor(flowId);
+      recordRequiredValues(scratchpad, requiredKeys, fingerprints);
+      boolean result = innerCondition.test(flowId, scratchpad);
+      checkRequiredValues(scratchpad, requiredKeys, fingerprints);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ActionCallback;
+import com.codepoetics.fluvius.api.AsyncAction;
+import com.codepoetics.fluvius.api.BatchAction;
+import com.codepoetics.fluvius.api.FlowBatch;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An Action annotated with the keys its step reads and writes, used to work out which steps in a sequence depend on each other.
+ */
+final class KeyedAction implements AsyncAction, BatchAction {
+
+  static KeyedAction step(Set<Key<?>> requiredKeys, Key<?> providedKey, Action action) {
+    return new KeyedAction(requiredKeys, providedKey, false, action);
+  }
+
+  static KeyedAction barrier(Set<Key<?>> requiredKeys, Key<?> providedKey, Action action) {
+    return new KeyedAction(requiredKeys, providedKey, true, action);
+  }
+
+  private final Set<Key<?>> requiredKeys;
+  private final Key<?> providedKey;
+  private final boolean isBarrier;
+  private final Action action;
+
+  private KeyedAction(Set<Key<?>> requiredKeys, Key<?> providedKey, boolean isBarrier, Action action) {
+    this.requiredKeys = requiredKeys;
+    this.providedKey = providedKey;
+    this.isBarrier = isBarrier;
+    this.action = action;
+  }
+
+  Set<Key<?>> getRequiredKeys() {
+    return requiredKeys;
+  }
+
+  Key<?> getProvidedKey() {
+    return providedKey;
+  }
+
+  /**
+   * A barrier may read or write keys other than those it declares (e.g. because it is a sequence or branch), and so
+   * must not run concurrently with any other step.
+   */
+  boolean isBarrier() {
+    return isBarrier;
+  }
+
+  Action getAction() {
+    return action;
+  }
+
+  boolean mustFollow(KeyedAction previous) {
+    return isBarrier
+        || previous.isBarrier
+        || requiredKeys.contains(previous.providedKey)
+        || previous.requiredKeys.contains(providedKey)
+        || providedKey.equals(previous.providedKey);
+  }
+
+  @Override
+  public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+    return action.run(flowId, scratchpad);
+  }
+
+  @Override
+  public void runAsync(UUID flowId, Scratchpad scratchpad, ActionCallback callback) {
+    Actions.runAsync(action, flowId, scratchpad, callback);
+  }
+
+  @Override
+  public void runBatch(FlowBatch batch) {
+    Actions.runBatch(action, batch);
+  }
+}
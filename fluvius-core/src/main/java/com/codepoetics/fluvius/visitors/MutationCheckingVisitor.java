@@ -4,6 +4,8 @@ import com.codepoetics.fluvius.api.*;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 import com.codepoetics.fluvius.mutation.MutableState;
+import com.codepoetics.fluvius.operations.OperationInterceptor;
+import com.codepoetics.fluvius.operations.Operations;
 
 import java.util.*;
 
@@ -17,7 +19,7 @@ final class MutationCheckingVisitor<V> implements FlowVisitor<V> {
 
   @Override
   public <T> V visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
-    return innerVisitor.visitSingle(stepId, requiredKeys, providedKey, new MutationCheckingOperation<>(operation));
+    return innerVisitor.visitSingle(stepId, requiredKeys, providedKey, Operations.intercept(operation, new MutationCheckingInterceptor<T>()));
   }
 
   @Override
@@ -36,24 +38,13 @@ final class MutationCheckingVisitor<V> implements FlowVisitor<V> {
     return innerVisitor.visitCondition(new MutationCheckingCondition(condition));
   }
 
-  private static final class MutationCheckingOperation<T> implements Operation<T> {
-
-    private final Operation<T> innerOperation;
-
-    private MutationCheckingOperation(Operation<T> innerOperation) {
-      this.innerOperation = innerOperation;
-    }
-
-    @Override
-    public String getName() {
-      return innerOperation.getName();
-    }
+  private static final class MutationCheckingInterceptor<T> implements OperationInterceptor<T> {
 
     @Override
-    public T run(Scratchpad scratchpad) throws Exception {
+    public T run(Operation<T> operation, Scratchpad scratchpad) throws Exception {
       Map<Key<?>, Object> before = getMutableState(scratchpad);
 
-      T result = innerOperation.run(scratchpad);
+      T result = operation.run(scratchpad);
 
       Map<Key<?>, Object> after = getMutableState(scratchpad);
       testForMutation(before, after);
@@ -61,6 +52,42 @@ final class MutationCheckingVisitor<V> implements FlowVisitor<V> {
       return result;
     }
 
+    @Override
+    public void runAsync(AsyncOperation<T> operation, final Scratchpad scratchpad, final OperationCallback<T> callback) {
+      final Map<Key<?>, Object> before = getMutableState(scratchpad);
+      operation.run(scratchpad, new OperationCallback<T>() {
+        @Override
+        public void onSuccess(T result) {
+          try {
+            testForMutation(before, getMutableState(scratchpad));
+          } catch (IllegalStateException e) {
+            callback.onFailure(e);
+            return;
+          }
+          callback.onSuccess(result);
+        }
+
+        @Override
+        public void onFailure(Exception failure) {
+          callback.onFailure(failure);
+        }
+      });
+    }
+
+    @Override
+    public List<T> runBatch(BatchOperation<T> operation, List<Scratchpad> scratchpads) throws Exception {
+      List<Map<Key<?>, Object>> before = new ArrayList<>(scratchpads.size());
+      for (Scratchpad scratchpad : scratchpads) {
+        before.add(getMutableState(scratchpad));
+      }
+
+      List<T> results = operation.runBatch(scratchpads);
+
+      for (int i = 0; i < scratchpads.size(); i++) {
+        testForMutation(before.get(i), getMutableState(scratchpads.get(i)));
+      }
+      return results;
+    }
   }
 
   private static final class MutationCheckingCondition implements Condition {
@@ -0,0 +1,472 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ActionCallback;
+import com.codepoetics.fluvius.api.AsyncAction;
+import com.codepoetics.fluvius.api.BatchAction;
+import com.codepoetics.fluvius.api.FlowBatch;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.KeyValue;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the steps of a sequence as a dependency graph, executing each step as soon as all of the steps it depends on
+ * have completed.
+ * <p>
+ * Ready steps are placed on a queue which is drained both by tasks submitted to the executor and by the calling thread,
+ * which runs steps itself while it waits for the sequence to complete. Steps can therefore never be starved of a thread,
+ * even if the executor is saturated by other (possibly nested) parallel sequences.
+ * </p>
+ * <p>
+ * When run asynchronously, no thread waits for the sequence: each step is started as soon as it is ready, and the
+ * sequence completes on whichever thread completes its last step.
+ * </p>
+ * <p>
+ * When run against a batch, the steps are run in waves: each wave holds the steps whose dependencies have all completed,
+ * and runs each of them against the whole batch, concurrently with the others, so that batching steps still see every
+ * record at once.
+ * </p>
+ */
+final class ParallelSequenceAction implements AsyncAction, BatchAction {
+
+  static Action of(List<KeyedAction> steps, Executor executor) {
+    int stepCount = steps.size();
+    Action[] actions = new Action[stepCount];
+    Key<?>[] providedKeys = new Key<?>[stepCount];
+    boolean[] barriers = new boolean[stepCount];
+    int[] dependencyCounts = new int[stepCount];
+    List<List<Integer>> dependents = new ArrayList<>(stepCount);
+
+    for (int i = 0; i < stepCount; i++) {
+      KeyedAction step = steps.get(i);
+      actions[i] = step.getAction();
+      providedKeys[i] = step.getProvidedKey();
+      barriers[i] = step.isBarrier();
+      dependents.add(new ArrayList<Integer>());
+
+      for (int j = 0; j < i; j++) {
+        if (step.mustFollow(steps.get(j))) {
+          dependents.get(j).add(i);
+          dependencyCounts[i]++;
+        }
+      }
+    }
+
+    int[][] dependentsByStep = new int[stepCount][];
+    for (int i = 0; i < stepCount; i++) {
+      List<Integer> stepDependents = dependents.get(i);
+      dependentsByStep[i] = new int[stepDependents.size()];
+      for (int j = 0; j < stepDependents.size(); j++) {
+        dependentsByStep[i][j] = stepDependents.get(j);
+      }
+    }
+
+    return new ParallelSequenceAction(actions, providedKeys, barriers, dependencyCounts, dependentsByStep, executor);
+  }
+
+  private final Action[] actions;
+  private final Key<?>[] providedKeys;
+  private final boolean[] barriers;
+  private final int[] dependencyCounts;
+  private final int[][] dependents;
+  private final Executor executor;
+
+  private ParallelSequenceAction(Action[] actions, Key<?>[] providedKeys, boolean[] barriers, int[] dependencyCounts, int[][] dependents, Executor executor) {
+    this.actions = actions;
+    this.providedKeys = providedKeys;
+    this.barriers = barriers;
+    this.dependencyCounts = dependencyCounts;
+    this.dependents = dependents;
+    this.executor = executor;
+  }
+
+  @Override
+  public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+    return new Run(flowId, scratchpad).execute();
+  }
+
+  @Override
+  public void runAsync(UUID flowId, Scratchpad scratchpad, ActionCallback callback) {
+    new AsyncRun(flowId, scratchpad, callback).start();
+  }
+
+  @Override
+  public void runBatch(FlowBatch batch) {
+    int[] remainingDependencies = dependencyCounts.clone();
+    List<Integer> wave = new ArrayList<>();
+    for (int i = 0; i < actions.length; i++) {
+      if (dependencyCounts[i] == 0) {
+        wave.add(i);
+      }
+    }
+
+    while (!wave.isEmpty()) {
+      FlowBatch active = batch.active();
+      if (active.size() == 0) {
+        return;
+      }
+
+      if (wave.size() == 1) {
+        Actions.runBatch(actions[wave.get(0)], active);
+      } else {
+        new BatchWave(wave, active).execute();
+      }
+
+      List<Integer> nextWave = new ArrayList<>();
+      for (int step : wave) {
+        for (int dependent : dependents[step]) {
+          if (--remainingDependencies[dependent] == 0) {
+            nextWave.add(dependent);
+          }
+        }
+      }
+      wave = nextWave;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static KeyValue copyValue(Key<?> key, Scratchpad source) {
+    return source.isSuccessful(key)
+        ? ((Key<Object>) key).of(source.get(key))
+        : key.ofFailure(source.getFailureReason(key));
+  }
+
+  private final class Run implements Runnable {
+
+    private final UUID flowId;
+    private final Object lock = new Object();
+    private final Deque<Integer> readySteps = new ArrayDeque<>();
+    private final int[] remainingDependencies = dependencyCounts.clone();
+    private Scratchpad current;
+    private int unfinishedSteps = actions.length;
+    private Throwable failure;
+
+    private Run(UUID flowId, Scratchpad initialScratchpad) {
+      this.flowId = flowId;
+      this.current = initialScratchpad;
+    }
+
+    Scratchpad execute() {
+      List<Integer> roots = new ArrayList<>();
+      for (int i = 0; i < actions.length; i++) {
+        if (dependencyCounts[i] == 0) {
+          roots.add(i);
+        }
+      }
+      schedule(roots);
+
+      while (true) {
+        runReadySteps();
+        synchronized (lock) {
+          while (unfinishedSteps > 0 && failure == null && readySteps.isEmpty()) {
+            try {
+              lock.wait();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              failure = new IllegalStateException("Interrupted while waiting for parallel steps to complete", e);
+            }
+          }
+          if (failure != null) {
+            throw propagate(failure);
+          }
+          if (unfinishedSteps == 0) {
+            return current;
+          }
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      runReadySteps();
+    }
+
+    private void runReadySteps() {
+      Integer step;
+      while ((step = nextReadyStep()) != null) {
+        runStep(step);
+      }
+    }
+
+    private Integer nextReadyStep() {
+      synchronized (lock) {
+        return failure == null ? readySteps.poll() : null;
+      }
+    }
+
+    private void runStep(int step) {
+      Scratchpad input;
+      synchronized (lock) {
+        input = current;
+      }
+
+      List<Integer> nowReady = new ArrayList<>();
+      try {
+        Scratchpad result = actions[step].run(flowId, input);
+
+        synchronized (lock) {
+          // Barriers never run alongside other steps, so their result can replace the current state wholesale.
+          current = barriers[step] ? result : current.with(copyValue(providedKeys[step], result));
+          unfinishedSteps--;
+          for (int dependent : dependents[step]) {
+            if (--remainingDependencies[dependent] == 0) {
+              nowReady.add(dependent);
+            }
+          }
+          lock.notifyAll();
+        }
+      } catch (Throwable e) {
+        synchronized (lock) {
+          if (failure == null) {
+            failure = e;
+          }
+          lock.notifyAll();
+        }
+        return;
+      }
+
+      schedule(nowReady);
+    }
+
+    private void schedule(List<Integer> steps) {
+      if (steps.isEmpty()) {
+        return;
+      }
+
+      synchronized (lock) {
+        readySteps.addAll(steps);
+        lock.notifyAll();
+      }
+
+      // The scheduling thread goes on to drain the queue itself, so only the remaining steps need another thread.
+      for (int i = 1; i < steps.size(); i++) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          return;
+        }
+      }
+    }
+
+    private RuntimeException propagate(Throwable throwable) {
+      if (throwable instanceof RuntimeException) {
+        return (RuntimeException) throwable;
+      }
+      if (throwable instanceof Error) {
+        throw (Error) throwable;
+      }
+      return new IllegalStateException(throwable);
+    }
+  }
+
+  private final class AsyncRun {
+
+    private final UUID flowId;
+    private final ActionCallback callback;
+    private final Object lock = new Object();
+    private final int[] remainingDependencies = dependencyCounts.clone();
+    private Scratchpad current;
+    private int unfinishedSteps = actions.length;
+    private boolean finished;
+
+    private AsyncRun(UUID flowId, Scratchpad initialScratchpad, ActionCallback callback) {
+      this.flowId = flowId;
+      this.current = initialScratchpad;
+      this.callback = callback;
+    }
+
+    void start() {
+      List<Integer> roots = new ArrayList<>();
+      for (int i = 0; i < actions.length; i++) {
+        if (dependencyCounts[i] == 0) {
+          roots.add(i);
+        }
+      }
+      launch(roots);
+    }
+
+    // The launching thread starts the first step itself, so only the remaining steps need another thread.
+    private void launch(List<Integer> steps) {
+      for (int i = 1; i < steps.size(); i++) {
+        final int step = steps.get(i);
+        try {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              startStep(step);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          startStep(step);
+        }
+      }
+      if (!steps.isEmpty()) {
+        startStep(steps.get(0));
+      }
+    }
+
+    private void startStep(final int step) {
+      Scratchpad input;
+      synchronized (lock) {
+        if (finished) {
+          return;
+        }
+        input = current;
+      }
+
+      Actions.runAsync(actions[step], flowId, input, new ActionCallback() {
+        @Override
+        public void onComplete(Scratchpad result) {
+          completeStep(step, result);
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+          fail(failure);
+        }
+      });
+    }
+
+    private void completeStep(int step, Scratchpad result) {
+      List<Integer> nowReady = new ArrayList<>();
+      Scratchpad completed = null;
+      synchronized (lock) {
+        if (finished) {
+          return;
+        }
+        // Barriers never run alongside other steps, so their result can replace the current state wholesale.
+        current = barriers[step] ? result : current.with(copyValue(providedKeys[step], result));
+        unfinishedSteps--;
+        for (int dependent : dependents[step]) {
+          if (--remainingDependencies[dependent] == 0) {
+            nowReady.add(dependent);
+          }
+        }
+        if (unfinishedSteps == 0) {
+          finished = true;
+          completed = current;
+        }
+      }
+
+      if (completed != null) {
+        callback.onComplete(completed);
+      } else {
+        launch(nowReady);
+      }
+    }
+
+    private void fail(Throwable failure) {
+      synchronized (lock) {
+        if (finished) {
+          return;
+        }
+        finished = true;
+      }
+      callback.onFailure(failure);
+    }
+  }
+
+  /**
+   * Runs several independent steps against copies of a batch, and merges the value each step provides into the batch.
+   * As with a synchronous run, the calling thread claims steps alongside the executor's threads, so that steps are never
+   * starved of a thread.
+   */
+  private final class BatchWave implements Runnable {
+
+    private final List<Integer> steps;
+    private final FlowBatch batch;
+    private final FlowBatch[] copies;
+    private final AtomicInteger nextStep = new AtomicInteger();
+    private final CountDownLatch completed;
+
+    private BatchWave(List<Integer> steps, FlowBatch batch) {
+      this.steps = steps;
+      this.batch = batch;
+      this.copies = new FlowBatch[steps.size()];
+      this.completed = new CountDownLatch(steps.size());
+
+      List<UUID> flowIds = new ArrayList<>(batch.size());
+      List<Scratchpad> scratchpads = new ArrayList<>(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        flowIds.add(batch.getFlowId(i));
+        scratchpads.add(batch.getScratchpad(i));
+      }
+      for (int i = 0; i < copies.length; i++) {
+        copies[i] = FlowBatch.of(flowIds, scratchpads);
+      }
+    }
+
+    void execute() {
+      for (int i = 1; i < copies.length; i++) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          break;
+        }
+      }
+      run();
+
+      try {
+        completed.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        IllegalStateException failure = new IllegalStateException("Interrupted while waiting for parallel steps to complete", e);
+        for (int i = 0; i < batch.size(); i++) {
+          batch.fail(i, failure);
+        }
+        return;
+      }
+
+      merge();
+    }
+
+    @Override
+    public void run() {
+      int index;
+      while ((index = nextStep.getAndIncrement()) < copies.length) {
+        FlowBatch copy = copies[index];
+        try {
+          Actions.runBatch(actions[steps.get(index)], copy);
+        } catch (Throwable e) {
+          for (int i = 0; i < copy.size(); i++) {
+            if (!copy.isFailed(i)) {
+              copy.fail(i, e);
+            }
+          }
+        } finally {
+          completed.countDown();
+        }
+      }
+    }
+
+    private void merge() {
+      for (int i = 0; i < batch.size(); i++) {
+        Scratchpad merged = batch.getScratchpad(i);
+        Throwable failure = null;
+        for (int j = 0; j < copies.length && failure == null; j++) {
+          if (copies[j].isFailed(i)) {
+            failure = copies[j].getFailure(i);
+          } else {
+            merged = merged.with(copyValue(providedKeys[steps.get(j)], copies[j].getScratchpad(i)));
+          }
+        }
+
+        if (failure == null) {
+          batch.update(i, merged);
+        } else {
+          batch.fail(i, failure);
+        }
+      }
+    }
+  }
+}
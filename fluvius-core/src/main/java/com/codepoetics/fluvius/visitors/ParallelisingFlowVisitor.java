@@ -0,0 +1,81 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.Condition;
+import com.codepoetics.fluvius.api.Conditional;
+import com.codepoetics.fluvius.api.FlowVisitor;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Compiles sequences into dependency graphs whose independent steps are run concurrently.
+ * <p>
+ * This visitor must be the outermost visitor in a chain of decorating visitors, as it relies on seeing the
+ * {@link KeyedAction}s it created itself when visiting the items of a sequence. The inner visitor is then asked to
+ * build a sequence containing the single parallel action, so that sequence-level decoration (e.g. tracing) still applies.
+ * </p>
+ */
+final class ParallelisingFlowVisitor implements FlowVisitor<Action> {
+
+  private final FlowVisitor<Action> innerVisitor;
+  private final Executor executor;
+
+  ParallelisingFlowVisitor(FlowVisitor<Action> innerVisitor, Executor executor) {
+    this.innerVisitor = innerVisitor;
+    this.executor = executor;
+  }
+
+  @Override
+  public <T> Action visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
+    return KeyedAction.step(requiredKeys, providedKey,
+        innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation));
+  }
+
+  @Override
+  public <T> Action visitSequence(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, List<Action> items) {
+    List<KeyedAction> steps = new ArrayList<>(items.size());
+    for (Action item : items) {
+      if (!(item instanceof KeyedAction)) {
+        return KeyedAction.barrier(requiredKeys, providedKey,
+            innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items));
+      }
+      steps.add((KeyedAction) item);
+    }
+
+    if (isStrictlyOrdered(steps)) {
+      return KeyedAction.barrier(requiredKeys, providedKey,
+          innerVisitor.visitSequence(stepId, requiredKeys, providedKey, items));
+    }
+
+    return KeyedAction.barrier(requiredKeys, providedKey,
+        innerVisitor.visitSequence(stepId, requiredKeys, providedKey,
+            Collections.singletonList(ParallelSequenceAction.of(steps, executor))));
+  }
+
+  private boolean isStrictlyOrdered(List<KeyedAction> steps) {
+    for (int i = 1; i < steps.size(); i++) {
+      if (!steps.get(i).mustFollow(steps.get(i - 1))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public <T> Action visitBranch(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Action defaultBranch, List<Conditional<Action>> conditionalBranches) {
+    return KeyedAction.barrier(requiredKeys, providedKey,
+        innerVisitor.visitBranch(stepId, requiredKeys, providedKey, defaultBranch, conditionalBranches));
+  }
+
+  @Override
+  public Condition visitCondition(Condition condition) {
+    return innerVisitor.visitCondition(condition);
+  }
+}
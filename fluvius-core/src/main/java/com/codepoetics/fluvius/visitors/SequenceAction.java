@@ -1,12 +1,17 @@
 package com.codepoetics.fluvius.visitors;
 
 import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ActionCallback;
+import com.codepoetics.fluvius.api.AsyncAction;
+import com.codepoetics.fluvius.api.BatchAction;
+import com.codepoetics.fluvius.api.FlowBatch;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
-final class SequenceAction implements Action {
+final class SequenceAction implements AsyncAction, BatchAction {
 
   static Action of(List<Action> actions) {
     return new SequenceAction(actions);
@@ -26,4 +31,56 @@ final class SequenceAction implements Action {
     }
     return result;
   }
+
+  @Override
+  public void runAsync(UUID flowId, Scratchpad scratchpad, ActionCallback callback) {
+    new AsyncRun(flowId, callback).onComplete(scratchpad);
+  }
+
+  @Override
+  public void runBatch(FlowBatch batch) {
+    for (Action action : actions) {
+      Actions.runBatch(action, batch);
+    }
+  }
+
+  /**
+   * Runs each action in turn as the previous one completes. Actions which complete synchronously are run in a loop
+   * rather than by recursion, so that long sequences of synchronous steps do not grow the stack.
+   */
+  private final class AsyncRun implements ActionCallback {
+    private final UUID flowId;
+    private final ActionCallback callback;
+    private final AtomicInteger pendingCompletions = new AtomicInteger();
+    private int nextIndex;
+    private Scratchpad current;
+
+    private AsyncRun(UUID flowId, ActionCallback callback) {
+      this.flowId = flowId;
+      this.callback = callback;
+    }
+
+    @Override
+    public void onComplete(Scratchpad result) {
+      current = result;
+      if (pendingCompletions.getAndIncrement() == 0) {
+        runRemainingActions();
+      }
+    }
+
+    private void runRemainingActions() {
+      do {
+        if (nextIndex == actions.size()) {
+          callback.onComplete(current);
+          return;
+        }
+        Actions.runAsync(actions.get(nextIndex++), flowId, current, this);
+      } while (pendingCompletions.decrementAndGet() != 0);
+    }
+
+    @Override
+    public void onFailure(Throwable failure) {
+      callback.onFailure(failure);
+    }
+  }
 }
@@ -1,32 +1,204 @@
 package com.codepoetics.fluvius.visitors;
 
 import com.codepoetics.fluvius.api.Action;
+import com.codepoetics.fluvius.api.ActionCallback;
+import com.codepoetics.fluvius.api.AsyncAction;
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchAction;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.FlowBatch;
 import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.exceptions.StepTimeoutException;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+import com.codepoetics.fluvius.operations.Operations;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
-final class SingleOperationAction<T> implements Action {
+final class SingleOperationAction<T> implements AsyncAction, BatchAction {
 
-  static <T> Action of(Key<T> outputKey, Operation<T> operation) {
-    return new SingleOperationAction<>(outputKey, operation);
+  static <T> Action of(Set<Key<?>> requiredKeys, Key<T> outputKey, Operation<T> operation) {
+    return new SingleOperationAction<>(requiredKeys.toArray(new Key<?>[requiredKeys.size()]), outputKey, operation);
   }
 
+  private final Key<?>[] requiredKeys;
   private final Key<T> outputKey;
   private final Operation<T> operation;
 
-  private SingleOperationAction(Key<T> outputKey, Operation<T> operation) {
+  private SingleOperationAction(Key<?>[] requiredKeys, Key<T> outputKey, Operation<T> operation) {
+    this.requiredKeys = requiredKeys;
     this.outputKey = outputKey;
     this.operation = operation;
   }
 
   @Override
   public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
+    Deadline deadline = FlowDeadlines.forScratchpad(scratchpad);
+    return deadline == null
+        ? run(operation, scratchpad)
+        : runBeforeDeadline(outputKey, operationFor(deadline), deadline, scratchpad);
+  }
+
+  private Scratchpad run(Operation<T> timedOperation, Scratchpad scratchpad) {
     try {
-      return scratchpad.with(outputKey.of(operation.run(scratchpad)));
+      return scratchpad.with(outputKey.of(timedOperation.run(scratchpad)));
     } catch (Exception e) {
       return scratchpad.with(outputKey.ofFailure(e));
     }
   }
+
+  /**
+   * Run an operation on the calling thread, checking the flow's deadline before and after it runs: once the deadline has
+   * passed, every remaining step fails with a timeout without running its operation, and a step which completes after it
+   * has passed fails with a timeout in place of its result.
+   */
+  @SuppressWarnings("unchecked")
+  static Scratchpad runBeforeDeadline(Key<?> outputKey, Operation<?> operation, Deadline deadline, Scratchpad scratchpad) {
+    if (deadline.isExpired()) {
+      return scratchpad.with(outputKey.ofFailure(deadlinePassed(operation)));
+    }
+
+    Scratchpad result;
+    try {
+      result = scratchpad.with(((Key<Object>) outputKey).of(operation.run(scratchpad)));
+    } catch (Exception e) {
+      result = scratchpad.with(outputKey.ofFailure(e));
+    }
+
+    return deadline.isExpired() && result.isSuccessful(outputKey)
+        ? scratchpad.with(outputKey.ofFailure(deadlinePassed(operation)))
+        : result;
+  }
+
+  private static StepTimeoutException deadlinePassed(Operation<?> operation) {
+    return new StepTimeoutException(
+        String.format("Operation %s did not complete before its flow's deadline", operation.getName()));
+  }
+
+  // Only asynchronous operations are raced against the deadline, since that needs no other thread; synchronous operations
+  // run on the calling thread, and are abandoned early only if they were given a timeout of their own.
+  private Operation<T> operationFor(Deadline deadline) {
+    return operation instanceof AsyncOperation ? Operations.withDeadline(operation, deadline) : operation;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void runAsync(UUID flowId, final Scratchpad scratchpad, final ActionCallback callback) {
+    if (!(operation instanceof AsyncOperation)) {
+      callback.onComplete(run(flowId, scratchpad));
+      return;
+    }
+
+    Deadline deadline = FlowDeadlines.forScratchpad(scratchpad);
+    if (deadline != null && deadline.isExpired()) {
+      callback.onComplete(scratchpad.with(outputKey.ofFailure(deadlinePassed(operation))));
+      return;
+    }
+    Operation<T> timedOperation = deadline == null ? operation : operationFor(deadline);
+
+    OperationCallback<T> operationCallback = new OperationCallback<T>() {
+      @Override
+      public void onSuccess(T result) {
+        Scratchpad updated;
+        try {
+          updated = scratchpad.with(outputKey.of(result));
+        } catch (RuntimeException e) {
+          onFailure(e);
+          return;
+        }
+        callback.onComplete(updated);
+      }
+
+      @Override
+      public void onFailure(Exception failure) {
+        Scratchpad updated;
+        try {
+          updated = scratchpad.with(outputKey.ofFailure(failure));
+        } catch (RuntimeException e) {
+          callback.onFailure(e);
+          return;
+        }
+        callback.onComplete(updated);
+      }
+    };
+
+    try {
+      ((AsyncOperation<T>) timedOperation).run(scratchpad, operationCallback);
+    } catch (RuntimeException e) {
+      operationCallback.onFailure(e);
+    }
+  }
+
+  @Override
+  public void runBatch(FlowBatch batch) {
+    if (!(operation instanceof BatchOperation)) {
+      runEach(batch);
+      return;
+    }
+
+    // Records whose inputs include a failure, or whose deadline has passed, are run individually, so that they fail exactly
+    // as they would outside a batch.
+    int[] batchedIndices = new int[batch.size()];
+    int batchedCount = 0;
+    List<Scratchpad> batchedScratchpads = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      Scratchpad scratchpad = batch.getScratchpad(i);
+      Deadline deadline = FlowDeadlines.forScratchpad(scratchpad);
+      if (hasFailedInput(scratchpad) || (deadline != null && deadline.isExpired())) {
+        batch.update(i, run(batch.getFlowId(i), scratchpad));
+      } else {
+        batchedIndices[batchedCount++] = i;
+        batchedScratchpads.add(scratchpad);
+      }
+    }
+
+    if (batchedCount > 0) {
+      runBatchOperation((BatchOperation<T>) operation, batch.select(batchedIndices, batchedCount), batchedScratchpads);
+    }
+  }
+
+  private void runEach(FlowBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      batch.update(i, run(batch.getFlowId(i), batch.getScratchpad(i)));
+    }
+  }
+
+  private boolean hasFailedInput(Scratchpad scratchpad) {
+    for (Key<?> requiredKey : requiredKeys) {
+      if (!scratchpad.containsKey(requiredKey) || !scratchpad.isSuccessful(requiredKey)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void runBatchOperation(BatchOperation<T> batchOperation, FlowBatch batch, List<Scratchpad> scratchpads) {
+    List<T> results;
+    try {
+      results = batchOperation.runBatch(scratchpads);
+      if (results.size() != scratchpads.size()) {
+        throw new IllegalStateException(String.format(
+            "Batch operation %s returned %d results for %d inputs", operation.getName(), results.size(), scratchpads.size()));
+      }
+    } catch (Exception e) {
+      for (int i = 0; i < batch.size(); i++) {
+        batch.update(i, batch.getScratchpad(i).with(outputKey.ofFailure(e)));
+      }
+      return;
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      Scratchpad scratchpad = batch.getScratchpad(i);
+      Deadline deadline = FlowDeadlines.forScratchpad(scratchpad);
+      batch.update(i, deadline != null && deadline.isExpired()
+          ? scratchpad.with(outputKey.ofFailure(deadlinePassed(operation)))
+          : scratchpad.with(outputKey.of(results.get(i))));
+    }
+  }
 }
@@ -2,6 +2,7 @@ package com.codepoetics.fluvius.visitors;
 
 import com.codepoetics.fluvius.api.*;
 import com.codepoetics.fluvius.api.logging.FlowLogger;
+import com.codepoetics.fluvius.api.logging.LogLevel;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 import com.codepoetics.fluvius.logging.Loggers;
@@ -9,6 +10,7 @@ import com.codepoetics.fluvius.logging.Loggers;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 /**
  * Utility class for working with FlowVisitors.
@@ -40,8 +42,60 @@ public final class Visitors {
     return new MutationCheckingVisitor<>(wrapped);
   }
 
+  /**
+   * Wrap a FlowVisitor, decorating it with a cheaper form of mutation-forbidding behaviour.
+   * <p>
+   * Rather than copying the state of the whole scratchpad before and after every step, each value is fingerprinted once
+   * when it is first written or read, and only the values of the keys a step requires are re-checked after it has run.
+   * Fingerprints are discarded when each run of a flow completes.
+   * </p>
+   * @param wrapped The wrapped FlowVisitor.
+   * @return The mutation-checking FlowVisitor.
+   */
+  public static FlowVisitor<Action> incrementalMutationChecking(FlowVisitor<Action> wrapped) {
+    return new IncrementalMutationCheckingVisitor(wrapped);
+  }
+
+  /**
+   * Wrap a FlowVisitor which constructs an Action which can be executed, so that the steps of each sequence are run as a
+   * dependency graph built from their required and provided keys, with independent steps running concurrently on the supplied {@link Executor}.
+   * <p>
+   * Branches and nested sequences are treated as barriers, which wait for every preceding step and are waited for by every subsequent step.
+   * The parallel visitor must be the outermost decorator, i.e. it should not itself be wrapped by any other visitor.
+   * </p>
+   *
+   * @param wrapped  The wrapped FlowVisitor.
+   * @param executor The Executor to run independent steps on.
+   * @return The parallelising FlowVisitor.
+   */
+  public static FlowVisitor<Action> parallel(FlowVisitor<Action> wrapped, Executor executor) {
+    return new ParallelisingFlowVisitor(wrapped, executor);
+  }
+
+  /**
+   * Wrap a FlowVisitor which constructs an Action which can be executed, so that the whole flow is fused into a single
+   * tree of {@link java.lang.invoke.MethodHandle}s which the JIT can inline across steps.
+   * <p>
+   * Fused flows always run synchronously, and record by record when run against a batch. The fusing visitor must wrap
+   * every other decorator, and may itself be wrapped
+   * only by {@link #parallel(FlowVisitor, Executor)}, in which case sequences with independent steps are run in parallel
+   * rather than fused.
+   * </p>
+   *
+   * @param wrapped The wrapped FlowVisitor.
+   * @return The fusing FlowVisitor.
+   */
+  public static FlowVisitor<Action> fused(FlowVisitor<Action> wrapped) {
+    return new FusingFlowVisitor(wrapped);
+  }
+
   /**
    * Wrap a FlowVisitor which constructs an Action which can be executed, decorating it with logging behaviour.
+   * <p>
+   * If the logger is a {@link com.codepoetics.fluvius.api.logging.LevelledFlowLogger}, its levels are checked once, here:
+   * operations and conditions are only wrapped if some level at which they are logged is enabled, and do no work to gather
+   * the details of events at disabled levels.
+   * </p>
    *
    * @param wrapped The wrapped FlowVisitor.
    * @param logger  The FlowLogger to use to log Flow and Condition execution.
@@ -64,16 +118,28 @@ public final class Visitors {
   private static final class LoggingFlowVisitor implements FlowVisitor<Action> {
     private final FlowVisitor<Action> innerVisitor;
     private final FlowLogger flowLogger;
+    private final boolean logStarted;
+    private final boolean logCompleted;
+    private final boolean logFailed;
 
     private LoggingFlowVisitor(FlowVisitor<Action> innerVisitor, FlowLogger flowLogger) {
       this.innerVisitor = innerVisitor;
       this.flowLogger = flowLogger;
+      this.logStarted = Loggers.isEnabled(flowLogger, LogLevel.DEBUG);
+      this.logCompleted = Loggers.isEnabled(flowLogger, LogLevel.INFO);
+      this.logFailed = Loggers.isEnabled(flowLogger, LogLevel.ERROR);
+    }
+
+    private boolean isDisabled() {
+      return !(logStarted || logCompleted || logFailed);
     }
 
     @Override
     public <T> Action visitSingle(UUID stepId, Set<Key<?>> requiredKeys, Key<T> providedKey, Operation<T> operation) {
-      return new LoggingAction(flowLogger, operation.getName(), providedKey,
-          innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation));
+      Action action = innerVisitor.visitSingle(stepId, requiredKeys, providedKey, operation);
+      return isDisabled()
+          ? action
+          : new LoggingAction(flowLogger, logStarted, logCompleted, logFailed, operation.getName(), providedKey, action);
     }
 
     @Override
@@ -88,19 +154,29 @@ public final class Visitors {
 
     @Override
     public Condition visitCondition(Condition condition) {
-      return new LoggingCondition(flowLogger, innerVisitor.visitCondition(condition));
+      Condition visited = innerVisitor.visitCondition(condition);
+      return isDisabled()
+          ? visited
+          : new LoggingCondition(flowLogger, logStarted, logCompleted, logFailed, visited);
     }
   }
 
-  private static final class LoggingAction implements Action {
+  private static final class LoggingAction implements AsyncAction, BatchAction {
 
     private final FlowLogger flowLogger;
+    private final boolean logStarted;
+    private final boolean logCompleted;
+    private final boolean logFailed;
     private final String name;
     private final Key<?> outputKey;
     private final Action action;
 
-    private LoggingAction(FlowLogger flowLogger, String name, Key<?> outputKey, Action action) {
+    private LoggingAction(FlowLogger flowLogger, boolean logStarted, boolean logCompleted, boolean logFailed,
+                          String name, Key<?> outputKey, Action action) {
       this.flowLogger = flowLogger;
+      this.logStarted = logStarted;
+      this.logCompleted = logCompleted;
+      this.logFailed = logFailed;
       this.name = name;
       this.outputKey = outputKey;
       this.action = action;
@@ -108,25 +184,89 @@ public final class Visitors {
 
     @Override
     public Scratchpad run(UUID flowId, Scratchpad scratchpad) {
-      flowLogger.logOperationStarted(flowId, name, scratchpad);
+      if (logStarted) {
+        flowLogger.logOperationStarted(flowId, name, scratchpad);
+      }
 
       Scratchpad result = action.run(flowId, scratchpad);
+      logCompleted(flowId, result);
+      return result;
+    }
+
+    @Override
+    public void runAsync(final UUID flowId, Scratchpad scratchpad, final ActionCallback callback) {
+      if (logStarted) {
+        flowLogger.logOperationStarted(flowId, name, scratchpad);
+      }
+
+      Actions.runAsync(action, flowId, scratchpad, new ActionCallback() {
+        @Override
+        public void onComplete(Scratchpad result) {
+          try {
+            logCompleted(flowId, result);
+          } catch (RuntimeException e) {
+            callback.onFailure(e);
+            return;
+          }
+          callback.onComplete(result);
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+          callback.onFailure(failure);
+        }
+      });
+    }
+
+    @Override
+    public void runBatch(FlowBatch batch) {
+      if (logStarted) {
+        for (int i = 0; i < batch.size(); i++) {
+          flowLogger.logOperationStarted(batch.getFlowId(i), name, batch.getScratchpad(i));
+        }
+      }
+
+      Actions.runBatch(action, batch);
+
+      for (int i = 0; i < batch.size(); i++) {
+        if (!batch.isFailed(i)) {
+          try {
+            logCompleted(batch.getFlowId(i), batch.getScratchpad(i));
+          } catch (RuntimeException e) {
+            batch.fail(i, e);
+          }
+        }
+      }
+    }
+
+    private void logCompleted(UUID flowId, Scratchpad result) {
+      if (!(logCompleted || logFailed)) {
+        return;
+      }
+
       if (result.isSuccessful(outputKey)) {
-        flowLogger.logOperationCompleted(flowId, name, outputKey, result.get(outputKey));
-      } else {
+        if (logCompleted) {
+          flowLogger.logOperationCompleted(flowId, name, outputKey, result.get(outputKey));
+        }
+      } else if (logFailed) {
         flowLogger.logOperationException(flowId, name, result.getFailureReason(outputKey));
       }
-      return result;
     }
   }
 
   private static final class LoggingCondition implements Condition {
 
     private final FlowLogger flowLogger;
+    private final boolean logStarted;
+    private final boolean logCompleted;
+    private final boolean logFailed;
     private final Condition condition;
 
-    private LoggingCondition(FlowLogger flowLogger, Condition condition) {
+    private LoggingCondition(FlowLogger flowLogger, boolean logStarted, boolean logCompleted, boolean logFailed, Condition condition) {
       this.flowLogger = flowLogger;
+      this.logStarted = logStarted;
+      this.logCompleted = logCompleted;
+      this.logFailed = logFailed;
       this.condition = condition;
     }
 
@@ -137,13 +277,19 @@ public final class Visitors {
 
     @Override
     public boolean test(UUID flowId, Scratchpad scratchpad) {
-      flowLogger.logConditionStarted(flowId, condition.getDescription(), scratchpad);
+      if (logStarted) {
+        flowLogger.logConditionStarted(flowId, condition.getDescription(), scratchpad);
+      }
       try {
         boolean result = condition.test(flowId, scratchpad);
-        flowLogger.logConditionCompleted(flowId, condition.getDescription(), result);
+        if (logCompleted) {
+          flowLogger.logConditionCompleted(flowId, condition.getDescription(), result);
+        }
         return result;
       } catch (RuntimeException e) {
-        flowLogger.logConditionException(flowId, condition.getDescription(), e);
+        if (logFailed) {
+          flowLogger.logConditionException(flowId, condition.getDescription(), e);
+        }
         throw e;
       }
     }
@@ -24,7 +24,7 @@ final class CompilingFlowExecutionProxyFactory implements FlowExecutionProxyFact
     return functionClass.cast(Proxy.newProxyInstance(
         functionClass.getClassLoader(),
         new Class<?>[] { functionClass},
-        new FlowRunningInvocationHandler(compiler.compile(flow), keyProvider)));
+        FlowRunningInvocationHandler.create(compiler.compile(flow), functionClass, keyProvider)));
   }
 
 }
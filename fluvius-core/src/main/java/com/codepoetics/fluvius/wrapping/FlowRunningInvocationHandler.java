@@ -1,5 +1,6 @@
 package com.codepoetics.fluvius.wrapping;
 
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
 import com.codepoetics.fluvius.api.FlowExecution;
 import com.codepoetics.fluvius.api.FlowResultCallback;
 import com.codepoetics.fluvius.api.scratchpad.Key;
@@ -7,47 +8,91 @@ import com.codepoetics.fluvius.api.scratchpad.KeyProvider;
 import com.codepoetics.fluvius.api.scratchpad.KeyValue;
 import com.codepoetics.fluvius.api.wrapping.FlowRunner;
 import com.codepoetics.fluvius.exceptions.FlowExecutionException;
+import com.codepoetics.fluvius.execution.FlowExecutions;
+import com.codepoetics.fluvius.scratchpad.Scratchpads;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
+/**
+ * Runs a flow when a method of a proxied interface is invoked, using the method's arguments as the initial values of its
+ * parameter keys. The keys and return mode of every method are resolved once, when the handler is created.
+ */
 final class FlowRunningInvocationHandler implements InvocationHandler {
 
-  private final FlowExecution<?> execution;
-  private final KeyProvider keyProvider;
+  static FlowRunningInvocationHandler create(FlowExecution<?> execution, Class<?> proxiedInterface, KeyProvider keyProvider) {
+    Map<Method, MethodDispatcher> dispatchers = new HashMap<>();
+    for (Method method : proxiedInterface.getMethods()) {
+      dispatchers.put(method, new MethodDispatcher(
+          Reflection.getParameterKeys(method, keyProvider),
+          FlowRunner.class.isAssignableFrom(method.getReturnType())));
+    }
+    return new FlowRunningInvocationHandler(FlowExecutions.concurrent(execution), dispatchers);
+  }
+
+  private final ConcurrentFlowExecution<?> execution;
+  private final Map<Method, MethodDispatcher> dispatchers;
 
-  FlowRunningInvocationHandler(FlowExecution<?> execution, KeyProvider keyProvider) {
+  private FlowRunningInvocationHandler(ConcurrentFlowExecution<?> execution, Map<Method, MethodDispatcher> dispatchers) {
     this.execution = execution;
-    this.keyProvider = keyProvider;
+    this.dispatchers = dispatchers;
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-    if (method.getDeclaringClass().isAssignableFrom(FlowRunningInvocationHandler.class)) {
-      return method.invoke(this, args);
+    MethodDispatcher dispatcher = dispatchers.get(method);
+    if (dispatcher == null) {
+      return invokeObjectMethod(proxy, method, args);
     }
+    return dispatcher.dispatch(execution, args);
+  }
 
-    KeyValue[] keyValues = new KeyValue[args.length];
-    Key[] keys = Reflection.getParameterKeys(method, keyProvider);
-    for (int i = 0; i < args.length; i++) {
-      keyValues[i] = keys[i].of(args[i]);
+  private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "Proxy running " + execution;
+      default:
+        throw new UnsupportedOperationException("Cannot invoke " + method + " on flow proxy");
     }
+  }
+
+  private static final class MethodDispatcher {
+    private final Key[] keys;
+    private final boolean returnsRunner;
 
-    if (FlowRunner.class.isAssignableFrom(method.getReturnType())) {
-      return new ProxyFlowRunner<>(execution, keyValues);
+    private MethodDispatcher(Key[] keys, boolean returnsRunner) {
+      this.keys = keys;
+      this.returnsRunner = returnsRunner;
     }
 
-    return execution.run(keyValues);
+    @SuppressWarnings("unchecked")
+    private Object dispatch(ConcurrentFlowExecution<?> execution, Object[] args) throws Exception {
+      KeyValue[] keyValues = new KeyValue[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        keyValues[i] = keys[i].of(args[i]);
+      }
+
+      return returnsRunner
+          ? new ProxyFlowRunner<>(execution, keyValues)
+          : execution.run(keyValues);
+    }
   }
 
   private static final class ProxyFlowRunner<T> implements FlowRunner<T> {
 
-    private final FlowExecution<T> flowExecution;
+    private final ConcurrentFlowExecution<T> flowExecution;
     private final KeyValue[] keyValues;
 
-    private ProxyFlowRunner(FlowExecution<T> flowExecution, KeyValue[] keyValues) {
+    private ProxyFlowRunner(ConcurrentFlowExecution<T> flowExecution, KeyValue[] keyValues) {
       this.flowExecution = flowExecution;
       this.keyValues = keyValues;
     }
@@ -79,5 +124,25 @@ final class FlowRunningInvocationHandler implements InvocationHandler {
     public Runnable asAsync(UUID flowId, FlowResultCallback<T> callback) {
       return flowExecution.asAsync(flowId, callback, keyValues);
     }
+
+    @Override
+    public Future<T> runAsync() {
+      return flowExecution.runAsync(keyValues);
+    }
+
+    @Override
+    public Future<T> runAsync(UUID flowId, FlowResultCallback<T> callback) {
+      return flowExecution.runAsync(flowId, Scratchpads.create(keyValues), callback);
+    }
+
+    @Override
+    public Future<T> runOn(Executor executor) {
+      return flowExecution.runOn(executor, keyValues);
+    }
+
+    @Override
+    public Future<T> runOn(Executor executor, UUID flowId, FlowResultCallback<T> callback) {
+      return flowExecution.runOn(executor, flowId, Scratchpads.create(keyValues), callback);
+    }
   }
 }
@@ -4,40 +4,90 @@ import com.codepoetics.fluvius.api.functional.ScratchpadFunction;
 import com.codepoetics.fluvius.api.scratchpad.Key;
 import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
+/**
+ * Dispatches to a step method through a {@link MethodHandle} bound to the step object, which is looked up once when the
+ * function is created. Steps with up to four parameters are invoked without allocating an argument array.
+ */
 final class MethodDispatchingScratchpadFunction<OUTPUT> implements ScratchpadFunction<OUTPUT> {
+
+  private static final int MAX_SPECIALISED_ARITY = 4;
+
+  static <OUTPUT> ScratchpadFunction<OUTPUT> create(Key<?>[] inputKeys, Method stepMethod, Object target) {
+    Class<?>[] parameterTypes = stepMethod.getParameterTypes();
+    boolean[] isFailureParameter = new boolean[inputKeys.length];
+    for (int i = 0; i < inputKeys.length; i++) {
+      isFailureParameter[i] = parameterTypes[i].equals(Exception.class);
+    }
+
+    MethodHandle handle = unreflect(stepMethod).bindTo(target);
+    handle = inputKeys.length <= MAX_SPECIALISED_ARITY
+        ? handle.asType(MethodType.genericMethodType(inputKeys.length))
+        : handle.asSpreader(Object[].class, inputKeys.length).asType(MethodType.methodType(Object.class, Object[].class));
+
+    return new MethodDispatchingScratchpadFunction<>(inputKeys, isFailureParameter, handle);
+  }
+
+  private static MethodHandle unreflect(Method stepMethod) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      return lookup.unreflect(stepMethod);
+    } catch (IllegalAccessException e) {
+      stepMethod.setAccessible(true);
+      try {
+        return lookup.unreflect(stepMethod);
+      } catch (IllegalAccessException e2) {
+        throw new IllegalArgumentException("Step method " + stepMethod + " is not accessible", e2);
+      }
+    }
+  }
+
   private final Key<?>[] inputKeys;
-  private final Method stepMethod;
-  private final Object target;
+  private final boolean[] isFailureParameter;
+  private final MethodHandle handle;
 
-  MethodDispatchingScratchpadFunction(Key<?>[] inputKeys, Method stepMethod, Object target) {
+  private MethodDispatchingScratchpadFunction(Key<?>[] inputKeys, boolean[] isFailureParameter, MethodHandle handle) {
     this.inputKeys = inputKeys;
-    this.stepMethod = stepMethod;
-    this.target = target;
+    this.isFailureParameter = isFailureParameter;
+    this.handle = handle;
+  }
+
+  private Object argument(Scratchpad input, int index) {
+    return isFailureParameter[index]
+        ? input.getFailureReason(inputKeys[index])
+        : input.get(inputKeys[index]);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public OUTPUT apply(Scratchpad input) throws Exception {
-    Object[] inputValues = new Object[inputKeys.length];
-    Class<?>[] parameterTypes = stepMethod.getParameterTypes();
-
-    for (int i = 0; i < inputKeys.length; i++) {
-      inputValues[i] = (parameterTypes[i].equals(Exception.class))
-          ? input.getFailureReason(inputKeys[i])
-          : input.get(inputKeys[i]);
-    }
-
     try {
-      return (OUTPUT) stepMethod.invoke(target, inputValues);
-    } catch (InvocationTargetException e) {
-      if (e.getCause() instanceof  Exception) {
-        throw Exception.class.cast(e.getCause());
-      } else {
-        throw e;
+      switch (inputKeys.length) {
+        case 0:
+          return (OUTPUT) (Object) handle.invokeExact();
+        case 1:
+          return (OUTPUT) (Object) handle.invokeExact(argument(input, 0));
+        case 2:
+          return (OUTPUT) (Object) handle.invokeExact(argument(input, 0), argument(input, 1));
+        case 3:
+          return (OUTPUT) (Object) handle.invokeExact(argument(input, 0), argument(input, 1), argument(input, 2));
+        case 4:
+          return (OUTPUT) (Object) handle.invokeExact(argument(input, 0), argument(input, 1), argument(input, 2), argument(input, 3));
+        default:
+          Object[] inputValues = new Object[inputKeys.length];
+          for (int i = 0; i < inputKeys.length; i++) {
+            inputValues[i] = argument(input, i);
+          }
+          return (OUTPUT) (Object) handle.invokeExact(inputValues);
       }
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
     }
   }
 }
@@ -30,7 +30,7 @@ final class ReflectingFlowWrapperFactory implements FlowWrapperFactory {
     Key<?>[] inputKeys = Reflection.getParameterKeys(stepMethod, keyProvider);
     Key<OUTPUT> outputKey = Reflection.getOutputKey(stepMethod, keyProvider);
 
-    ScratchpadFunction<OUTPUT> scratchpadFunction = new MethodDispatchingScratchpadFunction<>(inputKeys, stepMethod, function);
+    ScratchpadFunction<OUTPUT> scratchpadFunction = MethodDispatchingScratchpadFunction.create(inputKeys, stepMethod, function);
 
     return Flows.from(inputKeys).to(outputKey).using(Operations.fromFunction(name, scratchpadFunction));
   }
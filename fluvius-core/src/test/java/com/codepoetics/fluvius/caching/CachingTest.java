@@ -0,0 +1,191 @@
+package com.codepoetics.fluvius.caching;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.functional.DoubleParameterStep;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.flows.Flows;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachingTest {
+
+  private static final Key<String> productId = Key.named("productId");
+  private static final Key<Integer> price = Key.named("price");
+  private static final Key<String> label = Key.named("label");
+
+  private final AtomicInteger lookups = new AtomicInteger();
+  private volatile CountDownLatch lookupGate = new CountDownLatch(0);
+
+  private final Flow<String> pricedLabel = Flows.obtaining(price).from(productId).using("Look up price", new SingleParameterStep<String, Integer>() {
+    @Override
+    public Integer apply(String id) throws Exception {
+      lookups.incrementAndGet();
+      lookupGate.await();
+      if (id.equals("unknown")) {
+        throw new IllegalArgumentException("No such product");
+      }
+      return id.length() * 100;
+    }
+  }).then(Flows.obtaining(label).from(productId, price).using("Format label", new DoubleParameterStep<String, Integer, String>() {
+    @Override
+    public String apply(String id, Integer amount) {
+      return id + ": " + amount;
+    }
+  }));
+
+  private FlowExecution<String> compileWith(OperationResultCache cache) {
+    return Compilers.builder().cachingResultsIn(cache).build().compile(pricedLabel);
+  }
+
+  @Test
+  public void resultsAreReusedForIdenticalInputs() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().forOperations("Look up price"));
+    FlowExecution<String> execution = compileWith(cache);
+
+    assertEquals("apple: 500", execution.run(productId.of("apple")));
+    assertEquals("apple: 500", execution.run(productId.of("apple")));
+    assertEquals("pear: 400", execution.run(productId.of("pear")));
+
+    assertEquals(2, lookups.get());
+    assertEquals(1, cache.getStats().getHitCount());
+    assertEquals(2, cache.getStats().getMissCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void distinctOperationsWithTheSameNameDoNotShareResults() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().forOperations("Look up price"));
+    Flow<String> discountedLabel = Flows.obtaining(price).from(productId).using("Look up price", new SingleParameterStep<String, Integer>() {
+      @Override
+      public Integer apply(String id) {
+        lookups.incrementAndGet();
+        return id.length() * 50;
+      }
+    }).then(Flows.obtaining(label).from(price).using("Format price", new SingleParameterStep<Integer, String>() {
+      @Override
+      public String apply(Integer amount) {
+        return "Price: " + amount;
+      }
+    }));
+
+    assertEquals("apple: 500", compileWith(cache).run(productId.of("apple")));
+    assertEquals("Price: 250", Compilers.builder().cachingResultsIn(cache).build().compile(discountedLabel).run(productId.of("apple")));
+
+    assertEquals(2, lookups.get());
+    assertEquals(0, cache.getStats().getHitCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void resultsAreSharedBetweenCompilationsOfTheSameStep() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().forOperations("Look up price"));
+
+    assertEquals("apple: 500", compileWith(cache).run(productId.of("apple")));
+    assertEquals("apple: 500", compileWith(cache).run(productId.of("apple")));
+
+    assertEquals(1, lookups.get());
+    assertEquals(1, cache.getStats().getHitCount());
+  }
+
+  @Test
+  public void operationsAreNotCachedUnlessNamed() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded());
+    FlowExecution<String> execution = compileWith(cache);
+
+    execution.run(productId.of("apple"));
+    execution.run(productId.of("apple"));
+
+    assertEquals(2, lookups.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void leastRecentlyUsedResultsAreEvicted() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().withMaxEntries(1).forOperations("Look up price"));
+    FlowExecution<String> execution = compileWith(cache);
+
+    execution.run(productId.of("apple"));
+    execution.run(productId.of("pear"));
+    execution.run(productId.of("apple"));
+
+    assertEquals(3, lookups.get());
+    assertEquals(2, cache.getStats().getEvictionCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void expiredResultsAreRecomputed() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().withExpiryAfterWrite(20, TimeUnit.MILLISECONDS).forOperations("Look up price"));
+    FlowExecution<String> execution = compileWith(cache);
+
+    execution.run(productId.of("apple"));
+    Thread.sleep(50);
+    execution.run(productId.of("apple"));
+
+    assertEquals(2, lookups.get());
+    assertEquals(0, cache.getStats().getHitCount());
+  }
+
+  @Test
+  public void failuresAreNotCached() throws Exception {
+    OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().forOperations("Look up price"));
+    FlowExecution<String> execution = compileWith(cache);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        execution.run(productId.of("unknown"));
+        fail("Expected exception to be thrown");
+      } catch (Exception e) {
+        // expected
+      }
+    }
+
+    assertEquals(2, lookups.get());
+    assertEquals(2, cache.getStats().getLoadFailureCount());
+  }
+
+  @Test
+  public void concurrentIdenticalLookupsAreCoalesced() throws Exception {
+    final OperationResultCache cache = OperationResultCache.create(CachePolicy.unbounded().forOperations("Look up price"));
+    final FlowExecution<String> execution = compileWith(cache);
+    lookupGate = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Callable<String> lookup = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return execution.run(productId.of("apple"));
+        }
+      };
+      Future<String> first = executor.submit(lookup);
+      Future<String> second = executor.submit(lookup);
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (cache.getStats().getCoalescedCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      lookupGate.countDown();
+
+      assertEquals("apple: 500", first.get());
+      assertEquals("apple: 500", second.get());
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(1, lookups.get());
+    assertEquals(1, cache.getStats().getCoalescedCount());
+  }
+}
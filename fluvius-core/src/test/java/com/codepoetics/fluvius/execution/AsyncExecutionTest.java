@@ -0,0 +1,235 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.FlowResultCallback;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.KeyValue;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.flows.Flows;
+import com.codepoetics.fluvius.metrics.FlowMetrics;
+import com.codepoetics.fluvius.metrics.StepMetrics;
+import com.codepoetics.fluvius.scratchpad.Scratchpads;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncExecutionTest {
+
+  private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> customerName = Key.named("customerName");
+  private static final Key<String> greeting = Key.named("greeting");
+
+  private static final Flow<String> greetCustomer = Flows.from(customerId).to(customerName).using(new AsyncOperation<String>() {
+    @Override
+    public String getName() {
+      return "Look up customer name";
+    }
+
+    @Override
+    public void run(final Scratchpad scratchpad, final OperationCallback<String> callback) {
+      scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          String id = scratchpad.get(customerId);
+          if (id.equals("unknown")) {
+            callback.onFailure(new IllegalArgumentException("No such customer"));
+          } else {
+            callback.onSuccess("Customer " + id);
+          }
+        }
+      }, 100, TimeUnit.MILLISECONDS);
+    }
+  }).then(Flows.obtaining(greeting).from(customerName).using(new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String name) {
+      return "Hello, " + name;
+    }
+  }));
+
+  @AfterClass
+  public static void shutdownScheduler() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void asyncFlowsDoNotBlockTheCallingThread() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(greetCustomer));
+
+    Future<String> result = execution.runAsync(customerId.of("42"));
+
+    assertFalse(result.isDone());
+    assertEquals("Hello, Customer 42", result.get());
+  }
+
+  @Test
+  public void manyConcurrentFlowsShareASingleThread() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(greetCustomer));
+
+    long startTime = System.currentTimeMillis();
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      results.add(execution.runAsync(customerId.of(String.valueOf(i))));
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("Hello, Customer " + i, results.get(i).get());
+    }
+    long elapsed = System.currentTimeMillis() - startTime;
+    assertTrue("Expected flows to wait concurrently, but took " + elapsed + "ms", elapsed < 5000);
+  }
+
+  @Test
+  public void asyncOperationsCanBeRunSynchronously() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().loggingToConsole().build().compile(greetCustomer));
+
+    assertEquals("Hello, Customer 42", execution.run(customerId.of("42")));
+  }
+
+  @Test
+  public void failuresAreReportedThroughTheFuture() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().loggingToConsole().build().compile(greetCustomer));
+
+    try {
+      execution.runAsync(customerId.of("unknown")).get();
+    } catch (ExecutionException e) {
+      assertEquals("No such customer", e.getCause().getCause().getMessage());
+      return;
+    }
+    fail("Expected exception to be thrown");
+  }
+
+  @Test
+  public void asyncFlowsDoNotBlockWhenMutationChecking() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().mutationChecking().build().compile(greetCustomer));
+
+    Future<String> result = execution.runAsync(customerId.of("42"));
+
+    assertFalse(result.isDone());
+    assertEquals("Hello, Customer 42", result.get());
+  }
+
+  @Test
+  public void asyncFlowsDoNotBlockWhenRunInParallel() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().parallel(scheduler).build().compile(greetCustomer));
+
+    Future<String> result = execution.runAsync(customerId.of("42"));
+
+    assertFalse(result.isDone());
+    assertEquals("Hello, Customer 42", result.get());
+  }
+
+  @Test
+  public void asyncFlowsDoNotBlockWhenRecordingMetrics() throws Exception {
+    FlowMetrics metrics = FlowMetrics.create();
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().recordingMetricsTo(metrics).build().compile(greetCustomer));
+
+    Future<String> result = execution.runAsync(customerId.of("42"));
+
+    assertFalse(result.isDone());
+    assertEquals("Hello, Customer 42", result.get());
+
+    for (StepMetrics stepMetrics : metrics.snapshot().getStepMetrics().values()) {
+      if (stepMetrics.getOperationName().equals("Look up customer name")) {
+        assertEquals(1, stepMetrics.getSuccessCount());
+        assertTrue(stepMetrics.getLatency().getMax(TimeUnit.MILLISECONDS) >= 90);
+        return;
+      }
+    }
+    fail("No metrics recorded for the asynchronous step");
+  }
+
+  @Test
+  public void cancelledFlowsDiscardTheirResults() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(greetCustomer));
+
+    Future<String> result = execution.runAsync(customerId.of("42"));
+
+    assertTrue(result.cancel(false));
+    assertTrue(result.isCancelled());
+    assertTrue(result.isDone());
+    assertFalse(result.cancel(false));
+
+    try {
+      result.get(1, TimeUnit.SECONDS);
+      fail("Expected cancellation");
+    } catch (CancellationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void otherFlowExecutionsCanBeRunConcurrently() throws Exception {
+    final FlowExecution<String> compiled = Compilers.builder().build().compile(greetCustomer);
+    FlowExecution<String> forwarding = new FlowExecution<String>() {
+      @Override
+      public String run(Scratchpad initialScratchpad) throws Exception {
+        return compiled.run(initialScratchpad);
+      }
+
+      @Override
+      public String run(UUID flowId, Scratchpad initialScratchpad) throws Exception {
+        return compiled.run(flowId, initialScratchpad);
+      }
+
+      @Override
+      public String run(KeyValue... initialKeyValues) throws Exception {
+        return compiled.run(initialKeyValues);
+      }
+
+      @Override
+      public String run(UUID flowId, KeyValue... initialKeyValues) throws Exception {
+        return compiled.run(flowId, initialKeyValues);
+      }
+
+      @Override
+      public Runnable asAsync(FlowResultCallback<String> callback, Scratchpad initialScratchpad) {
+        return compiled.asAsync(callback, initialScratchpad);
+      }
+
+      @Override
+      public Runnable asAsync(FlowResultCallback<String> callback, KeyValue... initialKeyValues) {
+        return compiled.asAsync(callback, initialKeyValues);
+      }
+
+      @Override
+      public Runnable asAsync(UUID flowId, FlowResultCallback<String> callback, Scratchpad initialScratchpad) {
+        return compiled.asAsync(flowId, callback, initialScratchpad);
+      }
+
+      @Override
+      public Runnable asAsync(UUID flowId, FlowResultCallback<String> callback, KeyValue... initialKeyValues) {
+        return compiled.asAsync(flowId, callback, initialKeyValues);
+      }
+    };
+
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(forwarding);
+
+    assertEquals("Hello, Customer 42", execution.runAsync(customerId.of("42")).get(1, TimeUnit.SECONDS));
+    assertEquals(
+        Arrays.asList("Hello, Customer 1", "Hello, Customer 2"),
+        execution.runBatch(Arrays.asList(Scratchpads.create(customerId.of("1")), Scratchpads.create(customerId.of("2")))));
+  }
+}
@@ -0,0 +1,232 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowResultCallback;
+import com.codepoetics.fluvius.api.functional.Predicate;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.tracing.TraceEventListener;
+import com.codepoetics.fluvius.caching.CachePolicy;
+import com.codepoetics.fluvius.caching.OperationResultCache;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.conditions.Conditions;
+import com.codepoetics.fluvius.exceptions.FailedKeyRetrievedException;
+import com.codepoetics.fluvius.exceptions.MissingKeysException;
+import com.codepoetics.fluvius.flows.Flows;
+import com.codepoetics.fluvius.scratchpad.Scratchpads;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.*;
+
+public class BatchExecutionTest {
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> customerName = Key.named("customerName");
+  private static final Key<String> greeting = Key.named("greeting");
+
+  private final List<Integer> batchSizes = new ArrayList<>();
+  private final AtomicInteger greetings = new AtomicInteger();
+
+  private final Flow<String> lookUpNames = Flows.from(customerId).to(customerName).using(new BatchOperation<String>() {
+    @Override
+    public String getName() {
+      return "Look up customer names";
+    }
+
+    @Override
+    public String run(Scratchpad scratchpad) throws Exception {
+      return runBatch(Arrays.asList(scratchpad)).get(0);
+    }
+
+    @Override
+    public List<String> runBatch(List<Scratchpad> scratchpads) {
+      batchSizes.add(scratchpads.size());
+      List<String> names = new ArrayList<>(scratchpads.size());
+      for (Scratchpad scratchpad : scratchpads) {
+        if (scratchpad.get(customerId).equals("outage")) {
+          throw new IllegalStateException("Customer service unavailable");
+        }
+        names.add("Customer " + scratchpad.get(customerId));
+      }
+      return names;
+    }
+  });
+
+  private final Flow<String> greet = Flows.obtaining(greeting).from(customerName).using("Greet", new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String name) {
+      greetings.incrementAndGet();
+      if (name.equals("Customer unknown")) {
+        throw new IllegalArgumentException("No such customer");
+      }
+      return "Hello, " + name;
+    }
+  });
+
+  private final ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(lookUpNames.then(greet)));
+
+  @Test
+  public void batchOperationsAreRunOnceForTheWholeBatch() throws Exception {
+    List<String> results = execution.runBatch(scratchpadsFor("1", "2", "3"));
+
+    assertEquals(Arrays.asList("Hello, Customer 1", "Hello, Customer 2", "Hello, Customer 3"), results);
+    assertEquals(Arrays.asList(3), batchSizes);
+    assertEquals(3, greetings.get());
+  }
+
+  @Test
+  public void batchesAreKeptWholeByDecoratingVisitors() throws Exception {
+    final AtomicInteger tracedSteps = new AtomicInteger();
+    Key<String> region = Key.named("region");
+    Flow<String> flow = lookUpNames.then(Flows.obtaining(region).from(customerId).using("Find region", new SingleParameterStep<String, String>() {
+      @Override
+      public String apply(String input) {
+        return "Region " + input;
+      }
+    })).then(greet);
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      ConcurrentFlowExecution<String> decorated = FlowExecutions.concurrent(Compilers.builder()
+          .tracingWith(new TraceEventListener() {
+            @Override
+            public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+              tracedSteps.incrementAndGet();
+            }
+
+            @Override
+            public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
+            }
+
+            @Override
+            public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
+            }
+          })
+          .loggingToConsole()
+          .mutationChecking()
+          .parallel(executor)
+          .build()
+          .compile(flow));
+
+      List<String> results = decorated.runBatch(scratchpadsFor("1", "2", "3"));
+
+      assertEquals(Arrays.asList("Hello, Customer 1", "Hello, Customer 2", "Hello, Customer 3"), results);
+      assertEquals(Arrays.asList(3), batchSizes);
+      // Each record traces the three steps, and the sequence which holds them.
+      assertEquals(12, tracedSteps.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void eachBranchIsRunAsABatchOfTheRecordsWhichTakeIt() throws Exception {
+    Key<String> message = Key.named("message");
+    Flow<String> flow = branch(
+        Conditions.keyMatches(customerId, "is known", new Predicate<String>() {
+          @Override
+          public boolean test(String value) {
+            return !value.startsWith("guest");
+          }
+        }),
+        lookUpNames.then(greet).then(Flows.obtaining(message).from(greeting).using("Copy greeting", new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) {
+            return input;
+          }
+        })))
+        .otherwise(Flows.obtaining(message).from(customerId).using("Welcome guest", new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) {
+            return "Welcome, " + input;
+          }
+        }));
+
+    List<String> results = FlowExecutions.concurrent(Compilers.builder().build().compile(flow)).runBatch(scratchpadsFor("1", "guest-a", "2", "guest-b", "3"));
+
+    assertEquals(Arrays.asList("Hello, Customer 1", "Welcome, guest-a", "Hello, Customer 2", "Welcome, guest-b", "Hello, Customer 3"), results);
+    assertEquals(Arrays.asList(3), batchSizes);
+  }
+
+  @Test
+  public void failuresAreReportedPerRecord() {
+    List<Scratchpad> scratchpads = scratchpadsFor("1", "unknown", "2");
+    scratchpads.add(1, Scratchpads.create(greeting.of("no customer id")));
+
+    RecordingCallback callback = new RecordingCallback();
+    execution.runBatch(scratchpads, callback);
+
+    assertEquals(Arrays.<Object>asList("Hello, Customer 1", MissingKeysException.class, IllegalArgumentException.class, "Hello, Customer 2"),
+        callback.outcomes);
+    assertEquals(Arrays.asList(3), batchSizes);
+  }
+
+  @Test
+  public void batchOperationFailuresFailEveryRecordInTheBatch() {
+    RecordingCallback callback = new RecordingCallback();
+    execution.runBatch(scratchpadsFor("1", "outage"), callback);
+
+    // As outside a batch, the failure surfaces when the next step tries to read the failed key.
+    assertEquals(Arrays.<Object>asList(FailedKeyRetrievedException.class, FailedKeyRetrievedException.class), callback.outcomes);
+    assertEquals(0, greetings.get());
+  }
+
+  @Test
+  public void runningABatchThrowsTheFirstFailure() throws Exception {
+    try {
+      execution.runBatch(scratchpadsFor("1", "unknown"));
+      fail("Expected exception to be thrown");
+    } catch (IllegalArgumentException e) {
+      assertEquals("No such customer", e.getMessage());
+    }
+  }
+
+  @Test
+  public void cachedResultsAreLeftOutOfBatches() throws Exception {
+    ConcurrentFlowExecution<String> cachingExecution = FlowExecutions.concurrent(Compilers.builder()
+        .cachingResultsIn(OperationResultCache.create(CachePolicy.unbounded().forOperations("Look up customer names")))
+        .build()
+        .compile(lookUpNames.then(greet)));
+
+    cachingExecution.runBatch(scratchpadsFor("1", "2"));
+    List<String> results = cachingExecution.runBatch(scratchpadsFor("1", "2", "3"));
+
+    assertEquals(Arrays.asList("Hello, Customer 1", "Hello, Customer 2", "Hello, Customer 3"), results);
+    assertEquals(Arrays.asList(2, 1), batchSizes);
+  }
+
+  private static List<Scratchpad> scratchpadsFor(String... ids) {
+    List<Scratchpad> scratchpads = new ArrayList<>();
+    for (String id : ids) {
+      scratchpads.add(Scratchpads.create(customerId.of(id)));
+    }
+    return scratchpads;
+  }
+
+  private static final class RecordingCallback implements FlowResultCallback<String> {
+    private final List<Object> outcomes = new ArrayList<>();
+
+    @Override
+    public void onSuccess(UUID flowId, String result) {
+      outcomes.add(result);
+    }
+
+    @Override
+    public void onFailure(UUID flowId, Throwable failure) {
+      outcomes.add(failure.getClass());
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.exceptions.StepTimeoutException;
+import com.codepoetics.fluvius.flows.Flows;
+import com.codepoetics.fluvius.operations.Operations;
+import com.codepoetics.fluvius.scratchpad.Scratchpads;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TimeoutTest {
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> quote = Key.named("quote");
+  private static final Key<String> audit = Key.named("audit");
+  private static final Key<String> message = Key.named("message");
+
+  private final CountDownLatch quoteInterrupted = new CountDownLatch(1);
+  private final AtomicInteger audits = new AtomicInteger();
+
+  private final SingleParameterStep<String, String> slowQuote = new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) throws Exception {
+      try {
+        Thread.sleep(10000);
+      } catch (InterruptedException e) {
+        quoteInterrupted.countDown();
+        throw e;
+      }
+      return "Quote for " + input;
+    }
+  };
+
+  private final SingleParameterStep<String, String> sleepingStep = new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) throws Exception {
+      Thread.sleep(100);
+      return input;
+    }
+  };
+
+  private final SingleParameterStep<String, String> sleepingQuote = new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) throws Exception {
+      Thread.sleep(100);
+      return "Quote for " + input;
+    }
+  };
+
+  private final Flow<String> recordAudit = Flows.obtaining(audit).from(customerId).using(new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) {
+      audits.incrementAndGet();
+      return "Audited " + input;
+    }
+  });
+
+  private final Flow<String> reportQuote = Flows.obtaining(message).from(quote).using(new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) {
+      return input;
+    }
+  });
+
+  private final Flow<String> apologise = Flows.obtaining(message).from(customerId).using(new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) {
+      return "No quote available for " + input;
+    }
+  });
+
+  @Test
+  public void stepTimeoutIsRecordedAsAFailureWhichBranchesCanHandle() throws Exception {
+    Flow<String> timedQuote = Flows.obtaining(quote).from(customerId).withTimeout(50, TimeUnit.MILLISECONDS).using(slowQuote);
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        timedQuote.branchOnResult().onFailure(apologise).otherwise(reportQuote)));
+
+    long started = System.nanoTime();
+    assertEquals("No quote available for 42", execution.run(customerId.of("42")));
+
+    assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    assertTrue(quoteInterrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void stepsWhichCompleteInTimeAreUnaffected() throws Exception {
+    Flow<String> timedQuote = Flows.obtaining(quote).from(customerId).withTimeout(5, TimeUnit.SECONDS).using(new SingleParameterStep<String, String>() {
+      @Override
+      public String apply(String input) {
+        return "Quote for " + input;
+      }
+    });
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        timedQuote.branchOnResult().onFailure(apologise).otherwise(reportQuote)));
+
+    assertEquals("Quote for 42", execution.run(customerId.of("42")));
+  }
+
+  @Test
+  public void flowDeadlineAppliesToEveryStep() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(quote).from(customerId).using(sleepingQuote).then(reportQuote)));
+
+    try {
+      execution.run(Scratchpads.create(customerId.of("42")), 50, TimeUnit.MILLISECONDS);
+      fail("Expected the flow to time out");
+    } catch (StepTimeoutException e) {
+      assertTrue(e.getMessage().contains("deadline"));
+    }
+  }
+
+  @Test
+  public void stepsReachedAfterTheDeadlineAreNotRun() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(quote).from(customerId).using(sleepingQuote).then(recordAudit)));
+
+    try {
+      execution.run(Scratchpads.create(customerId.of("42")), 50, TimeUnit.MILLISECONDS);
+      fail("Expected the flow to time out");
+    } catch (StepTimeoutException e) {
+      assertEquals(0, audits.get());
+    }
+  }
+
+  @Test
+  public void stepsUnderAFlowDeadlineRunOnTheCallingThread() throws Exception {
+    final Thread caller = Thread.currentThread();
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(quote).from(customerId).using(new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) {
+            return Thread.currentThread() == caller ? "Quote for " + input : "Handed off";
+          }
+        })));
+
+    assertEquals("Quote for 42", execution.run(Scratchpads.create(customerId.of("42")), 5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void timedStepsAreAbandonedAtAnEarlierFlowDeadline() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(quote).from(customerId).withTimeout(5, TimeUnit.SECONDS).using(slowQuote)));
+
+    long started = System.nanoTime();
+    try {
+      execution.run(Scratchpads.create(customerId.of("42")), 50, TimeUnit.MILLISECONDS);
+      fail("Expected the flow to time out");
+    } catch (StepTimeoutException e) {
+      assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+    }
+    assertTrue(quoteInterrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void nestedRunsWithTheSameFlowIdKeepTheirOwnDeadlines() throws Exception {
+    final UUID flowId = UUID.randomUUID();
+    final ConcurrentFlowExecution<String> inner = FlowExecutions.concurrent(Compilers.builder().build().compile(recordAudit));
+    ConcurrentFlowExecution<String> outer = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(audit).from(customerId).using(new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) throws Exception {
+            return inner.run(flowId, Scratchpads.create(customerId.of(input)), 5, TimeUnit.SECONDS);
+          }
+        }).then(Flows.obtaining(message).from(audit).using(sleepingStep))));
+
+    try {
+      outer.run(flowId, Scratchpads.create(customerId.of("42")), 50, TimeUnit.MILLISECONDS);
+      fail("Expected the outer flow to time out");
+    } catch (StepTimeoutException e) {
+      assertEquals(1, audits.get());
+    }
+  }
+
+  @Test
+  public void asyncRunsHonourTheirDeadline() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(quote).from(customerId).using(sleepingQuote)));
+
+    try {
+      execution.runAsync(Scratchpads.create(customerId.of("42")), 50, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+      fail("Expected the flow to time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StepTimeoutException);
+    }
+  }
+
+  @Test
+  public void batchesHonourTheirDeadline() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.obtaining(quote).from(customerId).using(sleepingQuote)));
+
+    try {
+      execution.runBatch(Arrays.asList(Scratchpads.create(customerId.of("42")), Scratchpads.create(customerId.of("43"))),
+          50, TimeUnit.MILLISECONDS);
+      fail("Expected the batch to time out");
+    } catch (StepTimeoutException e) {
+      assertTrue(e.getMessage().contains("deadline"));
+    }
+  }
+
+  @Test
+  public void asyncOperationsAreTimedWithoutBlocking() throws Exception {
+    AsyncOperation<String> neverCompletes = new AsyncOperation<String>() {
+      @Override
+      public String getName() {
+        return "Never completes";
+      }
+
+      @Override
+      public void run(Scratchpad scratchpad, OperationCallback<String> callback) {
+      }
+    };
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(
+        Flows.from(customerId).to(quote).using(Operations.withTimeout(Operations.fromAsync(neverCompletes), 50, TimeUnit.MILLISECONDS))));
+
+    try {
+      execution.runAsync(customerId.of("42")).get(5, TimeUnit.SECONDS);
+      fail("Expected the flow to time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StepTimeoutException);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.codepoetics.fluvius.execution;
+
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.flows.Flows;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadExecutionTest {
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> threadName = Key.named("threadName");
+
+  private static final Flow<String> slowLookup = Flows.obtaining(threadName).from(customerId).using("Slow lookup", new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String id) throws Exception {
+      Thread.sleep(100);
+      return Thread.currentThread().toString();
+    }
+  });
+
+  @Test
+  public void flowsAreDispatchedOffTheCallingThread() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().onVirtualThreads().build().compile(slowLookup));
+
+    String result = execution.runAsync(customerId.of("42")).get();
+
+    assertNotEquals(Thread.currentThread().toString(), result);
+  }
+
+  @Test
+  public void manyBlockingFlowsRunConcurrently() throws Exception {
+    ConcurrentFlowExecution<String> execution = FlowExecutions.concurrent(Compilers.builder().build().compile(slowLookup));
+    List<Future<String>> results = new ArrayList<>();
+
+    ExecutorService executor = FlowExecutors.newVirtualThreadExecutor();
+    try {
+      long startTime = System.currentTimeMillis();
+      for (int i = 0; i < 200; i++) {
+        results.add(execution.runOn(executor, customerId.of(Integer.toString(i))));
+      }
+      for (Future<String> result : results) {
+        result.get();
+      }
+      long elapsed = System.currentTimeMillis() - startTime;
+
+      assertTrue("Expected flows to overlap, but took " + elapsed + "ms", elapsed < 5000);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.BatchFlowEventStore;
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.FlowEventStore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncFlowEventStoreTest {
+
+  private final UUID flowId = UUID.randomUUID();
+
+  private FlowEvent<String> event(int i) {
+    return FlowEvent.succeeded(flowId, UUID.randomUUID(), i, "result " + i);
+  }
+
+  @Test
+  public void eventsAreWrittenInBatches() {
+    RecordingStore delegate = new RecordingStore();
+    try (AsyncFlowEventStore<String> store = AsyncFlowEventStore.create(delegate, 64, 16, OverflowPolicy.BLOCK)) {
+      for (int i = 0; i < 100; i++) {
+        store.storeEvent(event(i));
+      }
+
+      List<FlowEvent<String>> events = store.retrieveEvents(flowId);
+      assertEquals(100, events.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(i, events.get(i).getTimestamp());
+      }
+      assertEquals(100, store.getWrittenEventCount());
+      assertEquals(0, store.getDroppedEventCount());
+      assertTrue(delegate.batchCount < 100);
+    }
+  }
+
+  @Test
+  public void overflowingEventsAreDroppedAndCounted() throws InterruptedException {
+    BlockingStore delegate = new BlockingStore();
+    try (AsyncFlowEventStore<String> store = AsyncFlowEventStore.create(delegate, 4, 1, OverflowPolicy.DROP)) {
+      store.storeEvent(event(0));
+      delegate.writing.await();
+
+      for (int i = 1; i <= 10; i++) {
+        store.storeEvent(event(i));
+      }
+
+      assertEquals(4, store.getQueueDepth());
+      assertEquals(6, store.getDroppedEventCount());
+
+      delegate.release.countDown();
+      assertEquals(5, store.retrieveEvents(flowId).size());
+    }
+  }
+
+  @Test
+  public void failedWritesAreCounted() {
+    FlowEventStore<String> failing = new FlowEventStore<String>() {
+      @Override
+      public void storeEvent(FlowEvent<String> event) {
+        throw new IllegalStateException("Store unavailable");
+      }
+
+      @Override
+      public List<FlowEvent<String>> retrieveEvents(UUID flowId) {
+        return Collections.emptyList();
+      }
+    };
+
+    try (AsyncFlowEventStore<String> store = AsyncFlowEventStore.create(failing, 16, 16, OverflowPolicy.BLOCK)) {
+      store.storeEvent(event(0));
+      store.flush();
+
+      assertEquals(1, store.getFailedWriteCount());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void closedStoresRejectEvents() {
+    AsyncFlowEventStore<String> store = AsyncFlowEventStore.create(InMemoryFlowEventStore.<String>create(), 16, 16, OverflowPolicy.BLOCK);
+    store.close();
+
+    store.storeEvent(event(0));
+  }
+
+  @Test
+  public void everyEventAcceptedBeforeCloseIsWritten() throws InterruptedException {
+    for (int run = 0; run < 50; run++) {
+      final RecordingStore delegate = new RecordingStore();
+      final AsyncFlowEventStore<String> store = AsyncFlowEventStore.create(delegate, 1024, 16, OverflowPolicy.BLOCK);
+      final AtomicInteger accepted = new AtomicInteger();
+      final CountDownLatch started = new CountDownLatch(4);
+
+      List<Thread> producers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Thread producer = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            started.countDown();
+            try {
+              for (int i = 0; ; i++) {
+                store.storeEvent(event(i));
+                accepted.incrementAndGet();
+              }
+            } catch (IllegalStateException e) {
+              // The store has been closed.
+            }
+          }
+        });
+        producer.start();
+        producers.add(producer);
+      }
+
+      started.await();
+      store.close();
+      for (Thread producer : producers) {
+        producer.join();
+      }
+
+      assertEquals(0, store.getDroppedEventCount());
+      assertEquals(accepted.get(), delegate.retrieveEvents(flowId).size());
+    }
+  }
+
+  @Test
+  public void batchStoresMayRetainTheBatchesTheyAreGiven() {
+    final List<List<FlowEvent<String>>> batches = new ArrayList<>();
+    BatchFlowEventStore<String> retaining = new BatchFlowEventStore<String>() {
+      @Override
+      public synchronized void storeEvents(List<FlowEvent<String>> events) {
+        batches.add(events);
+      }
+
+      @Override
+      public void storeEvent(FlowEvent<String> event) {
+        storeEvents(Collections.singletonList(event));
+      }
+
+      @Override
+      public List<FlowEvent<String>> retrieveEvents(UUID flowId) {
+        return Collections.emptyList();
+      }
+    };
+
+    try (AsyncFlowEventStore<String> store = AsyncFlowEventStore.create(retaining, 64, 16, OverflowPolicy.BLOCK)) {
+      for (int i = 0; i < 100; i++) {
+        store.storeEvent(event(i));
+      }
+      store.flush();
+    }
+
+    int timestamp = 0;
+    for (List<FlowEvent<String>> batch : batches) {
+      for (FlowEvent<String> event : batch) {
+        assertEquals(timestamp++, event.getTimestamp());
+      }
+    }
+    assertEquals(100, timestamp);
+  }
+
+  private static final class RecordingStore implements BatchFlowEventStore<String> {
+    private final List<FlowEvent<String>> events = new ArrayList<>();
+    private int batchCount;
+
+    @Override
+    public synchronized void storeEvents(List<FlowEvent<String>> batch) {
+      batchCount++;
+      events.addAll(batch);
+    }
+
+    @Override
+    public synchronized void storeEvent(FlowEvent<String> event) {
+      storeEvents(Collections.singletonList(event));
+    }
+
+    @Override
+    public synchronized List<FlowEvent<String>> retrieveEvents(UUID flowId) {
+      return new ArrayList<>(events);
+    }
+  }
+
+  private static final class BlockingStore implements FlowEventStore<String> {
+    private final FlowEventStore<String> events = InMemoryFlowEventStore.create();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public void storeEvent(FlowEvent<String> event) {
+      writing.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      events.storeEvent(event);
+    }
+
+    @Override
+    public List<FlowEvent<String>> retrieveEvents(UUID flowId) {
+      return events.retrieveEvents(flowId);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.FlowEventRepository;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
+import com.codepoetics.fluvius.api.history.StepSucceededEvent;
+import com.codepoetics.fluvius.compilation.Compilers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.*;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinarySerialisationTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static final class Temperature {
+    private final double degrees;
+
+    private Temperature(double degrees) {
+      this.degrees = degrees;
+    }
+  }
+
+  private static final ValueCodec<Temperature> temperatureCodec = new ValueCodec<Temperature>() {
+    @Override
+    public void write(Temperature value, DataOutput output) throws IOException {
+      output.writeDouble(value.degrees);
+    }
+
+    @Override
+    public Temperature read(DataInput input) throws IOException {
+      return new Temperature(input.readDouble());
+    }
+  };
+
+  private final BinaryEventDataSerialiser serialiser = BinaryEventDataSerialiser.create();
+
+  private Object roundtrip(Object value) {
+    return serialiser.deserialise(serialiser.serialise(value));
+  }
+
+  @Test
+  public void valuesOfBuiltInTypesRoundtrip() {
+    assertEquals("Arthur Putey", roundtrip("Arthur Putey"));
+    assertEquals(-42, roundtrip(-42));
+    assertEquals(Long.MIN_VALUE, roundtrip(Long.MIN_VALUE));
+    assertEquals(26.5D, roundtrip(26.5D));
+    assertEquals(true, roundtrip(true));
+    assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) roundtrip(new byte[] { 1, 2, 3 }));
+    assertEquals(Arrays.asList("a", "b"), roundtrip(new ArrayList<>(Arrays.asList("a", "b"))));
+    assertEquals(null, roundtrip(null));
+  }
+
+  @Test
+  public void smallNumbersAreWrittenCompactly() {
+    assertEquals(2, serialiser.serialise(42).length);
+  }
+
+  @Test
+  public void registeredCodecsAreUsedForTheirTypes() {
+    BinaryEventDataSerialiser withTemperatures = serialiser.withValueCodec(16, Temperature.class, temperatureCodec);
+
+    Temperature roundtripped = (Temperature) withTemperatures.deserialise(withTemperatures.serialise(new Temperature(26D)));
+    assertEquals(26D, roundtripped.degrees, 0D);
+
+    assertEquals(Temperature.class.getName() + "@", ((String) roundtrip(new Temperature(26D))).substring(0, Temperature.class.getName().length() + 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builtInTagsAreReserved() {
+    serialiser.withValueCodec(1, Temperature.class, temperatureCodec);
+  }
+
+  @Test
+  public void exceptionsAreWrittenAsTheirClassAndMessage() {
+    assertEquals(
+        "java.lang.IllegalStateException: Out of cheese",
+        serialiser.deserialise(serialiser.serialiseException(new IllegalStateException("Out of cheese"))));
+  }
+
+  @Test
+  public void eventsRoundtripThroughCompactCodec() throws IOException {
+    CompactFlowEventCodec codec = CompactFlowEventCodec.withKeyNames(Arrays.asList("userName", "postcode"));
+    UUID flowId = UUID.randomUUID();
+
+    Map<String, byte[]> state = new LinkedHashMap<>();
+    state.put("userName", serialiser.serialise("Arthur"));
+    state.put("favouriteColour", serialiser.serialise("Blue"));
+
+    StepStartedEvent<byte[]> started = (StepStartedEvent<byte[]>) decode(codec, encode(codec, FlowEvent.started(flowId, flowId, 1234L, state)));
+    assertEquals(flowId, started.getFlowId());
+    assertEquals(1234L, started.getTimestamp());
+    assertEquals(Arrays.asList("userName", "favouriteColour"), new ArrayList<>(started.getScratchpadState().keySet()));
+    assertEquals("Blue", serialiser.deserialise(started.getScratchpadState().get("favouriteColour")));
+
+    StepSucceededEvent<byte[]> succeeded = (StepSucceededEvent<byte[]>) decode(codec, encode(codec, FlowEvent.succeeded(flowId, flowId, 1235L, serialiser.serialise(26D))));
+    assertEquals(26D, serialiser.deserialise(succeeded.getResult()));
+  }
+
+  @Test
+  public void dictionaryKeyNamesAreWrittenAsIndices() throws IOException {
+    UUID flowId = UUID.randomUUID();
+    FlowEvent<byte[]> event = FlowEvent.started(flowId, flowId, 1234L, Collections.singletonMap("userName", serialiser.serialise("Arthur")));
+
+    int withDictionary = encode(CompactFlowEventCodec.withKeyNames(Collections.singletonList("userName")), event).length;
+    int withoutDictionary = encode(CompactFlowEventCodec.create(), event).length;
+
+    assertEquals("userName".length() + 1, withoutDictionary - withDictionary);
+  }
+
+  @Test
+  public void flowHistoryCanBeStoredInBinaryFormat() throws Exception {
+    try (MappedFileFlowEventStore<byte[]> store = MappedFileFlowEventStore.inDirectory(folder.getRoot().toPath())
+        .withSegmentSize(4096)
+        .open(CompactFlowEventCodec.create())) {
+      FlowEventRepository<byte[]> repository = FlowEventRepositories.create(store, EventDataSerialisers.toBinarySerialiser());
+
+      UUID flowId = UUID.randomUUID();
+      Compilers.builder().tracingWith(repository).build()
+          .compile(authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather)).otherwise(formatError)))
+          .run(flowId, userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+      List<FlowEvent<byte[]>> events = repository.getEvents(flowId);
+      FlowEvent<byte[]> last = events.get(events.size() - 1);
+      assertTrue(last instanceof StepSucceededEvent);
+      assertEquals(
+          "Fred, the temperature at VB6 5UX is 26.0 degrees",
+          serialiser.deserialise(((StepSucceededEvent<byte[]>) last).getResult()));
+    }
+  }
+
+  private static byte[] encode(FlowEventCodec<byte[]> codec, FlowEvent<byte[]> event) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    codec.encode(event, new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  private static FlowEvent<byte[]> decode(FlowEventCodec<byte[]> codec, byte[] bytes) throws IOException {
+    return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+}
@@ -4,7 +4,15 @@ import com.codepoetics.fluvius.api.Flow;
 import com.codepoetics.fluvius.api.FlowExecution;
 import com.codepoetics.fluvius.api.compilation.FlowCompiler;
 import com.codepoetics.fluvius.api.functional.DoubleParameterStep;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.history.FlowEvent;
 import com.codepoetics.fluvius.api.history.FlowEventRepository;
+import com.codepoetics.fluvius.api.history.FlowEventStore;
+import com.codepoetics.fluvius.api.history.LossyFlowEventStore;
+import com.codepoetics.fluvius.api.history.StepFailedEvent;
+import com.codepoetics.fluvius.api.history.FlowEvents;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
 import com.codepoetics.fluvius.api.tracing.FlowStepType;
 import com.codepoetics.fluvius.api.tracing.TraceMapLabel;
 import com.codepoetics.fluvius.compilation.Compilers;
@@ -13,13 +21,24 @@ import com.codepoetics.fluvius.test.matchers.*;
 import com.codepoetics.fluvius.tracing.TraceMaps;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static com.codepoetics.fluvius.FlowExample.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class FlowHistoryTest {
 
+  private static final Key<List<String>> names = Key.named("names");
+  private static final Key<String> summary = Key.named("summary");
+
   private final FlowEventRepository<String> repository = FlowEventRepositories.createInMemory(EventDataSerialisers.toStringSerialiser());
   private final FlowCompiler compiler = Compilers.builder()
       .loggingToConsole()
@@ -99,4 +118,118 @@ public class FlowHistoryTest {
         )
     );
   }
+
+  @Test
+  public void deltaRepositoryStoresOnlyAddedKeys() throws Exception {
+    FlowEventRepository<String> deltaRepository = FlowEventRepositories.createInMemoryDelta(EventDataSerialisers.toStringSerialiser());
+    FlowCompiler deltaCompiler = Compilers.builder().tracingWith(deltaRepository).build();
+
+    Flow<String> getAccessToken = Flows
+        .obtaining(accessToken)
+        .from(userName, password)
+        .using("Authorize user", new DoubleParameterStep<String, String, String>() {
+          @Override
+          public String apply(String username, String password) {
+            return "ACCESS TOKEN";
+          }
+        });
+
+    Flow<Double> getLocalTemperature = Flows
+        .obtaining(temperature)
+        .from(accessToken, postcode)
+        .using("Get local temperature", new DoubleParameterStep<String, String, Double>() {
+          @Override
+          public Double apply(String accessCode, String postcode) {
+            return 26D;
+          }
+        });
+
+    UUID flowId = UUID.randomUUID();
+    deltaCompiler.compile(getAccessToken.then(getLocalTemperature))
+        .run(flowId, userName.of("Arthur"), password.of("Special secret password"), postcode.of("VB6 5UX"));
+
+    List<FlowEvent<String>> events = deltaRepository.getEvents(flowId);
+    assertEquals(3, startedState(events.get(0)).size());
+    assertEquals(0, startedState(events.get(1)).size());
+    assertEquals(Collections.singletonMap("accessToken", "ACCESS TOKEN"), startedState(events.get(3)));
+
+    List<FlowEvent<String>> reconstructed = FlowEvents.reconstruct(events);
+    Map<String, String> fullState = startedState(reconstructed.get(3));
+    assertEquals(4, fullState.size());
+    assertEquals("Arthur", fullState.get("userName"));
+    assertEquals("ACCESS TOKEN", fullState.get("accessToken"));
+    assertFalse(((StepStartedEvent<String>) reconstructed.get(3)).isDelta());
+  }
+
+  @Test
+  public void deltaRepositoryStoresFullStateAfterEventsAreDiscarded() throws Exception {
+    final FlowEventStore<String> underlying = InMemoryFlowEventStore.create();
+    LossyFlowEventStore<String> lossyStore = new LossyFlowEventStore<String>() {
+      private int storedCount;
+      private long discardCount;
+
+      @Override
+      public synchronized void storeEvent(FlowEvent<String> event) {
+        // Discard the event recording the start of the first step within the sequence.
+        if (storedCount++ == 1) {
+          discardCount++;
+          return;
+        }
+        underlying.storeEvent(event);
+      }
+
+      @Override
+      public List<FlowEvent<String>> retrieveEvents(UUID flowId) {
+        return underlying.retrieveEvents(flowId);
+      }
+
+      @Override
+      public synchronized long getDiscardCount() {
+        return discardCount;
+      }
+    };
+    FlowEventRepository<String> deltaRepository = FlowEventRepository.usingDeltas(lossyStore, EventDataSerialisers.toStringSerialiser());
+
+    UUID flowId = UUID.randomUUID();
+    Compilers.builder().tracingWith(deltaRepository).build().compile(authorize.then(extractAccessToken).then(getWeather))
+        .run(flowId, userName.of("Arthur"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    List<FlowEvent<String>> events = deltaRepository.getEvents(flowId);
+    StepStartedEvent<String> snapshot = (StepStartedEvent<String>) events.get(2);
+    assertFalse(snapshot.isDelta());
+    assertEquals("Arthur", snapshot.getScratchpadState().get("userName"));
+    assertTrue(snapshot.getScratchpadState().containsKey("authorisationResult"));
+  }
+
+  @Test
+  public void stepsWhoseActionsThrowAreRecordedAsFailed() throws Exception {
+    Flow<String> mutatingFlow = Flows.obtaining(names).from(userName).using("mutating step", new SingleParameterStep<String, List<String>>() {
+      @Override
+      public List<String> apply(String input) {
+        return new ArrayList<>(Collections.singletonList(input));
+      }
+    }).then(Flows.obtaining(summary).from(names).using("add name", new SingleParameterStep<List<String>, String>() {
+      @Override
+      public String apply(List<String> input) {
+        input.add("Eve");
+        return input.toString();
+      }
+    }));
+
+    UUID flowId = UUID.randomUUID();
+    try {
+      Compilers.builder().incrementalMutationChecking().tracingWith(repository).build().compile(mutatingFlow)
+          .run(flowId, userName.of("Arthur"));
+      fail("Expected the mutation to be detected");
+    } catch (IllegalStateException e) {
+      List<FlowEvent<String>> events = repository.getEvents(flowId);
+      FlowEvent<String> last = events.get(events.size() - 1);
+      assertTrue(last instanceof StepFailedEvent);
+      assertEquals(events.get(0).getStepId(), last.getStepId());
+    }
+  }
+
+  private static Map<String, String> startedState(FlowEvent<String> event) {
+    return ((StepStartedEvent<String>) event).getScratchpadState();
+  }
 }
@@ -0,0 +1,152 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.FlowEventStore;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryFlowEventStoreTest {
+
+  private static final EventWeigher hundredBytesEach = new EventWeigher() {
+    @Override
+    public long weigh(FlowEvent<?> event) {
+      return 100;
+    }
+  };
+
+  private static UUID startFlow(FlowEventStore<String> store, long timestamp) {
+    UUID flowId = UUID.randomUUID();
+    store.storeEvent(FlowEvent.started(flowId, flowId, timestamp, Collections.<String, String>emptyMap()));
+    return flowId;
+  }
+
+  private static UUID completeFlow(FlowEventStore<String> store) {
+    UUID flowId = startFlow(store, System.currentTimeMillis());
+    store.storeEvent(FlowEvent.succeeded(flowId, flowId, System.currentTimeMillis(), "done"));
+    return flowId;
+  }
+
+  private static boolean isRetained(FlowEventStore<String> store, UUID flowId) {
+    return !store.retrieveEvents(flowId).isEmpty();
+  }
+
+  @Test
+  public void leastRecentlyUsedCompletedFlowsAreEvicted() {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create(RetentionPolicy.unbounded().withMaxFlows(2));
+
+    UUID first = completeFlow(store);
+    UUID second = completeFlow(store);
+    store.retrieveEvents(first);
+    UUID third = completeFlow(store);
+
+    assertTrue(isRetained(store, first));
+    assertEquals(Collections.emptyList(), store.retrieveEvents(second));
+    assertTrue(isRetained(store, third));
+  }
+
+  @Test
+  public void runningFlowsAreNotEvicted() {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create(RetentionPolicy.unbounded().withMaxFlows(1));
+
+    UUID first = startFlow(store, System.currentTimeMillis());
+    UUID second = startFlow(store, System.currentTimeMillis());
+
+    assertTrue(isRetained(store, first));
+    assertTrue(isRetained(store, second));
+  }
+
+  @Test
+  public void expiredFlowsAreEvicted() {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create(RetentionPolicy.unbounded().withMaxAge(1, TimeUnit.MINUTES));
+
+    long anHourAgo = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+    UUID old = startFlow(store, anHourAgo);
+    store.storeEvent(FlowEvent.succeeded(old, old, anHourAgo, "done"));
+    UUID recent = completeFlow(store);
+
+    assertEquals(Collections.emptyList(), store.retrieveEvents(old));
+    assertTrue(isRetained(store, recent));
+  }
+
+  @Test
+  public void runningFlowsAreNotExpired() throws InterruptedException {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create(RetentionPolicy.unbounded().withMaxAge(100, TimeUnit.MILLISECONDS));
+
+    UUID longRunning = startFlow(store, System.currentTimeMillis());
+    UUID recent = completeFlow(store);
+
+    // Wait for a sweep after the flow has outlived the maximum age, which finds it still running.
+    Thread.sleep(150);
+    startFlow(store, System.currentTimeMillis());
+    assertEquals(Collections.emptyList(), store.retrieveEvents(recent));
+    assertTrue(isRetained(store, longRunning));
+
+    // Having completed, the flow is expired by the age at which it started.
+    store.storeEvent(FlowEvent.succeeded(longRunning, longRunning, System.currentTimeMillis(), "done"));
+    assertEquals(Collections.emptyList(), store.retrieveEvents(longRunning));
+  }
+
+  @Test
+  public void flowsAreEvictedToStayWithinSizeLimit() {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create(RetentionPolicy.unbounded().withMaxTotalBytes(450, hundredBytesEach));
+
+    UUID first = completeFlow(store);
+    UUID second = completeFlow(store);
+    UUID third = completeFlow(store);
+
+    assertEquals(Collections.emptyList(), store.retrieveEvents(first));
+    assertTrue(isRetained(store, second));
+    assertTrue(isRetained(store, third));
+  }
+
+  @Test
+  public void retrievedEventsAreASnapshot() {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create();
+    UUID flowId = startFlow(store, System.currentTimeMillis());
+
+    List<FlowEvent<String>> snapshot = store.retrieveEvents(flowId);
+    store.storeEvent(FlowEvent.succeeded(flowId, flowId, System.currentTimeMillis(), "done"));
+
+    assertEquals(1, snapshot.size());
+    assertEquals(2, store.retrieveEvents(flowId).size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void retrievedEventsCannotBeModified() {
+    FlowEventStore<String> store = InMemoryFlowEventStore.create();
+    UUID flowId = startFlow(store, System.currentTimeMillis());
+
+    store.retrieveEvents(flowId).clear();
+  }
+
+  @Test
+  public void eventsCanBeStoredConcurrently() throws InterruptedException {
+    final FlowEventStore<String> store = InMemoryFlowEventStore.create(RetentionPolicy.unbounded().withMaxFlows(1000));
+    final UUID flowId = startFlow(store, System.currentTimeMillis());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int thread = 0; thread < 4; thread++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 1000; i++) {
+            store.storeEvent(FlowEvent.succeeded(flowId, UUID.randomUUID(), System.currentTimeMillis(), "result"));
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(4001, store.retrieveEvents(flowId).size());
+  }
+}
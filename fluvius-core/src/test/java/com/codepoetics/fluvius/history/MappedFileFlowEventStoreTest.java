@@ -0,0 +1,134 @@
+package com.codepoetics.fluvius.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
+import com.codepoetics.fluvius.api.history.StepSucceededEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileFlowEventStoreTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory() {
+    return folder.getRoot().toPath().resolve("events");
+  }
+
+  private static void storeFlow(MappedFileFlowEventStore<String> store, UUID flowId, long timestamp) {
+    Map<String, String> state = new LinkedHashMap<>();
+    state.put("userName", "Arthur Putey");
+    store.storeEvent(FlowEvent.started(flowId, flowId, timestamp, state));
+    store.storeEvent(FlowEvent.succeeded(flowId, flowId, timestamp, "done"));
+  }
+
+  @Test
+  public void eventsSurviveReopening() {
+    UUID flowId = UUID.randomUUID();
+    UUID otherFlowId = UUID.randomUUID();
+
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory()).withSegmentSize(4096).open(FlowEventCodecs.strings())) {
+      storeFlow(store, flowId, 1000);
+      storeFlow(store, otherFlowId, 2000);
+    }
+
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory()).withSegmentSize(4096).open(FlowEventCodecs.strings())) {
+      List<FlowEvent<String>> events = store.retrieveEvents(flowId);
+
+      assertEquals(2, events.size());
+      StepStartedEvent<String> started = (StepStartedEvent<String>) events.get(0);
+      assertEquals(flowId, started.getStepId());
+      assertEquals(1000, started.getTimestamp());
+      assertEquals(Collections.singletonMap("userName", "Arthur Putey"), started.getScratchpadState());
+      assertEquals("done", ((StepSucceededEvent<String>) events.get(1)).getResult());
+
+      storeFlow(store, flowId, 3000);
+      assertEquals(4, store.retrieveEvents(flowId).size());
+      assertEquals(2, store.retrieveEvents(otherFlowId).size());
+    }
+  }
+
+  @Test
+  public void segmentsRollWhenFull() {
+    UUID flowId = UUID.randomUUID();
+
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory()).withSegmentSize(256).open(FlowEventCodecs.strings())) {
+      for (int i = 0; i < 10; i++) {
+        storeFlow(store, flowId, i);
+      }
+
+      assertTrue(store.getSegmentCount() > 1);
+      assertEquals(20, store.retrieveEvents(flowId).size());
+    }
+  }
+
+  @Test
+  public void oldestSegmentsAreExpired() {
+    UUID firstFlowId = UUID.randomUUID();
+    UUID lastFlowId = UUID.randomUUID();
+
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory())
+        .withSegmentSize(256)
+        .retainingSegments(2)
+        .open(FlowEventCodecs.strings())) {
+      storeFlow(store, firstFlowId, 0);
+      for (int i = 0; i < 10; i++) {
+        storeFlow(store, UUID.randomUUID(), i);
+      }
+      storeFlow(store, lastFlowId, 10);
+
+      assertEquals(2, store.getSegmentCount());
+      assertEquals(Collections.emptyList(), store.retrieveEvents(firstFlowId));
+      assertEquals(2, store.retrieveEvents(lastFlowId).size());
+    }
+  }
+
+  @Test
+  public void segmentsOlderThanMaximumAgeAreExpiredOnOpening() {
+    UUID oldFlowId = UUID.randomUUID();
+
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory()).withSegmentSize(256).open(FlowEventCodecs.strings())) {
+      storeFlow(store, oldFlowId, 0);
+      for (int i = 0; i < 5; i++) {
+        storeFlow(store, UUID.randomUUID(), System.currentTimeMillis());
+      }
+    }
+
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory())
+        .withSegmentSize(256)
+        .retainingFor(1, TimeUnit.DAYS)
+        .open(FlowEventCodecs.strings())) {
+      assertEquals(Collections.emptyList(), store.retrieveEvents(oldFlowId));
+    }
+  }
+
+  @Test
+  public void idleStoresExpireSegmentsWhenFlushed() throws InterruptedException {
+    try (MappedFileFlowEventStore<String> store = MappedFileFlowEventStore.inDirectory(directory())
+        .withSegmentSize(256)
+        .retainingFor(200, TimeUnit.MILLISECONDS)
+        .open(FlowEventCodecs.strings())) {
+      for (int i = 0; i < 5; i++) {
+        storeFlow(store, UUID.randomUUID(), System.currentTimeMillis());
+      }
+      assertTrue(store.getSegmentCount() > 1);
+
+      Thread.sleep(300);
+      store.flush();
+
+      assertEquals(1, store.getSegmentCount());
+    }
+  }
+}
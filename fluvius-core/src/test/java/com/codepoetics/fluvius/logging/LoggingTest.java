@@ -0,0 +1,121 @@
+package com.codepoetics.fluvius.logging;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.logging.LevelledFlowLogger;
+import com.codepoetics.fluvius.api.logging.LogLevel;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.compilation.Compilers;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.*;
+
+public class LoggingTest {
+
+  private final Flow<String> weatherFlow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+      .otherwise(formatError));
+
+  @Test
+  public void onlyEnabledLevelsAreLogged() throws Exception {
+    RecordingLogger logger = new RecordingLogger(LogLevel.INFO);
+    FlowExecution<String> execution = Compilers.builder().loggingTo(logger).build().compile(weatherFlow);
+
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    assertFalse(logger.events.isEmpty());
+    for (String event : logger.events) {
+      assertFalse(event + " should not have been logged", event.startsWith("started"));
+    }
+    assertTrue(logger.events.contains("completed Fetch weather"));
+  }
+
+  @Test
+  public void disabledLoggersAreNeverCalled() throws Exception {
+    RecordingLogger logger = new RecordingLogger(LogLevel.OFF);
+    FlowExecution<String> execution = Compilers.builder().loggingTo(logger).build().compile(weatherFlow);
+
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    assertTrue(logger.events.isEmpty());
+  }
+
+  @Test
+  public void asyncLoggerFormatsAndWritesMessages() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (AsyncFlowLogger logger = AsyncFlowLogger.create(new PrintStream(output, false, "UTF-8"), LogLevel.DEBUG, 64)) {
+      FlowExecution<String> execution = Compilers.builder().loggingTo(logger).build().compile(weatherFlow);
+      execution.run(userName.of("Fred"), password.of("verysecurepassword"), postcode.of("VB6 5UX"));
+      logger.flush();
+
+      String log = output.toString("UTF-8");
+      assertTrue(log, log.contains("Operation 'Check credentials' started with scratchpad"));
+      assertTrue(log, log.contains("Condition '" + isAuthorised.getDescription() + "' completed with result false"));
+      assertTrue(log, log.contains("Operation 'Format error message' completed, writing value Sorry, Fred, your credentials were not valid to key weatherMessage"));
+      assertEquals(0, logger.getDroppedEventCount());
+    }
+  }
+
+  @Test
+  public void levelledLoggersRestrictWrappedLoggers() {
+    LevelledFlowLogger logger = Loggers.levelled(new RecordingLogger(LogLevel.INFO), LogLevel.ERROR);
+
+    assertFalse(logger.isEnabled(LogLevel.DEBUG));
+    assertFalse(logger.isEnabled(LogLevel.INFO));
+    assertTrue(logger.isEnabled(LogLevel.ERROR));
+    assertFalse(Loggers.levelled(new RecordingLogger(LogLevel.OFF), LogLevel.DEBUG).isEnabled(LogLevel.ERROR));
+  }
+
+  private static final class RecordingLogger implements LevelledFlowLogger {
+
+    private final LogLevel threshold;
+    private final List<String> events = new ArrayList<>();
+
+    private RecordingLogger(LogLevel threshold) {
+      this.threshold = threshold;
+    }
+
+    @Override
+    public boolean isEnabled(LogLevel level) {
+      return level.isAtLeast(threshold);
+    }
+
+    @Override
+    public void logOperationStarted(UUID flowId, String name, Scratchpad scratchpad) {
+      events.add("started " + name);
+    }
+
+    @Override
+    public void logOperationCompleted(UUID flowId, String name, Key<?> outputKey, Object output) {
+      events.add("completed " + name);
+    }
+
+    @Override
+    public void logOperationException(UUID flowId, String name, Throwable exception) {
+      events.add("failed " + name);
+    }
+
+    @Override
+    public void logConditionStarted(UUID flowId, String description, Scratchpad scratchpad) {
+      events.add("started " + description);
+    }
+
+    @Override
+    public void logConditionCompleted(UUID flowId, String description, boolean result) {
+      events.add("completed " + description);
+    }
+
+    @Override
+    public void logConditionException(UUID flowId, String description, Throwable exception) {
+      events.add("failed " + description);
+    }
+  }
+}
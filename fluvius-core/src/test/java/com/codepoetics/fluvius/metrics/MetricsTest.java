@@ -0,0 +1,167 @@
+package com.codepoetics.fluvius.metrics;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.flows.Flows;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+  private static final Key<String> greeting = Key.named("greeting");
+
+  private static final Flow<String> greet = Flows.obtaining(greeting).from(userName).using("Greet", new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String name) {
+      if (name.equals("Nobody")) {
+        throw new IllegalArgumentException("Nobody to greet");
+      }
+      return "Hello, " + name;
+    }
+  });
+
+  private final Flow<String> weatherFlow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+      .otherwise(formatError));
+
+  @Test
+  public void histogramReportsPercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = LatencyHistogram.create();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(500.5, snapshot.getMean(TimeUnit.MICROSECONDS), 0.001);
+    assertEquals(500, snapshot.getPercentile(50, TimeUnit.MICROSECONDS), 500 * 0.04);
+    assertEquals(990, snapshot.getPercentile(99, TimeUnit.MICROSECONDS), 990 * 0.04);
+    assertEquals(1000, snapshot.getMax(TimeUnit.MICROSECONDS), 1000 * 0.04);
+  }
+
+  @Test
+  public void histogramBucketsCoverEveryValue() {
+    for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+      long lowest = LatencyHistogram.lowestValueAt(i);
+      assertEquals(i, LatencyHistogram.indexOf(lowest));
+      assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(i)));
+    }
+    assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void successesAndFailuresAreCountedPerStep() throws Exception {
+    FlowMetrics metrics = FlowMetrics.create();
+    FlowExecution<String> execution = Compilers.builder().recordingMetricsTo(metrics).build().compile(greet);
+
+    execution.run(userName.of("Arthur"));
+    execution.run(userName.of("Zebedee"));
+    try {
+      execution.run(userName.of("Nobody"));
+      fail("Expected exception to be thrown");
+    } catch (Exception e) {
+      // expected
+    }
+
+    StepMetrics greetMetrics = stepNamed(metrics.snapshot(), "Greet");
+    assertEquals(2, greetMetrics.getSuccessCount());
+    assertEquals(1, greetMetrics.getFailureCount());
+    assertEquals(3, greetMetrics.getLatency().getCount());
+  }
+
+  @Test
+  public void branchesTakenAreCounted() throws Exception {
+    FlowMetrics metrics = FlowMetrics.create();
+    FlowExecution<String> execution = Compilers.builder().recordingMetricsTo(metrics).build().compile(weatherFlow);
+
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+    execution.run(userName.of("Fred"), password.of("verysecurepassword"), postcode.of("VB6 5UX"));
+
+    MetricsSnapshot snapshot = metrics.snapshot();
+    assertEquals(1, snapshot.getBranchMetrics().size());
+
+    BranchMetrics branchMetrics = snapshot.getBranchMetrics().values().iterator().next();
+    assertEquals(3, branchMetrics.getEvaluationCount());
+    assertEquals(1, branchMetrics.getDefaultTakenCount());
+
+    ConditionMetrics conditionMetrics = branchMetrics.getConditionMetrics().get(0);
+    assertEquals(isAuthorised.getDescription(), conditionMetrics.getDescription());
+    assertEquals(2, conditionMetrics.getTrueCount());
+    assertEquals(1, conditionMetrics.getFalseCount());
+
+    assertEquals(2, stepNamed(snapshot, "Fetch weather").getSuccessCount());
+    assertEquals(1, stepNamed(snapshot, "Format error message").getSuccessCount());
+    assertEquals(3, stepNamed(snapshot, "Check credentials").getSuccessCount());
+  }
+
+  @Test
+  public void snapshottingAndResettingStartsANewInterval() throws Exception {
+    FlowMetrics metrics = FlowMetrics.create();
+    FlowExecution<String> execution = Compilers.builder().recordingMetricsTo(metrics).build().compile(greet);
+
+    execution.run(userName.of("Arthur"));
+    assertEquals(1, stepNamed(metrics.snapshotAndReset(), "Greet").getSuccessCount());
+
+    MetricsSnapshot afterReset = metrics.snapshot();
+    assertEquals(0, stepNamed(afterReset, "Greet").getSuccessCount());
+    assertEquals(0, stepNamed(afterReset, "Greet").getLatency().getCount());
+
+    execution.run(userName.of("Arthur"));
+    assertEquals(1, stepNamed(metrics.snapshot(), "Greet").getSuccessCount());
+  }
+
+  @Test
+  public void snapshotsAgreeWithTheirLatenciesWhileRecordingContinues() throws Exception {
+    final StepRecorder recorder = new StepRecorder(UUID.randomUUID(), "Always fails");
+    final int threads = 4;
+    final int failuresPerThread = 50000;
+    final CountDownLatch finished = new CountDownLatch(threads);
+
+    for (int i = 0; i < threads; i++) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < failuresPerThread; j++) {
+            recorder.recordFailure(1000);
+          }
+          finished.countDown();
+        }
+      }).start();
+    }
+
+    long failures = 0;
+    boolean reset = false;
+    while (finished.getCount() > 0) {
+      StepMetrics snapshot = recorder.snapshot(1, reset);
+      assertEquals(0, snapshot.getSuccessCount());
+      assertEquals(snapshot.getLatency().getCount(), snapshot.getFailureCount());
+      if (reset) {
+        failures += snapshot.getFailureCount();
+      }
+      reset = !reset;
+    }
+    finished.await();
+
+    failures += recorder.snapshot(1, true).getFailureCount();
+    assertEquals(threads * failuresPerThread, failures);
+  }
+
+  private static StepMetrics stepNamed(MetricsSnapshot snapshot, String operationName) {
+    for (StepMetrics stepMetrics : snapshot.getStepMetrics().values()) {
+      if (stepMetrics.getOperationName().equals(operationName)) {
+        return stepMetrics;
+      }
+    }
+    throw new AssertionError("No metrics recorded for " + operationName);
+  }
+}
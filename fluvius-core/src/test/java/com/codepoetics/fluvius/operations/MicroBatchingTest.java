@@ -0,0 +1,253 @@
+package com.codepoetics.fluvius.operations;
+
+import com.codepoetics.fluvius.api.AsyncOperation;
+import com.codepoetics.fluvius.api.BatchOperation;
+import com.codepoetics.fluvius.api.ConcurrentFlowExecution;
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.Operation;
+import com.codepoetics.fluvius.api.OperationCallback;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.exceptions.StepTimeoutException;
+import com.codepoetics.fluvius.execution.Deadline;
+import com.codepoetics.fluvius.execution.FlowDeadlines;
+import com.codepoetics.fluvius.execution.FlowExecutions;
+import com.codepoetics.fluvius.flows.Flows;
+import com.codepoetics.fluvius.scratchpad.Scratchpads;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MicroBatchingTest {
+
+  private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> customerName = Key.named("customerName");
+
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+  private final BatchOperation<String> lookUpNames = new BatchOperation<String>() {
+    @Override
+    public String getName() {
+      return "Look up customer names";
+    }
+
+    @Override
+    public String run(Scratchpad scratchpad) throws Exception {
+      return runBatch(Arrays.asList(scratchpad)).get(0);
+    }
+
+    @Override
+    public List<String> runBatch(List<Scratchpad> scratchpads) {
+      batchSizes.add(scratchpads.size());
+      List<String> names = new ArrayList<>(scratchpads.size());
+      for (Scratchpad scratchpad : scratchpads) {
+        if (scratchpad.get(customerId).equals("outage")) {
+          throw new IllegalStateException("Customer service unavailable");
+        }
+        names.add("Customer " + scratchpad.get(customerId));
+      }
+      return names;
+    }
+  };
+
+  @AfterClass
+  public static void shutdownScheduler() {
+    scheduler.shutdown();
+  }
+
+  private ConcurrentFlowExecution<String> compile(int maxBatchSize, long maxDelayMillis) {
+    Flow<String> flow = Flows.from(customerId).to(customerName)
+        .using(Operations.microBatching(lookUpNames, maxBatchSize, maxDelayMillis, TimeUnit.MILLISECONDS, scheduler));
+    return FlowExecutions.concurrent(Compilers.builder().build().compile(flow));
+  }
+
+  @Test
+  public void concurrentCallsAreGroupedIntoOneBatch() throws Exception {
+    final ConcurrentFlowExecution<String> execution = compile(4, 10000);
+
+    List<String> results = runConcurrently(execution, "1", "2", "3", "4");
+
+    assertEquals(Arrays.asList("Customer 1", "Customer 2", "Customer 3", "Customer 4"), results);
+    assertEquals(Arrays.asList(4), batchSizes);
+  }
+
+  @Test
+  public void batchesWhichDoNotFillAreRunAfterTheMaximumDelay() throws Exception {
+    ConcurrentFlowExecution<String> execution = compile(100, 20);
+
+    assertEquals("Customer 1", execution.run(customerId.of("1")));
+    assertEquals("Customer 2", execution.runAsync(customerId.of("2")).get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(1, 1), batchSizes);
+  }
+
+  @Test
+  public void batchFailuresAreReportedToEveryWaitingFlow() throws Exception {
+    ConcurrentFlowExecution<String> execution = compile(2, 10000);
+
+    Future<String> first = execution.runAsync(customerId.of("1"));
+    Future<String> second = execution.runAsync(customerId.of("outage"));
+
+    for (Future<String> future : Arrays.asList(first, second)) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("Expected exception to be thrown");
+      } catch (ExecutionException e) {
+        assertEquals("Customer service unavailable", e.getCause().getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void errorsInTheBatchFailEveryWaitingCaller() throws Exception {
+    BatchOperation<String> broken = new BatchOperation<String>() {
+      @Override
+      public String getName() {
+        return "Broken lookup";
+      }
+
+      @Override
+      public String run(Scratchpad scratchpad) {
+        throw new AssertionError("Broken");
+      }
+
+      @Override
+      public List<String> runBatch(List<Scratchpad> scratchpads) {
+        throw new AssertionError("Broken");
+      }
+    };
+    @SuppressWarnings("unchecked")
+    AsyncOperation<String> operation = (AsyncOperation<String>) Operations.microBatching(
+        broken, 10, 10, TimeUnit.MILLISECONDS, scheduler);
+
+    final List<Throwable> causes = Collections.synchronizedList(new ArrayList<Throwable>());
+    final CountDownLatch failed = new CountDownLatch(2);
+    OperationCallback<String> callback = new OperationCallback<String>() {
+      @Override
+      public void onSuccess(String result) {
+      }
+
+      @Override
+      public void onFailure(Exception failure) {
+        causes.add(failure.getCause());
+        failed.countDown();
+      }
+    };
+    operation.run(Scratchpads.create(customerId.of("1")), callback);
+    operation.run(Scratchpads.create(customerId.of("2")), callback);
+
+    assertTrue(failed.await(5, TimeUnit.SECONDS));
+    for (Throwable cause : causes) {
+      assertTrue(cause instanceof AssertionError);
+    }
+  }
+
+  @Test
+  public void waitingCallersGiveUpAtTheirFlowsDeadline() throws Exception {
+    Operation<String> operation = Operations.microBatching(lookUpNames, 10, 10000, TimeUnit.MILLISECONDS, scheduler);
+
+    long started = System.nanoTime();
+    try {
+      operation.run(FlowDeadlines.withDeadline(
+          Scratchpads.create(customerId.of("1")), Deadline.after(50, TimeUnit.MILLISECONDS)));
+      fail("Expected the caller to time out");
+    } catch (StepTimeoutException e) {
+      assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    }
+  }
+
+  @Test
+  public void eachWaitingFlowIsContinuedSeparatelyOnTheCallbackExecutor() throws Exception {
+    final List<String> continuedOn = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch continued = new CountDownLatch(2);
+    ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "continuations");
+        thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+          @Override
+          public void uncaughtException(Thread t, Throwable e) {
+            // The failing continuation is reported here, and must not affect the others.
+          }
+        });
+        return thread;
+      }
+    });
+
+    try {
+      @SuppressWarnings("unchecked")
+      AsyncOperation<String> operation = (AsyncOperation<String>) Operations.microBatching(
+          lookUpNames, 2, 10000, TimeUnit.MILLISECONDS, scheduler, callbackExecutor);
+
+      operation.run(Scratchpads.create(customerId.of("1")), new OperationCallback<String>() {
+        @Override
+        public void onSuccess(String result) {
+          continuedOn.add(Thread.currentThread().getName());
+          continued.countDown();
+          throw new IllegalStateException("Continuation failed");
+        }
+
+        @Override
+        public void onFailure(Exception failure) {
+        }
+      });
+      operation.run(Scratchpads.create(customerId.of("2")), new OperationCallback<String>() {
+        @Override
+        public void onSuccess(String result) {
+          continuedOn.add(Thread.currentThread().getName());
+          continued.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception failure) {
+        }
+      });
+
+      assertTrue(continued.await(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("continuations", "continuations"), continuedOn);
+    } finally {
+      callbackExecutor.shutdown();
+    }
+  }
+
+  private static List<String> runConcurrently(final FlowExecution<String> execution, String... ids) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(ids.length);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (final String id : ids) {
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return execution.run(customerId.of(id));
+          }
+        }));
+      }
+
+      List<String> results = new ArrayList<>();
+      for (Future<String> future : futures) {
+        results.add(future.get(5, TimeUnit.SECONDS));
+      }
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
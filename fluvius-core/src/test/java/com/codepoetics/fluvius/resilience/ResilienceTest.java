@@ -0,0 +1,327 @@
+package com.codepoetics.fluvius.resilience;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.tracing.TraceEventListener;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.execution.HedgeRace;
+import com.codepoetics.fluvius.flows.Flows;
+import com.codepoetics.fluvius.tracing.TraceMaps;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResilienceTest {
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> quote = Key.named("quote");
+  private static final Key<String> message = Key.named("message");
+
+  private final AtomicInteger attempts = new AtomicInteger();
+  private final CountDownLatch slowAttemptInterrupted = new CountDownLatch(1);
+
+  private SingleParameterStep<String, String> failingTimes(final int failures, final Exception failure) {
+    return new SingleParameterStep<String, String>() {
+      @Override
+      public String apply(String input) throws Exception {
+        if (attempts.incrementAndGet() <= failures) {
+          throw failure;
+        }
+        return "Quote for " + input;
+      }
+    };
+  }
+
+  private final Flow<String> apologise = Flows.obtaining(message).from(customerId).using(new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) {
+      return "No quote available for " + input;
+    }
+  });
+
+  private final Flow<String> reportQuote = Flows.obtaining(message).from(quote).using(new SingleParameterStep<String, String>() {
+    @Override
+    public String apply(String input) {
+      return input;
+    }
+  });
+
+  @Test
+  public void failedAttemptsAreRetried() throws Exception {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withRetry(RetryPolicy.attempts(3).withBackoff(1, TimeUnit.MILLISECONDS))
+        .using(failingTimes(2, new IOException("Quote service unavailable")));
+
+    assertEquals("Quote for 42", Compilers.builder().build().compile(flow).run(customerId.of("42")));
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void exhaustedRetriesAreHandledAsFailures() throws Exception {
+    Flow<String> quoteFlow = Flows.obtaining(quote).from(customerId)
+        .withRetry(RetryPolicy.attempts(2))
+        .using(failingTimes(5, new IOException("Quote service unavailable")));
+    FlowExecution<String> execution = Compilers.builder().build().compile(
+        quoteFlow.branchOnResult().onFailure(apologise).otherwise(reportQuote));
+
+    assertEquals("No quote available for 42", execution.run(customerId.of("42")));
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  public void onlyRetryableFailuresAreRetried() throws Exception {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withRetry(RetryPolicy.attempts(3).retryingOn(IOException.class))
+        .using(failingTimes(1, new IllegalArgumentException("No such customer")));
+
+    try {
+      Compilers.builder().build().compile(flow).run(customerId.of("42"));
+      fail("Expected the step to fail");
+    } catch (IllegalArgumentException e) {
+      assertEquals(1, attempts.get());
+    }
+  }
+
+  @Test
+  public void everyAttemptIsTraced() throws Exception {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withRetry(RetryPolicy.attempts(3))
+        .using(failingTimes(2, new IOException("Quote service unavailable")));
+
+    final AtomicInteger started = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    final AtomicInteger succeeded = new AtomicInteger();
+    TraceEventListener listener = new TraceEventListener() {
+      @Override
+      public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+        started.incrementAndGet();
+      }
+
+      @Override
+      public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
+        succeeded.incrementAndGet();
+      }
+
+      @Override
+      public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
+        failed.incrementAndGet();
+      }
+    };
+
+    Compilers.builder().tracingWith(listener).build().compile(flow).run(customerId.of("42"));
+
+    assertEquals(3, started.get());
+    assertEquals(2, failed.get());
+    assertEquals(1, succeeded.get());
+  }
+
+  @Test
+  public void fusedFlowsRetryWithinTheStep() throws Exception {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withRetry(RetryPolicy.attempts(3))
+        .using(failingTimes(2, new IOException("Quote service unavailable")));
+
+    assertEquals("Quote for 42", Compilers.builder().fused().build().compile(flow).run(customerId.of("42")));
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void policiesAppearInTheTraceMap() {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withRetry(RetryPolicy.attempts(3))
+        .withHedging(HedgePolicy.atPercentile(95, 50, TimeUnit.MILLISECONDS))
+        .using("Get quote", failingTimes(0, null));
+
+    assertEquals("Get quote (up to 3 attempts, hedged at p95)", TraceMaps.getTraceMap(flow).getDescription());
+  }
+
+  @Test
+  public void slowAttemptsAreHedged() throws Exception {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withHedging(HedgePolicy.after(20, TimeUnit.MILLISECONDS))
+        .using(new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) throws Exception {
+            if (attempts.incrementAndGet() == 1) {
+              try {
+                Thread.sleep(10000);
+              } catch (InterruptedException e) {
+                slowAttemptInterrupted.countDown();
+                throw e;
+              }
+            }
+            return "Quote for " + input;
+          }
+        });
+
+    long started = System.nanoTime();
+    assertEquals("Quote for 42", Compilers.builder().build().compile(flow).run(customerId.of("42")));
+
+    assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    assertEquals(2, attempts.get());
+    assertTrue(slowAttemptInterrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void fastAttemptsAreNotHedged() throws Exception {
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withHedging(HedgePolicy.after(5, TimeUnit.SECONDS))
+        .using(failingTimes(0, null));
+
+    assertEquals("Quote for 42", Compilers.builder().build().compile(flow).run(customerId.of("42")));
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  public void backoffGrowsExponentiallyUpToTheMaximum() {
+    RetryPolicy policy = RetryPolicy.attempts(10)
+        .withBackoff(10, TimeUnit.MILLISECONDS)
+        .withMaxBackoff(50, TimeUnit.MILLISECONDS);
+
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), policy.getBackoffNanos(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(20), policy.getBackoffNanos(2));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(40), policy.getBackoffNanos(3));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(50), policy.getBackoffNanos(4));
+  }
+
+  @Test
+  public void jitterShortensBackoffWithinBounds() {
+    RetryPolicy policy = RetryPolicy.attempts(10).withBackoff(100, TimeUnit.MILLISECONDS).withJitter(0.5);
+
+    for (int i = 0; i < 100; i++) {
+      long backoff = policy.getBackoffNanos(1);
+      assertTrue(backoff >= TimeUnit.MILLISECONDS.toNanos(50));
+      assertTrue(backoff <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+  }
+
+  @Test
+  public void adaptiveHedgeDelayFollowsTheLatencyPercentile() {
+    HedgeTracker tracker = new HedgeTracker(HedgePolicy.atPercentile(50, 1, TimeUnit.SECONDS).withSampleSize(4));
+    assertEquals(TimeUnit.SECONDS.toNanos(1), tracker.getDelayNanos());
+
+    for (int i = 0; i < 4; i++) {
+      tracker.record(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    long delay = tracker.getDelayNanos();
+    assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(9));
+    assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(11));
+  }
+
+  @Test
+  public void theFirstAttemptRunsOnTheCallingThread() throws Exception {
+    final Thread caller = Thread.currentThread();
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withHedging(HedgePolicy.after(5, TimeUnit.SECONDS))
+        .using(new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) {
+            return Thread.currentThread() == caller ? "Quote for " + input : "Handed off";
+          }
+        });
+
+    assertEquals("Quote for 42", Compilers.builder().build().compile(flow).run(customerId.of("42")));
+  }
+
+  @Test
+  public void onlyTheOutcomeOfTheAttemptUsedIsTraced() throws Exception {
+    final Thread caller = Thread.currentThread();
+    Flow<String> flow = Flows.obtaining(quote).from(customerId)
+        .withHedging(HedgePolicy.after(20, TimeUnit.MILLISECONDS))
+        .using(new SingleParameterStep<String, String>() {
+          @Override
+          public String apply(String input) throws Exception {
+            if (Thread.currentThread() == caller) {
+              Thread.sleep(10000);
+            }
+            return "Quote for " + input;
+          }
+        });
+
+    final AtomicInteger started = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    final AtomicInteger succeeded = new AtomicInteger();
+    TraceEventListener listener = new TraceEventListener() {
+      @Override
+      public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+        started.incrementAndGet();
+      }
+
+      @Override
+      public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
+        succeeded.incrementAndGet();
+      }
+
+      @Override
+      public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
+        failed.incrementAndGet();
+      }
+    };
+
+    assertEquals("Quote for 42", Compilers.builder().tracingWith(listener).build().compile(flow).run(customerId.of("42")));
+    assertFalse(Thread.currentThread().isInterrupted());
+
+    assertEquals(2, started.get());
+    assertEquals(0, failed.get());
+    assertEquals(1, succeeded.get());
+  }
+
+  @Test
+  public void hedgesAreCappedWithinEachWindow() {
+    HedgeTracker tracker = new HedgeTracker(HedgePolicy.after(0, TimeUnit.MILLISECONDS).withSampleSize(10).withMaxHedgeRate(0.2));
+
+    assertTrue(tracker.tryHedge());
+    assertTrue(tracker.tryHedge());
+    assertFalse(tracker.tryHedge());
+
+    for (int i = 0; i < 10; i++) {
+      tracker.record(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertTrue(tracker.tryHedge());
+  }
+
+  @Test
+  public void abandonedAttemptsCountTowardsTheHedgeDelay() {
+    final Thread caller = Thread.currentThread();
+    HedgeTracker tracker = new HedgeTracker(HedgePolicy.atPercentile(50, 20, TimeUnit.MILLISECONDS).withSampleSize(2));
+    Attempts.Attempt<String> attempt = new Attempts.Attempt<String>() {
+      @Override
+      public String run(HedgeRace race, int attemptNumber) {
+        if (Thread.currentThread() == caller) {
+          try {
+            Thread.sleep(10000);
+          } catch (InterruptedException e) {
+            return null;
+          }
+        }
+        return "Quote";
+      }
+
+      @Override
+      public Exception failureOf(String result) {
+        return result == null ? new IllegalStateException("Interrupted") : null;
+      }
+
+      @Override
+      public String failed(Exception failure) {
+        return null;
+      }
+    };
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals("Quote", Attempts.run(null, tracker, null, attempt));
+    }
+
+    assertTrue(tracker.getDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(19));
+  }
+}
@@ -0,0 +1,125 @@
+package com.codepoetics.fluvius.scratchpad;
+
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.exceptions.FailedKeyRetrievedException;
+import com.codepoetics.fluvius.utilities.Serialisation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PersistentScratchpadTests {
+
+  private static final Key<String> name = Key.named("name");
+  private static final Key<Integer> age = Key.named("age");
+  private static final Key<String> favouriteColour = Key.named("favouriteColour");
+
+  @Test
+  public void valuesWrittenToScratchpadAreRetrievable() {
+    Scratchpad scratchpad = Scratchpads.createPersistent(
+        name.of("Arthur Putey"),
+        age.of(42)
+    );
+
+    assertEquals("Arthur Putey", scratchpad.get(name));
+    assertEquals((Integer) 42, scratchpad.get(age));
+  }
+
+  @Test
+  public void updatesDoNotMutateOriginalScratchpad() {
+    Scratchpad scratchpad = Scratchpads.createPersistent(
+        name.of("Arthur Putey"),
+        age.of(42)
+    );
+
+    Scratchpad updated = scratchpad.with(age.of(43), favouriteColour.of("Blue"));
+
+    assertFalse(scratchpad.containsKey(favouriteColour));
+    assertEquals((Integer) 42, scratchpad.get(age));
+    assertEquals((Integer) 43, updated.get(age));
+    assertEquals("Blue", updated.get(favouriteColour));
+  }
+
+  @Test
+  public void failuresAreRecordedAgainstKeys() {
+    Exception reason = new IllegalStateException("No favourite colour");
+    Scratchpad scratchpad = Scratchpads.createPersistent(favouriteColour.ofFailure(reason));
+
+    assertFalse(scratchpad.isSuccessful(favouriteColour));
+    assertSame(reason, scratchpad.getFailureReason(favouriteColour));
+
+    try {
+      scratchpad.get(favouriteColour);
+    } catch (FailedKeyRetrievedException e) {
+      return;
+    }
+    fail("Expected exception to be thrown");
+  }
+
+  @Test
+  public void retrievalOfMissingKeyThrowsException() {
+    Scratchpad scratchpad = Scratchpads.createPersistent(name.of("Arthur Putey"));
+    try {
+      scratchpad.get(favouriteColour);
+    } catch (NullPointerException e) {
+      assertEquals("value of key favouriteColour must not be null", e.getMessage());
+      return;
+    }
+    fail("Expected exception to be thrown");
+  }
+
+  @Test
+  public void toStringPreservesInsertionOrder() {
+    Scratchpad scratchpad = Scratchpads.createPersistent(
+        name.of("Arthur Putey"),
+        age.of(42)
+    ).with(favouriteColour.of("Blue"), name.of("Peter Arthy"));
+
+    assertEquals("{name=Peter Arthy, age=42, favouriteColour=Blue}", scratchpad.toString());
+  }
+
+  @Test
+  public void manyKeysCanBeWrittenAndRetrieved() {
+    List<Key<Integer>> keys = new ArrayList<>();
+    Scratchpad scratchpad = Scratchpads.createPersistent();
+    for (int i = 0; i < 2000; i++) {
+      Key<Integer> key = Key.named("key" + i);
+      keys.add(key);
+      scratchpad = scratchpad.with(key.of(i));
+    }
+
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals((Integer) i, scratchpad.get(keys.get(i)));
+    }
+    assertEquals(keys, new ArrayList<>(scratchpad.toMap().keySet()));
+  }
+
+  @Test
+  public void scratchpadsWithSameContentsAreEqual() {
+    assertEquals(
+        Scratchpads.createPersistent(name.of("Arthur Putey"), age.of(42)),
+        Scratchpads.createPersistent(name.of("Arthur Putey")).with(age.of(42)));
+  }
+
+  @Test
+  public void scratchpadsAreSerialisable() {
+    Scratchpad scratchpad = Scratchpads.createPersistent(
+        name.of("Arthur Putey"),
+        age.of(42)
+    );
+
+    assertEquals(scratchpad, Serialisation.roundtrip(scratchpad));
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void keysCannotBeOverwrittenInLockedScratchpad() {
+    Scratchpad locked = Scratchpads.createPersistent(name.of("Arthur Putey")).locked().with(age.of(42));
+    assertEquals(Integer.valueOf(42), locked.get(age));
+
+    // throws IllegalArgumentException
+    locked.with(name.of("Peter Arthy"));
+  }
+}
@@ -0,0 +1,96 @@
+package com.codepoetics.fluvius.scratchpad;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.utilities.Serialisation;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.*;
+
+public class SlotIndexedScratchpadTests {
+
+  private static final Key<String> name = Key.named("name");
+  private static final Key<Integer> age = Key.named("age");
+  private static final Key<String> favouriteColour = Key.named("favouriteColour");
+
+  private static final KeySlots slots = KeySlots.of(Arrays.<Key<?>>asList(name, age));
+
+  @Test
+  public void keysAreAssignedSlotsInOrder() {
+    assertEquals(2, slots.size());
+    assertEquals(0, slots.indexOf(name));
+    assertEquals(1, slots.indexOf(age));
+    assertEquals(-1, slots.indexOf(favouriteColour));
+  }
+
+  @Test
+  public void slotsAreAssignedToAllKeysUsedByFlow() {
+    Flow<String> flow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+        .otherwise(formatError));
+
+    KeySlots flowSlots = KeySlots.forFlow(flow);
+
+    for (Key<?> key : Arrays.<Key<?>>asList(userName, password, postcode, authorisationResult, accessToken, temperature, weatherMessage)) {
+      assertTrue(key + " has a slot", flowSlots.indexOf(key) >= 0);
+    }
+    assertEquals(7, flowSlots.size());
+  }
+
+  @Test
+  public void valuesForKeysWithAndWithoutSlotsAreRetrievable() {
+    Scratchpad scratchpad = Scratchpads.slotIndexed(slots, Scratchpads.create(name.of("Arthur Putey")))
+        .with(age.of(42), favouriteColour.of("Blue"));
+
+    assertEquals("Arthur Putey", scratchpad.get(name));
+    assertEquals((Integer) 42, scratchpad.get(age));
+    assertEquals("Blue", scratchpad.get(favouriteColour));
+    assertEquals("{name=Arthur Putey, age=42, favouriteColour=Blue}", scratchpad.toString());
+  }
+
+  @Test
+  public void updatesDoNotMutateOriginalScratchpad() {
+    Scratchpad scratchpad = Scratchpads.slotIndexed(slots, Scratchpads.create(name.of("Arthur Putey")));
+    Scratchpad updated = scratchpad.with(age.of(42), favouriteColour.of("Blue"));
+
+    assertFalse(scratchpad.containsKey(age));
+    assertFalse(scratchpad.containsKey(favouriteColour));
+    assertTrue(updated.containsKey(age));
+  }
+
+  @Test
+  public void scratchpadsAreSerialisable() {
+    Scratchpad scratchpad = Scratchpads.slotIndexed(slots, Scratchpads.create(name.of("Arthur Putey"), age.of(42)));
+
+    assertEquals(scratchpad, Serialisation.roundtrip(scratchpad));
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void keysCannotBeOverwrittenInLockedScratchpad() {
+    Scratchpad locked = Scratchpads.slotIndexed(slots, Scratchpads.create(name.of("Arthur Putey"))).locked();
+
+    // throws IllegalArgumentException
+    locked.with(name.of("Peter Arthy"));
+  }
+
+  @Test
+  public void flowsCanBeRunAgainstSlotIndexedScratchpads() throws Exception {
+    Flow<String> flow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+        .otherwise(formatError));
+
+    FlowExecution<String> execution = Compilers.builder().slotIndexedScratchpads().build().compile(flow);
+
+    assertEquals(
+        "Fred, the temperature at VB6 5UX is 26.0 degrees",
+        execution.run(
+            userName.of("Fred"),
+            password.of("the real password"),
+            postcode.of("VB6 5UX")));
+  }
+}
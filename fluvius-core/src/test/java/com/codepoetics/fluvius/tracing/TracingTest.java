@@ -0,0 +1,143 @@
+package com.codepoetics.fluvius.tracing;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.functional.ScratchpadPredicate;
+import com.codepoetics.fluvius.api.scratchpad.Scratchpad;
+import com.codepoetics.fluvius.api.tracing.StatelessTraceEventListener;
+import com.codepoetics.fluvius.api.tracing.TraceEventListener;
+import com.codepoetics.fluvius.api.tracing.TraceSampler;
+import com.codepoetics.fluvius.compilation.Compilers;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TracingTest {
+
+  private static final Flow<String> weatherFlow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+      .otherwise(formatError));
+
+  private static class RecordingListener implements TraceEventListener {
+    final List<Map<String, Object>> startStates = new ArrayList<>();
+    final Set<UUID> flowIds = new HashSet<>();
+
+    @Override
+    public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+      startStates.add(scratchpadState);
+      flowIds.add(flowId);
+    }
+
+    @Override
+    public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
+    }
+
+    @Override
+    public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
+    }
+  }
+
+  private static final class StatelessRecordingListener extends RecordingListener implements StatelessTraceEventListener {
+  }
+
+  @Test
+  public void listenersReceiveScratchpadStateByKeyName() throws Exception {
+    RecordingListener listener = new RecordingListener();
+
+    Compilers.builder().tracingWith(listener).build().compile(weatherFlow)
+        .run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    Map<String, Object> lastState = listener.startStates.get(listener.startStates.size() - 1);
+    assertEquals("Fred", lastState.get("userName"));
+    assertEquals(26D, lastState.get("temperature"));
+    assertEquals(6, lastState.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void scratchpadStateIsReadOnly() throws Exception {
+    RecordingListener listener = new RecordingListener();
+
+    Compilers.builder().tracingWith(listener).build().compile(weatherFlow)
+        .run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    listener.startStates.get(0).put("userName", "Bob");
+  }
+
+  @Test
+  public void statelessListenersReceiveNoState() throws Exception {
+    RecordingListener listener = new StatelessRecordingListener();
+
+    Compilers.builder().tracingWith(listener).build().compile(weatherFlow)
+        .run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    assertEquals(7, listener.startStates.size());
+    for (Map<String, Object> state : listener.startStates) {
+      assertTrue(state.isEmpty());
+    }
+  }
+
+  @Test
+  public void samplingDecisionIsMadeOnceAndAppliesToEveryStep() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    final AtomicInteger decisions = new AtomicInteger();
+    TraceSampler alternating = new TraceSampler() {
+      @Override
+      public boolean isSampled(UUID flowId, Scratchpad initialScratchpad) {
+        return decisions.getAndIncrement() % 2 == 0;
+      }
+    };
+
+    FlowExecution<String> execution = Compilers.builder().tracingWith(listener, alternating).build().compile(weatherFlow);
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+
+    assertEquals(2, decisions.get());
+    assertEquals(7, listener.startStates.size());
+    assertEquals(1, listener.flowIds.size());
+  }
+
+  @Test
+  public void flowsCanBeSampledByInitialKeys() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    TraceSampler onlyFred = TraceSamplers.when(new ScratchpadPredicate() {
+      @Override
+      public boolean test(Scratchpad scratchpad) {
+        return scratchpad.get(userName).equals("Fred");
+      }
+    });
+
+    FlowExecution<String> execution = Compilers.builder().tracingWith(listener, onlyFred).build().compile(weatherFlow);
+    execution.run(userName.of("Bob"), password.of("the real password"), postcode.of("VB6 5UX"));
+    assertTrue(listener.startStates.isEmpty());
+
+    execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX"));
+    assertEquals(7, listener.startStates.size());
+  }
+
+  @Test
+  public void rateSamplingIsConsistentPerFlowId() {
+    TraceSampler sampler = TraceSamplers.atRate(0.25);
+
+    int sampled = 0;
+    for (int i = 0; i < 10000; i++) {
+      UUID flowId = UUID.randomUUID();
+      boolean isSampled = sampler.isSampled(flowId, null);
+      assertEquals(isSampled, sampler.isSampled(flowId, null));
+      if (isSampled) {
+        sampled++;
+      }
+    }
+
+    assertTrue("Expected about 2500 flows to be sampled, but was " + sampled, sampled > 2200 && sampled < 2800);
+  }
+}
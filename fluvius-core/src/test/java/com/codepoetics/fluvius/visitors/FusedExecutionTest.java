@@ -0,0 +1,82 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.compilation.FlowCompiler;
+import com.codepoetics.fluvius.api.tracing.TraceEventListener;
+import com.codepoetics.fluvius.compilation.Compilers;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.assertEquals;
+
+public class FusedExecutionTest {
+
+  private static final Flow<String> weatherFlow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+      .otherwise(formatError));
+
+  @Test
+  public void fusedFlowsFollowBranches() throws Exception {
+    FlowExecution<String> execution = Compilers.builder().fused().build().compile(weatherFlow);
+
+    assertEquals(
+        "Fred, the temperature at VB6 5UX is 26.0 degrees",
+        execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX")));
+
+    assertEquals(
+        "Sorry, Fred, your credentials were not valid",
+        execution.run(userName.of("Fred"), password.of("verysecurepassword"), postcode.of("VB6 5UX")));
+  }
+
+  @Test
+  public void decoratorsStillApplyToFusedFlows() throws Exception {
+    final List<String> events = new ArrayList<>();
+    FlowCompiler compiler = Compilers.builder()
+        .loggingToConsole()
+        .tracingWith(new TraceEventListener() {
+          @Override
+          public void stepStarted(UUID flowId, UUID stepId, Map<String, Object> scratchpadState) {
+            events.add("started");
+          }
+
+          @Override
+          public void stepSucceeded(UUID flowId, UUID stepId, Object result) {
+            events.add("succeeded");
+          }
+
+          @Override
+          public void stepFailed(UUID flowId, UUID stepId, Exception exception) {
+            events.add("failed");
+          }
+        })
+        .fused()
+        .build();
+
+    assertEquals(
+        "Fred, the temperature at VB6 5UX is 26.0 degrees",
+        compiler.compile(weatherFlow).run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX")));
+
+    // Outer sequence, authorize, branch, inner sequence and its three steps.
+    assertEquals(14, events.size());
+  }
+
+  @Test
+  public void fusedFlowsCanAlsoRunInParallel() throws Exception {
+    FlowExecution<String> execution = Compilers.builder().fused().parallel(Executors.newCachedThreadPool()).build().compile(weatherFlow);
+
+    assertEquals(
+        "Fred, the temperature at VB6 5UX is 26.0 degrees",
+        execution.run(userName.of("Fred"), password.of("the real password"), postcode.of("VB6 5UX")));
+
+    assertEquals(
+        "Sorry, Fred, your credentials were not valid",
+        execution.run(userName.of("Fred"), password.of("verysecurepassword"), postcode.of("VB6 5UX")));
+  }
+}
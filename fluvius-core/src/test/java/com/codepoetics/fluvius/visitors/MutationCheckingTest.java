@@ -1,6 +1,7 @@
 package com.codepoetics.fluvius.visitors;
 
 import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
 import com.codepoetics.fluvius.api.compilation.FlowCompiler;
 import com.codepoetics.fluvius.api.functional.SingleParameterStep;
 import com.codepoetics.fluvius.api.scratchpad.Key;
@@ -10,9 +11,12 @@ import org.junit.Test;
 
 import java.util.*;
 
+import static org.junit.Assert.assertEquals;
+
 public class MutationCheckingTest {
 
   private static final FlowCompiler compiler = Compilers.builder().mutationChecking().build();
+  private static final FlowCompiler incrementalCompiler = Compilers.builder().incrementalMutationChecking().build();
 
   public static final class MutableThing {
     private String foo;
@@ -42,6 +46,8 @@ public class MutationCheckingTest {
 
   private static final Key<Map<String, MutableThing[]>> mutableThings = Key.named("mutableThings");
   private static final Key<String> output = Key.named("output");
+  private static final Key<List<String>> names = Key.named("names");
+  private static final Key<String> summary = Key.named("summary");
 
   @Test(expected = IllegalStateException.class)
   public void youCannotHideFromTheMutationChecker() throws Exception {
@@ -75,6 +81,72 @@ public class MutationCheckingTest {
         .run(UUID.randomUUID(), mutableThings.of(myMutableThings));
   }
 
+  @Test(expected = IllegalStateException.class)
+  public void theIncrementalMutationCheckerAlsoFindsHiddenMutations() throws Exception {
+    Flow<String> evilFlow = Flows.obtaining(output).from(mutableThings).using("evil operation", new SingleParameterStep<Map<String, MutableThing[]>, String>() {
+      @Override
+      public String apply(Map<String, MutableThing[]> input) {
+        input.get("xyzzy")[0].getBar().get(1)[1] = "changed value";
+        return "bwahahaha";
+      }
+    });
+
+    incrementalCompiler.compile(evilFlow)
+        .run(UUID.randomUUID(), mutableThings.of(createMutableThings()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void theIncrementalMutationCheckerFindsMutationsOfValuesWrittenByEarlierSteps() throws Exception {
+    Flow<List<String>> createNames = Flows.obtaining(names).from(output).using("create names", new SingleParameterStep<String, List<String>>() {
+      @Override
+      public List<String> apply(String input) {
+        return new ArrayList<>(Arrays.asList(input, "Bob"));
+      }
+    });
+
+    Flow<String> addName = Flows.obtaining(summary).from(names).using("add name", new SingleParameterStep<List<String>, String>() {
+      @Override
+      public String apply(List<String> input) {
+        input.add("Eve");
+        return input.toString();
+      }
+    });
+
+    incrementalCompiler.compile(createNames.then(addName))
+        .run(UUID.randomUUID(), output.of("Alice"));
+  }
+
+  @Test
+  public void theIncrementalMutationCheckerAllowsFlowsWhichDoNotMutateValues() throws Exception {
+    Flow<String> innocentFlow = Flows.obtaining(output).from(mutableThings).using("innocent operation", new SingleParameterStep<Map<String, MutableThing[]>, String>() {
+      @Override
+      public String apply(Map<String, MutableThing[]> input) {
+        return input.get("xyzzy")[0].getBar().get(1)[1];
+      }
+    });
+
+    assertEquals("d", incrementalCompiler.compile(innocentFlow)
+        .run(UUID.randomUUID(), mutableThings.of(createMutableThings())));
+  }
+
+  @Test
+  public void theIncrementalMutationCheckerAllowsValuesToChangeBetweenRuns() throws Exception {
+    Flow<String> innocentFlow = Flows.obtaining(output).from(mutableThings).using("innocent operation", new SingleParameterStep<Map<String, MutableThing[]>, String>() {
+      @Override
+      public String apply(Map<String, MutableThing[]> input) {
+        return input.get("xyzzy")[0].getBar().get(1)[1];
+      }
+    });
+    FlowExecution<String> execution = incrementalCompiler.compile(innocentFlow);
+    Map<String, MutableThing[]> myMutableThings = createMutableThings();
+
+    assertEquals("d", execution.run(UUID.randomUUID(), mutableThings.of(myMutableThings)));
+
+    myMutableThings.get("xyzzy")[0].getBar().get(1)[1] = "changed between runs";
+
+    assertEquals("changed between runs", execution.run(UUID.randomUUID(), mutableThings.of(myMutableThings)));
+  }
+
   private Map<String, MutableThing[]> createMutableThings() {
     MutableThing myMutableThing = new MutableThing();
     myMutableThing.setBar(Arrays.asList(new String[] {"a", "b" }, new String[] {"c", "d"}));
@@ -0,0 +1,115 @@
+package com.codepoetics.fluvius.visitors;
+
+import com.codepoetics.fluvius.api.Flow;
+import com.codepoetics.fluvius.api.FlowExecution;
+import com.codepoetics.fluvius.api.compilation.FlowCompiler;
+import com.codepoetics.fluvius.api.functional.SingleParameterStep;
+import com.codepoetics.fluvius.api.functional.TripleParameterStep;
+import com.codepoetics.fluvius.api.scratchpad.Key;
+import com.codepoetics.fluvius.compilation.Compilers;
+import com.codepoetics.fluvius.exceptions.FailedKeyRetrievedException;
+import com.codepoetics.fluvius.flows.Flows;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.codepoetics.fluvius.FlowExample.*;
+import static com.codepoetics.fluvius.flows.Flows.branch;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelExecutionTest {
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private static final FlowCompiler compiler = Compilers.builder().parallel(executor).build();
+
+  private static final Key<String> customerId = Key.named("customerId");
+  private static final Key<String> customerName = Key.named("customerName");
+  private static final Key<String> customerAddress = Key.named("customerAddress");
+  private static final Key<String> customerRating = Key.named("customerRating");
+  private static final Key<String> summary = Key.named("summary");
+
+  // Each lookup waits until all three have started, so the flow only completes if they overlap.
+  private static Flow<String> concurrentLookup(Key<String> target, final String prefix, final CountDownLatch allStarted) {
+    return Flows.obtaining(target).from(customerId).using("Look up " + target.getName(), new SingleParameterStep<String, String>() {
+      @Override
+      public String apply(String id) throws Exception {
+        allStarted.countDown();
+        if (!allStarted.await(5, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Lookups did not overlap");
+        }
+        if (id.equals("unknown")) {
+          throw new IllegalArgumentException("No such customer");
+        }
+        return prefix + " " + id;
+      }
+    });
+  }
+
+  private static final Flow<String> summarise = Flows.obtaining(summary)
+      .from(customerName, customerAddress, customerRating)
+      .using("Summarise", new TripleParameterStep<String, String, String, String>() {
+        @Override
+        public String apply(String name, String address, String rating) {
+          return name + ", " + address + ", " + rating;
+        }
+      });
+
+  private static Flow<String> customerSummary(CountDownLatch allStarted) {
+    return concurrentLookup(customerName, "Name", allStarted)
+        .then(concurrentLookup(customerAddress, "Address", allStarted))
+        .then(concurrentLookup(customerRating, "Rating", allStarted))
+        .then(summarise);
+  }
+
+  @AfterClass
+  public static void shutdownExecutor() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void independentStepsRunConcurrently() throws Exception {
+    FlowExecution<String> execution = compiler.compile(customerSummary(new CountDownLatch(3)));
+
+    assertEquals("Name 42, Address 42, Rating 42", execution.run(customerId.of("42")));
+  }
+
+  @Test
+  public void failuresInParallelStepsAreRecorded() throws Exception {
+    FlowExecution<String> execution = compiler.compile(customerSummary(new CountDownLatch(3)));
+
+    try {
+      execution.run(customerId.of("unknown"));
+      fail("Expected exception to be thrown");
+    } catch (FailedKeyRetrievedException e) {
+      assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+      assertEquals("No such customer", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void branchesAreRunInOrder() throws Exception {
+    Flow<String> flow = authorize.then(branch(isAuthorised, extractAccessToken.then(getWeather).then(formatWeather))
+        .otherwise(formatError));
+
+    FlowExecution<String> execution = compiler.compile(flow);
+
+    assertEquals(
+        "Fred, the temperature at VB6 5UX is 26.0 degrees",
+        execution.run(
+            userName.of("Fred"),
+            password.of("the real password"),
+            postcode.of("VB6 5UX")));
+
+    assertEquals(
+        "Sorry, Fred, your credentials were not valid",
+        execution.run(
+            userName.of("Fred"),
+            password.of("verysecurepassword"),
+            postcode.of("VB6 5UX")));
+  }
+}
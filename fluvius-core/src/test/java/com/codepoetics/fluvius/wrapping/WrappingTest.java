@@ -20,6 +20,7 @@ import org.junit.Test;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class WrappingTest {
 
@@ -128,4 +129,38 @@ public class WrappingTest {
     String greetingB = runner.sayHello("Gerald").run();
   }
 
+  public static final class ConcatenateStep implements Returning<String> {
+    @StepMethod("concatenated")
+    public String concatenate(
+        @KeyName("a") String a,
+        @KeyName("b") String b,
+        @KeyName("c") String c,
+        @KeyName("d") String d,
+        @KeyName("e") String e) {
+      return a + b + c + d + e;
+    }
+  }
+
+  @Test
+  public void stepMethodsWithManyParametersAreInvoked() throws Exception {
+    Flow<String> concatenateFlow = factory.flowFor(new ConcatenateStep());
+
+    assertEquals("abcde", Compilers.builder().build().compile(concatenateFlow).run(
+        keyProvider.<String>getKey("a", String.class).of("a"),
+        keyProvider.<String>getKey("b", String.class).of("b"),
+        keyProvider.<String>getKey("c", String.class).of("c"),
+        keyProvider.<String>getKey("d", String.class).of("d"),
+        keyProvider.<String>getKey("e", String.class).of("e")));
+  }
+
+  @Test
+  public void proxiesSupportObjectMethods() {
+    RunAccountDetailsFlow runner = proxyFactory.proxyFor(RunAccountDetailsFlow.class, getAccountDetailsFlow);
+    RunAccountDetailsFlow otherRunner = proxyFactory.proxyFor(RunAccountDetailsFlow.class, getAccountDetailsFlow);
+
+    assertEquals(runner, runner);
+    assertNotEquals(runner, otherRunner);
+    assertEquals(System.identityHashCode(runner), runner.hashCode());
+  }
+
 }
@@ -3,15 +3,11 @@ package com.codepoetics.fluvius.json.history;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.UUID;
 
 @JsonSerialize
 public abstract class FlowEventView {
 
-  private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss");
-
   private final UUID stepId;
   private final long timestamp;
 
@@ -27,9 +23,7 @@ public abstract class FlowEventView {
 
   @JsonProperty
   public String getTimestamp() {
-    Date date = new Date();
-    date.setTime(timestamp);
-    return DATE_FORMAT.format(date);
+    return TimestampFormatter.format(timestamp);
   }
 
   @JsonProperty
@@ -2,6 +2,7 @@ package com.codepoetics.fluvius.json.history;
 
 import com.codepoetics.fluvius.api.history.FlowEvent;
 import com.codepoetics.fluvius.api.history.FlowEventTranslator;
+import com.codepoetics.fluvius.api.history.FlowEvents;
 import com.codepoetics.fluvius.api.tracing.TraceMap;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -21,7 +22,7 @@ public final class FlowHistoryView {
     return new FlowHistoryView(
         flowId.toString(),
         TraceMapView.from(traceMap),
-        translateEvents(flowEvents));
+        translateEvents(FlowEvents.reconstruct(flowEvents)));
   }
 
   private static List<FlowEventView> translateEvents(List<FlowEvent<JsonNode>> flowEvents) {
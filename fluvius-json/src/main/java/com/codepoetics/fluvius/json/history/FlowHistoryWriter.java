@@ -0,0 +1,165 @@
+package com.codepoetics.fluvius.json.history;
+
+import com.codepoetics.fluvius.api.history.FlowEvent;
+import com.codepoetics.fluvius.api.history.StepFailedEvent;
+import com.codepoetics.fluvius.api.history.StepStartedEvent;
+import com.codepoetics.fluvius.api.history.StepSucceededEvent;
+import com.codepoetics.fluvius.api.tracing.TraceMap;
+import com.codepoetics.fluvius.api.tracing.TraceMapLabel;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the history of a flow as JSON, in the same form as a serialised {@link FlowHistoryView}, but directly to a
+ * {@link JsonGenerator} in a single pass over the events, without building any intermediate views.
+ * <p>
+ * Delta-encoded step-started events are expanded as they are written, so the only state held while writing is the
+ * scratchpad state of the flow at the current event.
+ * </p>
+ */
+public final class FlowHistoryWriter {
+
+  /**
+   * Create a writer which uses the supplied {@link ObjectMapper} to create generators and to write event data.
+   *
+   * @param mapper The mapper to use.
+   * @return The constructed writer.
+   */
+  public static FlowHistoryWriter using(ObjectMapper mapper) {
+    return new FlowHistoryWriter(mapper);
+  }
+
+  private final ObjectMapper mapper;
+
+  private FlowHistoryWriter(ObjectMapper mapper) {
+    this.mapper = mapper;
+  }
+
+  /**
+   * Write the history of a flow as UTF-8 encoded JSON to the supplied stream, which is left open.
+   *
+   * @param flowId The id of the flow.
+   * @param traceMap The trace map of the flow.
+   * @param events The flow's events, in the order in which they occurred.
+   * @param output The stream to write to.
+   * @param <T> The type to which the flow events' data has been serialised.
+   * @throws IOException If the history cannot be written.
+   */
+  public <T> void write(UUID flowId, TraceMap traceMap, Iterable<FlowEvent<T>> events, OutputStream output) throws IOException {
+    try (JsonGenerator generator = mapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      write(flowId, traceMap, events, generator);
+    }
+  }
+
+  /**
+   * Write the history of a flow as JSON to the supplied generator.
+   *
+   * @param flowId The id of the flow.
+   * @param traceMap The trace map of the flow.
+   * @param events The flow's events, in the order in which they occurred.
+   * @param generator The generator to write to.
+   * @param <T> The type to which the flow events' data has been serialised.
+   * @throws IOException If the history cannot be written.
+   */
+  public <T> void write(UUID flowId, TraceMap traceMap, Iterable<FlowEvent<T>> events, JsonGenerator generator) throws IOException {
+    if (generator.getCodec() == null) {
+      generator.setCodec(mapper);
+    }
+
+    generator.writeStartObject();
+    generator.writeStringField("flowId", flowId.toString());
+    generator.writeFieldName("traceMap");
+    writeTraceMap(traceMap, generator);
+    generator.writeFieldName("eventHistory");
+    writeEvents(events, generator, mapper.getSerializerProviderInstance());
+    generator.writeEndObject();
+  }
+
+  private static void writeTraceMap(TraceMap traceMap, JsonGenerator generator) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("stepId", traceMap.getStepId().toString());
+    generator.writeStringField("type", traceMap.getType().name());
+    generator.writeStringField("description", traceMap.getDescription());
+
+    generator.writeArrayFieldStart("requiredKeys");
+    for (String requiredKey : traceMap.getRequiredKeys()) {
+      generator.writeString(requiredKey);
+    }
+    generator.writeEndArray();
+
+    generator.writeStringField("providedKey", traceMap.getProvidedKey());
+
+    generator.writeObjectFieldStart("children");
+    for (Map.Entry<TraceMapLabel, TraceMap> child : traceMap.getChildren().entrySet()) {
+      generator.writeFieldName(child.getKey().getDescription());
+      writeTraceMap(child.getValue(), generator);
+    }
+    generator.writeEndObject();
+
+    generator.writeEndObject();
+  }
+
+  private static <T> void writeEvents(Iterable<FlowEvent<T>> events, JsonGenerator generator, SerializerProvider provider) throws IOException {
+    Map<String, T> state = null;
+    boolean stateIsCopy = false;
+
+    generator.writeStartArray();
+    for (FlowEvent<T> event : events) {
+      generator.writeStartObject();
+      generator.writeStringField("stepId", event.getStepId().toString());
+      generator.writeStringField("timestamp", TimestampFormatter.format(event.getTimestamp()));
+
+      if (event instanceof StepStartedEvent) {
+        StepStartedEvent<T> started = (StepStartedEvent<T>) event;
+        if (!started.isDelta()) {
+          state = started.getScratchpadState();
+          stateIsCopy = false;
+        } else {
+          if (!stateIsCopy) {
+            state = state == null ? new LinkedHashMap<String, T>() : new LinkedHashMap<>(state);
+            stateIsCopy = true;
+          }
+          state.putAll(started.getScratchpadState());
+        }
+
+        generator.writeStringField("type", "STARTED");
+        generator.writeObjectFieldStart("scratchpadState");
+        for (Map.Entry<String, T> entry : state.entrySet()) {
+          generator.writeFieldName(entry.getKey());
+          writeData(entry.getValue(), generator, provider);
+        }
+        generator.writeEndObject();
+      } else if (event instanceof StepSucceededEvent) {
+        generator.writeStringField("type", "SUCCEEDED");
+        generator.writeFieldName("result");
+        writeData(((StepSucceededEvent<T>) event).getResult(), generator, provider);
+      } else {
+        generator.writeStringField("type", "FAILED");
+        generator.writeFieldName("reason");
+        writeData(((StepFailedEvent<T>) event).getReason(), generator, provider);
+      }
+
+      generator.writeEndObject();
+    }
+    generator.writeEndArray();
+  }
+
+  private static void writeData(Object data, JsonGenerator generator, SerializerProvider provider) throws IOException {
+    // Event data is usually a JsonNode, which can write itself without a round trip through the mapper for every value.
+    if (data instanceof JsonSerializable) {
+      ((JsonSerializable) data).serialize(generator, provider);
+    } else {
+      generator.writeObject(data);
+    }
+  }
+}
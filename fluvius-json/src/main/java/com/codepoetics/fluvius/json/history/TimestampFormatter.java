@@ -0,0 +1,44 @@
+package com.codepoetics.fluvius.json.history;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Formats event timestamps to the second. {@link SimpleDateFormat} is not thread-safe, so each thread has its own, together
+ * with the last second it formatted, since consecutive events in a history very often fall within the same second.
+ */
+final class TimestampFormatter {
+
+  private TimestampFormatter() {
+  }
+
+  private static final String PATTERN = "yyyy-MM-dd'T'hh:mm:ss";
+
+  private static final ThreadLocal<CachingFormat> perThread = new ThreadLocal<CachingFormat>() {
+    @Override
+    protected CachingFormat initialValue() {
+      return new CachingFormat();
+    }
+  };
+
+  static String format(long timestamp) {
+    return perThread.get().format(timestamp);
+  }
+
+  private static final class CachingFormat {
+    private final SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+    private final Date date = new Date();
+    private long lastSecond = Long.MIN_VALUE;
+    private String lastFormatted;
+
+    String format(long timestamp) {
+      long second = timestamp >= 0 ? timestamp / 1000 : (timestamp - 999) / 1000;
+      if (second != lastSecond) {
+        date.setTime(timestamp);
+        lastFormatted = format.format(date);
+        lastSecond = second;
+      }
+      return lastFormatted;
+    }
+  }
+}
@@ -17,11 +17,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.util.UUID;
 
 import static com.codepoetics.fluvius.json.history.FlowExample.*;
 import static com.codepoetics.fluvius.visitors.Visitors.logging;
 import static com.codepoetics.fluvius.visitors.Visitors.mutationChecking;
+import static org.junit.Assert.assertEquals;
 
 public class JsonViewsTest {
 
@@ -77,4 +79,65 @@ public class JsonViewsTest {
         TraceMaps.getTraceMap(completeFlow),
         repository.getEvents(flowId))));
   }
+
+  @Test
+  public void streamedHistoryMatchesHistoryView() throws Exception {
+    Flow<String> flow = getWeatherFlow();
+    UUID flowId = UUID.randomUUID();
+    compiler.compile(flow).run(flowId, userName.of("Arthur"), password.of("Special secret password"), postcode.of("VB6 5UX"));
+
+    assertEquals(
+        mapper.valueToTree(FlowHistoryView.from(flowId, TraceMaps.getTraceMap(flow), repository.getEvents(flowId))),
+        streamHistory(flowId, flow, repository));
+  }
+
+  @Test
+  public void streamedHistoryExpandsDeltaEvents() throws Exception {
+    FlowEventRepository<JsonNode> deltaRepository = FlowEventRepositories.createInMemoryDelta(serialiser);
+    Flow<String> flow = getWeatherFlow();
+    UUID flowId = UUID.randomUUID();
+    Compilers.builder().tracingWith(deltaRepository).build()
+        .compile(flow)
+        .run(flowId, userName.of("Arthur"), password.of("Special secret password"), postcode.of("VB6 5UX"));
+
+    assertEquals(
+        mapper.valueToTree(FlowHistoryView.from(flowId, TraceMaps.getTraceMap(flow), deltaRepository.getEvents(flowId))),
+        streamHistory(flowId, flow, deltaRepository));
+  }
+
+  private Flow<String> getWeatherFlow() {
+    return Flows
+        .obtaining(accessToken)
+        .from(userName, password)
+        .using("Authorize user", new DoubleParameterStep<String, String, String>() {
+          @Override
+          public String apply(String username, String password) {
+            return "ACCESS TOKEN";
+          }
+        })
+        .then(Flows
+            .obtaining(temperature)
+            .from(accessToken, postcode)
+            .using("Get local temperature", new DoubleParameterStep<String, String, Double>() {
+              @Override
+              public Double apply(String accessCode, String postcode) {
+                return 26D;
+              }
+            }))
+        .then(Flows
+            .obtaining(weatherMessage)
+            .from(postcode, temperature)
+            .using("Format report", new DoubleParameterStep<String, Double, String>() {
+              @Override
+              public String apply(String postcode, Double temperature) {
+                return "It is " + temperature + " degrees at " + postcode;
+              }
+            }));
+  }
+
+  private JsonNode streamHistory(UUID flowId, Flow<?> flow, FlowEventRepository<JsonNode> source) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    FlowHistoryWriter.using(mapper).write(flowId, TraceMaps.getTraceMap(flow), source.getEvents(flowId), output);
+    return mapper.readTree(output.toByteArray());
+  }
 }